@@ -4,6 +4,7 @@ plugins {
     id("org.springframework.boot") version "3.2.10"
     id("io.spring.dependency-management") version "1.1.6"
     id("application")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 application {
@@ -81,6 +82,11 @@ tasks.getByName<Test>("test") {
     jvmArgs("-Dnet.bytebuddy.experimental=true")
 }
 
+jmh {
+    // Run with ./gradlew jmh -PjmhIncludes=<benchmark class regex>
+    includes.set(listOfNotNull(project.findProperty("jmhIncludes")?.toString()))
+}
+
 tasks.getByName<Jar>("jar") {
     enabled = false //To remove the build/libs/Fruzhin-ver-plain.jar
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.limechain.runtime.hostapi;
+
+import com.google.protobuf.ByteString;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.TrieStructureFactory;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.utils.scale.ScaleUtils;
+import io.emeraldpay.polkaj.scale.ScaleCodecWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the ordered trie root of a block's extrinsics, as done by {@code ext_trie_*_ordered_root}, with the
+ * {@link TrieHostFunctions.TrieRootCalculator} against the previous implementation, which built a whole
+ * {@link TrieStructure} and is reproduced here as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieRootBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int extrinsicsCount;
+
+    /**
+     * A name of {@link TrieHostFunctions.HashFunction}, which isn't visible to the generated benchmark code
+     */
+    @Param({"BLAKE2B", "KECCAK256"})
+    private String hashFunctionName;
+
+    private TrieHostFunctions.HashFunction hashFunction;
+    private List<byte[]> extrinsics;
+
+    @Setup
+    public void setup() {
+        hashFunction = TrieHostFunctions.HashFunction.valueOf(hashFunctionName);
+        Random random = new Random(42);
+        extrinsics = new ArrayList<>(extrinsicsCount);
+        for (int i = 0; i < extrinsicsCount; i++) {
+            byte[] extrinsic = new byte[100 + random.nextInt(100)];
+            random.nextBytes(extrinsic);
+            extrinsics.add(extrinsic);
+        }
+    }
+
+    @Benchmark
+    public byte[] streaming() {
+        return new TrieHostFunctions.TrieRootCalculator(hashFunction, StateVersion.V1).orderedTrieRoot(extrinsics);
+    }
+
+    @Benchmark
+    public byte[] trieStructure() {
+        Map<ByteString, ByteString> entries = new HashMap<>();
+        int i = 0;
+        for (byte[] extrinsic : extrinsics) {
+            byte[] key = ScaleUtils.Encode.encode(ScaleCodecWriter::writeCompact, i++);
+            entries.put(ByteString.copyFrom(key), ByteString.copyFrom(extrinsic));
+        }
+
+        TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V1);
+        TrieStructureFactory.calculateMerkleValues(trie, hashFunction.getFunction());
+        return trie.getRootNode()
+            .map(NodeHandle::getUserData)
+            .map(NodeData::getMerkleValue)
+            .orElse(hashFunction.getEmptyTrieHash());
+    }
+}
@@ -0,0 +1,85 @@
+package com.limechain.storage;
+
+import com.limechain.chain.Chain;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of point reads from the trie node column family with a single and with as many threads as
+ * there are processors. Reads only share the read side of the lock guarding the connection, so the throughput should
+ * scale with the thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DBRepositoryBenchmark {
+    private static final int KEY_COUNT = 10_000;
+
+    private Path directory;
+    private DBRepository connection;
+    private DBRepository repository;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("db-benchmark");
+        connection = new DBRepository(directory.toString(), Chain.WESTEND.getValue(), false);
+        repository = connection.inColumnFamily(DBColumnFamily.TRIE_NODES);
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(KEY_COUNT);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            entries.add(Map.entry(intToBytes(i), new byte[64]));
+        }
+        repository.saveBatch(entries);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        connection.closeConnection();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<byte[]> readSingleThread() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<byte[]> readAllThreads() {
+        return read();
+    }
+
+    private Optional<byte[]> read() {
+        return repository.find(intToBytes(ThreadLocalRandom.current().nextInt(KEY_COUNT)));
+    }
+
+    private static byte[] intToBytes(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+}
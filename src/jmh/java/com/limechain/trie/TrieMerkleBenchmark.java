@@ -0,0 +1,71 @@
+package com.limechain.trie;
+
+import com.google.protobuf.ByteString;
+import com.limechain.chain.spec.ChainSpec;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.utils.HashUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the Merkle values of the Kusama genesis state trie, built once from the bundled chain spec, sequentially
+ * ({@code parallelism = 1}) and on fork/join pools of increasing size. Every node is hashed on each invocation, as
+ * {@link TrieStructureFactory#calculateMerkleValues} doesn't reuse previously calculated values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrieMerkleBenchmark {
+    private static final String CHAIN_SPEC = "genesis/ksmcc3.json";
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private TrieStructure<NodeData> trie;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Map<ByteString, ByteString> genesisStorage = ChainSpec.newFromJSON(CHAIN_SPEC).getGenesis().getTop();
+        trie = TrieStructureFactory.buildTrieStructure(genesisStorage, StateVersion.V0);
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public byte[] calculateMerkleValues() {
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b, pool);
+        return trie.getRootNode()
+            .map(NodeHandle::getUserData)
+            .map(NodeData::getMerkleValue)
+            .orElseThrow();
+    }
+}
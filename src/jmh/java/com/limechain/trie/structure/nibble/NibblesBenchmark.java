@@ -0,0 +1,104 @@
+package com.limechain.trie.structure.nibble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link Nibbles} operations used on trie traversal against the previous representation, a list of
+ * {@link Nibble} objects compared through their hex string, which is reproduced here as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NibblesBenchmark {
+    private static final int KEYS = 10_000;
+    private static final int KEY_BYTES = 32;
+
+    private final List<Nibbles> keys = new ArrayList<>(KEYS);
+    private final List<List<Nibble>> listKeys = new ArrayList<>(KEYS);
+    private final TreeMap<Nibbles, Integer> map = new TreeMap<>();
+    private final TreeMap<List<Nibble>, Integer> listMap = new TreeMap<>(NibblesBenchmark::compareAsHex);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            byte[] bytes = new byte[KEY_BYTES];
+            random.nextBytes(bytes);
+            Nibbles key = Nibbles.fromBytes(bytes);
+            keys.add(key);
+            listKeys.add(new ArrayList<>(key.asUnmodifiableList()));
+            map.put(key, i);
+            listMap.put(listKeys.get(i), i);
+        }
+    }
+
+    @Benchmark
+    public void treeMapLookup(Blackhole blackhole) {
+        for (Nibbles key : keys) {
+            blackhole.consume(map.get(key));
+        }
+    }
+
+    @Benchmark
+    public void treeMapLookupListBaseline(Blackhole blackhole) {
+        for (List<Nibble> key : listKeys) {
+            blackhole.consume(listMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public void traversePath(Blackhole blackhole) {
+        for (Nibbles key : keys) {
+            // Descends one partial key and one child index at a time, as a trie traversal does
+            Nibbles remaining = key;
+            while (remaining.size() > 4) {
+                Nibbles partialKey = remaining.take(3);
+                blackhole.consume(remaining.startsWith(partialKey));
+                remaining = remaining.drop(4);
+            }
+            blackhole.consume(remaining);
+        }
+    }
+
+    @Benchmark
+    public void traversePathListBaseline(Blackhole blackhole) {
+        for (List<Nibble> key : listKeys) {
+            List<Nibble> remaining = key;
+            while (remaining.size() > 4) {
+                List<Nibble> partialKey = new ArrayList<>(remaining.subList(0, 3));
+                blackhole.consume(partialKey.equals(remaining.subList(0, 3)));
+                remaining = new ArrayList<>(remaining.subList(4, remaining.size()));
+            }
+            blackhole.consume(remaining);
+        }
+    }
+
+    private static int compareAsHex(List<Nibble> first, List<Nibble> second) {
+        return toHex(first).compareTo(toHex(second));
+    }
+
+    private static String toHex(List<Nibble> nibbles) {
+        StringBuilder builder = new StringBuilder(nibbles.size());
+        nibbles.forEach(nibble -> builder.append(nibble.asLowerHexDigit()));
+        return builder.toString();
+    }
+}
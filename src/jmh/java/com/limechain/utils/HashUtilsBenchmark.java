@@ -0,0 +1,131 @@
+package com.limechain.utils;
+
+import net.openhft.hashing.LongHashFunction;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link HashUtils} hashes used on trie updates (Blake2b of encoded nodes) and storage key computations
+ * (twox128 of pallet and item names) against the previous implementations, which allocated a new digest, hash
+ * function and buffers on each call and are reproduced here as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashUtilsBenchmark {
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * 16 bytes for a pallet name, 100 for a typical trie node and 1000 for a large branch with values
+     */
+    @Param({"16", "100", "1000"})
+    private int inputLength;
+
+    private byte[] input;
+    private byte[][] batch;
+    private final byte[] output = new byte[32];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        input = new byte[inputLength];
+        random.nextBytes(input);
+        batch = new byte[BATCH_SIZE][inputLength];
+        for (byte[] node : batch) {
+            random.nextBytes(node);
+        }
+    }
+
+    @Benchmark
+    public byte[] blake2b() {
+        return HashUtils.hashWithBlake2b(input);
+    }
+
+    @Benchmark
+    public byte[] blake2bIntoOutput() {
+        HashUtils.hashWithBlake2b(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] blake2bBaseline() {
+        Blake2bDigest digest = new Blake2bDigest(HashUtils.HASH256_HASH_LENGTH);
+        digest.reset();
+        digest.update(input, 0, input.length);
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    @Benchmark
+    public byte[][] blake2bBatch() {
+        return HashUtils.hashAllWithBlake2b(batch);
+    }
+
+    @Benchmark
+    public void blake2bBatchBaseline(Blackhole blackhole) {
+        for (byte[] node : batch) {
+            Blake2bDigest digest = new Blake2bDigest(HashUtils.HASH256_HASH_LENGTH);
+            digest.reset();
+            digest.update(node, 0, node.length);
+            byte[] hash = new byte[digest.getDigestSize()];
+            digest.doFinal(hash, 0);
+            blackhole.consume(hash);
+        }
+    }
+
+    @Benchmark
+    public byte[] twox128() {
+        return HashUtils.hashXx128(0, input);
+    }
+
+    @Benchmark
+    public byte[] twox128IntoOutput() {
+        HashUtils.hashXx(0, input, 0, input.length, output, 0, HashUtils.HASH_128_SIZE_BYTES);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] twox128Baseline() {
+        byte[] hash0 = xx64Baseline(0, input);
+        byte[] hash1 = xx64Baseline(1, input);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HashUtils.HASH_128_SIZE_BYTES);
+        buffer.put(hash0);
+        buffer.put(hash1);
+
+        return buffer.array();
+    }
+
+    private static byte[] xx64Baseline(int seed, byte[] dataToHash) {
+        final long xxHash = LongHashFunction
+                .xx(seed)
+                .hashBytes(dataToHash);
+
+        final ByteBuffer buffer = ByteBuffer
+                .allocate(HashUtils.HASH_64_SIZE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(xxHash);
+
+        return buffer.array();
+    }
+}
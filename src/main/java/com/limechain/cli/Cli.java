@@ -36,6 +36,10 @@ public class Cli {
     private static final String NO_LEGACY_PROTOCOLS = "no-legacy-protocols";
     private static final String SYNC_MODE = "sync-mode";
     private static final String PROMETHEUS_PORT = "prometheus-port";
+    private static final String TRIE_CACHE_SIZE = "trie-cache-size";
+    private static final String TRIE_OFFHEAP_CACHE_SIZE = "trie-offheap-cache-size";
+    private static final String STATE_PRUNING = "state-pruning";
+    private static final String ARCHIVE = "archive";
     // The cli arguments below are added so that Zombienet tests can run.
     // The reason is that Zombienet passes Substrate's cli arguments to every client.
     // This leads to Fruzhin to fail parsing the arguments and it can't start.
@@ -79,6 +83,33 @@ public class Cli {
         }
     }
 
+    /**
+     * Parses the state pruning setting from command line arguments.
+     * <p>
+     * Defaults to "archive" if not specified. Throws an exception for invalid values.
+     *
+     * @param cmd Command line arguments.
+     * @return The number of finalized states to keep, 0 for archive mode.
+     * @throws CliArgsParseException for invalid state pruning values.
+     */
+    private static int parseStatePruning(CommandLine cmd) {
+        String value = cmd.getOptionValue(STATE_PRUNING, ARCHIVE);
+        if (value.equalsIgnoreCase(ARCHIVE)) {
+            return 0;
+        }
+
+        try {
+            int keepStates = Integer.parseInt(value);
+            if (keepStates <= 0) {
+                throw new IllegalArgumentException("State pruning must keep at least one state");
+            }
+            return keepStates;
+        } catch (IllegalArgumentException e) {
+            throw new CliArgsParseException(
+                "Invalid state pruning provided, valid values - ARCHIVE or a positive number of states", e);
+        }
+    }
+
     /**
      * Parses the RPC methods setting from command line arguments.
      * <p>
@@ -122,8 +153,11 @@ public class Cli {
             RpcMethods rpcMethods = parseRpcMethods(cmd, isPublic);
             boolean unsafeEnabled = rpcMethods == RpcMethods.UNSAFE;
             int prometheusPort = Integer.parseInt(cmd.getOptionValue(PROMETHEUS_PORT, "9090"));
+            long trieCacheSize = Long.parseLong(cmd.getOptionValue(TRIE_CACHE_SIZE, "256"));
+            long trieOffHeapCacheSize = Long.parseLong(cmd.getOptionValue(TRIE_OFFHEAP_CACHE_SIZE, "0"));
+            int statePruning = parseStatePruning(cmd);
             return new CliArguments(network, dbPath, dbRecreate, nodeKey, nodeMode, noLegacyProtocols, syncMode,
-                    unsafeEnabled, prometheusPort);
+                    unsafeEnabled, prometheusPort, trieCacheSize, trieOffHeapCacheSize, statePruning);
         } catch (ParseException e) {
             formatter.printHelp("Specify the network name - " + String.join(", ", validChains), options);
             throw new CliArgsParseException("Failed to parse cli arguments", e);
@@ -159,6 +193,12 @@ public class Cli {
                 - safe:   Allow only a safe subset of RPC methods
                 - unsafe: Expose every RPC method (even potentially unsafe ones)""");
         Option prometheusPort = new Option(null, PROMETHEUS_PORT, true, "Prometheus port");
+        Option trieCacheSize = new Option(null, TRIE_CACHE_SIZE, true,
+                "\nTrie node cache size in MiB (0 disables the cache) - 256 by default");
+        Option trieOffHeapCacheSize = new Option(null, TRIE_OFFHEAP_CACHE_SIZE, true,
+                "\nOff-heap trie node cache size in MiB - disabled (0) by default");
+        Option statePruning = new Option(null, STATE_PRUNING, true,
+                "\nState pruning (archive/<number of finalized states to keep>) - archive by default");
 
         Option chain = new Option(null, CHAIN, true, "");
         Option name = new Option(null, NAME, true, "");
@@ -187,6 +227,9 @@ public class Cli {
         noTelemetry.setRequired(false);
         prometheusExternal.setRequired(false);
         prometheusPort.setRequired(false);
+        trieCacheSize.setRequired(false);
+        trieOffHeapCacheSize.setRequired(false);
+        statePruning.setRequired(false);
         rpcPort.setRequired(false);
         listenAddress.setRequired(false);
         basePath.setRequired(false);
@@ -201,6 +244,9 @@ public class Cli {
         result.addOption(publicRpc);
         result.addOption(rpcMethods);
         result.addOption(prometheusPort);
+        result.addOption(trieCacheSize);
+        result.addOption(trieOffHeapCacheSize);
+        result.addOption(statePruning);
 
         result.addOption(chain);
         result.addOption(name);
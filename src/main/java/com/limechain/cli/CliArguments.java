@@ -12,7 +12,11 @@ import com.limechain.sync.SyncMode;
  * @param noLegacyProtocols flag for disabling legacy protocols
  * @param syncMode          the sync mode
  * @param unsafeRpcEnabled  whether to enable unsafe RPC methods
+ * @param trieCacheSize     the trie node cache budget in MiB
+ * @param trieOffHeapCacheSize the off-heap trie node cache size in MiB, 0 if disabled
+ * @param statePruning      the number of finalized states to keep, 0 for archive mode
  */
 public record CliArguments(String network, String dbPath, boolean dbRecreate, String nodeKey, String nodeRole,
-                           boolean noLegacyProtocols, SyncMode syncMode, boolean unsafeRpcEnabled, int prometheusPort) {
+                           boolean noLegacyProtocols, SyncMode syncMode, boolean unsafeRpcEnabled, int prometheusPort,
+                           long trieCacheSize, long trieOffHeapCacheSize, int statePruning) {
 }
@@ -4,6 +4,7 @@ import com.limechain.cli.CliArguments;
 import com.limechain.constants.GenesisBlockHash;
 import com.limechain.network.Network;
 import com.limechain.rpc.server.AppBean;
+import com.limechain.storage.DBColumnFamily;
 import com.limechain.storage.KVRepository;
 import com.limechain.storage.block.BlockState;
 import com.limechain.storage.block.BlockStateHelper;
@@ -75,7 +76,8 @@ public class FullNode implements HostNode {
         }
         TrieStorage trieStorage = AppBean.getBean(TrieStorage.class);
         // if: database has some persisted storage
-        if (db.find(new BlockStateHelper().headerHashKey(BigInteger.ZERO)).isPresent()) {
+        KVRepository<String, Object> blocksDb = db.inColumnFamily(DBColumnFamily.BLOCKS);
+        if (blocksDb.find(new BlockStateHelper().headerHashKey(BigInteger.ZERO)).isPresent()) {
             BlockState.getInstance().initialize(db);//Initialize BlockState from already existing data
         } else {
             GenesisBlockHash genesisBlockHash = AppBean.getBean(GenesisBlockHash.class);
@@ -33,6 +33,18 @@ public class HostConfig {
     private final NodeRole nodeRole;
     private final String rpcNodeAddress;
     private final int prometheusPort;
+    /**
+     * Trie node cache budget in bytes
+     */
+    private final long trieCacheSize;
+    /**
+     * Off-heap trie node cache size in bytes, 0 if disabled
+     */
+    private final long trieOffHeapCacheSize;
+    /**
+     * Number of finalized states whose trie nodes are kept, 0 for archive mode
+     */
+    private final int statePruning;
 
     /**
      * Recreate the DB
@@ -74,6 +86,9 @@ public class HostConfig {
         };
 
         this.prometheusPort = cliArguments.prometheusPort();
+        this.trieCacheSize = cliArguments.trieCacheSize() * 1024 * 1024;
+        this.trieOffHeapCacheSize = cliArguments.trieOffHeapCacheSize() * 1024 * 1024;
+        this.statePruning = cliArguments.statePruning();
 
         log.log(Level.INFO, String.format("✅️Loaded app config for chain %s%n", chain));
     }
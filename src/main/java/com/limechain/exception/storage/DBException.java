@@ -4,4 +4,8 @@ public class DBException extends RuntimeException {
     public DBException(Throwable e) {
         super(e);
     }
+
+    public DBException(String message) {
+        super(message);
+    }
 }
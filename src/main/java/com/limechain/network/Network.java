@@ -311,6 +311,10 @@ public class Network {
     }
 
     public SyncMessage.StateResponse makeStateRequest(String blockHash, ByteString after) {
+        return makeStateRequest(blockHash, List.of(after));
+    }
+
+    public SyncMessage.StateResponse makeStateRequest(String blockHash, List<ByteString> after) {
         return stateService.getProtocol().remoteStateRequest(
                 this.host,
                 this.currentSelectedPeer,
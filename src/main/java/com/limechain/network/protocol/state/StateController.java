@@ -4,6 +4,7 @@ import com.google.protobuf.ByteString;
 import com.limechain.exception.NotImplementedException;
 import com.limechain.network.protocol.sync.pb.SyncMessage;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface StateController {
@@ -13,11 +14,19 @@ public interface StateController {
     }
 
     default CompletableFuture<SyncMessage.StateResponse> sendStateRequest(String fromHash, ByteString after) {
+        return sendStateRequest(fromHash, List.of(after));
+    }
+
+    /**
+     * @param after the key to start after, followed by the key within the child trie stored at it when continuing
+     *              a child trie
+     */
+    default CompletableFuture<SyncMessage.StateResponse> sendStateRequest(String fromHash, List<ByteString> after) {
         SyncMessage.StateRequest build = SyncMessage.StateRequest
                 .newBuilder()
                 .setBlock(ByteString.fromHex(fromHash))
                 .setNoProof(true)
-                .addStart(after)
+                .addAllStart(after)
                 .build();
 
         return send(build);
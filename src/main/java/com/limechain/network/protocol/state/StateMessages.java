@@ -10,6 +10,7 @@ import io.libp2p.core.Host;
 import io.libp2p.core.PeerId;
 import lombok.extern.java.Log;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -23,6 +24,11 @@ public class StateMessages extends StrictProtocolBinding<StateController> {
 
     public SyncMessage.StateResponse remoteStateRequest(Host us, PeerId peer,
                                                         String blockHash, ByteString after) {
+        return remoteStateRequest(us, peer, blockHash, List.of(after));
+    }
+
+    public SyncMessage.StateResponse remoteStateRequest(Host us, PeerId peer,
+                                                        String blockHash, List<ByteString> after) {
         try {
             StateController controller = dialPeer(us, peer, us.getAddressBook());
 
@@ -10,13 +10,21 @@ import com.limechain.constants.GenesisBlockHash;
 import com.limechain.network.Network;
 import com.limechain.rpc.server.UnsafeInterceptor;
 import com.limechain.runtime.builder.RuntimeBuilder;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DBColumnFamily;
 import com.limechain.storage.DBInitializer;
+import com.limechain.storage.DBRepository;
 import com.limechain.storage.KVRepository;
 import com.limechain.storage.block.SyncState;
+import com.limechain.storage.trie.FlatStateStorage;
+import com.limechain.storage.trie.OffHeapTrieNodeCache;
+import com.limechain.storage.trie.StatePruner;
+import com.limechain.storage.trie.TrieNodeCache;
 import com.limechain.storage.trie.TrieStorage;
 import com.limechain.sync.fullsync.FullSyncMachine;
 import com.limechain.sync.warpsync.WarpSyncMachine;
 import com.limechain.sync.warpsync.WarpSyncState;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -51,14 +59,34 @@ public class CommonConfig {
     }
 
     @Bean
-    public KVRepository<String, Object> repository(HostConfig hostConfig) {
+    public DBRepository repository(HostConfig hostConfig) {
         return DBInitializer.initialize(hostConfig.getRocksDbPath(),
                 hostConfig.getChain(), hostConfig.isDbRecreate());
     }
 
-    @Bean
-    public TrieStorage trieStorage(KVRepository<String, Object> repository) {
-        return new TrieStorage(repository);
+    @Bean(destroyMethod = "close")
+    public TrieStorage trieStorage(ByteKeyRepository repository, HostConfig hostConfig) {
+        TrieNodeCache cache = new TrieNodeCache(hostConfig.getTrieCacheSize());
+        cache.registerMetrics(PrometheusRegistry.defaultRegistry);
+
+        OffHeapTrieNodeCache offHeapCache = null;
+        if (hostConfig.getTrieOffHeapCacheSize() > 0) {
+            offHeapCache = new OffHeapTrieNodeCache(hostConfig.getTrieOffHeapCacheSize());
+            offHeapCache.registerMetrics(PrometheusRegistry.defaultRegistry);
+        }
+
+        FlatStateStorage flatState = new FlatStateStorage(repository.inColumnFamily(DBColumnFamily.FLAT_STATE));
+
+        ByteKeyRepository trieNodesRepository = repository.inColumnFamily(DBColumnFamily.TRIE_NODES);
+        StatePruner pruner = null;
+        if (hostConfig.getStatePruning() > 0) {
+            pruner = new StatePruner(trieNodesRepository, hostConfig.getStatePruning());
+            pruner.registerMetrics(PrometheusRegistry.defaultRegistry);
+        }
+
+        TrieStorage trieStorage = new TrieStorage(trieNodesRepository, cache, offHeapCache, flatState, pruner);
+        trieStorage.migrateLegacyTrieNodes();
+        return trieStorage;
     }
 
     @Bean
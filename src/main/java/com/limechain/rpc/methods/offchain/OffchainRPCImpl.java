@@ -1,6 +1,6 @@
 package com.limechain.rpc.methods.offchain;
 
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
 import com.limechain.storage.offchain.OffchainStore;
 import com.limechain.storage.offchain.StorageKind;
 import com.limechain.utils.StringUtils;
@@ -12,7 +12,7 @@ public class OffchainRPCImpl {
     private final OffchainStore persistentStorage;
     private final OffchainStore localStorage;
 
-    public OffchainRPCImpl(final KVRepository<String, Object> db) {
+    public OffchainRPCImpl(final ByteKeyRepository db) {
         persistentStorage = new OffchainStore(db, StorageKind.PERSISTENT);
         localStorage = new OffchainStore(db, StorageKind.LOCAL);
     }
@@ -90,7 +90,7 @@ public class StateRPCImpl {
         }
 
         Nibbles prefix = prefixHex != null ? Nibbles.fromHexString(prefixHex) : Nibbles.EMPTY;
-        Nibbles startKey = keyHex != null ? Nibbles.fromHexString(keyHex) : Nibbles.EMPTY;
+        Nibbles startKey = keyHex != null ? Nibbles.fromHexString(keyHex) : null;
         final Hash256 blockStateRoot = blockState.getBlockStateRoot(getHash256FromHex(blockHashHex));
 
         return trieStorage
@@ -118,8 +118,7 @@ public class StateRPCImpl {
         final Hash256 blockHash = getHash256FromHex(blockHashHex);
         byte[] blockStateRoot = blockState.getBlockStateRoot(blockHash).getBytes();
 
-        return trieStorage.getByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
-            .map(NodeData::getValue)
+        return trieStorage.getValueByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
             .map(StringUtils::toHexWithPrefix)
             .orElse(null);
     }
@@ -161,8 +160,7 @@ public class StateRPCImpl {
         byte[] blockStateRoot = blockState.getBlockStateRoot(blockHash).getBytes();
 
         return trieStorage
-            .getByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
-            .map(NodeData::getValue)
+            .getValueByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
             .map(Array::getLength)
             .map(String::valueOf)
             .orElse(null);
@@ -231,8 +229,7 @@ public class StateRPCImpl {
             for (String keyHex : keysHex) {
 
                 byte[] blockStateRoot = blockState.getBlockStateRoot(blockHash).getBytes();
-                final Optional<String> currentValueOpt = trieStorage.getByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
-                    .map(NodeData::getValue)
+                final Optional<String> currentValueOpt = trieStorage.getValueByKeyFromMerkle(blockStateRoot, Nibbles.fromHexString(keyHex))
                     .map(StringUtils::toHexWithPrefix);
 
                 final String currentValue = currentValueOpt.orElse(null);
@@ -263,14 +260,13 @@ public class StateRPCImpl {
 
         final byte[] blockStateRoot = blockState.getBlockStateRoot(blockHash).getBytes();
 
-        List<String> readProof = keyHexList
+        List<Nibbles> keys = keyHexList
             .stream()
             .map(StringUtils::hexToBytes)
-            // TODO change implementation logic as this is not correct
-            .map(key -> trieStorage.getByKeyFromMerkle(blockStateRoot, Nibbles.fromBytes(key))
-                .orElse(null))
-            .filter(Objects::nonNull)
-            .map(NodeData::getMerkleValue)
+            .map(Nibbles::fromBytes)
+            .toList();
+        List<String> readProof = trieStorage.readProof(blockStateRoot, keys)
+            .stream()
             .map(StringUtils::toHexWithPrefix)
             .toList();
 
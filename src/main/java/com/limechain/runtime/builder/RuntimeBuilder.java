@@ -6,7 +6,7 @@ import com.limechain.network.protocol.blockannounce.NodeRole;
 import com.limechain.runtime.Runtime;
 import com.limechain.runtime.RuntimeFactory;
 import com.limechain.runtime.hostapi.dto.OffchainNetworkState;
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
 import com.limechain.storage.crypto.KeyStore;
 import com.limechain.storage.offchain.OffchainStorages;
 import com.limechain.storage.offchain.OffchainStore;
@@ -26,7 +26,7 @@ import org.springframework.stereotype.Component;
 @Component
 @RequiredArgsConstructor
 public class RuntimeBuilder {
-    private final KVRepository<String, Object> db;
+    private final ByteKeyRepository db;
     private final KeyStore keyStore;
     private final Network network;
     private final HostConfig hostConfig;
@@ -1,14 +1,12 @@
 package com.limechain.runtime.hostapi;
 
-import com.google.protobuf.ByteString;
 import com.limechain.runtime.SharedMemory;
 import com.limechain.runtime.hostapi.dto.RuntimePointerSize;
 import com.limechain.runtime.version.StateVersion;
-import com.limechain.trie.TrieStructureFactory;
-import com.limechain.trie.decoded.Trie;
-import com.limechain.trie.decoded.TrieVerifier;
-import com.limechain.trie.structure.NodeHandle;
-import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.StreamingTrieBuilder;
+import com.limechain.trie.decoded.TrieProof;
+import com.limechain.trie.dto.node.RangeHashFunction;
+import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.utils.HashUtils;
 import com.limechain.utils.scale.ScaleUtils;
 import com.limechain.utils.scale.readers.PairReader;
@@ -21,11 +19,10 @@ import lombok.extern.java.Log;
 import org.javatuples.Pair;
 import org.wasmer.ImportObject;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
 /**
  * Implementations of the Trie HostAPI functions
@@ -207,15 +204,12 @@ public class TrieHostFunctions implements PartialHostApi {
 
     private boolean verifyProof(HashFunction hashFunction, StateVersion version, byte[] trieRoot,
                                 byte[][] encodedProofNodes, byte[] key, byte[] value) {
-        // TODO: Figure out how the state version affects proof verification
+        // The state version only affects how the trie was built, values hashed into their nodes are part of the proof
         try {
-            Trie trie = TrieVerifier.buildTrie(encodedProofNodes, trieRoot, hashFunction.getFunction());
-            TrieVerifier.verify(trie, key, value);
+            return TrieProof.of(encodedProofNodes, hashFunction.getFunction()::hash).verify(trieRoot, key, value);
         } catch (RuntimeException e) {
             return false;
         }
-
-        return true;
     }
 
     @Getter
@@ -230,7 +224,7 @@ public class TrieHostFunctions implements PartialHostApi {
         private static final byte[] EMPTY_KECCAK256_TRIE_MERKLE_VALUE =
                 {-68, 54, 120, -98, 122, 30, 40, 20, 54, 70, 66, 41, -126, -113, -127, 125, 102, 18, -9, -76, 119, -42, 101,
                         -111, -1, -106, -87, -32, 100, -68, -55, -118};
-        private final UnaryOperator<byte[]> function;
+        private final RangeHashFunction function;
 
         public byte[] getEmptyTrieHash() {
             return switch (this) {
@@ -240,30 +234,45 @@ public class TrieHostFunctions implements PartialHostApi {
         }
     }
 
+    /**
+     * Calculates trie roots with a {@link StreamingTrieBuilder} over the sorted entries, which only keeps the nodes on
+     * the path to the current key instead of building the whole trie.
+     */
     record TrieRootCalculator(HashFunction hashFunction, StateVersion stateVersion) {
         public byte[] trieRoot(List<Pair<byte[], byte[]>> entries) {
-            Map<ByteString, ByteString> entriesMap = entries.stream().collect(
-                    Collectors.toMap(p -> ByteString.copyFrom(p.getValue0()), p -> ByteString.copyFrom(p.getValue1())));
-            return trieRoot(entriesMap, stateVersion);
+            List<Pair<byte[], byte[]>> sortedEntries = new ArrayList<>(entries);
+            // The sort is stable, so values at the same key stay in their original order
+            sortedEntries.sort((a, b) -> Arrays.compareUnsigned(a.getValue0(), b.getValue0()));
+            return sortedTrieRoot(sortedEntries);
         }
 
         public byte[] orderedTrieRoot(List<byte[]> values) {
-            Map<ByteString, ByteString> entries = new HashMap<>();
+            List<Pair<byte[], byte[]>> entries = new ArrayList<>(values.size());
 
             int i = 0;
             for (byte[] value : values) {
                 byte[] key = ScaleUtils.Encode.encode(ScaleCodecWriter::writeCompact, i++);
-                entries.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+                entries.add(new Pair<>(key, value));
             }
 
-            return trieRoot(entries, stateVersion);
+            return trieRoot(entries);
         }
 
-        private byte[] trieRoot(Map<ByteString, ByteString> entries, StateVersion stateVersion) {
-            var trie = TrieStructureFactory.buildTrieStructure(entries, stateVersion);
-            TrieStructureFactory.calculateMerkleValues(trie, hashFunction.getFunction());
-            return trie.getRootNode().map(NodeHandle::getUserData).map(NodeData::getMerkleValue)
-                    .orElse(hashFunction.getEmptyTrieHash());
+        private byte[] sortedTrieRoot(List<Pair<byte[], byte[]>> sortedEntries) {
+            if (sortedEntries.isEmpty()) {
+                return hashFunction.getEmptyTrieHash();
+            }
+
+            StreamingTrieBuilder builder = new StreamingTrieBuilder(stateVersion, hashFunction.getFunction());
+            for (int i = 0; i < sortedEntries.size(); i++) {
+                byte[] key = sortedEntries.get(i).getValue0();
+                // Of several values at the same key, the last one wins
+                if (i + 1 < sortedEntries.size() && Arrays.equals(key, sortedEntries.get(i + 1).getValue0())) {
+                    continue;
+                }
+                builder.add(Nibbles.fromBytes(key), sortedEntries.get(i).getValue1());
+            }
+            return builder.finish();
         }
     }
 
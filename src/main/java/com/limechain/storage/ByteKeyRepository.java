@@ -0,0 +1,104 @@
+package com.limechain.storage;
+
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Byte-oriented Key-Value DB Interface.
+ * <p>
+ * Keys and values are passed to the DB as they are, without any charset conversion or object serialization,
+ * which makes it suitable for hot paths and for keys that are arbitrary binary data (hashes, public keys, etc.).
+ * Use {@link KeyPrefix} to namespace keys of a given data domain.
+ */
+public interface ByteKeyRepository {
+    /**
+     * Persists a key-value pair to the DB
+     *
+     * @param key   key of the pair
+     * @param value value of the pair
+     * @return whether the save operation was successful
+     */
+    boolean save(byte[] key, byte[] value);
+
+    /**
+     * Persists all key-value pairs atomically
+     *
+     * @param entries the key value pairs to save
+     */
+    void saveBatch(List<Map.Entry<byte[], byte[]>> entries);
+
+    /**
+     * Persists key-value pairs and deletes keys in a single atomic write
+     *
+     * @param entries the key value pairs to save
+     * @param deletes the keys to delete
+     */
+    void writeBatch(List<Map.Entry<byte[], byte[]>> entries, List<byte[]> deletes);
+
+    /**
+     * Tries to find a value for a given key in the DB
+     *
+     * @param key the key to search for
+     * @return Optional result that could contain the value
+     */
+    Optional<byte[]> find(byte[] key);
+
+    /**
+     * Looks up multiple keys in a single call.
+     *
+     * @param keys the keys to search for
+     * @return the values in the order of the keys, {@code null} for the keys not present in the DB
+     */
+    List<byte[]> findMany(List<byte[]> keys);
+
+    /**
+     * Deletes a key-value pair from the DB
+     *
+     * @param key the key of the pair
+     * @return whether the delete operation was successful
+     */
+    boolean delete(byte[] key);
+
+    /**
+     * Finds all keys sharing a common prefix up to a given limit.
+     *
+     * @param prefix prefix of the key to look for
+     * @param limit  maximum keys to return
+     * @return the found keys, including the prefix
+     */
+    List<byte[]> findKeysByPrefix(byte[] prefix, int limit);
+
+    /**
+     * Finds the entries whose keys share a common prefix, in key order, up to a given limit.
+     *
+     * @param prefix   prefix of the key to look for
+     * @param startKey the key to continue after, {@code null} to start at the first key with the prefix
+     * @param limit    maximum entries to return
+     * @return the found entries, with their keys including the prefix
+     */
+    List<Map.Entry<byte[], byte[]>> findEntriesByPrefix(byte[] prefix, @Nullable byte[] startKey, int limit);
+
+    /**
+     * Deletes key-value pairs from the DB where key starts with prefix, up to a given limit.
+     *
+     * @param prefix prefix for the key of the pair
+     * @param limit  maximum entries to delete
+     * @return how many entries were deleted and if all were deleted. Deletes without a limit may remove
+     * the whole range at once without counting the entries, and report 0 deleted ones
+     */
+    DeleteByPrefixResult deleteByPrefix(byte[] prefix, @Nullable Long limit);
+
+    /**
+     * Returns a repository over the given column family of the same DB. Implementations without column families
+     * keep all domains together and return themselves.
+     *
+     * @param family the column family to work on
+     * @return repository operating on the given column family
+     */
+    default ByteKeyRepository inColumnFamily(DBColumnFamily family) {
+        return this;
+    }
+}
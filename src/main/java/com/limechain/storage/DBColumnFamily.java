@@ -0,0 +1,174 @@
+package com.limechain.storage;
+
+import com.limechain.storage.crypto.KeyType;
+import com.limechain.utils.ByteArrayUtils;
+import lombok.Getter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DataBlockIndexType;
+import org.rocksdb.RocksDB;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.FileUtils.ONE_KB;
+import static org.apache.commons.io.FileUtils.ONE_MB;
+
+/**
+ * RocksDB column families, one per data domain. Each family has its own memtable, block cache, table format
+ * and compaction settings, tuned for the access pattern of the data stored in it.
+ * <p>
+ * Keys keep their domain prefix inside the family, so prefix scans behave the same as with a single family.
+ */
+@Getter
+public enum DBColumnFamily {
+    /**
+     * Everything not belonging to a dedicated domain (chain spec, sync state, peer id, runtime code, etc.).
+     */
+    DEFAULT(new String(RocksDB.DEFAULT_COLUMN_FAMILY, UTF_8), 8 * ONE_MB, 0, List.of()) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+        }
+    },
+    /**
+     * Trie nodes keyed by merkle value. Random point lookups dominate the read I/O, so every table gets a bloom
+     * filter, a hash index inside data blocks and the largest block cache.
+     */
+    TRIE_NODES("trie_nodes", 256 * ONE_MB, 10, List.of("tn:")) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            tableConfig
+                .setBlockSize(4 * ONE_KB)
+                .setCacheIndexAndFilterBlocks(true)
+                .setPinL0FilterAndIndexBlocksInCache(true)
+                .setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash)
+                .setDataBlockHashTableUtilRatio(0.75);
+            options
+                .setWriteBufferSize(64 * ONE_MB)
+                .setMaxWriteBufferNumber(4)
+                .setCompressionType(CompressionType.LZ4_COMPRESSION)
+                .setCompactionStyle(CompactionStyle.LEVEL)
+                .setLevelCompactionDynamicLevelBytes(true)
+                .setTargetFileSizeBase(64 * ONE_MB)
+                .setMaxBytesForLevelBase(512 * ONE_MB);
+        }
+    },
+    /**
+     * Flat storage key to value table of the latest state, see {@link com.limechain.storage.trie.FlatStateStorage}.
+     * Serves point lookups only, so it gets the same filter and hash index setup as the trie nodes.
+     */
+    FLAT_STATE("flat_state", 64 * ONE_MB, 10, List.of()) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            tableConfig
+                .setBlockSize(4 * ONE_KB)
+                .setCacheIndexAndFilterBlocks(true)
+                .setPinL0FilterAndIndexBlocksInCache(true)
+                .setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash)
+                .setDataBlockHashTableUtilRatio(0.75);
+            options
+                .setWriteBufferSize(32 * ONE_MB)
+                .setCompressionType(CompressionType.LZ4_COMPRESSION)
+                .setCompactionStyle(CompactionStyle.LEVEL)
+                .setLevelCompactionDynamicLevelBytes(true);
+        }
+    },
+    /**
+     * Block headers, bodies, number to hash mappings and finality data. Mostly appended and read sequentially,
+     * so larger blocks and stronger compression pay off.
+     */
+    BLOCKS("blocks", 32 * ONE_MB, 0, List.of("hdr", "blb", "hsh", "arr", "finalised_head", "hrs")) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            tableConfig.setBlockSize(64 * ONE_KB);
+            options
+                .setWriteBufferSize(32 * ONE_MB)
+                .setCompressionType(CompressionType.LZ4_COMPRESSION)
+                .setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION)
+                .setCompactionStyle(CompactionStyle.LEVEL)
+                .setLevelCompactionDynamicLevelBytes(true)
+                .setTargetFileSizeBase(128 * ONE_MB);
+        }
+    },
+    /**
+     * Offchain worker storage. Small and rarely written, so it gets a small memtable.
+     */
+    OFFCHAIN("offchain", 4 * ONE_MB, 0, List.of("offchain_")) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            options
+                .setWriteBufferSize(4 * ONE_MB)
+                .setMaxWriteBufferNumber(2)
+                .setCompactionStyle(CompactionStyle.UNIVERSAL);
+        }
+    },
+    /**
+     * Private keys by key type and public key. Tiny, kept uncompressed.
+     */
+    KEYSTORE("keystore", ONE_MB, 0, Arrays.stream(KeyType.values())
+        .map(keyType -> new String(keyType.getBytes(), UTF_8))
+        .toList()) {
+        @Override
+        void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig) {
+            options
+                .setWriteBufferSize(ONE_MB)
+                .setMaxWriteBufferNumber(2)
+                .setCompressionType(CompressionType.NO_COMPRESSION)
+                .setCompactionStyle(CompactionStyle.UNIVERSAL);
+        }
+    };
+
+    /**
+     * Name of the column family in the database
+     */
+    private final String familyName;
+    /**
+     * Size of the LRU block cache owned by this family
+     */
+    private final long blockCacheSize;
+    /**
+     * Bits per key of the bloom filter built for every table, 0 for no filter
+     */
+    private final double bloomFilterBitsPerKey;
+    /**
+     * Key prefixes which belonged to this domain when everything was stored in the default column family.
+     * Used when migrating databases created before column families were introduced.
+     */
+    private final List<String> legacyPrefixes;
+
+    DBColumnFamily(String familyName, long blockCacheSize, double bloomFilterBitsPerKey, List<String> legacyPrefixes) {
+        this.familyName = familyName;
+        this.blockCacheSize = blockCacheSize;
+        this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+        this.legacyPrefixes = legacyPrefixes;
+    }
+
+    /**
+     * Applies the family specific tuning. The block cache and bloom filter are set up by the caller, which owns
+     * the native resources.
+     */
+    abstract void configure(ColumnFamilyOptions options, BlockBasedTableConfig tableConfig);
+
+    public byte[] getNameBytes() {
+        return familyName.getBytes(UTF_8);
+    }
+
+    /**
+     * @param key a key stored in the default column family by older versions
+     * @return the family the key belongs to, {@link #DEFAULT} if none of the dedicated ones
+     */
+    public static DBColumnFamily forLegacyKey(byte[] key) {
+        for (DBColumnFamily family : values()) {
+            for (String prefix : family.legacyPrefixes) {
+                if (ByteArrayUtils.hasPrefix(key, prefix.getBytes(UTF_8))) {
+                    return family;
+                }
+            }
+        }
+        return DEFAULT;
+    }
+}
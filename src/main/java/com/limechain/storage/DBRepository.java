@@ -5,12 +5,20 @@ import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.utils.ByteArrayUtils;
 import lombok.extern.java.Log;
 import org.apache.commons.io.FileUtils;
-import org.rocksdb.Options;
+import org.rocksdb.AbstractNativeReference;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
+import org.springframework.lang.Nullable;
 import org.springframework.util.SerializationUtils;
 
 import java.io.File;
@@ -18,32 +26,81 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
- * Implementation for Key-Value DB interface with String as key and Object as value types
+ * Implementation for Key-Value DB interface with String as key and Object as value types.
+ * Also exposes the raw {@link ByteKeyRepository} API over the same DB for byte-oriented data.
+ * <p>
+ * Every data domain lives in its own RocksDB column family (see {@link DBColumnFamily}). The instance created
+ * through the public constructor works on the default family, {@link #inColumnFamily(DBColumnFamily)} returns
+ * views over the same connection working on the other ones.
+ * <p>
+ * RocksDB is thread-safe, so reads and writes only share the read side of a lock, whose write side is taken when
+ * closing the connection. This keeps operations from touching native handles that are already released.
+ * Multi-entry writes go through a single {@link WriteBatch}, which makes them atomic to concurrent readers.
  */
 @Log
-public class DBRepository implements KVRepository<String, Object> {
+public class DBRepository implements KVRepository<String, Object>, ByteKeyRepository {
     /**
      * Main DB folder
      */
     private static final String FOLDER_NAME = "db";
+    /**
+     * Max entries written at once when moving legacy entries into their column families
+     */
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+    /**
+     * Marks a database whose default column family holds no legacy entries of other domains
+     */
+    private static final byte[] LEGACY_ENTRIES_MOVED_KEY = "column-families-migrated".getBytes(UTF_8);
 
     /**
      * Connection to the DB
      */
     private RocksDB db;
+    /**
+     * The column family this instance reads from and writes to
+     */
+    private ColumnFamilyHandle columnFamily;
+    /**
+     * Views over all column families, shared between the views of a single connection
+     */
+    private Map<DBColumnFamily, DBRepository> columnFamilies;
+    /**
+     * Native options, caches and filters which have to be released after the connection is closed
+     */
+    private List<AbstractNativeReference> resources;
+    /**
+     * Held for reading by every operation and for writing by {@link #closeConnection()}
+     */
+    private ReadWriteLock connectionLock;
+    /**
+     * Whether the connection shared by all views is closed
+     */
+    private AtomicBoolean closed;
 
     public DBRepository(String path, String chain, boolean dbRecreate) {
         RocksDB.loadLibrary();
-        final Options options = new Options();
-        options.setCreateIfMissing(true);
+        resources = new ArrayList<>();
+        connectionLock = new ReentrantReadWriteLock();
+        closed = new AtomicBoolean();
+        final DBOptions options = new DBOptions()
+            .setCreateIfMissing(true)
+            .setCreateMissingColumnFamilies(true);
+        resources.add(options);
         File baseDir = Path.of(path, FOLDER_NAME, chain).toFile();
         if (dbRecreate) {
             cleanDatabaseFolder(baseDir);
@@ -51,7 +108,23 @@ public class DBRepository implements KVRepository<String, Object> {
         try {
             Files.createDirectories(baseDir.getParentFile().toPath());
             Files.createDirectories(baseDir.getAbsoluteFile().toPath());
-            db = RocksDB.open(options, baseDir.getAbsolutePath());
+
+            DBColumnFamily[] families = DBColumnFamily.values();
+            List<ColumnFamilyDescriptor> descriptors = Arrays.stream(families)
+                .map(this::createDescriptor)
+                .toList();
+            List<ColumnFamilyHandle> handles = new ArrayList<>(families.length);
+            db = RocksDB.open(options, baseDir.getAbsolutePath(), descriptors, handles);
+
+            columnFamilies = new EnumMap<>(DBColumnFamily.class);
+            for (int i = 0; i < families.length; i++) {
+                columnFamilies.put(families[i], families[i] == DBColumnFamily.DEFAULT
+                    ? this
+                    : new DBRepository(this, handles.get(i)));
+            }
+            columnFamily = handles.get(DBColumnFamily.DEFAULT.ordinal());
+
+            moveLegacyEntries();
             log.log(Level.INFO, "\uD83E\uDEA8RocksDB initialized");
         } catch (IOException | RocksDBException e) {
             log.log(Level.SEVERE, String.format("Error initializing RocksDB. Exception: '%s', message: '%s'",
@@ -61,6 +134,82 @@ public class DBRepository implements KVRepository<String, Object> {
         }
     }
 
+    private DBRepository(DBRepository connection, ColumnFamilyHandle columnFamily) {
+        this.db = connection.db;
+        this.columnFamily = columnFamily;
+        this.columnFamilies = connection.columnFamilies;
+        this.resources = connection.resources;
+        this.connectionLock = connection.connectionLock;
+        this.closed = connection.closed;
+    }
+
+    private ColumnFamilyDescriptor createDescriptor(DBColumnFamily family) {
+        final LRUCache blockCache = new LRUCache(family.getBlockCacheSize());
+        resources.add(blockCache);
+        final BlockBasedTableConfig tableConfig = new BlockBasedTableConfig().setBlockCache(blockCache);
+        if (family.getBloomFilterBitsPerKey() > 0) {
+            final BloomFilter bloomFilter = new BloomFilter(family.getBloomFilterBitsPerKey());
+            resources.add(bloomFilter);
+            tableConfig.setFilterPolicy(bloomFilter);
+        }
+
+        final ColumnFamilyOptions options = new ColumnFamilyOptions();
+        resources.add(options);
+        family.configure(options, tableConfig);
+        options.setTableFormatConfig(tableConfig);
+
+        return new ColumnFamilyDescriptor(family.getNameBytes(), options);
+    }
+
+    /**
+     * Databases created before the introduction of column families store everything in the default one.
+     * Moves such entries into the column family of their domain. Once done, a marker is written, so following
+     * startups skip the scan.
+     */
+    private void moveLegacyEntries() throws RocksDBException {
+        if (db.get(columnFamily, LEGACY_ENTRIES_MOVED_KEY) != null) {
+            return;
+        }
+
+        long moved = 0;
+        try (final RocksIterator iterator = db.newIterator(columnFamily);
+             final WriteBatch batch = new WriteBatch();
+             final WriteOptions writeOptions = new WriteOptions()) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                byte[] key = iterator.key();
+                DBColumnFamily family = DBColumnFamily.forLegacyKey(key);
+                if (family == DBColumnFamily.DEFAULT) {
+                    continue;
+                }
+
+                batch.put(columnFamilies.get(family).columnFamily, key, iterator.value());
+                batch.delete(columnFamily, key);
+                moved++;
+                if (batch.count() >= MIGRATION_BATCH_SIZE) {
+                    db.write(writeOptions, batch);
+                    batch.clear();
+                }
+            }
+            batch.put(columnFamily, LEGACY_ENTRIES_MOVED_KEY, new byte[]{1});
+            db.write(writeOptions, batch);
+        }
+
+        if (moved > 0) {
+            log.log(Level.INFO, String.format("Moved %d legacy entries into their column families", moved));
+        }
+    }
+
+    /**
+     * Returns a view over the given column family, sharing this connection.
+     *
+     * @param family the column family to work on
+     * @return repository operating on the given column family
+     */
+    @Override
+    public DBRepository inColumnFamily(DBColumnFamily family) {
+        return columnFamilies.get(family);
+    }
+
     private void cleanDatabaseFolder(File file) {
         try {
             if (file.exists()) {
@@ -78,11 +227,12 @@ public class DBRepository implements KVRepository<String, Object> {
     }
 
     @Override
-    public synchronized void saveBatch(Map<String, Object> kvMap) {
+    public void saveBatch(Map<String, Object> kvMap) {
         log.fine("Saving batch of key value pairs.");
-        try (final WriteBatch batch = new WriteBatch()) {
+        try (ConnectionLease ignored = acquireConnection();
+             final WriteBatch batch = new WriteBatch()) {
             for (Map.Entry<String, Object> e : kvMap.entrySet()) {
-                batch.put(e.getKey().getBytes(UTF_8), SerializationUtils.serialize(e.getValue()));
+                batch.put(columnFamily, e.getKey().getBytes(UTF_8), SerializationUtils.serialize(e.getValue()));
             }
 
             try (final WriteOptions writeOptions = new WriteOptions()) {
@@ -94,10 +244,47 @@ public class DBRepository implements KVRepository<String, Object> {
     }
 
     @Override
-    public synchronized boolean save(String key, Object value) {
+    public void saveBatch(List<Map.Entry<byte[], byte[]>> entries) {
+        log.fine("Saving batch of raw key value pairs.");
+        try (ConnectionLease ignored = acquireConnection();
+             final WriteBatch batch = new WriteBatch()) {
+            for (Map.Entry<byte[], byte[]> e : entries) {
+                batch.put(columnFamily, e.getKey(), e.getValue());
+            }
+
+            try (final WriteOptions writeOptions = new WriteOptions()) {
+                db.write(writeOptions, batch);
+            }
+        } catch (RocksDBException e) {
+            log.warning(String.format("Error saving batch. Cause: '%s', message: '%s'", e.getCause(), e.getMessage()));
+        }
+    }
+
+    @Override
+    public void writeBatch(List<Map.Entry<byte[], byte[]>> entries, List<byte[]> deletes) {
+        log.fine("Writing batch of raw key value pairs and deletions.");
+        try (ConnectionLease ignored = acquireConnection();
+             final WriteBatch batch = new WriteBatch()) {
+            for (Map.Entry<byte[], byte[]> e : entries) {
+                batch.put(columnFamily, e.getKey(), e.getValue());
+            }
+            for (byte[] key : deletes) {
+                batch.delete(columnFamily, key);
+            }
+
+            try (final WriteOptions writeOptions = new WriteOptions()) {
+                db.write(writeOptions, batch);
+            }
+        } catch (RocksDBException e) {
+            log.warning(String.format("Error writing batch. Cause: '%s', message: '%s'", e.getCause(), e.getMessage()));
+        }
+    }
+
+    @Override
+    public boolean save(String key, Object value) {
         log.log(Level.FINE, String.format("saving value '%s' with key '%s'", value, key));
-        try {
-            db.put(key.getBytes(UTF_8), SerializationUtils.serialize(value));
+        try (ConnectionLease ignored = acquireConnection()) {
+            db.put(columnFamily, key.getBytes(UTF_8), SerializationUtils.serialize(value));
         } catch (RocksDBException e) {
             log.log(Level.WARNING,
                 String.format("Error saving entry. Cause: '%s', message: '%s'", e.getCause(), e.getMessage()));
@@ -107,10 +294,22 @@ public class DBRepository implements KVRepository<String, Object> {
     }
 
     @Override
-    public synchronized Optional<Object> find(String key) {
+    public boolean save(byte[] key, byte[] value) {
+        try (ConnectionLease ignored = acquireConnection()) {
+            db.put(columnFamily, key, value);
+        } catch (RocksDBException e) {
+            log.log(Level.WARNING,
+                String.format("Error saving entry. Cause: '%s', message: '%s'", e.getCause(), e.getMessage()));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<Object> find(String key) {
         Object value = null;
-        try {
-            byte[] bytes = db.get(key.getBytes(UTF_8));
+        try (ConnectionLease ignored = acquireConnection()) {
+            byte[] bytes = db.get(columnFamily, key.getBytes(UTF_8));
             if (bytes != null) {
                 value = SerializationUtils.deserialize(bytes);
             }
@@ -127,17 +326,76 @@ public class DBRepository implements KVRepository<String, Object> {
     }
 
     @Override
-    public synchronized List<byte[]> findKeysByPrefix(String prefixSeek, int limit) {
-        return findByPrefix(prefixSeek, (long) limit)
-            .stream()
-            .toList();
+    public Optional<byte[]> find(byte[] key) {
+        try (ConnectionLease ignored = acquireConnection()) {
+            return Optional.ofNullable(db.get(columnFamily, key));
+        } catch (RocksDBException e) {
+            log.severe(String.format(
+                "Error retrieving the entry with key: %s, cause: %s, message: %s",
+                Arrays.toString(key),
+                e.getCause(),
+                e.getMessage())
+            );
+            return Optional.empty();
+        }
     }
 
     @Override
-    public synchronized boolean delete(String key) {
+    public List<byte[]> findMany(List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+
+        try (ConnectionLease ignored = acquireConnection()) {
+            return db.multiGetAsList(Collections.nCopies(keys.size(), columnFamily), keys);
+        } catch (RocksDBException e) {
+            log.severe(String.format(
+                "Error retrieving %d entries, cause: %s, message: %s",
+                keys.size(),
+                e.getCause(),
+                e.getMessage())
+            );
+            return Collections.nCopies(keys.size(), null);
+        }
+    }
+
+    @Override
+    public List<byte[]> findKeysByPrefix(String prefixSeek, int limit) {
+        return findKeysByPrefix(prefixSeek.getBytes(UTF_8), limit);
+    }
+
+    @Override
+    public List<byte[]> findKeysByPrefix(byte[] prefix, int limit) {
+        return findByPrefix(prefix, (long) limit);
+    }
+
+    @Override
+    public List<Map.Entry<byte[], byte[]>> findEntriesByPrefix(byte[] prefix, @Nullable byte[] startKey, int limit) {
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        try (ConnectionLease ignored = acquireConnection();
+             final RocksIterator iterator = db.newIterator(columnFamily)) {
+            iterator.seek(startKey == null ? prefix : startKey);
+            if (startKey != null && iterator.isValid() && Arrays.equals(iterator.key(), startKey)) {
+                iterator.next();
+            }
+            for (; iterator.isValid() && ByteArrayUtils.hasPrefix(iterator.key(), prefix) && entries.size() < limit;
+                 iterator.next()) {
+                entries.add(Map.entry(iterator.key(), iterator.value()));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean delete(String key) {
         log.log(Level.FINE, String.format("deleting key '%s'", key));
-        try {
-            db.delete(key.getBytes(UTF_8));
+        return delete(key.getBytes(UTF_8));
+    }
+
+    @Override
+    public boolean delete(byte[] key) {
+        try (ConnectionLease ignored = acquireConnection()) {
+            db.delete(columnFamily, key);
         } catch (RocksDBException e) {
             log.log(Level.SEVERE,
                 String.format("Error deleting entry, cause: '%s', message: '%s'", e.getCause(), e.getMessage()));
@@ -147,52 +405,123 @@ public class DBRepository implements KVRepository<String, Object> {
     }
 
     @Override
-    public synchronized DeleteByPrefixResult deleteByPrefix(String prefix, Long limit) {
+    public DeleteByPrefixResult deleteByPrefix(String prefix, Long limit) {
         log.log(Level.FINE, String.format("deleting %s keys with prefix '%s'", limit == null ? "all" : limit, prefix));
-        List<byte[]> keysToDelete = findByPrefix(prefix, limit);
+        return deleteByPrefix(prefix.getBytes(UTF_8), limit);
+    }
 
-        keysToDelete.forEach(key -> {
-            try {
-                db.delete(key);
+    /**
+     * Deletes entries by prefix without loading their keys in memory.
+     * <p>
+     * Without a limit the whole prefix range is removed with a single range tombstone, which takes constant time
+     * regardless of the number of entries. The number of deleted entries isn't known then and is reported as 0.
+     * With a limit the matching keys are streamed from an iterator into a single write batch.
+     */
+    @Override
+    public DeleteByPrefixResult deleteByPrefix(byte[] prefix, Long limit) {
+        byte[] upperBound = ByteArrayUtils.prefixUpperBound(prefix);
+        if (limit == null && upperBound != null) {
+            try (ConnectionLease ignored = acquireConnection();
+                 final WriteOptions writeOptions = new WriteOptions()) {
+                db.deleteRange(columnFamily, writeOptions, prefix, upperBound);
+                return new DeleteByPrefixResult(0, true);
             } catch (RocksDBException e) {
-                log.log(Level.SEVERE, String.format("Error deleting entry, cause: '%s', message: '%s'",
+                log.log(Level.SEVERE, String.format("Error deleting range, cause: '%s', message: '%s'",
                     e.getCause(), e.getMessage()));
+                return new DeleteByPrefixResult(0, false);
             }
-        });
+        }
 
-        boolean allDeleted = findByPrefix(prefix, 1L).isEmpty();
+        // A single batch makes the removal atomic for concurrent readers
+        try (ConnectionLease ignored = acquireConnection();
+             final RocksIterator iterator = db.newIterator(columnFamily);
+             final WriteBatch batch = new WriteBatch();
+             final WriteOptions writeOptions = new WriteOptions()) {
+            int deleted = 0;
+            for (iterator.seek(prefix);
+                 iterator.isValid() && ByteArrayUtils.hasPrefix(iterator.key(), prefix)
+                 && (limit == null || deleted < limit);
+                 iterator.next()) {
+                batch.delete(columnFamily, iterator.key());
+                deleted++;
+            }
+            // The iterator reads from an implicit snapshot, so it also tells whether matching keys are left
+            boolean allDeleted = !iterator.isValid() || !ByteArrayUtils.hasPrefix(iterator.key(), prefix);
 
-        return new DeleteByPrefixResult(keysToDelete.size(), allDeleted);
+            db.write(writeOptions, batch);
+            return new DeleteByPrefixResult(deleted, allDeleted);
+        } catch (RocksDBException e) {
+            log.log(Level.SEVERE, String.format("Error deleting entries, cause: '%s', message: '%s'",
+                e.getCause(), e.getMessage()));
+            return new DeleteByPrefixResult(0, false);
+        }
     }
 
-    private List<byte[]> findByPrefix(String prefix, Long limit) {
-        List<byte[]> values = new ArrayList<>();
-        RocksIterator rocksIterator = db.newIterator();
-        rocksIterator.seek(prefix.getBytes());
-        while (rocksIterator.isValid() && (limit == null || values.size() < limit)) {
-            byte[] key = rocksIterator.key();
-            if (ByteArrayUtils.hasPrefix(key, prefix.getBytes())) {
-                values.add(rocksIterator.key());
+    private List<byte[]> findByPrefix(byte[] prefix, Long limit) {
+        List<byte[]> keys = new ArrayList<>();
+        try (ConnectionLease ignored = acquireConnection();
+             final RocksIterator iterator = db.newIterator(columnFamily)) {
+            // Keys are sorted, so the matching ones are contiguous
+            for (iterator.seek(prefix);
+                 iterator.isValid() && ByteArrayUtils.hasPrefix(iterator.key(), prefix)
+                 && (limit == null || keys.size() < limit);
+                 iterator.next()) {
+                keys.add(iterator.key());
             }
-            rocksIterator.next();
         }
-        rocksIterator.close();
+        return keys;
+    }
 
-        return values;
+    @Override
+    public Optional<String> getNextKey(String key) {
+        try (ConnectionLease ignored = acquireConnection();
+             final RocksIterator iterator = db.newIterator(columnFamily)) {
+            iterator.seek(key.getBytes(UTF_8));
+            iterator.next();
+            return Optional.ofNullable(iterator.isValid() ? new String(iterator.key()) : null);
+        }
     }
 
+    /**
+     * Closes the connection, including all column family views sharing it.
+     */
     @Override
-    public synchronized Optional<String> getNextKey(String key) {
-        RocksIterator iterator = db.newIterator();
-        iterator.seek(key.getBytes(UTF_8));
-        iterator.next();
-        String nextKey = iterator.isValid() ? new String(iterator.key()) : null;
-        iterator.close();
-        return Optional.ofNullable(nextKey);
+    public void closeConnection() {
+        connectionLock.writeLock().lock();
+        try {
+            if (closed.getAndSet(true)) {
+                return;
+            }
+            columnFamilies.values().forEach(view -> view.columnFamily.close());
+            db.close();
+            resources.forEach(AbstractNativeReference::close);
+            resources.clear();
+        } finally {
+            connectionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps the connection from being closed until released.
+     *
+     * @throws DBException if the connection is already closed
+     */
+    private ConnectionLease acquireConnection() {
+        Lock lock = connectionLock.readLock();
+        lock.lock();
+        if (closed.get()) {
+            lock.unlock();
+            throw new DBException("The DB connection is closed");
+        }
+        return lock::unlock;
     }
 
-    public synchronized void closeConnection() {
-        this.db.close();
+    /**
+     * A hold on the connection, released when closed.
+     */
+    private interface ConnectionLease extends AutoCloseable {
+        @Override
+        void close();
     }
 
 }
@@ -57,7 +57,8 @@ public interface KVRepository<K, V> {
      *
      * @param prefix prefix for the key of the pair
      * @param limit maximum entries to delete
-     * @return how many entries were deleted and if all were deleted
+     * @return how many entries were deleted and if all were deleted. Deletes without a limit may remove
+     * the whole range at once without counting the entries, and report 0 deleted ones
      */
     DeleteByPrefixResult deleteByPrefix(K prefix, @Nullable Long limit);
 
@@ -69,6 +70,17 @@ public interface KVRepository<K, V> {
      */
     Optional<K> getNextKey(K key);
 
+    /**
+     * Returns a repository over the given column family of the same DB. Implementations without column families
+     * keep all domains together and return themselves.
+     *
+     * @param family the column family to work on
+     * @return repository operating on the given column family
+     */
+    default KVRepository<K, V> inColumnFamily(DBColumnFamily family) {
+        return this;
+    }
+
     /**
      * Closes the connection to the DB
      */
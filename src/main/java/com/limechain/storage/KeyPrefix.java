@@ -0,0 +1,58 @@
+package com.limechain.storage;
+
+import com.limechain.utils.ByteArrayUtils;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds DB keys for a single data domain by prepending a fixed byte prefix.
+ * Immutable.
+ */
+public final class KeyPrefix {
+    private final byte[] prefix;
+
+    private KeyPrefix(byte[] prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param prefix the prefix, encoded as UTF-8
+     * @return a key builder for the given prefix
+     */
+    public static KeyPrefix of(String prefix) {
+        return new KeyPrefix(prefix.getBytes(UTF_8));
+    }
+
+    /**
+     * @param prefix the raw prefix bytes, copied to obtain ownership
+     * @return a key builder for the given prefix
+     */
+    public static KeyPrefix of(byte[] prefix) {
+        return new KeyPrefix(prefix.clone());
+    }
+
+    /**
+     * @param key the domain specific part of the key
+     * @return the full DB key, i.e. the prefix followed by {@code key}
+     */
+    public byte[] key(byte[] key) {
+        return ByteArrayUtils.concatenate(prefix, key);
+    }
+
+    /**
+     * @param fullKey a full DB key built by this prefix
+     * @return the domain specific part of the key, i.e. without the prefix
+     */
+    public byte[] strip(byte[] fullKey) {
+        return Arrays.copyOfRange(fullKey, prefix.length, fullKey.length);
+    }
+
+    /**
+     * @return a copy of the raw prefix bytes, e.g. for prefix scans
+     */
+    public byte[] bytes() {
+        return prefix.clone();
+    }
+}
@@ -14,6 +14,7 @@ import com.limechain.network.protocol.warp.scale.reader.BlockBodyReader;
 import com.limechain.network.protocol.warp.scale.writer.BlockBodyWriter;
 import com.limechain.rpc.subscriptions.chainsub.ChainSub;
 import com.limechain.runtime.Runtime;
+import com.limechain.storage.DBColumnFamily;
 import com.limechain.storage.DBConstants;
 import com.limechain.storage.KVRepository;
 import com.limechain.storage.block.tree.BlockNode;
@@ -74,7 +75,7 @@ public class BlockState {
         initialized = true;
 
         this.blockTree = new BlockTree(header);
-        this.db = repository;
+        this.db = repository.inColumnFamily(DBColumnFamily.BLOCKS);
 
         final Hash256 headerHash = header.getHash();
         this.genesisHash = headerHash;
@@ -100,7 +101,7 @@ public class BlockState {
         }
         initialized = true;
 
-        this.db = repository;
+        this.db = repository.inColumnFamily(DBColumnFamily.BLOCKS);
 
         this.genesisHash = getHashByNumberFromDb(BigInteger.ZERO);
         final BlockHeader lastHeader = getHighestFinalizedHeader();
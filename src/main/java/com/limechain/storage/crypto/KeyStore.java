@@ -1,20 +1,36 @@
 package com.limechain.storage.crypto;
 
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DBColumnFamily;
+import com.limechain.storage.KeyPrefix;
 import lombok.extern.java.Log;
 import org.springframework.stereotype.Component;
+import org.springframework.util.SerializationUtils;
 
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @Component
 @Log
 public class KeyStore {
 
-    private final KVRepository<String, Object> repository;
+    private static final Map<KeyType, KeyPrefix> KEY_PREFIXES = new EnumMap<>(KeyType.class);
 
-    public KeyStore(KVRepository<String, Object> repository) {
-        this.repository = repository;
+    static {
+        for (KeyType keyType : KeyType.values()) {
+            KEY_PREFIXES.put(keyType, KeyPrefix.of(keyType.getBytes()));
+        }
+    }
+
+    private final ByteKeyRepository repository;
+
+    public KeyStore(ByteKeyRepository repository) {
+        this.repository = repository.inColumnFamily(DBColumnFamily.KEYSTORE);
     }
 
     public void put(KeyType keyType, byte[] publicKey, byte[] privateKey) {
@@ -22,7 +38,10 @@ public class KeyStore {
     }
 
     public byte[] get(KeyType keyType, byte[] publicKey) {
-        return (byte[]) repository.find(getKey(keyType, publicKey)).orElse(null);
+        byte[] key = getKey(keyType, publicKey);
+        return repository.find(key)
+            .or(() -> migrateLegacyKey(key, keyType, publicKey))
+            .orElse(null);
     }
 
     public boolean contains(KeyType keyType, byte[] publicKey) {
@@ -37,7 +56,7 @@ public class KeyStore {
      */
     public List<byte[]> getPublicKeysByKeyType(KeyType keyType) {
         return repository
-                .findKeysByPrefix(new String(keyType.getBytes()), 90000)
+                .findKeysByPrefix(keyType.getBytes(), 90000)
                 .stream()
                 .map(this::removeKeyTypeFromKey)
                 .toList();
@@ -52,9 +71,23 @@ public class KeyStore {
      *
      * @param keyType The type of the key.
      * @param key     The key bytes.
-     * @return The constructed key string.
+     * @return The constructed key.
      */
-    private String getKey(KeyType keyType, byte[] key) {
-        return new String(keyType.getBytes()).concat(new String(key));
+    private byte[] getKey(KeyType keyType, byte[] key) {
+        return KEY_PREFIXES.get(keyType).key(key);
+    }
+
+    /**
+     * Older versions stored private keys Java-serialized under a string converted key.
+     * If such an entry exists, it is copied under the current raw key.
+     */
+    private Optional<byte[]> migrateLegacyKey(byte[] key, KeyType keyType, byte[] publicKey) {
+        byte[] legacyKey = new String(keyType.getBytes()).concat(new String(publicKey)).getBytes(UTF_8);
+        Optional<byte[]> privateKey = repository.find(legacyKey)
+            .map(SerializationUtils::deserialize)
+            .map(byte[].class::cast);
+
+        privateKey.ifPresent(value -> repository.save(key, value));
+        return privateKey;
     }
 }
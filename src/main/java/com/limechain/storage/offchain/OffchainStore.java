@@ -1,6 +1,8 @@
 package com.limechain.storage.offchain;
 
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DBColumnFamily;
+import com.limechain.storage.KeyPrefix;
 import lombok.AllArgsConstructor;
 
 /**
@@ -10,27 +12,23 @@ import lombok.AllArgsConstructor;
 public class OffchainStore implements BasicStorage {
     private static final String OFFCHAIN_PREFIX = "offchain_";
 
-    private final KVRepository<String, Object> repository;
-    private final String prefix;
+    private final ByteKeyRepository repository;
+    private final KeyPrefix prefix;
 
-    public OffchainStore(KVRepository<String, Object> repository, StorageKind storageKind) {
-        this.repository = repository;
-        this.prefix = OFFCHAIN_PREFIX.concat(storageKind.getPrefix());
+    public OffchainStore(ByteKeyRepository repository, StorageKind storageKind) {
+        this.repository = repository.inColumnFamily(DBColumnFamily.OFFCHAIN);
+        this.prefix = KeyPrefix.of(OFFCHAIN_PREFIX.concat(storageKind.getPrefix()));
     }
 
     public synchronized void set(byte[] key, byte[] value) {
-        repository.save(prefixedKey(key), value);
+        repository.save(prefix.key(key), value);
     }
 
     public synchronized byte[] get(byte[] key) {
-        return (byte[]) repository.find(prefixedKey(key)).orElse(null);
+        return repository.find(prefix.key(key)).orElse(null);
     }
 
     public synchronized void remove(byte[] key) {
-        repository.delete(prefixedKey(key));
-    }
-
-    private String prefixedKey(byte[] key) {
-        return prefix.concat(new String(key));
+        repository.delete(prefix.key(key));
     }
 }
@@ -0,0 +1,213 @@
+package com.limechain.storage.trie;
+
+import com.google.common.primitives.Bytes;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.KeyPrefix;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.nibble.NibblesUtils;
+import lombok.extern.java.Log;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Flat {@code storage key -> value} table of the main trie at a single state root.
+ * <p>
+ * Reading a value through the trie costs one node lookup per level, while the flat table answers it with a single
+ * point lookup. The table only reflects one state root at a time, stored next to the values, and moves forward as
+ * changes on top of that root are persisted. Reads for any other root (historical or fork states, child tries) fall
+ * back to trie traversal, which is also still used for proofs and merkle values.
+ * <p>
+ * Reads share a read lock and the root check is done under it, so a reader never sees values of a different root.
+ */
+@Log
+public class FlatStateStorage {
+    private static final KeyPrefix VALUE_KEYS = KeyPrefix.of("v:");
+    private static final byte[] ROOT_KEY = "root".getBytes(UTF_8);
+    private static final int RESET_BATCH_SIZE = 10_000;
+
+    private final ByteKeyRepository db;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The state root the table reflects, {@code null} if unknown. Guarded by the lock.
+     */
+    @Nullable
+    private byte[] stateRoot;
+
+    /**
+     * @param db the repository to store the table in
+     */
+    public FlatStateStorage(ByteKeyRepository db) {
+        this.db = db;
+        this.stateRoot = db.find(ROOT_KEY).orElse(null);
+    }
+
+    /**
+     * Looks up a value in the table if it reflects the given state root.
+     *
+     * @param merkleRoot the state root to read at
+     * @param key        the storage key
+     * @param traversal  reads the value through the trie, used when the table reflects a different root
+     * @return the value, or an empty {@link Optional} if there is no value at the key
+     */
+    public Optional<byte[]> find(byte[] merkleRoot, Nibbles key, Supplier<Optional<byte[]>> traversal) {
+        if (key.size() % 2 == 0) {
+            lock.readLock().lock();
+            try {
+                if (Arrays.equals(stateRoot, merkleRoot)) {
+                    return db.find(valueKey(key));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return traversal.get();
+    }
+
+    /**
+     * Moves the table from one state root to the next one, if it reflects the first.
+     *
+     * @param parentRoot the state root the changes were made on top of
+     * @param newRoot    the state root after the changes
+     * @param changes    the changed values by key, {@code null} for removed ones
+     * @return whether the changes were applied
+     */
+    public boolean apply(byte[] parentRoot, byte[] newRoot, Map<Nibbles, byte[]> changes) {
+        lock.writeLock().lock();
+        try {
+            if (!Arrays.equals(stateRoot, parentRoot)) {
+                return false;
+            }
+
+            List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(changes.size() + 1);
+            List<byte[]> deletes = new ArrayList<>();
+            for (Map.Entry<Nibbles, byte[]> change : changes.entrySet()) {
+                if (change.getKey().size() % 2 != 0) {
+                    continue;
+                }
+                byte[] key = valueKey(change.getKey());
+                if (change.getValue() != null) {
+                    entries.add(Map.entry(key, change.getValue()));
+                } else {
+                    deletes.add(key);
+                }
+            }
+            entries.add(Map.entry(ROOT_KEY, newRoot));
+
+            db.writeBatch(entries, deletes);
+            stateRoot = newRoot;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content of the table with a whole state.
+     *
+     * @param merkleRoot the state root of the entries
+     * @param entries    all storage keys with a value and their values
+     */
+    public void reset(byte[] merkleRoot, Iterable<Map.Entry<Nibbles, byte[]>> entries) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            // The root goes into the last batch of values
+            saveValues(entries, merkleRoot);
+            stateRoot = merkleRoot;
+            log.fine("Flat state reset to root " + Arrays.toString(merkleRoot));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the table ahead of filling it with a whole state through {@link #putResetValues(Iterable)}. Until
+     * {@link #finishReset(byte[])}, the table reflects no state root, so all reads fall back to trie traversal.
+     */
+    public void beginReset() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds values of the state being reset to, see {@link #beginReset()}.
+     *
+     * @param entries storage keys with a value and their values
+     */
+    public void putResetValues(Iterable<Map.Entry<Nibbles, byte[]>> entries) {
+        saveValues(entries, null);
+    }
+
+    /**
+     * Marks the table as reflecting the state its values were reset to, see {@link #beginReset()}.
+     *
+     * @param merkleRoot the state root of the values
+     */
+    public void finishReset(byte[] merkleRoot) {
+        lock.writeLock().lock();
+        try {
+            db.save(ROOT_KEY, merkleRoot);
+            stateRoot = merkleRoot;
+            log.fine("Flat state reset to root " + Arrays.toString(merkleRoot));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the state root the table reflects, {@code null} if unknown
+     */
+    @Nullable
+    public byte[] getStateRoot() {
+        lock.readLock().lock();
+        try {
+            return stateRoot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clear() {
+        stateRoot = null;
+        db.delete(ROOT_KEY);
+        db.deleteByPrefix(VALUE_KEYS.bytes(), null);
+    }
+
+    private void saveValues(Iterable<Map.Entry<Nibbles, byte[]>> entries, @Nullable byte[] merkleRoot) {
+        List<Map.Entry<byte[], byte[]>> batch = new ArrayList<>(RESET_BATCH_SIZE);
+        for (Map.Entry<Nibbles, byte[]> entry : entries) {
+            if (entry.getKey().size() % 2 != 0) {
+                continue;
+            }
+            batch.add(Map.entry(valueKey(entry.getKey()), entry.getValue()));
+            if (batch.size() == RESET_BATCH_SIZE) {
+                db.saveBatch(batch);
+                batch.clear();
+            }
+        }
+        if (merkleRoot != null) {
+            batch.add(Map.entry(ROOT_KEY, merkleRoot));
+        }
+        if (!batch.isEmpty()) {
+            db.saveBatch(batch);
+        }
+    }
+
+    private static byte[] valueKey(Nibbles key) {
+        return VALUE_KEYS.key(Bytes.toArray(NibblesUtils.toBytesAppending(key)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.limechain.storage.trie;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The trie nodes a new state inserted and the nodes of its parent state it replaced, collected while the state and
+ * its child tries get persisted. Once the main trie is persisted, the journal is recorded under its state root, see
+ * {@link StatePruner#recordState}.
+ */
+@Getter
+public class NodeJournal {
+    private final List<byte[]> insertedMerkleValues = new ArrayList<>();
+    private final List<byte[]> replacedMerkleValues = new ArrayList<>();
+
+    /**
+     * Moves the contents of another journal, e.g. the one of a child trie, into this one.
+     *
+     * @param other the journal to empty into this one
+     */
+    public void takeFrom(NodeJournal other) {
+        insertedMerkleValues.addAll(other.insertedMerkleValues);
+        replacedMerkleValues.addAll(other.replacedMerkleValues);
+        other.clear();
+    }
+
+    public void clear() {
+        insertedMerkleValues.clear();
+        replacedMerkleValues.clear();
+    }
+}
@@ -0,0 +1,241 @@
+package com.limechain.storage.trie;
+
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import net.openhft.hashing.LongHashFunction;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap cache of encoded trie nodes, keyed by merkle value.
+ * <p>
+ * Entries live outside the GC heap, in two {@link MemorySegment}s allocated from a shared {@link Arena}:
+ * <ul>
+ *     <li>a data log, written circularly. Each record is {@code [int keyLength][key][int valueLength][value]}.
+ *     Once the log wraps, new records overwrite the oldest ones, which makes the eviction policy FIFO and the
+ *     cache never allocate after construction.</li>
+ *     <li>an open-addressing (linear probing) index of {@code [long position][long hash]} slots. The position is
+ *     the absolute (ever increasing) log position of the record, so a slot whose record has been overwritten is
+ *     recognised as stale and reused.</li>
+ * </ul>
+ * Merkle-addressed nodes never change, so there is no invalidation. Lookups share a read lock, inserts take the
+ * write lock.
+ * <p>
+ * The memory is released by {@link #close()}, after which the cache stays empty.
+ */
+public class OffHeapTrieNodeCache implements AutoCloseable {
+    private static final int SLOT_SIZE = 2 * Long.BYTES;
+    private static final int MAX_PROBES = 16;
+    /**
+     * Expected average record size, used to size the index
+     */
+    private static final int AVERAGE_RECORD_SIZE = 256;
+    private static final int MIN_SLOTS = 1024;
+    private static final LongHashFunction HASH = LongHashFunction.xx3();
+
+    private final Arena arena;
+    private final MemorySegment data;
+    private final MemorySegment index;
+    private final long capacity;
+    private final long slotMask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Absolute position of the next record in the log. Guarded by the write lock.
+     */
+    private long writePosition;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the size of the data log in bytes. The index takes roughly another 6% on top of it.
+     */
+    public OffHeapTrieNodeCache(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Off-heap trie node cache size must be positive");
+        }
+
+        long slots = Math.max(MIN_SLOTS, Long.highestOneBit(capacity / AVERAGE_RECORD_SIZE));
+        this.capacity = capacity;
+        this.slotMask = slots - 1;
+        this.arena = Arena.ofShared();
+        this.data = arena.allocate(capacity, Long.BYTES);
+        this.index = arena.allocate(slots * SLOT_SIZE, Long.BYTES);
+    }
+
+    /**
+     * @param merkleValue the merkle value of the node
+     * @return the encoded node, or {@code null} if it is not cached
+     */
+    @Nullable
+    public byte[] get(byte[] merkleValue) {
+        long hash = HASH.hashBytes(merkleValue);
+        lock.readLock().lock();
+        try {
+            if (!arena.scope().isAlive()) {
+                return null;
+            }
+
+            long slot = findSlot(merkleValue, hash);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+
+            long position = index.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE) - 1;
+            long offset = position % capacity + Integer.BYTES + merkleValue.length;
+            int valueLength = data.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+            byte[] value = new byte[valueLength];
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, offset + Integer.BYTES, value, 0, valueLength);
+            hits.increment();
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Caches an encoded node, overwriting the oldest records if the log is full.
+     *
+     * @param merkleValue the merkle value of the node
+     * @param encoded     the encoded node
+     */
+    public void put(byte[] merkleValue, byte[] encoded) {
+        long recordSize = 2L * Integer.BYTES + merkleValue.length + encoded.length;
+        if (recordSize > capacity) {
+            return;
+        }
+
+        long hash = HASH.hashBytes(merkleValue);
+        lock.writeLock().lock();
+        try {
+            if (!arena.scope().isAlive() || findSlot(merkleValue, hash) >= 0) {
+                return;
+            }
+
+            // Records never wrap around the end of the log
+            if (writePosition % capacity + recordSize > capacity) {
+                writePosition += capacity - writePosition % capacity;
+            }
+            long position = writePosition;
+            long offset = position % capacity;
+            data.set(ValueLayout.JAVA_INT_UNALIGNED, offset, merkleValue.length);
+            MemorySegment.copy(merkleValue, 0, data, ValueLayout.JAVA_BYTE, offset + Integer.BYTES,
+                merkleValue.length);
+            offset += Integer.BYTES + merkleValue.length;
+            data.set(ValueLayout.JAVA_INT_UNALIGNED, offset, encoded.length);
+            MemorySegment.copy(encoded, 0, data, ValueLayout.JAVA_BYTE, offset + Integer.BYTES, encoded.length);
+            writePosition += recordSize;
+
+            long slot = freeSlot(hash);
+            index.set(ValueLayout.JAVA_LONG, slot * SLOT_SIZE, position + 1);
+            index.set(ValueLayout.JAVA_LONG, slot * SLOT_SIZE + Long.BYTES, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the index of the slot holding a live record for the key, or -1
+     */
+    private long findSlot(byte[] key, long hash) {
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long slot = (hash + probe) & slotMask;
+            long storedPosition = index.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE);
+            if (storedPosition == 0) {
+                return -1;
+            }
+            if (index.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE + Long.BYTES) == hash
+                && isLive(storedPosition - 1)
+                && keyMatches(storedPosition - 1, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first empty or stale slot in the probe sequence, or the one with the oldest record if all are live
+     */
+    private long freeSlot(long hash) {
+        long oldestSlot = hash & slotMask;
+        long oldestPosition = Long.MAX_VALUE;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long slot = (hash + probe) & slotMask;
+            long storedPosition = index.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE);
+            if (storedPosition == 0 || !isLive(storedPosition - 1)) {
+                return slot;
+            }
+            if (storedPosition < oldestPosition) {
+                oldestPosition = storedPosition;
+                oldestSlot = slot;
+            }
+        }
+        return oldestSlot;
+    }
+
+    private boolean isLive(long position) {
+        return writePosition - position <= capacity;
+    }
+
+    private boolean keyMatches(long position, byte[] key) {
+        long offset = position % capacity;
+        if (data.get(ValueLayout.JAVA_INT_UNALIGNED, offset) != key.length) {
+            return false;
+        }
+        long keyOffset = offset + Integer.BYTES;
+        return MemorySegment.mismatch(data, keyOffset, keyOffset + key.length,
+            MemorySegment.ofArray(key), 0, key.length) == -1;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Registers the cache hit and miss metrics.
+     *
+     * @param registry the registry to add the metrics to, a registry can hold the metrics of a single cache
+     */
+    public void registerMetrics(PrometheusRegistry registry) {
+        CounterWithCallback.builder()
+            .name("trie_node_offheap_cache_hits")
+            .help("Number of trie node lookups served from the off-heap cache.")
+            .callback(callback -> callback.call(getHits()))
+            .register(registry);
+        CounterWithCallback.builder()
+            .name("trie_node_offheap_cache_misses")
+            .help("Number of trie node lookups that missed the off-heap cache.")
+            .callback(callback -> callback.call(getMisses()))
+            .register(registry);
+    }
+
+    /**
+     * Releases the off-heap memory. Lookups miss and inserts are ignored afterwards.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (arena.scope().isAlive()) {
+                arena.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.limechain.storage.trie;
+
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.KeyPrefix;
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import lombok.extern.java.Log;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Garbage-collects trie nodes which are no longer reachable from the last N finalized state roots.
+ * <p>
+ * Every stored trie node has a reference count, incremented each time a state inserts it. When a state is
+ * persisted, the nodes of its parent state it replaced and the nodes it inserted, the ones of its child tries included,
+ * are written to journals keyed by an id unique to the persisted state, as a root can be persisted again after a
+ * change is reverted. Once N newer states have been finalized, the journal of replaced nodes is replayed in the
+ * background: the reference counts of the replaced nodes are decremented and the nodes reaching zero are deleted, in
+ * batches. States which can't become finalized anymore, i.e. the ones not
+ * descending from the last finalized state, release the nodes they inserted in the same way.
+ * <p>
+ * Nodes written without a reference count (e.g. by an archive node before pruning was enabled) are pinned, they are
+ * never counted nor deleted. Node writes, count updates and deletions are serialized on this instance, so a node
+ * can't be deleted while a new state is inserting it again.
+ */
+@Log
+public class StatePruner implements AutoCloseable {
+    private static final KeyPrefix REFERENCE_COUNT_KEYS = KeyPrefix.of("rc:");
+    private static final KeyPrefix JOURNAL_KEYS = KeyPrefix.of("jr:");
+    private static final KeyPrefix INSERTED_JOURNAL_KEYS = KeyPrefix.of("ji:");
+    private static final KeyPrefix PERSISTED_STATE_KEYS = KeyPrefix.of("ps:");
+    private static final KeyPrefix FINALIZED_KEYS = KeyPrefix.of("fs:");
+    private static final int PRUNE_BATCH_SIZE = 1_000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final long NO_PARENT = -1;
+
+    private final ByteKeyRepository db;
+    private final int keepStates;
+    private final ExecutorService executor;
+    /**
+     * Finalized states whose journals haven't been replayed yet, oldest first. Guarded by {@code this}.
+     */
+    private final Deque<FinalizedState> pending = new ArrayDeque<>();
+    /**
+     * The persisted states which aren't finalized yet, by their ids. Guarded by {@code this}.
+     */
+    private final Map<Long, PersistedState> unfinalized = new HashMap<>();
+    /**
+     * The id of the latest unfinalized state persisted with each root. Guarded by {@code this}.
+     */
+    private final Map<Key, Long> unfinalizedIds = new HashMap<>();
+    /**
+     * Guarded by {@code this}.
+     */
+    private long nextSequence;
+    /**
+     * Guarded by {@code this}.
+     */
+    private long nextStateId;
+    /**
+     * Guarded by {@code this}.
+     */
+    @Nullable
+    private byte[] lastFinalizedRoot;
+
+    private final LongAdder prunedNodes = new LongAdder();
+
+    /**
+     * @param db         the repository the trie nodes are stored in
+     * @param keepStates the number of latest finalized states to keep, at least 1
+     */
+    public StatePruner(ByteKeyRepository db, int keepStates) {
+        this(db, keepStates, Executors.newSingleThreadExecutor(Thread.ofPlatform()
+            .name("state-pruner")
+            .daemon()
+            .factory()));
+    }
+
+    StatePruner(ByteKeyRepository db, int keepStates, ExecutorService executor) {
+        if (keepStates < 1) {
+            throw new IllegalArgumentException("State pruning must keep at least one state");
+        }
+        this.db = db;
+        this.keepStates = keepStates;
+        this.executor = executor;
+
+        for (byte[] key : db.findKeysByPrefix(FINALIZED_KEYS.bytes(), Integer.MAX_VALUE)) {
+            long sequence = decodeLong(FINALIZED_KEYS.strip(key));
+            db.find(key).ifPresent(value -> {
+                FinalizedState state = new FinalizedState(sequence, decodeLong(value));
+                pending.addLast(state);
+                nextStateId = Math.max(nextStateId, state.id() + 1);
+            });
+            nextSequence = sequence + 1;
+        }
+        for (byte[] key : db.findKeysByPrefix(PERSISTED_STATE_KEYS.bytes(), Integer.MAX_VALUE)) {
+            long id = decodeLong(PERSISTED_STATE_KEYS.strip(key));
+            db.find(key).ifPresent(value -> addUnfinalized(id, decodePersistedState(value)));
+            nextStateId = Math.max(nextStateId, id + 1);
+        }
+        // Abandoned states whose inserted nodes weren't released before a restart
+        for (byte[] key : db.findKeysByPrefix(INSERTED_JOURNAL_KEYS.bytes(), Integer.MAX_VALUE)) {
+            long id = decodeLong(INSERTED_JOURNAL_KEYS.strip(key));
+            if (!unfinalized.containsKey(id)) {
+                executor.submit(() -> release(key));
+            }
+            nextStateId = Math.max(nextStateId, id + 1);
+        }
+        schedulePruning();
+    }
+
+    /**
+     * Saves trie nodes and increments their reference counts in a single write. Nodes already stored without a
+     * reference count are pinned and stay without one.
+     *
+     * @param nodeEntries          the encoded nodes by DB key
+     * @param insertedMerkleValues the merkle values of the saved nodes
+     */
+    public synchronized void commit(List<Map.Entry<byte[], byte[]>> nodeEntries, List<byte[]> insertedMerkleValues) {
+        Map<Key, Integer> counts = readReferenceCounts(insertedMerkleValues);
+        Set<Key> pinned = findPinnedNodes(insertedMerkleValues, counts);
+        for (byte[] merkleValue : insertedMerkleValues) {
+            Key key = new Key(merkleValue);
+            if (!pinned.contains(key)) {
+                counts.merge(key, 1, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(nodeEntries.size() + counts.size());
+        entries.addAll(nodeEntries);
+        counts.forEach((key, count) ->
+            entries.add(Map.entry(REFERENCE_COUNT_KEYS.key(key.bytes()), encodeCount(count))));
+        db.saveBatch(entries);
+    }
+
+    /**
+     * @return the nodes which are stored, but have no reference count
+     */
+    private Set<Key> findPinnedNodes(List<byte[]> merkleValues, Map<Key, Integer> counts) {
+        List<byte[]> uncounted = merkleValues.stream()
+            .filter(merkleValue -> !counts.containsKey(new Key(merkleValue)))
+            .toList();
+        List<byte[]> stored = db.findMany(uncounted.stream().map(TrieStorage.TRIE_NODE_KEYS::key).toList());
+
+        Set<Key> pinned = new HashSet<>();
+        for (int i = 0; i < uncounted.size(); i++) {
+            if (stored.get(i) != null) {
+                pinned.add(new Key(uncounted.get(i)));
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Journals a new state built on top of a stored one, after its nodes were saved with {@link #commit}. A state
+     * persisted more than once gets journals of its own each time.
+     *
+     * @param parentRoot           the root of the state the new one is built on, {@code null} if unknown
+     * @param stateRoot            the root of the new state
+     * @param insertedMerkleValues the merkle values of the nodes the new state inserted, child tries included
+     * @param replacedMerkleValues the merkle values of the parent state's nodes not present in the new one
+     */
+    public synchronized void recordState(@Nullable byte[] parentRoot,
+                                         byte[] stateRoot,
+                                         List<byte[]> insertedMerkleValues,
+                                         List<byte[]> replacedMerkleValues) {
+        if (Arrays.equals(parentRoot, stateRoot)) {
+            return;
+        }
+
+        long id = nextStateId++;
+        byte[] parent = parentRoot == null ? new byte[0] : parentRoot;
+        PersistedState state = new PersistedState(unfinalizedIds.getOrDefault(new Key(parent), NO_PARENT), parent,
+            stateRoot);
+        byte[] idBytes = encodeLong(id);
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(3);
+        entries.add(Map.entry(PERSISTED_STATE_KEYS.key(idBytes), encodePersistedState(state)));
+        if (!insertedMerkleValues.isEmpty()) {
+            entries.add(Map.entry(INSERTED_JOURNAL_KEYS.key(idBytes), encodeJournal(insertedMerkleValues)));
+        }
+        if (!replacedMerkleValues.isEmpty()) {
+            entries.add(Map.entry(JOURNAL_KEYS.key(idBytes), encodeJournal(replacedMerkleValues)));
+        }
+        db.saveBatch(entries);
+        addUnfinalized(id, state);
+    }
+
+    private void addUnfinalized(long id, PersistedState state) {
+        unfinalized.put(id, state);
+        unfinalizedIds.merge(new Key(state.root()), id, Math::max);
+    }
+
+    /**
+     * Records a finalized state, along with its ancestors which weren't finalized explicitly, and schedules the
+     * replay of the journals of states which fell out of the kept window. The persisted states not descending from
+     * the finalized one are abandoned and release the nodes they inserted.
+     *
+     * @param stateRoot the root of the finalized state
+     */
+    public synchronized void onFinalized(byte[] stateRoot) {
+        if (lastFinalizedRoot != null && Arrays.equals(lastFinalizedRoot, stateRoot)) {
+            return;
+        }
+
+        // The ids of the finalized state and its unfinalized ancestors, oldest first
+        Deque<Long> finalized = new ArrayDeque<>();
+        Long id = unfinalizedIds.get(new Key(stateRoot));
+        if (id == null) {
+            finalized.addFirst(nextStateId++);
+        }
+        while (id != null) {
+            finalized.addFirst(id);
+            long parentId = unfinalized.remove(id).parentId();
+            id = unfinalized.containsKey(parentId) ? parentId : null;
+        }
+
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+        List<byte[]> deletes = new ArrayList<>();
+        List<FinalizedState> newlyFinalized = new ArrayList<>(finalized.size());
+        for (long finalizedId : finalized) {
+            FinalizedState state = new FinalizedState(nextSequence++, finalizedId);
+            newlyFinalized.add(state);
+            entries.add(Map.entry(finalizedKey(state.sequence()), encodeLong(finalizedId)));
+            // The nodes inserted by a finalized state are released by the states replacing them
+            deletes.add(PERSISTED_STATE_KEYS.key(encodeLong(finalizedId)));
+            deletes.add(INSERTED_JOURNAL_KEYS.key(encodeLong(finalizedId)));
+        }
+
+        List<Long> abandoned = findAbandonedStates(stateRoot);
+        for (long abandonedId : abandoned) {
+            unfinalized.remove(abandonedId);
+            // The nodes an abandoned state replaced are still part of its parent
+            deletes.add(PERSISTED_STATE_KEYS.key(encodeLong(abandonedId)));
+            deletes.add(JOURNAL_KEYS.key(encodeLong(abandonedId)));
+        }
+        db.writeBatch(entries, deletes);
+
+        unfinalizedIds.values().removeIf(unfinalizedId -> !unfinalized.containsKey(unfinalizedId));
+        lastFinalizedRoot = stateRoot;
+        pending.addAll(newlyFinalized);
+        for (long abandonedId : abandoned) {
+            byte[] journalKey = INSERTED_JOURNAL_KEYS.key(encodeLong(abandonedId));
+            executor.submit(() -> release(journalKey));
+        }
+        schedulePruning();
+    }
+
+    /**
+     * @return the ids of the unfinalized states not descending from the given finalized state
+     */
+    private List<Long> findAbandonedStates(byte[] finalizedRoot) {
+        List<Long> abandoned = new ArrayList<>();
+        for (Map.Entry<Long, PersistedState> entry : unfinalized.entrySet()) {
+            // Parents are persisted before their children, so the walk ends at the oldest unfinalized ancestor
+            PersistedState ancestor = entry.getValue();
+            while (unfinalized.containsKey(ancestor.parentId())) {
+                ancestor = unfinalized.get(ancestor.parentId());
+            }
+            if (!Arrays.equals(ancestor.parentRoot(), finalizedRoot)) {
+                abandoned.add(entry.getKey());
+            }
+        }
+        return abandoned;
+    }
+
+    /**
+     * The journal of a state lists nodes of its parent, so it can be replayed as soon as the state itself becomes
+     * the oldest one kept.
+     */
+    private synchronized void schedulePruning() {
+        while (pending.size() >= keepStates) {
+            FinalizedState oldest = pending.pollFirst();
+            executor.submit(() -> prune(oldest));
+        }
+    }
+
+    private void prune(FinalizedState state) {
+        try {
+            int released = replayJournal(JOURNAL_KEYS.key(encodeLong(state.id())));
+            db.delete(finalizedKey(state.sequence()));
+            log.fine(String.format("Pruned %d replaced trie nodes of state %d", released, state.id()));
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to prune trie nodes", e);
+        }
+    }
+
+    private void release(byte[] insertedJournalKey) {
+        try {
+            int released = replayJournal(insertedJournalKey);
+            log.fine(String.format("Released %d trie nodes of abandoned state %d",
+                released, decodeLong(INSERTED_JOURNAL_KEYS.strip(insertedJournalKey))));
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to release trie nodes of an abandoned state", e);
+        }
+    }
+
+    /**
+     * Releases the nodes listed in a journal and deletes the journal.
+     *
+     * @return the number of released nodes
+     */
+    private int replayJournal(byte[] journalKey) {
+        List<byte[]> journal = db.find(journalKey)
+            .map(StatePruner::decodeJournal)
+            .orElseGet(List::of);
+
+        List<byte[]> remaining = journal;
+        while (!remaining.isEmpty()) {
+            int batchSize = Math.min(PRUNE_BATCH_SIZE, remaining.size());
+            List<byte[]> rest = remaining.subList(batchSize, remaining.size());
+            releaseNodes(remaining.subList(0, batchSize), journalKey, rest);
+            remaining = rest;
+        }
+        return journal.size();
+    }
+
+    /**
+     * Decrements the reference counts of a batch of nodes, deleting the unreferenced ones. Pinned nodes have no count
+     * and are left alone. The rest of the journal is rewritten in the same write, so a replay interrupted by a restart
+     * never decrements a count twice.
+     */
+    private synchronized void releaseNodes(List<byte[]> merkleValues, byte[] journalKey, List<byte[]> rest) {
+        Map<Key, Integer> counts = readReferenceCounts(merkleValues);
+        for (byte[] merkleValue : merkleValues) {
+            counts.computeIfPresent(new Key(merkleValue), (key, count) -> count - 1);
+        }
+
+        List<Map.Entry<byte[], byte[]>> updates = new ArrayList<>();
+        List<byte[]> deletes = new ArrayList<>();
+        counts.forEach((key, count) -> {
+            byte[] countKey = REFERENCE_COUNT_KEYS.key(key.bytes());
+            if (count > 0) {
+                updates.add(Map.entry(countKey, encodeCount(count)));
+            } else {
+                deletes.add(countKey);
+                deletes.add(TrieStorage.TRIE_NODE_KEYS.key(key.bytes()));
+                prunedNodes.increment();
+            }
+        });
+        if (rest.isEmpty()) {
+            deletes.add(journalKey);
+        } else {
+            updates.add(Map.entry(journalKey, encodeJournal(rest)));
+        }
+        db.writeBatch(updates, deletes);
+    }
+
+    /**
+     * @return the stored reference counts of the nodes which have one
+     */
+    private Map<Key, Integer> readReferenceCounts(List<byte[]> merkleValues) {
+        List<byte[]> countKeys = merkleValues.stream().map(REFERENCE_COUNT_KEYS::key).toList();
+        List<byte[]> stored = db.findMany(countKeys);
+
+        Map<Key, Integer> counts = new HashMap<>();
+        for (int i = 0; i < merkleValues.size(); i++) {
+            if (stored.get(i) != null) {
+                counts.put(new Key(merkleValues.get(i)), ByteBuffer.wrap(stored.get(i)).getInt());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Stops the background pruning. Journals not replayed yet are kept and replayed after a restart.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getPrunedNodes() {
+        return prunedNodes.sum();
+    }
+
+    /**
+     * Registers the pruned nodes metric.
+     *
+     * @param registry the registry to add the metric to, a registry can hold the metrics of a single pruner
+     */
+    public void registerMetrics(PrometheusRegistry registry) {
+        CounterWithCallback.builder()
+            .name("trie_pruned_nodes")
+            .help("Number of trie nodes deleted by state pruning.")
+            .callback(callback -> callback.call(getPrunedNodes()))
+            .register(registry);
+    }
+
+    private static byte[] finalizedKey(long sequence) {
+        return FINALIZED_KEYS.key(encodeLong(sequence));
+    }
+
+    /**
+     * Roots are at most 32 bytes, so the parent root is prefixed with a single length byte.
+     */
+    private static byte[] encodePersistedState(PersistedState state) {
+        return ByteBuffer.allocate(Long.BYTES + 1 + state.parentRoot().length + state.root().length)
+            .putLong(state.parentId())
+            .put((byte) state.parentRoot().length)
+            .put(state.parentRoot())
+            .put(state.root())
+            .array();
+    }
+
+    private static PersistedState decodePersistedState(byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        long parentId = buffer.getLong();
+        byte[] parentRoot = new byte[Byte.toUnsignedInt(buffer.get())];
+        buffer.get(parentRoot);
+        byte[] root = new byte[buffer.remaining()];
+        buffer.get(root);
+        return new PersistedState(parentId, parentRoot, root);
+    }
+
+    private static byte[] encodeLong(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    private static long decodeLong(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private static byte[] encodeCount(int count) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(count).array();
+    }
+
+    /**
+     * Merkle values are at most 32 bytes, so each one is prefixed with a single length byte.
+     */
+    private static byte[] encodeJournal(List<byte[]> merkleValues) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] merkleValue : merkleValues) {
+            out.write(merkleValue.length);
+            out.writeBytes(merkleValue);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<byte[]> decodeJournal(byte[] journal) {
+        List<byte[]> merkleValues = new ArrayList<>();
+        int position = 0;
+        while (position < journal.length) {
+            int length = Byte.toUnsignedInt(journal[position]);
+            merkleValues.add(Arrays.copyOfRange(journal, position + 1, position + 1 + length));
+            position += 1 + length;
+        }
+        return merkleValues;
+    }
+
+    /**
+     * @param sequence the position of the state among the finalized ones
+     * @param id       the id of the persisted state
+     */
+    private record FinalizedState(long sequence, long id) {
+    }
+
+    /**
+     * @param parentId   the id of the parent state if it's unfinalized, {@link #NO_PARENT} otherwise
+     * @param parentRoot the root of the parent state, an empty array if unknown
+     * @param root       the root of the state
+     */
+    private record PersistedState(long parentId, byte[] parentRoot, byte[] root) {
+    }
+
+    private record Key(byte[] bytes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.limechain.storage.trie;
+
+import com.limechain.trie.structure.node.TrieNodeData;
+import io.prometheus.metrics.core.metrics.CounterWithCallback;
+import io.prometheus.metrics.core.metrics.GaugeWithCallback;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.Unit;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of decoded trie nodes, keyed by their merkle value.
+ * <p>
+ * Nodes are addressed by the hash of their contents, so a cached node never becomes stale and the cache doesn't
+ * need invalidation. Lookups are lock-free; inserts and evictions are serialized. Eviction follows the CLOCK
+ * (second chance) policy: every hit marks the entry as referenced, and the eviction hand only removes entries
+ * which haven't been referenced since it last passed them. This keeps the root and upper branch nodes, which
+ * every key lookup touches, resident.
+ */
+public class TrieNodeCache {
+    /**
+     * Rough estimate of the heap taken by a cached node besides its byte arrays
+     * (the entry, the key, the node object, the children list and the map node).
+     */
+    private static final long ENTRY_OVERHEAD = 256;
+    private static final long ARRAY_OVERHEAD = 16;
+    private static final long REFERENCE_SIZE = 8;
+
+    private final long maxBytes;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Entries in insertion order, the head being the position of the clock hand. Guarded by {@code this}.
+     */
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    /**
+     * Guarded by {@code this}.
+     */
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes the approximate heap budget of the cache, 0 disables caching
+     */
+    public TrieNodeCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Trie node cache size must not be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param merkleValue the merkle value of the node
+     * @return the cached node or {@code null} if it is not cached
+     */
+    @Nullable
+    public TrieNodeData get(byte[] merkleValue) {
+        if (maxBytes == 0) {
+            return null;
+        }
+
+        Entry entry = entries.get(new Key(merkleValue));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        entry.referenced = true;
+        hits.increment();
+        return entry.node;
+    }
+
+    /**
+     * Caches a node, evicting others if the budget is exceeded.
+     *
+     * @param merkleValue the merkle value of the node
+     * @param node        the node
+     */
+    public void put(byte[] merkleValue, TrieNodeData node) {
+        long weight = weigh(merkleValue, node);
+        if (weight > maxBytes) {
+            return;
+        }
+
+        Key key = new Key(merkleValue.clone());
+        Entry entry = new Entry(key, node, weight);
+        if (entries.putIfAbsent(key, entry) != null) {
+            return;
+        }
+
+        synchronized (this) {
+            clock.addLast(entry);
+            usedBytes += weight;
+            while (usedBytes > maxBytes) {
+                evictOne();
+            }
+        }
+    }
+
+    private void evictOne() {
+        Entry candidate = clock.pollFirst();
+        if (candidate.referenced) {
+            candidate.referenced = false;
+            clock.addLast(candidate);
+            return;
+        }
+
+        entries.remove(candidate.key, candidate);
+        usedBytes -= candidate.weight;
+        evictions.increment();
+    }
+
+    /**
+     * Drops all cached nodes. Metrics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        clock.clear();
+        usedBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Registers the cache hit, miss, eviction and size metrics.
+     *
+     * @param registry the registry to add the metrics to, a registry can hold the metrics of a single cache
+     */
+    public void registerMetrics(PrometheusRegistry registry) {
+        CounterWithCallback.builder()
+            .name("trie_node_cache_hits")
+            .help("Number of trie node lookups served from the cache.")
+            .callback(callback -> callback.call(getHits()))
+            .register(registry);
+        CounterWithCallback.builder()
+            .name("trie_node_cache_misses")
+            .help("Number of trie node lookups that missed the cache.")
+            .callback(callback -> callback.call(getMisses()))
+            .register(registry);
+        CounterWithCallback.builder()
+            .name("trie_node_cache_evictions")
+            .help("Number of trie nodes evicted from the cache.")
+            .callback(callback -> callback.call(getEvictions()))
+            .register(registry);
+        GaugeWithCallback.builder()
+            .name("trie_node_cache_size_bytes")
+            .help("Estimated heap used by the cached trie nodes.")
+            .unit(Unit.BYTES)
+            .callback(callback -> callback.call(getUsedBytes()))
+            .register(registry);
+    }
+
+    private static long weigh(byte[] merkleValue, TrieNodeData node) {
+        long weight = ENTRY_OVERHEAD + ARRAY_OVERHEAD + merkleValue.length
+                      + node.getPartialKey().size() * REFERENCE_SIZE;
+        for (byte[] child : node.getChildrenMerkleValues()) {
+            if (child != null) {
+                weight += ARRAY_OVERHEAD + child.length;
+            }
+        }
+        if (node.getValue() != null) {
+            weight += ARRAY_OVERHEAD + node.getValue().length;
+        }
+        if (node.getTrieRootRef() != null) {
+            weight += ARRAY_OVERHEAD + node.getTrieRootRef().length;
+        }
+        return weight;
+    }
+
+    private record Key(byte[] bytes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(bytes);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final TrieNodeData node;
+        private final long weight;
+        private volatile boolean referenced;
+
+        private Entry(Key key, TrieNodeData node, long weight) {
+            this.key = key;
+            this.node = node;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.limechain.storage.trie;
+
+import com.limechain.exception.scale.ScaleEncodingException;
+import com.limechain.exception.trie.NodeDecodingException;
+import com.limechain.trie.structure.nibble.BytesToNibbles;
+import com.limechain.trie.structure.nibble.Nibble;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.nibble.NibblesUtils;
+import com.limechain.trie.structure.node.TrieNodeData;
+import io.emeraldpay.polkaj.scale.ScaleCodecReader;
+import io.emeraldpay.polkaj.scale.ScaleCodecWriter;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compact, versioned binary format for {@link TrieNodeData} as persisted in the database.
+ * <p>
+ * Layout (format version 1):
+ * <pre>
+ *   u8        format version
+ *   u8        flags (bit 0 - branch node, bit 1 - has value, bit 2 - has trie root reference)
+ *   u8        entries (state) version
+ *   compact   partial key length in nibbles
+ *   [u8]      partial key, two nibbles per byte, with a leading zero nibble if the length is odd
+ *   u16 LE    children bitmap
+ *   [bytes]   SCALE encoded merkle value for each present child, in order
+ *   bytes     SCALE encoded value (if flagged)
+ *   bytes     SCALE encoded trie root reference (if flagged)
+ * </pre>
+ * The format follows the SCALE trie node encoding closely, but keeps the extra metadata needed by the storage layer
+ * and never hashes anything.
+ */
+@UtilityClass
+public class TrieNodeDataCodec {
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final int CHILDREN_COUNT = 16;
+    private static final int FLAG_BRANCH = 1;
+    private static final int FLAG_VALUE = 1 << 1;
+    private static final int FLAG_TRIE_ROOT_REF = 1 << 2;
+
+    /**
+     * Encodes a trie node into its database representation.
+     *
+     * @param node the node to encode
+     * @return the encoded node
+     */
+    public static byte[] encode(TrieNodeData node) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        try (ScaleCodecWriter writer = new ScaleCodecWriter(buf)) {
+            int flags = (node.isBranchNode() ? FLAG_BRANCH : 0)
+                | (node.getValue() != null ? FLAG_VALUE : 0)
+                | (node.getTrieRootRef() != null ? FLAG_TRIE_ROOT_REF : 0);
+
+            writer.writeByte(FORMAT_VERSION);
+            writer.writeByte(flags);
+            writer.writeByte(node.getEntriesVersion());
+
+            Nibbles partialKey = node.getPartialKey();
+            writer.writeCompact(partialKey.size());
+            writer.writeByteArray(ArrayUtils.toPrimitive(
+                NibblesUtils.toBytesPrepending(partialKey).toArray(Byte[]::new)));
+
+            List<byte[]> children = node.getChildrenMerkleValues();
+            int bitmap = 0;
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != null) {
+                    bitmap |= 1 << i;
+                }
+            }
+            writer.writeUint16(bitmap);
+            for (byte[] child : children) {
+                if (child != null) {
+                    writer.writeAsList(child);
+                }
+            }
+
+            if (node.getValue() != null) {
+                writer.writeAsList(node.getValue());
+            }
+            if (node.getTrieRootRef() != null) {
+                writer.writeAsList(node.getTrieRootRef());
+            }
+        } catch (IOException e) {
+            throw new ScaleEncodingException(e);
+        }
+        return buf.toByteArray();
+    }
+
+    /**
+     * Decodes a trie node from its database representation.
+     *
+     * @param encoded the encoded node, as produced by {@link #encode(TrieNodeData)}
+     * @return the decoded node
+     * @throws NodeDecodingException if the format version is unknown or the data is malformed
+     */
+    public static TrieNodeData decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            throw new NodeDecodingException("Invalid stored trie node: it's empty");
+        }
+
+        try {
+            ScaleCodecReader reader = new ScaleCodecReader(encoded);
+            byte version = reader.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new NodeDecodingException("Unsupported stored trie node format version: " + version);
+            }
+
+            int flags = reader.readUByte();
+            byte entriesVersion = reader.readByte();
+
+            int pkLen = reader.readCompactInt();
+            Iterator<Nibble> pkNibbles = new BytesToNibbles(reader.readByteArray((pkLen + 1) / 2)).iterator();
+            // Skip the zero nibble used for alignment of odd length keys
+            if (pkLen % 2 == 1) {
+                pkNibbles.next();
+            }
+            Nibbles partialKey = Nibbles.of(pkNibbles);
+
+            int bitmap = reader.readUint16();
+            List<byte[]> children = new ArrayList<>(CHILDREN_COUNT);
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                children.add((bitmap & (1 << i)) != 0 ? reader.readByteArray() : null);
+            }
+
+            byte[] value = (flags & FLAG_VALUE) != 0 ? reader.readByteArray() : null;
+            byte[] trieRootRef = (flags & FLAG_TRIE_ROOT_REF) != 0 ? reader.readByteArray() : null;
+
+            return new TrieNodeData((flags & FLAG_BRANCH) != 0, partialKey, children, value, trieRootRef,
+                entriesVersion);
+        } catch (IndexOutOfBoundsException e) {
+            throw new NodeDecodingException("Truncated stored trie node", e);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.limechain.storage.trie;
 
+import com.google.protobuf.ByteString;
 import com.limechain.runtime.version.StateVersion;
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.KeyPrefix;
+import com.limechain.trie.ProofRecorder;
+import com.limechain.trie.StreamingTrieBuilder;
+import com.limechain.trie.TrieCursor;
+import com.limechain.trie.TrieStructureFactory;
 import com.limechain.trie.cache.node.PendingInsertUpdate;
+import com.limechain.trie.dto.node.NodeEncoder;
 import com.limechain.trie.dto.node.StorageNode;
+import com.limechain.trie.dto.node.StorageValue;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.NodeLoader;
 import com.limechain.trie.structure.TrieNodeIndex;
 import com.limechain.trie.structure.TrieStructure;
 import com.limechain.trie.structure.database.InsertTrieBuilder;
@@ -12,30 +22,202 @@ import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.trie.structure.node.InsertTrieNode;
 import com.limechain.trie.structure.node.TrieNodeData;
+import com.limechain.utils.ByteArrayUtils;
+import com.limechain.utils.HashUtils;
+import com.limechain.utils.StringUtils;
 import io.emeraldpay.polkaj.types.Hash256;
-import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.java.Log;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.util.SerializationUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
- * A wrapper around a KVRepository that provides a public interface for trie-related DB queries.
+ * A wrapper around a ByteKeyRepository that provides a public interface for trie-related DB queries.
+ * <p>
+ * Loaded nodes are kept in a {@link TrieNodeCache}, shared by everything reading trie nodes through this instance.
+ * An optional {@link OffHeapTrieNodeCache} keeps encoded nodes outside the GC heap as a second tier.
+ * <p>
+ * An optional {@link FlatStateStorage} mirrors the latest state as a flat key-value table, which serves value reads
+ * at its state root without walking the trie.
+ * <p>
+ * With an optional {@link StatePruner}, node writes are reference counted and nodes of old states get deleted.
  */
 @Log
-@AllArgsConstructor
-public class TrieStorage {
+public class TrieStorage implements AutoCloseable {
 
     private static final String TRIE_NODE_PREFIX = "tn:";
-    private KVRepository<String, Object> db;
+    static final KeyPrefix TRIE_NODE_KEYS = KeyPrefix.of(TRIE_NODE_PREFIX);
+    private static final int PRUNER_BATCH_SIZE = 10_000;
+    private static final int CHILDREN_COUNT = 16;
+    private static final int STREAMING_BATCH_SIZE = 10_000;
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+    /**
+     * Marks a database without trie nodes in the format of older versions, outside the trie node key range
+     */
+    private static final byte[] LEGACY_MIGRATION_DONE_KEY = "tn-legacy-migrated".getBytes(UTF_8);
+    /**
+     * The first bytes of a Java-serialized object, which older versions stored trie nodes as
+     */
+    private static final byte[] JAVA_SERIALIZATION_MAGIC = {(byte) 0xac, (byte) 0xed};
+    private ByteKeyRepository db;
+    @Getter
+    private TrieNodeCache cache;
+    @Nullable
+    private OffHeapTrieNodeCache offHeapCache;
+    @Nullable
+    private FlatStateStorage flatState;
+    @Nullable
+    private StatePruner pruner;
+    /**
+     * Whether older trie nodes were migrated, so a missing node doesn't have to be looked up under its legacy key
+     */
+    private boolean legacyNodesMigrated;
+
+    /**
+     * Creates a trie storage without node caching.
+     *
+     * @param db the repository to store the trie nodes in
+     */
+    public TrieStorage(ByteKeyRepository db) {
+        this(db, new TrieNodeCache(0));
+    }
+
+    /**
+     * Creates a trie storage with an on-heap node cache only.
+     *
+     * @param db    the repository to store the trie nodes in
+     * @param cache the node cache
+     */
+    public TrieStorage(ByteKeyRepository db, TrieNodeCache cache) {
+        this(db, cache, null, null, null);
+    }
+
+    /**
+     * @param db           the repository to store the trie nodes in
+     * @param cache        the node cache
+     * @param offHeapCache the optional second tier node cache
+     * @param flatState    the optional flat state table
+     * @param pruner       the optional pruner of the nodes of old states
+     */
+    public TrieStorage(ByteKeyRepository db, TrieNodeCache cache, @Nullable OffHeapTrieNodeCache offHeapCache,
+                       @Nullable FlatStateStorage flatState, @Nullable StatePruner pruner) {
+        this.db = db;
+        this.cache = cache;
+        this.offHeapCache = offHeapCache;
+        this.flatState = flatState;
+        this.pruner = pruner;
+    }
+
+    /**
+     * Stops the background pruning and releases the off-heap memory of the node cache. The underlying repository is
+     * closed separately.
+     */
+    @Override
+    public void close() {
+        if (pruner != null) {
+            pruner.close();
+        }
+        if (offHeapCache != null) {
+            offHeapCache.close();
+        }
+    }
+
+    /**
+     * Rewrites all trie nodes stored by older versions (under a string converted key, as Java-serialized objects)
+     * in the current format, deleting the legacy entries. The merkle value, which the legacy key was converted from
+     * lossily, is recalculated from the node.
+     * <p>
+     * Once all nodes are migrated, a marker is written, so following startups skip the scan and missing nodes aren't
+     * looked up under their legacy key anymore.
+     */
+    public void migrateLegacyTrieNodes() {
+        if (db.find(LEGACY_MIGRATION_DONE_KEY).isPresent()) {
+            legacyNodesMigrated = true;
+            return;
+        }
+
+        long migrated = 0;
+        long unmatched = 0;
+        byte[] startKey = null;
+        List<Map.Entry<byte[], byte[]>> page;
+        do {
+            page = db.findEntriesByPrefix(TRIE_NODE_KEYS.bytes(), startKey, MIGRATION_BATCH_SIZE);
+            List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+            List<byte[]> deletes = new ArrayList<>();
+            for (Map.Entry<byte[], byte[]> entry : page) {
+                if (!ByteArrayUtils.hasPrefix(entry.getValue(), JAVA_SERIALIZATION_MAGIC)) {
+                    continue;
+                }
+                TrieNodeData node = decodeLegacyTrieNode(entry.getValue());
+                Optional<byte[]> merkleValue = possibleMerkleValues(node).stream()
+                    .filter(candidate -> Arrays.equals(legacyKey(candidate), entry.getKey()))
+                    .findFirst();
+                if (merkleValue.isEmpty()) {
+                    // Kept under the legacy key, where lazy migration can still find it
+                    unmatched++;
+                    continue;
+                }
+                entries.add(Map.entry(TRIE_NODE_KEYS.key(merkleValue.get()), TrieNodeDataCodec.encode(node)));
+                deletes.add(entry.getKey());
+            }
+            if (!entries.isEmpty()) {
+                db.writeBatch(entries, deletes);
+                migrated += entries.size();
+            }
+            startKey = page.isEmpty() ? null : page.getLast().getKey();
+        } while (page.size() == MIGRATION_BATCH_SIZE);
+
+        if (migrated > 0) {
+            log.log(Level.INFO, String.format("Migrated %d trie nodes from the legacy format", migrated));
+        }
+        if (unmatched > 0) {
+            log.log(Level.WARNING, String.format(
+                "%d legacy trie nodes don't match their keys and are left unmigrated", unmatched));
+            return;
+        }
+        db.save(LEGACY_MIGRATION_DONE_KEY, new byte[]{1});
+        legacyNodesMigrated = true;
+    }
+
+    /**
+     * Calculates the merkle values a node could have. A node with an encoding shorter than a hash is inlined into its
+     * parent, unless it's the root, which is always hashed.
+     */
+    private static List<byte[]> possibleMerkleValues(TrieNodeData node) {
+        // The values of child trie roots are stored as references
+        byte[] value = node.getValue() != null ? node.getValue() : node.getTrieRootRef();
+        StorageValue storageValue = TrieStructureFactory.constructStorageValue(value,
+            StateVersion.fromInt(node.getEntriesVersion()), HashUtils::hashWithBlake2b);
+
+        byte[] encoded = NodeEncoder.forCurrentThread()
+            .encode(node.getChildrenMerkleValues(), node.getPartialKey(), storageValue);
+        byte[] hash = HashUtils.hashWithBlake2b(encoded);
+        return encoded.length < hash.length ? List.of(encoded, hash) : List.of(hash);
+    }
+
+    private static byte[] legacyKey(byte[] merkleValue) {
+        return (TRIE_NODE_PREFIX + new String(merkleValue)).getBytes(UTF_8);
+    }
 
     /**
      * Retrieves a value by key from the trie associated with a specific block hash.
@@ -52,6 +234,327 @@ public class TrieStorage {
         return Optional.ofNullable(nodeFromDb);
     }
 
+    /**
+     * Creates a merkle proof of the values at the given keys, or of their absence, in the trie with the given root.
+     * <p>
+     * The keys are looked up in one traversal, so every node on their paths is loaded and encoded once, no matter how
+     * many of the keys it leads to.
+     *
+     * @param merkleRoot the merkle root of the trie
+     * @param keys       the keys to prove
+     * @return the encoded proof nodes
+     * @throws IllegalStateException if a node on the path to a key is missing from the database
+     */
+    public List<byte[]> readProof(byte[] merkleRoot, Collection<Nibbles> keys) {
+        ProofRecorder recorder = new ProofRecorder();
+        if (!keys.isEmpty()) {
+            recordPaths(merkleRoot, new ArrayList<>(new TreeSet<>(keys)), recorder);
+        }
+        return recorder.getProof();
+    }
+
+    /**
+     * Records the node with the given merkle value and the nodes below it on the paths to the given keys.
+     *
+     * @param keys the sorted remainders of the keys from the position of the node
+     */
+    private void recordPaths(byte[] merkleValue, List<Nibbles> keys, ProofRecorder recorder) {
+        TrieNodeData node = requireTrieNode(merkleValue);
+        recorder.record(merkleValue, node);
+
+        Nibbles partialKey = node.getPartialKey();
+        List<Nibbles> childKeys = new ArrayList<>();
+        int childIndex = -1;
+        for (Nibbles key : keys) {
+            // Keys ending at or diverging from this node are proven by it
+            if (key.size() <= partialKey.size() || !key.startsWith(partialKey)) {
+                continue;
+            }
+            int keyChildIndex = key.get(partialKey.size()).asInt();
+            if (keyChildIndex != childIndex) {
+                recordChildPaths(node, childIndex, childKeys, recorder);
+                childKeys = new ArrayList<>();
+                childIndex = keyChildIndex;
+            }
+            childKeys.add(key.drop(partialKey.size() + 1));
+        }
+        recordChildPaths(node, childIndex, childKeys, recorder);
+    }
+
+    private void recordChildPaths(TrieNodeData node, int childIndex, List<Nibbles> childKeys,
+                                  ProofRecorder recorder) {
+        if (childKeys.isEmpty()) {
+            return;
+        }
+        byte[] childMerkleValue = node.getChildrenMerkleValues().get(childIndex);
+        // Without a child, the node proves the keys below it absent
+        if (childMerkleValue != null) {
+            recordPaths(childMerkleValue, childKeys, recorder);
+        }
+    }
+
+    /**
+     * Retrieves a storage value by key from the trie with a given root. The flat state table is used if it reflects
+     * the root, so the trie is only walked for other roots.
+     *
+     * @param merkleRoot The merkle root under which to search.
+     * @param key        The key for which to retrieve the value.
+     * @return An {@link Optional} containing the value associated with the key if found, or empty if not found.
+     */
+    public Optional<byte[]> getValueByKeyFromMerkle(byte[] merkleRoot, Nibbles key) {
+        return findValue(merkleRoot, key, () -> getByKeyFromMerkle(merkleRoot, key).map(NodeData::getValue));
+    }
+
+    /**
+     * Reads a storage value from the flat state table if it reflects the given root.
+     *
+     * @param merkleRoot the state root to read at
+     * @param key        the storage key
+     * @param traversal  reads the value through the trie, used if there's no flat state at the root
+     * @return the value, or an empty {@link Optional} if there is no value at the key
+     */
+    public Optional<byte[]> findValue(byte[] merkleRoot, Nibbles key, Supplier<Optional<byte[]>> traversal) {
+        return flatState != null
+            ? flatState.find(merkleRoot, key, traversal)
+            : traversal.get();
+    }
+
+    /**
+     * Moves the flat state table forward. If it doesn't reflect the state the changes were made on, e.g. after a
+     * fork switch or after changes persisted without updating it, it catches up with the new state instead.
+     *
+     * @param parentRoot the state root the changes were made on top of
+     * @param newRoot    the state root after the changes
+     * @param changes    the changed values by key, {@code null} for removed ones
+     */
+    public void updateFlatState(byte[] parentRoot, byte[] newRoot, Map<Nibbles, byte[]> changes) {
+        if (flatState != null && !flatState.apply(parentRoot, newRoot, changes)) {
+            catchUpFlatState(newRoot);
+        }
+    }
+
+    /**
+     * Moves the flat state table to the given state, from whichever state it reflects.
+     * <p>
+     * Subtrees are addressed by their contents, so only the ones differing between the two states are walked. If the
+     * state the table reflects isn't stored anymore, e.g. because it got pruned, the table is rebuilt from the whole
+     * new state. Should that fail too, the table is left empty and reads fall back to trie traversal.
+     *
+     * @param stateRoot the state root to move the table to
+     */
+    public void catchUpFlatState(byte[] stateRoot) {
+        if (flatState == null) {
+            return;
+        }
+        byte[] flatRoot = flatState.getStateRoot();
+        if (Arrays.equals(flatRoot, stateRoot)) {
+            return;
+        }
+
+        if (flatRoot != null) {
+            try {
+                // Null values mark removed keys, so the map has to allow them
+                Map<Nibbles, byte[]> changes = new HashMap<>();
+                diffValues(new Subtree(flatRoot, Nibbles.EMPTY), new Subtree(stateRoot, Nibbles.EMPTY), changes);
+                if (flatState.apply(flatRoot, stateRoot, changes)) {
+                    log.fine(String.format("Flat state caught up with %d changes", changes.size()));
+                }
+                return;
+            } catch (IllegalStateException e) {
+                log.log(Level.FINE, "State of the flat state is gone, rebuilding it", e);
+            }
+        }
+
+        try {
+            flatState.beginReset();
+            List<Map.Entry<Nibbles, byte[]>> values = new ArrayList<>(STREAMING_BATCH_SIZE);
+            forEachValue(new Subtree(stateRoot, Nibbles.EMPTY), (key, value) -> {
+                values.add(Map.entry(key, value));
+                if (values.size() == STREAMING_BATCH_SIZE) {
+                    flatState.putResetValues(values);
+                    values.clear();
+                }
+            });
+            flatState.putResetValues(values);
+            flatState.finishReset(stateRoot);
+        } catch (IllegalStateException e) {
+            log.log(Level.WARNING, "Failed to rebuild the flat state, reads fall back to the trie", e);
+        }
+    }
+
+    /**
+     * A subtree of a stored trie.
+     *
+     * @param merkleValue the merkle value of the subtree's top node
+     * @param path        the key leading to the top node, without the top node's own partial key
+     */
+    private record Subtree(byte[] merkleValue, Nibbles path) {
+    }
+
+    /**
+     * Collects the differences between the values of two subtrees at the same position of their tries. Subtrees at
+     * the same path with the same merkle value are equal and aren't walked.
+     *
+     * @param changes receives the new values by key, {@code null} for removed ones
+     */
+    private void diffValues(@Nullable Subtree oldSubtree, @Nullable Subtree newSubtree, Map<Nibbles, byte[]> changes) {
+        if (oldSubtree == null || newSubtree == null) {
+            forEachValue(oldSubtree, (key, value) -> changes.put(key, null));
+            forEachValue(newSubtree, changes::put);
+            return;
+        }
+        if (oldSubtree.path().equals(newSubtree.path())
+            && Arrays.equals(oldSubtree.merkleValue(), newSubtree.merkleValue())) {
+            return;
+        }
+
+        TrieNodeData oldNode = requireTrieNode(oldSubtree.merkleValue());
+        TrieNodeData newNode = requireTrieNode(newSubtree.merkleValue());
+        Nibbles oldKey = oldSubtree.path().addAll(oldNode.getPartialKey());
+        Nibbles newKey = newSubtree.path().addAll(newNode.getPartialKey());
+
+        if (oldKey.equals(newKey)) {
+            byte[] newValue = storedValue(newNode);
+            if (!Arrays.equals(storedValue(oldNode), newValue)) {
+                changes.put(newKey, newValue);
+            }
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffValues(childSubtree(oldNode, oldKey, i), childSubtree(newNode, newKey, i), changes);
+            }
+        } else if (newKey.startsWith(oldKey)) {
+            // The new trie has nothing at the old node's key and next to the new node
+            if (storedValue(oldNode) != null) {
+                changes.put(oldKey, null);
+            }
+            int newNodeIndex = newKey.get(oldKey.size()).asInt();
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffValues(childSubtree(oldNode, oldKey, i), i == newNodeIndex ? newSubtree : null, changes);
+            }
+        } else if (oldKey.startsWith(newKey)) {
+            byte[] newValue = storedValue(newNode);
+            if (newValue != null) {
+                changes.put(newKey, newValue);
+            }
+            int oldNodeIndex = oldKey.get(newKey.size()).asInt();
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffValues(i == oldNodeIndex ? oldSubtree : null, childSubtree(newNode, newKey, i), changes);
+            }
+        } else {
+            forEachValue(oldSubtree, (key, value) -> changes.put(key, null));
+            forEachValue(newSubtree, changes::put);
+        }
+    }
+
+    /**
+     * Walks all values of a subtree, in no particular order.
+     */
+    private void forEachValue(@Nullable Subtree subtree, BiConsumer<Nibbles, byte[]> consumer) {
+        if (subtree == null) {
+            return;
+        }
+        TrieNodeData node = requireTrieNode(subtree.merkleValue());
+        Nibbles key = subtree.path().addAll(node.getPartialKey());
+        byte[] value = storedValue(node);
+        if (value != null) {
+            consumer.accept(key, value);
+        }
+        for (int i = 0; i < CHILDREN_COUNT; i++) {
+            forEachValue(childSubtree(node, key, i), consumer);
+        }
+    }
+
+    /**
+     * The value a node stores for its key, which for the key of a child trie is the reference to its root.
+     */
+    @Nullable
+    private static byte[] storedValue(TrieNodeData node) {
+        return node.getValue() != null ? node.getValue() : node.getTrieRootRef();
+    }
+
+    /**
+     * Collects the nodes differing between two subtrees at the same position of their tries. Subtrees at the same
+     * path with the same merkle value are equal and aren't walked.
+     *
+     * @param newNodes loads the nodes of the new subtree
+     * @param changes  receives the nodes of the new subtree as inserted and the ones of the old subtree as replaced
+     */
+    private void diffNodes(@Nullable Subtree oldSubtree, @Nullable Subtree newSubtree,
+                           Function<byte[], TrieNodeData> newNodes, NodeJournal changes) {
+        if (oldSubtree == null || newSubtree == null) {
+            forEachNode(oldSubtree, this::requireTrieNode, changes.getReplacedMerkleValues());
+            forEachNode(newSubtree, newNodes, changes.getInsertedMerkleValues());
+            return;
+        }
+        if (oldSubtree.path().equals(newSubtree.path())
+            && Arrays.equals(oldSubtree.merkleValue(), newSubtree.merkleValue())) {
+            return;
+        }
+
+        TrieNodeData oldNode = requireTrieNode(oldSubtree.merkleValue());
+        TrieNodeData newNode = newNodes.apply(newSubtree.merkleValue());
+        Nibbles oldKey = oldSubtree.path().addAll(oldNode.getPartialKey());
+        Nibbles newKey = newSubtree.path().addAll(newNode.getPartialKey());
+        if (oldKey.equals(newKey)) {
+            changes.getReplacedMerkleValues().add(oldSubtree.merkleValue());
+            changes.getInsertedMerkleValues().add(newSubtree.merkleValue());
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffNodes(childSubtree(oldNode, oldKey, i), childSubtree(newNode, newKey, i), newNodes, changes);
+            }
+        } else if (newKey.startsWith(oldKey)) {
+            // The new trie has nothing at the old node's key and next to the new node
+            changes.getReplacedMerkleValues().add(oldSubtree.merkleValue());
+            int newNodeIndex = newKey.get(oldKey.size()).asInt();
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffNodes(childSubtree(oldNode, oldKey, i), i == newNodeIndex ? newSubtree : null, newNodes, changes);
+            }
+        } else if (oldKey.startsWith(newKey)) {
+            changes.getInsertedMerkleValues().add(newSubtree.merkleValue());
+            int oldNodeIndex = oldKey.get(newKey.size()).asInt();
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                diffNodes(i == oldNodeIndex ? oldSubtree : null, childSubtree(newNode, newKey, i), newNodes, changes);
+            }
+        } else {
+            forEachNode(oldSubtree, this::requireTrieNode, changes.getReplacedMerkleValues());
+            forEachNode(newSubtree, newNodes, changes.getInsertedMerkleValues());
+        }
+    }
+
+    /**
+     * Collects the merkle values of all nodes of a subtree.
+     */
+    private static void forEachNode(@Nullable Subtree subtree, Function<byte[], TrieNodeData> nodes,
+                                    List<byte[]> merkleValues) {
+        if (subtree == null) {
+            return;
+        }
+        merkleValues.add(subtree.merkleValue());
+        TrieNodeData node = nodes.apply(subtree.merkleValue());
+        Nibbles key = subtree.path().addAll(node.getPartialKey());
+        for (int i = 0; i < CHILDREN_COUNT; i++) {
+            forEachNode(childSubtree(node, key, i), nodes, merkleValues);
+        }
+    }
+
+    @Nullable
+    private static Subtree subtree(@Nullable byte[] root) {
+        return root == null || root.length == 0 ? null : new Subtree(root, Nibbles.EMPTY);
+    }
+
+    @Nullable
+    private static Subtree childSubtree(TrieNodeData node, Nibbles nodeKey, int childIndex) {
+        byte[] childMerkleValue = node.getChildrenMerkleValues().get(childIndex);
+        return childMerkleValue == null ? null : new Subtree(childMerkleValue, nodeKey.add(Nibble.fromInt(childIndex)));
+    }
+
+    private TrieNodeData requireTrieNode(byte[] merkleValue) {
+        TrieNodeData node = getTrieNodeFromMerkleValue(merkleValue);
+        if (node == null) {
+            throw new IllegalStateException(
+                "Trie node not found in database for merkle value: " + StringUtils.toHexWithPrefix(merkleValue));
+        }
+        return node;
+    }
+
     /**
      * Recursively searches for a TrieNode by key starting from a given trie node.
      * <p>
@@ -99,71 +602,181 @@ public class TrieStorage {
         return getNodeFromDb(childMerkleValue, remainder.drop(1));
     }
 
+    /**
+     * Loads a trie node from the database by its merkle value.
+     * <p>
+     * Nodes are stored in the compact {@link TrieNodeDataCodec} format under the raw merkle value. Nodes written by
+     * older versions (under a string converted key, as Java-serialized objects) are still readable and get rewritten
+     * in the current format on first access, until {@link #migrateLegacyTrieNodes()} has migrated all of them.
+     * <p>
+     * The node caches are checked first and every node loaded from the database is cached.
+     *
+     * @param childMerkleValue the merkle value of the node
+     * @return the trie node, or {@code null} if it is not present in the database
+     */
     @Nullable
     public TrieNodeData getTrieNodeFromMerkleValue(@NotNull byte[] childMerkleValue) {
-        Optional<Object> encodedChild = db.find(TRIE_NODE_PREFIX + new String(childMerkleValue));
+        TrieNodeData cached = getCached(childMerkleValue);
+        if (cached != null) {
+            return cached;
+        }
 
-        return (TrieNodeData) encodedChild.orElse(null);
+        byte[] key = TRIE_NODE_KEYS.key(childMerkleValue);
+        byte[] encoded = db.find(key).orElse(null);
+        putOffHeap(childMerkleValue, encoded);
+
+        TrieNodeData node = encoded != null
+            ? TrieNodeDataCodec.decode(encoded)
+            : migrateLegacyTrieNode(key, childMerkleValue);
+        if (node != null) {
+            cache.put(childMerkleValue, node);
+        }
+        return node;
     }
 
-    public boolean merkleValueExists(Hash256 lastFinalizedStateRoot) {
-        return getTrieNodeFromMerkleValue(lastFinalizedStateRoot.getBytes()) != null;
+    private void putOffHeap(byte[] merkleValue, @Nullable byte[] encoded) {
+        if (offHeapCache != null && encoded != null) {
+            offHeapCache.put(merkleValue, encoded);
+        }
+    }
+
+    @Nullable
+    private TrieNodeData getCached(byte[] merkleValue) {
+        TrieNodeData cached = cache.get(merkleValue);
+        if (cached != null || offHeapCache == null) {
+            return cached;
+        }
+
+        byte[] encoded = offHeapCache.get(merkleValue);
+        if (encoded == null) {
+            return null;
+        }
+        TrieNodeData node = TrieNodeDataCodec.decode(encoded);
+        cache.put(merkleValue, node);
+        return node;
     }
 
     /**
-     * Finds the next key in the trie that is lexicographically greater than a given prefix.
-     * It navigates the trie from the root node associated with a specific block hash.
+     * Loads multiple trie nodes from the database with a single multi-get.
      *
-     * @param merkleValue The merkleValue of the trie to be used for the search.
-     * @param prefix      The prefix to compare against for finding the next key.
-     * @return The next key as a String, or null if no such key exists.
+     * @param merkleValues the merkle values of the nodes, may contain {@code null}s
+     * @return the nodes in the order of the merkle values, {@code null} for the {@code null} merkle values and
+     * for the nodes not present in the database
      */
-    @Nullable
-    public Nibbles getNextKeyByMerkleValue(byte[] merkleValue, Nibbles prefix) {
-        TrieNodeData rootNode = getTrieNodeFromMerkleValue(merkleValue);
-        if (rootNode == null) {
-            return null;
+    public List<TrieNodeData> getTrieNodesFromMerkleValues(List<byte[]> merkleValues) {
+        List<TrieNodeData> nodes = new ArrayList<>(merkleValues.size());
+        List<Integer> missingIndices = new ArrayList<>();
+        List<byte[]> missingKeys = new ArrayList<>();
+        for (int i = 0; i < merkleValues.size(); i++) {
+            byte[] merkleValue = merkleValues.get(i);
+            TrieNodeData cached = merkleValue == null ? null : getCached(merkleValue);
+            nodes.add(cached);
+            if (merkleValue != null && cached == null) {
+                missingIndices.add(i);
+                missingKeys.add(TRIE_NODE_KEYS.key(merkleValue));
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return nodes;
         }
 
-        return findNextKey(rootNode, prefix);
+        List<byte[]> encodedNodes = db.findMany(missingKeys);
+        for (int i = 0; i < missingKeys.size(); i++) {
+            int index = missingIndices.get(i);
+            byte[] merkleValue = merkleValues.get(index);
+            byte[] encoded = encodedNodes.get(i);
+            putOffHeap(merkleValue, encoded);
+            TrieNodeData node = encoded != null
+                ? TrieNodeDataCodec.decode(encoded)
+                : migrateLegacyTrieNode(missingKeys.get(i), merkleValue);
+            if (node != null) {
+                cache.put(merkleValue, node);
+            }
+            nodes.set(index, node);
+        }
+        return nodes;
     }
 
-    private Nibbles findNextKey(TrieNodeData rootNode, Nibbles prefix) {
-        return searchForNextKey(rootNode, prefix, rootNode.getPartialKey());
+    /**
+     * Loads all children of a trie node with a single multi-get.
+     *
+     * @param node the parent node
+     * @return 16 child nodes, {@code null} if there's no child at the position
+     */
+    public List<TrieNodeData> getChildren(TrieNodeData node) {
+        return getTrieNodesFromMerkleValues(node.getChildrenMerkleValues());
     }
 
     @Nullable
-    private Nibbles searchForNextKey(TrieNodeData node, Nibbles prefix, Nibbles currentPath) {
-        if (node == null) {
+    private TrieNodeData migrateLegacyTrieNode(byte[] key, byte[] merkleValue) {
+        if (legacyNodesMigrated) {
             return null;
         }
 
-        // If the current node is a leaf and the fullPath is greater than the prefix, it's a candidate.
-        if (node.getValue() != null && currentPath.compareTo(prefix) > 0) {
-            return currentPath;
+        byte[] legacyKey = legacyKey(merkleValue);
+        TrieNodeData node = db.find(legacyKey)
+            .map(TrieStorage::decodeLegacyTrieNode)
+            .orElse(null);
+        if (node != null) {
+            db.writeBatch(List.of(Map.entry(key, TrieNodeDataCodec.encode(node))), List.of(legacyKey));
         }
+        return node;
+    }
 
-        List<byte[]> childrenMerkleValues = node.getChildrenMerkleValues();
-        int startIndex = prefix.size() > currentPath.size() ? prefix.get(currentPath.size()).asInt() : 0;
+    private static TrieNodeData decodeLegacyTrieNode(byte[] stored) {
+        return switch (SerializationUtils.deserialize(stored)) {
+            case byte[] encoded -> TrieNodeDataCodec.decode(encoded);
+            case TrieNodeData legacy -> legacy;
+            case null, default -> throw new IllegalStateException("Unexpected trie node type in storage");
+        };
+    }
 
-        for (int i = startIndex; i < childrenMerkleValues.size(); i++) {
-            byte[] childMerkleValue = childrenMerkleValues.get(i);
-            TrieNodeData childNode = null;
-            if (childMerkleValue != null) {
-                childNode = getTrieNodeFromMerkleValue(childMerkleValue);
-            }
-            if (childNode == null) continue;
+    public boolean merkleValueExists(Hash256 lastFinalizedStateRoot) {
+        return getTrieNodeFromMerkleValue(lastFinalizedStateRoot.getBytes()) != null;
+    }
 
-            Nibbles nextPath = currentPath.add(Nibble.fromInt(i)).addAll(childNode.getPartialKey());
+    /**
+     * Finds the next key in the trie that is lexicographically greater than a given prefix.
+     * It navigates the trie from the root node associated with a specific block hash.
+     *
+     * @param merkleValue The merkleValue of the trie to be used for the search.
+     * @param prefix      The prefix to compare against for finding the next key.
+     * @return The next key as a String, or null if no such key exists.
+     */
+    @Nullable
+    public Nibbles getNextKeyByMerkleValue(byte[] merkleValue, Nibbles prefix) {
+        TrieCursor<TrieNodeData> cursor = cursor(merkleValue);
+        cursor.seek(Nibbles.EMPTY, prefix);
+        return cursor.hasNext() ? cursor.next() : null;
+    }
 
-            Nibbles result = searchForNextKey(childNode, prefix, nextPath);
+    /**
+     * Creates a cursor over the keys of a stored trie. Nodes are fetched only as the cursor reaches them.
+     *
+     * @param merkleRoot The root of the trie.
+     * @return The cursor, positioned before the first key. A root missing from the database makes for an empty trie.
+     */
+    public TrieCursor<TrieNodeData> cursor(byte[] merkleRoot) {
+        return new TrieCursor<>(getTrieNodeFromMerkleValue(merkleRoot), new TrieCursor.NodeSource<>() {
+            @Override
+            public Nibbles partialKey(TrieNodeData node) {
+                return node.getPartialKey();
+            }
 
-            if (result != null) {
-                return result;
+            @Override
+            public boolean hasStorageValue(TrieNodeData node) {
+                return !node.isBranchNode();
             }
-        }
 
-        return null;
+            @Override
+            public TrieNodeData child(TrieNodeData node, Nibbles nodeKey, int childIndex) {
+                List<byte[]> childrenMerkleValues = node.getChildrenMerkleValues();
+                byte[] childMerkleValue = childIndex < childrenMerkleValues.size()
+                    ? childrenMerkleValues.get(childIndex)
+                    : null;
+                return childMerkleValue == null ? null : getTrieNodeFromMerkleValue(childMerkleValue);
+            }
+        });
     }
 
     /**
@@ -227,75 +840,34 @@ public class TrieStorage {
      * @return A list of byte arrays representing the keys that match the given prefix.
      */
     public List<Nibbles> getKeysWithPrefix(byte[] merkleRoot, Nibbles prefix) {
-        TrieNodeData rootNode = getTrieNodeFromMerkleValue(merkleRoot);
-        if (rootNode == null) {
-            return new ArrayList<>();
-        }
+        TrieCursor<TrieNodeData> cursor = cursor(merkleRoot);
+        cursor.seek(prefix, null);
 
         List<Nibbles> matchingKeys = new ArrayList<>();
-        collectKeysWithPrefix(rootNode, Nibbles.EMPTY, prefix, matchingKeys);
+        cursor.forEachRemaining(matchingKeys::add);
         return matchingKeys;
     }
 
-    private void collectKeysWithPrefix(TrieNodeData node, Nibbles currentPath, Nibbles prefix, List<Nibbles> keys) {
-        Nibbles fullPath = currentPath.addAll(node.getPartialKey());
-
-        if (node.getValue() != null && fullPath.startsWith(prefix)) {
-            keys.add(fullPath);
-        }
-
-        for (byte[] childMerkleValue : node.getChildrenMerkleValues()) {
-            if (childMerkleValue == null) continue;
-            TrieNodeData childNode = getTrieNodeFromMerkleValue(childMerkleValue);
-            if (childNode != null) {
-                collectKeysWithPrefix(childNode, fullPath, prefix, keys);
-            }
-        }
-    }
-
     /**
      * Retrieves keys starting with a given prefix, supporting pagination through a starting key and limit.
+     * Only the nodes on the way to the starting key and the ones of the returned keys are loaded.
      *
      * @param blockStateRoot The state root of the block to search within.
      * @param prefix         The prefix to match against keys in the trie.
-     * @param startKey       The key from which to start returning results.
+     * @param startKey       The key after which to start returning results, null to start from the first one.
      * @param limit          The maximum number of keys to return.
      * @return A list of byte arrays representing the keys that match the given prefix, starting from the startKey.
      */
-    public List<Nibbles> getKeysWithPrefixPaged(Hash256 blockStateRoot, Nibbles prefix, Nibbles startKey, int limit) {
-        TrieNodeData rootNode = getTrieNodeFromMerkleValue(blockStateRoot.getBytes());
-        if (rootNode == null) {
-            return new ArrayList<>();
-        }
+    public List<Nibbles> getKeysWithPrefixPaged(Hash256 blockStateRoot, Nibbles prefix, @Nullable Nibbles startKey,
+                                                int limit) {
+        TrieCursor<TrieNodeData> cursor = cursor(blockStateRoot.getBytes());
+        cursor.seek(prefix, startKey);
 
         List<Nibbles> matchingKeys = new ArrayList<>();
-        collectKeysWithPrefix(rootNode, Nibbles.EMPTY, prefix, startKey, limit, matchingKeys, new boolean[]{false});
-        return matchingKeys;
-    }
-
-    private void collectKeysWithPrefix(TrieNodeData node, Nibbles currentPath, Nibbles prefix, Nibbles startKey,
-                                       int limit,
-                                       List<Nibbles> keys, boolean[] startKeyFound) {
-        if (keys.size() >= limit) return;
-
-        Nibbles fullPath = currentPath.addAll(node.getPartialKey());
-        if (node.getValue() != null && fullPath.startsWith(prefix) &&
-            startKey == null || startKeyFound[0] || Objects.equals(startKey, fullPath)) {
-            if (!startKeyFound[0]) {
-                startKeyFound[0] = true;
-            } else {
-                keys.add(fullPath); // Add key if it matches the prefix and is after the startKey
-            }
-        }
-
-        // Traverse children
-        for (byte[] childMerkleValue : node.getChildrenMerkleValues()) {
-            if (childMerkleValue == null) continue;
-            TrieNodeData childNode = getTrieNodeFromMerkleValue(childMerkleValue);
-            if (childNode != null) {
-                collectKeysWithPrefix(childNode, fullPath, prefix, startKey, limit, keys, startKeyFound);
-            }
+        while (matchingKeys.size() < limit && cursor.hasNext()) {
+            matchingKeys.add(cursor.next());
         }
+        return matchingKeys;
     }
 
     /**
@@ -311,11 +883,12 @@ public class TrieStorage {
             .map(this::getTrieNodeFromMerkleValue)
             .map(TrieNodeData::getChildrenMerkleValues)
             .orElseGet(Collections::emptyList);
+        List<TrieNodeData> children = getTrieNodesFromMerkleValues(childrenMerkleValues);
 
         List<StorageNode> childrenNodes = new ArrayList<>(Collections.nCopies(childrenMerkleValues.size(), null));
         for (int i = 0; i < childrenMerkleValues.size(); i++) {
             byte[] childMerkleValue = childrenMerkleValues.get(i);
-            TrieNodeData childNode = childMerkleValue == null ? null : getTrieNodeFromMerkleValue(childMerkleValue);
+            TrieNodeData childNode = children.get(i);
             if (childNode != null) {
                 Nibbles childKey = parentKey.add(Nibble.fromInt(i)).addAll(childNode.getPartialKey());
                 childrenNodes.set(i, new StorageNode(childKey, new NodeData(childNode.getValue(), childMerkleValue)));
@@ -335,6 +908,92 @@ public class TrieStorage {
     public void insertTrieStorage(TrieStructure<NodeData> trie) {
         List<InsertTrieNode> dbSerializedTrieNodes = InsertTrieBuilder.build(trie);
         saveTrieNodes(dbSerializedTrieNodes);
+        resetFlatState(trie);
+    }
+
+    private void resetFlatState(TrieStructure<NodeData> trie) {
+        if (flatState == null) {
+            return;
+        }
+
+        byte[] root = trie.getRootNode()
+            .map(NodeHandle::getUserData)
+            .map(NodeData::getMerkleValue)
+            .orElse(null);
+        if (root == null) {
+            log.warning("Trie has no root merkle value, flat state not initialized.");
+            return;
+        }
+
+        Stream<Map.Entry<Nibbles, byte[]>> entries = trie.streamUnordered()
+            .map(trie::nodeHandleAtIndex)
+            .filter(node -> node.hasStorageValue() && node.getUserData() != null
+                            && node.getUserData().getValue() != null)
+            .map(node -> Map.entry(node.getFullKey(), node.getUserData().getValue()));
+        flatState.reset(root, entries::iterator);
+    }
+
+    /**
+     * Saves a whole state given as key-value pairs in ascending key order, e.g. as downloaded from a peer.
+     * <p>
+     * Unlike {@link #insertTrieStorage(TrieStructure)}, the trie is never fully built in memory. Nodes get saved in
+     * batches as soon as their subtrees are complete, see {@link StreamingTrieBuilder}, and values get written to the
+     * flat state along the way.
+     *
+     * @param sortedEntries the storage keys with a value and their values, in ascending key order
+     * @param stateVersion  the state version of the state
+     * @return the state root, null if there were no entries
+     */
+    @Nullable
+    public byte[] insertTrieStorage(Iterator<Map.Entry<Nibbles, byte[]>> sortedEntries, StateVersion stateVersion) {
+        StreamingTrieBuilder builder = streamingTrieBuilder(stateVersion);
+        if (flatState != null) {
+            flatState.beginReset();
+        }
+
+        List<Map.Entry<Nibbles, byte[]>> values = new ArrayList<>(STREAMING_BATCH_SIZE);
+        while (sortedEntries.hasNext()) {
+            Map.Entry<Nibbles, byte[]> entry = sortedEntries.next();
+            builder.add(entry.getKey(), entry.getValue());
+            if (flatState != null) {
+                values.add(entry);
+                if (values.size() == STREAMING_BATCH_SIZE) {
+                    flatState.putResetValues(values);
+                    values.clear();
+                }
+            }
+        }
+        byte[] root = builder.finish();
+
+        if (flatState != null) {
+            flatState.putResetValues(values);
+            if (root != null) {
+                flatState.finishReset(root);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Creates a builder which saves the nodes of a trie given in ascending key order as soon as their subtrees are
+     * complete, e.g. of a downloaded child trie. Unlike {@link #insertTrieStorage(Iterator, StateVersion)}, the flat
+     * state isn't touched, as it only holds the values of main tries.
+     *
+     * @param stateVersion the state version of the trie
+     * @return the builder, whose {@link StreamingTrieBuilder#finish()} returns the root of the saved trie
+     */
+    public StreamingTrieBuilder streamingTrieBuilder(StateVersion stateVersion) {
+        return new StreamingTrieBuilder(stateVersion, HashUtils::hashWithBlake2b, STREAMING_BATCH_SIZE,
+            this::saveTrieNodeBatch);
+    }
+
+    private void saveTrieNodeBatch(List<InsertTrieNode> insertTrieNodes) {
+        if (pruner != null) {
+            // Node writes have to be reference counted
+            pruner.commit(toEntries(insertTrieNodes), merkleValues(insertTrieNodes));
+        } else {
+            insertTrieNodeStorageBatch(insertTrieNodes);
+        }
     }
 
     /**
@@ -348,9 +1007,109 @@ public class TrieStorage {
         saveTrieNodes(dbSerializedTrieNodes);
     }
 
-    public void updateTrieStorage(Map<Nibbles, PendingInsertUpdate> updates) {
+    /**
+     * Saves the modified nodes of a trie loaded from a stored state. With pruning enabled, only the nodes differing
+     * from the ones of the stored state at the same position are saved and reference counted. They are added to the
+     * journal along with the nodes of the stored state they replaced.
+     *
+     * @param trie       the trie to save the nodes of
+     * @param nodes      the nodes modified since the trie was loaded
+     * @param parentRoot the root of the stored state the trie was loaded from, {@code null} for an empty trie
+     * @param stateRoot  the root of the trie
+     * @param journal    receives the inserted and the replaced nodes
+     */
+    public void updateTrieStorage(TrieStructure<NodeData> trie, List<TrieNodeIndex> nodes,
+                                  @Nullable byte[] parentRoot, @Nullable byte[] stateRoot, NodeJournal journal) {
+        List<InsertTrieNode> dbSerializedTrieNodes = InsertTrieBuilder.build(trie, nodes);
+        if (pruner == null) {
+            saveTrieNodes(dbSerializedTrieNodes);
+            return;
+        }
+
+        Map<ByteString, InsertTrieNode> modifiedNodes = new HashMap<>();
+        for (InsertTrieNode node : dbSerializedTrieNodes) {
+            modifiedNodes.put(ByteString.copyFrom(node.merkleValue()), node);
+        }
+        NodeJournal changes = new NodeJournal();
+        try {
+            diffNodes(subtree(parentRoot), subtree(stateRoot), merkleValue -> {
+                InsertTrieNode modified = modifiedNodes.get(ByteString.copyFrom(merkleValue));
+                return modified != null ? toTrieNodeData(modified) : requireTrieNode(merkleValue);
+            }, changes);
+        } catch (IllegalStateException e) {
+            // Without the parent state, the replaced nodes are unknown and stay stored
+            log.log(Level.WARNING, "Failed to collect the trie nodes replaced by a new state", e);
+            saveTrieNodes(dbSerializedTrieNodes);
+            return;
+        }
+
+        // Modified nodes equal to the ones at the same position of the parent state are stored already
+        List<byte[]> inserted = changes.getInsertedMerkleValues();
+        for (int from = 0; from < inserted.size(); from += PRUNER_BATCH_SIZE) {
+            List<byte[]> batch = inserted.subList(from, Math.min(from + PRUNER_BATCH_SIZE, inserted.size()));
+            List<InsertTrieNode> batchNodes = batch.stream()
+                .map(merkleValue -> modifiedNodes.get(ByteString.copyFrom(merkleValue)))
+                .filter(Objects::nonNull)
+                .toList();
+            pruner.commit(toEntries(batchNodes), batch);
+        }
+        journal.takeFrom(changes);
+    }
+
+    /**
+     * Saves the changed nodes of a trie built on top of a stored state. With pruning enabled, the nodes get
+     * reference counted and are added to the journal along with the nodes of the stored state they replaced.
+     *
+     * @param updates              the changed nodes
+     * @param replacedMerkleValues the merkle values of the stored state's nodes replaced by the changes
+     * @param journal              receives the inserted and the replaced nodes
+     */
+    public void updateTrieStorage(Map<Nibbles, PendingInsertUpdate> updates, List<byte[]> replacedMerkleValues,
+                                  NodeJournal journal) {
         List<InsertTrieNode> dbSerializedTrieNodes = InsertTrieBuilder.build(updates);
-        insertTrieNodeStorageBatch(dbSerializedTrieNodes);
+        if (pruner == null) {
+            insertTrieNodeStorageBatch(dbSerializedTrieNodes);
+            return;
+        }
+
+        List<byte[]> insertedMerkleValues = merkleValues(dbSerializedTrieNodes);
+        pruner.commit(toEntries(dbSerializedTrieNodes), insertedMerkleValues);
+        journal.getInsertedMerkleValues().addAll(insertedMerkleValues);
+        journal.getReplacedMerkleValues().addAll(replacedMerkleValues);
+    }
+
+    /**
+     * Journals the nodes of a persisted state for pruning and empties the journal.
+     *
+     * @param parentRoot the root of the state the persisted one was built on, {@code null} if unknown
+     * @param stateRoot  the root of the persisted state, {@code null} for an empty trie
+     * @param journal    the nodes the state, along with its child tries, inserted and replaced
+     * @see StatePruner#recordState
+     */
+    public void recordState(@Nullable byte[] parentRoot, @Nullable byte[] stateRoot, NodeJournal journal) {
+        if (pruner != null && stateRoot != null) {
+            pruner.recordState(parentRoot, stateRoot, journal.getInsertedMerkleValues(),
+                journal.getReplacedMerkleValues());
+        }
+        journal.clear();
+    }
+
+    /**
+     * @return whether nodes of old states get deleted, i.e. whether replaced nodes need to be reported
+     */
+    public boolean isPruningEnabled() {
+        return pruner != null;
+    }
+
+    /**
+     * Marks a state as finalized, which moves the window of states kept by pruning.
+     *
+     * @param stateRoot the root of the finalized state
+     */
+    public void onStateFinalized(byte[] stateRoot) {
+        if (pruner != null) {
+            pruner.onFinalized(stateRoot);
+        }
     }
 
     /**
@@ -360,6 +1119,15 @@ public class TrieStorage {
      */
     private void saveTrieNodes(final List<InsertTrieNode> insertTrieNodes) {
         try {
+            if (pruner != null) {
+                // Node writes have to be reference counted
+                for (int from = 0; from < insertTrieNodes.size(); from += PRUNER_BATCH_SIZE) {
+                    List<InsertTrieNode> batch =
+                        insertTrieNodes.subList(from, Math.min(from + PRUNER_BATCH_SIZE, insertTrieNodes.size()));
+                    pruner.commit(toEntries(batch), merkleValues(batch));
+                }
+                return;
+            }
             for (InsertTrieNode trieNode : insertTrieNodes) {
                 insertTrieNodeStorage(trieNode);
             }
@@ -371,31 +1139,41 @@ public class TrieStorage {
     /**
      * Inserts trie node storage data into the key-value repository.
      * <p>
-     * The storage data is represented by a {@link TrieNodeData} object, which is serialized and saved to the repository.
+     * The storage data is represented by a {@link TrieNodeData} object, which is encoded with {@link TrieNodeDataCodec}
+     * and saved to the repository.
      *
      * @param trieNode The trie node whose storage data is to be inserted.
      */
     private void insertTrieNodeStorage(InsertTrieNode trieNode) {
-        String key = TRIE_NODE_PREFIX + new String(trieNode.merkleValue());
-        db.save(key, toTrieNodeData(trieNode));
+        db.save(TRIE_NODE_KEYS.key(trieNode.merkleValue()), TrieNodeDataCodec.encode(toTrieNodeData(trieNode)));
     }
 
     /**
      * Inserts trie nodes storage data into the key-value repository in a batch manner.
      * <p>
-     * The storage data is represented by a {@link TrieNodeData} object, which is serialized and saved to the repository.
+     * The storage data is represented by a {@link TrieNodeData} object, which is encoded with {@link TrieNodeDataCodec}
+     * and saved to the repository.
      *
      * @param insertTrieNodes The trie nodes whose storage data is to be inserted.
      */
     public void insertTrieNodeStorageBatch(List<InsertTrieNode> insertTrieNodes) {
-        Map<String, Object> nodesMap = new HashMap<>();
+        db.saveBatch(toEntries(insertTrieNodes));
+    }
+
+    private static List<Map.Entry<byte[], byte[]>> toEntries(List<InsertTrieNode> insertTrieNodes) {
+        List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>(insertTrieNodes.size());
 
         for (InsertTrieNode trieNode : insertTrieNodes) {
-            String key = TRIE_NODE_PREFIX + new String(trieNode.merkleValue());
-            nodesMap.put(key, toTrieNodeData(trieNode));
+            entries.add(Map.entry(
+                TRIE_NODE_KEYS.key(trieNode.merkleValue()),
+                TrieNodeDataCodec.encode(toTrieNodeData(trieNode))));
         }
 
-        db.saveBatch(nodesMap);
+        return entries;
+    }
+
+    private static List<byte[]> merkleValues(List<InsertTrieNode> insertTrieNodes) {
+        return insertTrieNodes.stream().map(InsertTrieNode::merkleValue).toList();
     }
 
     private static TrieNodeData toTrieNodeData(InsertTrieNode insertTrieNode) {
@@ -413,6 +1191,8 @@ public class TrieStorage {
     /**
      * Loads the trie structure from the database starting from a given root.
      *
+     * The nodes are kept in the compact representation, see {@link TrieStructure#compact()}.
+     *
      * @param trieRoot The Merkle root of the trie to load.
      * @return The reconstructed trie structure, or null if the root is not found.
      */
@@ -428,11 +1208,47 @@ public class TrieStorage {
             return null;
         }
 
-        TrieStructure<NodeData> trie = new TrieStructure<>();
+        TrieStructure<NodeData> trie = TrieStructure.compact();
         loadSubTrie(trie, rootNode, trieRoot, Nibbles.EMPTY);
+        // The merkle values of all loaded nodes are known, only later modifications need recalculating
+        trie.clearDirtyNodes();
         return trie;
     }
 
+    /**
+     * Creates a trie structure which fetches its nodes from the database only once they are accessed, so it takes
+     * memory in proportion to the part of the trie actually used. Untouched nodes keep the merkle values they were
+     * stored with, thus only modified nodes need recalculating.
+     *
+     * @param trieRoot The Merkle root of the trie, null or empty for an empty trie.
+     * @return The trie structure, holding nothing but the unloaded root upfront.
+     * @see TrieStructure#lazy(Object, NodeLoader)
+     */
+    public TrieStructure<NodeData> lazyLoadTrieStructure(@Nullable byte[] trieRoot) {
+        NodeData root = trieRoot == null || trieRoot.length == 0 ? null : new NodeData(null, trieRoot);
+        return TrieStructure.lazy(root, this::loadTrieNode);
+    }
+
+    private NodeLoader.LoadedNode<NodeData> loadTrieNode(NodeData unloaded) {
+        byte[] merkleValue = unloaded.getMerkleValue();
+        TrieNodeData nodeData = getTrieNodeFromMerkleValue(merkleValue);
+        if (nodeData == null) {
+            throw new IllegalStateException("No trie node found for merkle value "
+                + StringUtils.toHexWithPrefix(merkleValue));
+        }
+
+        byte[] value = nodeData.getValue() == null ? nodeData.getTrieRootRef() : nodeData.getValue();
+        List<NodeData> children = nodeData.getChildrenMerkleValues().stream()
+            .map(childMerkleValue -> childMerkleValue == null ? null : new NodeData(null, childMerkleValue))
+            .toList();
+        return new NodeLoader.LoadedNode<>(
+            nodeData.getPartialKey(),
+            !nodeData.isBranchNode(),
+            new NodeData(nodeData.isBranchNode() ? null : value, merkleValue),
+            StateVersion.fromInt(nodeData.getEntriesVersion()),
+            children);
+    }
+
     /**
      * Recursively loads the sub-trie from the database and adds it to the given trie structure.
      *
@@ -463,14 +1279,12 @@ public class TrieStorage {
 
         // Recursively load children and construct the trie
         List<byte[]> childrenMerkleValues = currentNodeData.getChildrenMerkleValues();
+        List<TrieNodeData> children = getChildren(currentNodeData);
         for (int i = 0; i < childrenMerkleValues.size(); i++) {
-            byte[] childMerkleValue = childrenMerkleValues.get(i);
-            if (childMerkleValue != null) {
-                TrieNodeData childNodeData = getTrieNodeFromMerkleValue(childMerkleValue);
-                if (childNodeData != null) {
-                    Nibbles childPath = currentPath.add(Nibble.fromInt(i)).addAll(childNodeData.getPartialKey());
-                    loadSubTrie(trie, childNodeData, childMerkleValue, childPath);
-                }
+            TrieNodeData childNodeData = children.get(i);
+            if (childNodeData != null) {
+                Nibbles childPath = currentPath.add(Nibble.fromInt(i)).addAll(childNodeData.getPartialKey());
+                loadSubTrie(trie, childNodeData, childrenMerkleValues.get(i), childPath);
             }
         }
     }
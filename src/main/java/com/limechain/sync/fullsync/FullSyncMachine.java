@@ -26,8 +26,6 @@ import com.limechain.sync.fullsync.inherents.InherentData;
 import com.limechain.trie.DiskTrieAccessor;
 import com.limechain.trie.TrieAccessor;
 import com.limechain.trie.TrieStructureFactory;
-import com.limechain.trie.structure.TrieStructure;
-import com.limechain.trie.structure.database.NodeData;
 import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.utils.scale.ScaleUtils;
 import com.limechain.utils.scale.readers.PairReader;
@@ -40,9 +38,7 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import java.math.BigInteger;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * FullSyncMachine is responsible for executing full synchronization of blocks.
@@ -51,6 +47,8 @@ import java.util.Map;
 @Getter
 @Log
 public class FullSyncMachine {
+    private static final ByteString RUNTIME_CODE_KEY = ByteString.copyFromUtf8(":code");
+
     private final Network networkService;
     private final SyncState syncState;
     private final BlockState blockState = BlockState.getInstance();
@@ -111,49 +109,62 @@ public class FullSyncMachine {
         blockState.setFullSyncFinished(true);
     }
 
-    private TrieStructure<NodeData> loadStateAtBlockFromPeer(Hash256 lastFinalizedBlockHash) {
+    /**
+     * Downloads the state at the given block and saves it page by page, so that only a single page of entries and the
+     * trie nodes yet to be completed are held in memory. Child tries are saved under their own roots.
+     */
+    private void loadStateAtBlockFromPeer(Hash256 lastFinalizedBlockHash) {
         log.info("Loading state at block from peer");
-        Map<ByteString, ByteString> kvps = makeStateRequest(lastFinalizedBlockHash);
+        // Values get hashed into the trie depending on the state version, so it's needed before any node is built
+        byte[] runtimeCode = requestRuntimeCode(lastFinalizedBlockHash);
+        StateVersion stateVersion = TrieStructureFactory.getRuntimeStateVersion(runtimeCode);
+
+        StateEntryIterator entries = new StateEntryIterator(
+            start -> makeStateRequest(lastFinalizedBlockHash, start),
+            () -> trieStorage.streamingTrieBuilder(stateVersion));
+        byte[] stateRoot = trieStorage.insertTrieStorage(entries, stateVersion);
+        if (stateRoot == null) {
+            throw new IllegalStateException("No state at block " + lastFinalizedBlockHash);
+        }
 
-        TrieStructure<NodeData> trieStructure = TrieStructureFactory.buildFromKVPs(kvps);
-        trieStorage.insertTrieStorage(trieStructure);
+        // The code requested upfront only came from a single response, while the one in the built trie is the one
+        // the runtime gets built from
+        byte[] builtRuntimeCode = new DiskTrieAccessor(trieStorage, stateRoot)
+            .findStorageValue(Nibbles.fromBytes(RUNTIME_CODE_KEY.toByteArray()))
+            .orElse(null);
+        if (!Arrays.equals(runtimeCode, builtRuntimeCode)) {
+            throw new IllegalStateException("Runtime code of the state at block " + lastFinalizedBlockHash
+                                            + " differs from the one its state version was taken from");
+        }
         log.info("State at block loaded from peer");
-
-        kvps.clear();
-        return trieStructure;
     }
 
-    private Map<ByteString, ByteString> makeStateRequest(Hash256 lastFinalizedBlockHash) {
-        Map<ByteString, ByteString> kvps = new HashMap<>();
-
-        ByteString start = ByteString.EMPTY;
+    /**
+     * Requests the runtime code separately from the rest of the state, as the state version it declares is needed
+     * upfront.
+     */
+    private byte[] requestRuntimeCode(Hash256 blockHash) {
+        // The first key after ":cod" is ":code", if present
+        SyncMessage.StateResponse response = makeStateRequest(blockHash, List.of(ByteString.copyFromUtf8(":cod")));
+        return response.getEntriesList().stream()
+            .filter(keyValueStateEntry -> keyValueStateEntry.getStateRoot().isEmpty())
+            .flatMap(keyValueStateEntry -> keyValueStateEntry.getEntriesList().stream())
+            .filter(entry -> entry.getKey().equals(RUNTIME_CODE_KEY))
+            .findFirst()
+            .map(entry -> entry.getValue().toByteArray())
+            .orElseThrow(() -> new IllegalStateException("No runtime code in the state at block " + blockHash));
+    }
 
+    private SyncMessage.StateResponse makeStateRequest(Hash256 blockHash, List<ByteString> start) {
         while (true) {
-            final SyncMessage.StateResponse response;
             try {
-                response = networkService.makeStateRequest(lastFinalizedBlockHash.toString(), start);
+                return networkService.makeStateRequest(blockHash.toString(), start);
             } catch (Exception ex) {
                 if (!this.networkService.updateCurrentSelectedPeerWithNextBootnode()) {
                     this.networkService.updateCurrentSelectedPeer();
                 }
-                continue;
-            }
-
-            for (SyncMessage.KeyValueStateEntry keyValueStateEntry : response.getEntriesList()) {
-                for (SyncMessage.StateEntry stateEntry : keyValueStateEntry.getEntriesList()) {
-                    kvps.put(stateEntry.getKey(), stateEntry.getValue());
-                }
-            }
-
-            SyncMessage.KeyValueStateEntry lastEntry = response.getEntriesList().getLast();
-            if (!lastEntry.getComplete()) {
-                start = lastEntry.getEntriesList().getLast().getKey();
-            } else {
-                break;
             }
         }
-
-        return kvps;
     }
 
     /**
@@ -243,6 +254,7 @@ public class FullSyncMachine {
             trieAccessor.persistChanges();
 
             BlockHeader blockHeader = block.getHeader();
+            trieStorage.onStateFinalized(blockHeader.getStateRoot().getBytes());
             try {
                 blockState.setFinalizedHash(blockHeader.getHash(), BigInteger.ZERO, BigInteger.ZERO);
             } catch (BlockNodeNotFoundException ignored) {
@@ -0,0 +1,173 @@
+package com.limechain.sync.fullsync;
+
+import com.google.protobuf.ByteString;
+import com.limechain.network.protocol.sync.pb.SyncMessage;
+import com.limechain.trie.StreamingTrieBuilder;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.utils.StringUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Iterates over the main trie entries of a state in ascending key order, requesting the next page of the state from
+ * peers when the current one runs out.
+ * <p>
+ * A page lists the main trie entries first, with an empty state root, followed by the entries of the child tries
+ * whose roots it reached, each under the child trie's root. The child trie entries are saved right away through
+ * their own builders, with their roots checked against the ones they are listed under. When a page ends inside a
+ * child trie, the next one is requested starting after both the key of the child trie root in the main trie and the
+ * last key within the child trie.
+ */
+final class StateEntryIterator implements Iterator<Map.Entry<Nibbles, byte[]>> {
+    private final Function<List<ByteString>, SyncMessage.StateResponse> stateRequester;
+    private final Supplier<StreamingTrieBuilder> childTrieBuilders;
+
+    private Iterator<SyncMessage.StateEntry> page = Collections.emptyIterator();
+    private List<ByteString> start = List.of(ByteString.EMPTY);
+    @Nullable
+    private Nibbles lastKey;
+    private boolean complete;
+
+    @Nullable
+    private ByteString childTrieRoot;
+    @Nullable
+    private StreamingTrieBuilder childTrieBuilder;
+    @Nullable
+    private Nibbles lastChildTrieKey;
+    /**
+     * Child tries with equal roots share their nodes, so each root only needs to be built once
+     */
+    private final Set<ByteString> savedChildTrieRoots = new HashSet<>();
+
+    /**
+     * @param stateRequester    requests the page of the state starting after the given keys
+     * @param childTrieBuilders creates the builders saving the child tries
+     */
+    StateEntryIterator(Function<List<ByteString>, SyncMessage.StateResponse> stateRequester,
+                       Supplier<StreamingTrieBuilder> childTrieBuilders) {
+        this.stateRequester = stateRequester;
+        this.childTrieBuilders = childTrieBuilders;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext() && !complete) {
+            requestNextPage();
+        }
+        return page.hasNext();
+    }
+
+    @Override
+    public Map.Entry<Nibbles, byte[]> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more state entries");
+        }
+        SyncMessage.StateEntry entry = page.next();
+        return Map.entry(Nibbles.fromBytes(entry.getKey().toByteArray()), entry.getValue().toByteArray());
+    }
+
+    private void requestNextPage() {
+        SyncMessage.StateResponse response = stateRequester.apply(start);
+        List<SyncMessage.KeyValueStateEntry> levels = response.getEntriesList();
+
+        List<SyncMessage.StateEntry> entries = new ArrayList<>();
+        for (SyncMessage.KeyValueStateEntry level : levels) {
+            if (level.getStateRoot().isEmpty()) {
+                // Peers may repeat the start key, while the trie builder needs strictly ascending keys
+                for (SyncMessage.StateEntry entry : level.getEntriesList()) {
+                    Nibbles key = Nibbles.fromBytes(entry.getKey().toByteArray());
+                    if (lastKey == null || key.compareTo(lastKey) > 0) {
+                        entries.add(entry);
+                        lastKey = key;
+                    }
+                }
+            } else {
+                addChildTrieEntries(level);
+            }
+        }
+
+        complete = levels.stream().allMatch(SyncMessage.KeyValueStateEntry::getComplete);
+        if (complete && childTrieRoot != null) {
+            throw new IllegalStateException("State ended inside child trie " + toHex(childTrieRoot));
+        }
+        List<ByteString> nextStart = nextStart(levels);
+        if (!complete && nextStart.equals(start)) {
+            throw new IllegalStateException("State response doesn't get past "
+                                            + start.stream().map(StateEntryIterator::toHex).toList());
+        }
+
+        start = nextStart;
+        page = entries.iterator();
+    }
+
+    /**
+     * Adds the entries of a child trie to its builder, saving the child trie once it's complete.
+     */
+    private void addChildTrieEntries(SyncMessage.KeyValueStateEntry level) {
+        ByteString root = level.getStateRoot();
+        if (!root.equals(childTrieRoot)) {
+            if (childTrieRoot != null) {
+                throw new IllegalStateException("Child trie " + toHex(childTrieRoot) + " ended before "
+                                                + toHex(root) + " started");
+            }
+            if (savedChildTrieRoots.contains(root)) {
+                return;
+            }
+            childTrieRoot = root;
+            childTrieBuilder = childTrieBuilders.get();
+            lastChildTrieKey = null;
+        }
+
+        for (SyncMessage.StateEntry entry : level.getEntriesList()) {
+            Nibbles key = Nibbles.fromBytes(entry.getKey().toByteArray());
+            if (lastChildTrieKey == null || key.compareTo(lastChildTrieKey) > 0) {
+                childTrieBuilder.add(key, entry.getValue().toByteArray());
+                lastChildTrieKey = key;
+            }
+        }
+
+        if (level.getComplete()) {
+            byte[] builtRoot = childTrieBuilder.finish();
+            if (!Arrays.equals(builtRoot, root.toByteArray())) {
+                String builtRootHex = builtRoot == null ? "none" : StringUtils.toHexWithPrefix(builtRoot);
+                throw new IllegalStateException("Child trie " + toHex(root) + " was built with root " + builtRootHex);
+            }
+            savedChildTrieRoots.add(root);
+            childTrieRoot = null;
+            childTrieBuilder = null;
+            lastChildTrieKey = null;
+        }
+    }
+
+    /**
+     * The next page starts after the last key of each incomplete level. A page within the child trie the previous
+     * one ended in has no main trie entries, in which case the position in the main trie stays the same.
+     */
+    private List<ByteString> nextStart(List<SyncMessage.KeyValueStateEntry> levels) {
+        List<ByteString> nextStart = new ArrayList<>(2);
+        if (start.size() == 2 && !levels.isEmpty() && levels.getFirst().getEntriesList().isEmpty()) {
+            nextStart.add(start.getFirst());
+        }
+        for (SyncMessage.KeyValueStateEntry level : levels) {
+            if (!level.getComplete() && level.getEntriesCount() > 0) {
+                nextStart.add(level.getEntriesList().getLast().getKey());
+            }
+        }
+        return nextStart;
+    }
+
+    private static String toHex(ByteString bytes) {
+        return StringUtils.toHexWithPrefix(bytes.toByteArray());
+    }
+}
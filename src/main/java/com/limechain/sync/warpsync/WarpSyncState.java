@@ -2,7 +2,7 @@ package com.limechain.sync.warpsync;
 
 import com.limechain.chain.lightsyncstate.Authority;
 import com.limechain.exception.global.RuntimeCodeException;
-import com.limechain.exception.trie.TrieDecoderException;
+import com.limechain.exception.trie.NodeDecodingException;
 import com.limechain.network.Network;
 import com.limechain.network.protocol.blockannounce.messages.BlockAnnounceMessage;
 import com.limechain.network.protocol.grandpa.messages.commit.CommitMessage;
@@ -27,8 +27,7 @@ import com.limechain.sync.warpsync.dto.AuthoritySetChange;
 import com.limechain.sync.warpsync.dto.GrandpaDigestMessageType;
 import com.limechain.sync.warpsync.scale.ForcedChangeReader;
 import com.limechain.sync.warpsync.scale.ScheduledChangeReader;
-import com.limechain.trie.decoded.Trie;
-import com.limechain.trie.decoded.TrieVerifier;
+import com.limechain.trie.decoded.TrieProof;
 import com.limechain.utils.LittleEndianUtils;
 import com.limechain.utils.StringUtils;
 import io.emeraldpay.polkaj.scale.ScaleCodecReader;
@@ -175,16 +174,13 @@ public class WarpSyncState {
      */
     public byte[] buildRuntimeCode(byte[][] decodedProofs, Hash256 stateRoot) {
         try {
-            Trie trie = TrieVerifier.buildTrie(decodedProofs, stateRoot.getBytes());
-            var code = trie.get(CODE_KEY_BYTES);
-            if (code == null) {
-                throw new RuntimeCodeException("Couldn't retrieve runtime code from trie");
-            }
+            byte[] code = TrieProof.of(decodedProofs).get(stateRoot.getBytes(), CODE_KEY_BYTES)
+                .orElseThrow(() -> new RuntimeCodeException("Couldn't retrieve runtime code from trie"));
             //TODO Heap pages should be fetched from out storage
             log.log(Level.INFO, "Runtime and heap pages downloaded");
             return code;
 
-        } catch (TrieDecoderException e) {
+        } catch (NodeDecodingException | IllegalStateException e) {
             throw new RuntimeCodeException("Couldn't build trie from proofs list: " + e.getMessage());
         }
     }
@@ -14,7 +14,7 @@ public final class DiskChildTrieAccessor extends DiskTrieAccessor {
                                  DiskTrieAccessor parentTrie,
                                  Nibbles trieKey,
                                  byte[] merkleRoot) {
-        super(trieStorage, merkleRoot);
+        super(trieStorage, merkleRoot, true);
         this.parentTrie = parentTrie;
         this.childTrieKey = trieKey;
     }
@@ -24,4 +24,10 @@ public final class DiskChildTrieAccessor extends DiskTrieAccessor {
         super.persistChanges();
         parentTrie.upsertNode(childTrieKey, mainTrieRoot);
     }
+
+    @Override
+    protected void recordPersistedState(byte[] parentRoot, byte[] stateRoot) {
+        // Child trie nodes are journaled with the state of the main trie
+        parentTrie.nodeJournal.takeFrom(nodeJournal);
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.limechain.storage.DeleteByPrefixResult;
 import com.limechain.storage.trie.TrieStorage;
 import com.limechain.trie.structure.nibble.Nibbles;
 
+import java.util.List;
 import java.util.Optional;
 
 public sealed class DiskTrieAccessor extends TrieAccessor permits DiskChildTrieAccessor {
@@ -12,9 +13,13 @@ public sealed class DiskTrieAccessor extends TrieAccessor permits DiskChildTrieA
     private final DiskTrieService diskTrieService;
 
     public DiskTrieAccessor(TrieStorage trieStorage, byte[] mainTrieRoot) {
+        this(trieStorage, mainTrieRoot, false);
+    }
+
+    protected DiskTrieAccessor(TrieStorage trieStorage, byte[] mainTrieRoot, boolean childTrie) {
         super(trieStorage, mainTrieRoot);
 
-        this.diskTrieService = new DiskTrieService(trieStorage, mainTrieRoot);
+        this.diskTrieService = new DiskTrieService(trieStorage, mainTrieRoot, childTrie);
     }
 
     @Override
@@ -45,7 +50,9 @@ public sealed class DiskTrieAccessor extends TrieAccessor permits DiskChildTrieA
     @Override
     public void persistChanges() {
         super.persistChanges();
-        diskTrieService.persistChanges();
+        byte[] parentRoot = diskTrieService.getPersistedMerkleRoot();
+        diskTrieService.persistChanges(nodeJournal);
+        recordPersistedState(parentRoot, diskTrieService.getPersistedMerkleRoot());
     }
 
     @Override
@@ -58,6 +65,38 @@ public sealed class DiskTrieAccessor extends TrieAccessor permits DiskChildTrieA
         return new DiskChildTrieAccessor(trieStorage, this, trieKey, merkleRoot);
     }
 
+    @Override
+    protected void startTransactionLayer() {
+        diskTrieService.startTransaction();
+    }
+
+    @Override
+    protected void rollbackTransactionLayer() {
+        diskTrieService.rollbackTransaction();
+    }
+
+    @Override
+    protected void commitTransactionLayer() {
+        diskTrieService.commitTransaction();
+    }
+
+    /**
+     * Starts recording the nodes of this trie read from disk into a proof, see
+     * {@link DiskTrieService#startProofRecording()}.
+     */
+    public void startProofRecording() {
+        diskTrieService.startProofRecording();
+    }
+
+    /**
+     * Stops recording a proof.
+     *
+     * @return the encoded nodes read since the recording was started
+     */
+    public List<byte[]> stopProofRecording() {
+        return diskTrieService.stopProofRecording();
+    }
+
     public byte[] getMerkleRoot(StateVersion version) {
         if (version != null && !currentStateVersion.equals(version)) {
             throw new IllegalStateException("Trie state version must match runtime call one.");
@@ -1,14 +1,14 @@
 package com.limechain.trie;
 
-import com.google.common.primitives.Bytes;
 import com.limechain.runtime.version.StateVersion;
 import com.limechain.storage.DeleteByPrefixResult;
+import com.limechain.storage.trie.NodeJournal;
 import com.limechain.storage.trie.TrieStorage;
 import com.limechain.trie.cache.TrieChanges;
 import com.limechain.trie.cache.node.PendingInsertUpdate;
 import com.limechain.trie.cache.node.PendingRemove;
 import com.limechain.trie.cache.node.PendingTrieNodeChange;
-import com.limechain.trie.dto.node.DecodedNode;
+import com.limechain.trie.dto.node.NodeEncoder;
 import com.limechain.trie.dto.node.NodeInsertionData;
 import com.limechain.trie.dto.node.StorageValue;
 import com.limechain.trie.dto.node.TraversedNode;
@@ -44,12 +44,32 @@ public class DiskTrieService {
         "Traversal result cannot be unfinished at this point in the logic";
     private final TrieStorage trieStorage;
     private final TrieChanges trieChanges;
+    /**
+     * Whether this is a child trie, whose changes are not part of the flat state table.
+     */
+    private final boolean childTrie;
 
     private byte[] trieMerkleRoot;
+    /**
+     * The root of the trie on disk, i.e. without the changes in the cache.
+     */
+    @Getter
+    private byte[] persistedMerkleRoot;
+    /**
+     * Records the persisted nodes read while proof recording is on, null otherwise.
+     */
+    @Nullable
+    private ProofRecorder proofRecorder;
 
     public DiskTrieService(TrieStorage trieStorage, byte[] trieMerkleRoot) {
+        this(trieStorage, trieMerkleRoot, false);
+    }
+
+    public DiskTrieService(TrieStorage trieStorage, byte[] trieMerkleRoot, boolean childTrie) {
         this.trieStorage = trieStorage;
+        this.childTrie = childTrie;
         this.trieMerkleRoot = trieMerkleRoot;
+        this.persistedMerkleRoot = trieMerkleRoot;
 
         this.trieChanges = TrieChanges.empty();
     }
@@ -58,7 +78,8 @@ public class DiskTrieService {
      * This method checks the cache for an existing {@link PendingTrieNodeChange}. If a {@link PendingInsertUpdate} is
      * found returns its storage value, otherwise a {@link PendingRemove} means that node at provided key has been
      * deleted in the current block.<br>
-     * If no entry is found in cache traverses the disk in search of specified key.
+     * If no entry is found in cache reads the flat state table, or traverses the disk in search of specified key if
+     * the table doesn't reflect the persisted root or a proof is being recorded.
      *
      * @param key the key path for the sought storage value.
      * @return An {@link Optional} with the found storage value or an empty optional otherwise.
@@ -69,9 +90,15 @@ public class DiskTrieService {
                 pendingTrieNodeChange instanceof PendingInsertUpdate update
                     ? Optional.ofNullable(update.value())
                     : Optional.empty())
-            .orElseGet(() -> traverseTrie(trieMerkleRoot, key) instanceof TraversalResult.Found found
-                ? Optional.ofNullable(found.getFoundNode().getValue())
-                : Optional.empty());
+            .orElseGet(() -> proofRecorder != null
+                ? traverseForStorageValue(key)
+                : trieStorage.findValue(persistedMerkleRoot, key, () -> traverseForStorageValue(key)));
+    }
+
+    private Optional<byte[]> traverseForStorageValue(Nibbles key) {
+        return traverseTrie(trieMerkleRoot, key) instanceof TraversalResult.Found found
+            ? Optional.ofNullable(found.getFoundNode().getValue())
+            : Optional.empty();
     }
 
     /**
@@ -129,7 +156,7 @@ public class DiskTrieService {
             TrieNodeData cachedChild = getCachedChildAtIndex(currentKey, nibble);
             TrieNodeData childNode = cachedChild != null
                 ? cachedChild
-                : trieStorage.getTrieNodeFromMerkleValue(childMerkle);
+                : loadNode(childMerkle);
 
             Nibbles nextPath = currentKey.add(nibble).addAll(childNode.getPartialKey());
             Optional<Nibbles> result = findNextKey(prefix, nextPath, childNode);
@@ -194,7 +221,7 @@ public class DiskTrieService {
      * @return A {@link TreeMap} of the newly created node and its updated parent/children if any.
      */
     private TreeMap<Nibbles, PendingInsertUpdate> executeInsert(byte[] merkleRoot, NodeInsertionData insertionData) {
-        TrieNodeData rootNode = trieStorage.getTrieNodeFromMerkleValue(merkleRoot);
+        TrieNodeData rootNode = loadNode(merkleRoot);
 
         // If trie is empty insert the newly created node as root.
         if (rootNode == null) {
@@ -262,7 +289,7 @@ public class DiskTrieService {
         // If the node that shares the key path is not in cache we check the disk.
         TrieNodeData existingNode = existingCachedNode != null
             ? existingCachedNode
-            : trieStorage.getTrieNodeFromMerkleValue(existingNodeMerkle);
+            : loadNode(existingNodeMerkle);
 
         Nibbles existingNodePartialKey = existingNode.getPartialKey();
         Nibbles newNodePartialKey = insertionData.getKey().drop(ancestorKeySize + 1);
@@ -551,7 +578,7 @@ public class DiskTrieService {
         TrieNodeData cachedChild = getCachedChildAtIndex(parentFullKey, indexInParent);
         TrieNodeData childNode = cachedChild != null
             ? cachedChild
-            : trieStorage.getTrieNodeFromMerkleValue(childMerkle);
+            : loadNode(childMerkle);
         Nibbles foundNodeFullKey = parentFullKey.add(indexInParent).addAll(childNode.getPartialKey());
         List<byte[]> foundNodeChildrenCopy = new ArrayList<>(childNode.getChildrenMerkleValues());
 
@@ -729,7 +756,7 @@ public class DiskTrieService {
                 TrieNodeData cachedChild = getCachedChildAtIndex(node.getFullKey(), indexInParent);
                 TrieNodeData child = cachedChild != null
                     ? cachedChild
-                    : trieStorage.getTrieNodeFromMerkleValue(childMerkle);
+                    : loadNode(childMerkle);
                 Nibbles mergedPartialKey = node.getPartialKey()
                     .add(indexInParent)
                     .addAll(child.getPartialKey());
@@ -751,18 +778,131 @@ public class DiskTrieService {
     }
 
     /**
-     * This method persists the changes from the cache layer to the disk. It also clears the cache.
+     * This method persists the changes from the cache layer to the disk and moves the flat state table forward, unless
+     * this is a child trie.
+     * It also clears the cache.
+     *
+     * @param journal receives the nodes inserted and replaced by the changes, if pruning is enabled
      */
-    public void persistChanges() {
+    public void persistChanges(NodeJournal journal) {
         Map<Nibbles, PendingInsertUpdate> updates = trieChanges.getChanges().entrySet().stream()
             .filter(e -> e.getValue() instanceof PendingInsertUpdate)
             .collect(Collectors.toMap(Map.Entry::getKey, e -> (PendingInsertUpdate) e.getValue()));
 
-        trieStorage.updateTrieStorage(updates);
+        byte[] newMerkleRoot = getMerkleRoot();
+        List<byte[]> replacedMerkleValues = trieStorage.isPruningEnabled() && !trieChanges.isCacheEmpty()
+            ? collectReplacedMerkleValues()
+            : List.of();
+        trieStorage.updateTrieStorage(updates, replacedMerkleValues, journal);
+
+        // The flat state table holds the main trie only
+        if (!childTrie && !trieChanges.isCacheEmpty()) {
+            // Null values mark removed keys, so the map has to allow them
+            Map<Nibbles, byte[]> values = new HashMap<>();
+            trieChanges.getChanges().forEach((key, change) -> values.put(key,
+                change instanceof PendingInsertUpdate update ? update.value() : null));
+            trieStorage.updateFlatState(persistedMerkleRoot, newMerkleRoot, values);
+        }
+        persistedMerkleRoot = newMerkleRoot;
 
         trieChanges.clear();
     }
 
+    /**
+     * Starts a nested transaction over the cached changes.
+     */
+    public void startTransaction() {
+        trieChanges.startTransaction();
+    }
+
+    /**
+     * Discards the changes made since the innermost open transaction was started.
+     */
+    public void rollbackTransaction() {
+        trieChanges.rollbackTransaction();
+        trieMerkleRoot = trieChanges.getRoot()
+            .map(PendingInsertUpdate::newMerkleValue)
+            .orElse(persistedMerkleRoot);
+    }
+
+    /**
+     * Keeps the changes made in the innermost open transaction as part of the enclosing one, if any.
+     */
+    public void commitTransaction() {
+        trieChanges.commitTransaction();
+    }
+
+    /**
+     * Starts recording the persisted nodes read by the following operations, e.g. during a runtime call, into a proof
+     * of the reads against the persisted root. Changes have to be recorded from the start, as the nodes above a change
+     * are read from the cache afterwards.
+     */
+    public void startProofRecording() {
+        proofRecorder = new ProofRecorder();
+    }
+
+    /**
+     * Stops recording a proof.
+     *
+     * @return the encoded nodes read since the recording was started, each one once
+     * @throws IllegalStateException if no proof is being recorded
+     */
+    public List<byte[]> stopProofRecording() {
+        if (proofRecorder == null) {
+            throw new IllegalStateException("No proof is being recorded");
+        }
+        List<byte[]> proof = proofRecorder.getProof();
+        proofRecorder = null;
+        return proof;
+    }
+
+    /**
+     * Loads a persisted node, recording it if a proof is being recorded.
+     */
+    @Nullable
+    private TrieNodeData loadNode(byte[] merkleValue) {
+        TrieNodeData node = trieStorage.getTrieNodeFromMerkleValue(merkleValue);
+        if (proofRecorder != null && node != null) {
+            proofRecorder.record(merkleValue, node);
+        }
+        return node;
+    }
+
+    /**
+     * Collects the merkle values of the persisted nodes replaced by the changes in the cache. A persisted node is
+     * replaced if there's a change at its full key, and only subtrees containing changes are visited.
+     *
+     * @return the merkle values of the replaced nodes.
+     */
+    private List<byte[]> collectReplacedMerkleValues() {
+        List<byte[]> replaced = new ArrayList<>();
+        collectReplacedMerkleValues(persistedMerkleRoot, Nibbles.EMPTY, replaced);
+        return replaced;
+    }
+
+    private void collectReplacedMerkleValues(byte[] merkleValue, Nibbles keyBeforePartialKey, List<byte[]> replaced) {
+        TrieNodeData node = trieStorage.getTrieNodeFromMerkleValue(merkleValue);
+        if (node == null) {
+            return;
+        }
+
+        Nibbles fullKey = keyBeforePartialKey.addAll(node.getPartialKey());
+        if (!trieChanges.isKeyInCache(fullKey)) {
+            return;
+        }
+        replaced.add(merkleValue);
+
+        List<byte[]> childrenMerkleValues = node.getChildrenMerkleValues();
+        for (Nibble nibble : Nibbles.ALL) {
+            byte[] childMerkleValue = childrenMerkleValues.get(nibble.asInt());
+            Nibbles childKeyPrefix = fullKey.add(nibble);
+            Nibbles firstChange = trieChanges.getChanges().ceilingKey(childKeyPrefix);
+            if (childMerkleValue != null && firstChange != null && firstChange.startsWith(childKeyPrefix)) {
+                collectReplacedMerkleValues(childMerkleValue, childKeyPrefix, replaced);
+            }
+        }
+    }
+
     /**
      * Returns the current calculated trie root merkle.
      *
@@ -876,7 +1016,7 @@ public class DiskTrieService {
     private TraversalResult traverseDisk(byte[] merkleRoot,
                                          Nibbles key,
                                          Nibbles ancestorKeyWithChildIndex) {
-        TrieNodeData rootNode = trieStorage.getTrieNodeFromMerkleValue(merkleRoot);
+        TrieNodeData rootNode = loadNode(merkleRoot);
 
         if (rootNode == null) {
             return new TraversalResult.NotFound(new ArrayList<>());
@@ -888,7 +1028,7 @@ public class DiskTrieService {
         Iterator<Nibble> keyIter = key.drop(currentKey.size()).iterator();
 
         while (true) {
-            TrieNodeData currentNode = trieStorage.getTrieNodeFromMerkleValue(currentMerkleValue);
+            TrieNodeData currentNode = loadNode(currentMerkleValue);
 
             // First, we must remove `currentNode`'s partial key from `key`, making sure that they
             // match.
@@ -966,19 +1106,12 @@ public class DiskTrieService {
                                                              StateVersion stateVersion,
                                                              List<byte[]> childrenMerkleValues,
                                                              boolean isRoot) {
-        List<List<Byte>> childrenMerkles = childrenMerkleValues.stream()
-            .map(Optional::ofNullable)
-            .map(o -> o
-                .map(Bytes::asList)
-                .orElse(null))
-            .toList();
-
-        DecodedNode<List<Byte>> decoded = new DecodedNode<>(
-            childrenMerkles,
+        byte[] merkleValue = NodeEncoder.forCurrentThread().calculateMerkleValue(
+            childrenMerkleValues,
             partialKey,
-            constructStorageValue(value, stateVersion));
-
-        byte[] merkleValue = decoded.calculateMerkleValue(HashUtils::hashWithBlake2b, isRoot);
+            constructStorageValue(value, stateVersion),
+            HashUtils::hashWithBlake2b,
+            isRoot);
 
         return new PendingInsertUpdate(merkleValue, childrenMerkleValues, partialKey, stateVersion, value);
     }
@@ -29,4 +29,10 @@ public final class MemoryChildTrieAccessor extends MemoryTrieAccessor {
         parentTrie.upsertNode(childTrieKey, mainTrieRoot);
     }
 
+    @Override
+    protected void recordPersistedState(byte[] parentRoot, byte[] stateRoot) {
+        // Child trie nodes are journaled with the state of the main trie
+        parentTrie.nodeJournal.takeFrom(nodeJournal);
+    }
+
 }
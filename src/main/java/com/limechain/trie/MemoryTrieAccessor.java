@@ -3,6 +3,7 @@ package com.limechain.trie;
 import com.limechain.runtime.version.StateVersion;
 import com.limechain.storage.DeleteByPrefixResult;
 import com.limechain.storage.trie.TrieStorage;
+import com.limechain.trie.cache.TransactionJournal;
 import com.limechain.trie.structure.NodeHandle;
 import com.limechain.trie.structure.TrieNodeIndex;
 import com.limechain.trie.structure.TrieStructure;
@@ -21,28 +22,41 @@ public abstract sealed class MemoryTrieAccessor extends TrieAccessor
 
     private final TrieStructure<NodeData> initialTrie;
     private List<TrieNodeIndex> updates;
+    /**
+     * The root of the stored state the trie was loaded from, i.e. without the changes made since.
+     */
+    private byte[] persistedMerkleRoot;
+    /**
+     * The storage entries keys had before being modified in the open transactions, {@code null} for absent keys.
+     */
+    private final TransactionJournal<StorageEntry> journal = new TransactionJournal<>();
 
     MemoryTrieAccessor(TrieStorage trieStorage, byte[] mainTrieRoot) {
         super(trieStorage, mainTrieRoot);
 
         this.updates = new ArrayList<>();
-        this.initialTrie = trieStorage.loadTrieStructure(mainTrieRoot);
+        this.persistedMerkleRoot = mainTrieRoot;
+        // Nodes are fetched as they get accessed, so only the parts of the state a block touches are kept in memory
+        this.initialTrie = trieStorage.lazyLoadTrieStructure(mainTrieRoot);
     }
 
     MemoryTrieAccessor(TrieStorage trieStorage, byte[] mainTrieRoot, TrieStructure<NodeData> trieStructure) {
         super(trieStorage, mainTrieRoot);
 
+        this.persistedMerkleRoot = mainTrieRoot;
         this.initialTrie = trieStructure;
     }
 
     @Override
     public void upsertNode(Nibbles key, byte[] value) {
+        recordStorageEntry(key);
         NodeData nodeData = new NodeData(value);
         initialTrie.insertNode(key, nodeData, currentStateVersion);
     }
 
     @Override
     public void deleteNode(Nibbles key) {
+        recordStorageEntry(key);
         initialTrie.deleteStorageNodeAt(key);
     }
 
@@ -60,14 +74,20 @@ public abstract sealed class MemoryTrieAccessor extends TrieAccessor
         for (Nibble nibble : Nibbles.ALL) {
             nodeHandle.getChild(nibble)
                 .map(NodeHandle::getNodeIndex)
-                .ifPresent(childIndex -> initialTrie.deleteNodesRecursively(childIndex, limit, deleted));
+                .ifPresent(childIndex -> initialTrie.deleteNodesRecursively(childIndex, limit, deleted,
+                    this::recordStorageEntry));
         }
 
         if (limit != null && deleted.get() >= limit) {
+            if (!nodeHandle.hasStorageValue()) {
+                // Merges or removes the node, if the deletion left it with less than two children
+                initialTrie.deleteInternalNodeAt(nodeHandle.getFullKey());
+            }
             return new DeleteByPrefixResult(deleted.get(), false);
         }
 
         if (nodeHandle.hasStorageValue()) {
+            recordStorageEntry(nodeHandle);
             initialTrie.deleteStorageNodeAt(nodeHandle.getFullKey());
             deleted.incrementAndGet();
         } else {
@@ -85,37 +105,61 @@ public abstract sealed class MemoryTrieAccessor extends TrieAccessor
 
     @Override
     public Optional<Nibbles> getNextKey(Nibbles key) {
-        NodeHandle<NodeData> rootHandle = initialTrie.getRootNode().orElse(null);
-        return findNextKey(rootHandle, key, Nibbles.EMPTY);
+        TrieCursor<NodeHandle<NodeData>> cursor = TrieCursor.of(initialTrie);
+        cursor.seek(Nibbles.EMPTY, key);
+        return cursor.hasNext() ? Optional.of(cursor.next()) : Optional.empty();
     }
 
-    private Optional<Nibbles> findNextKey(NodeHandle<NodeData> node, Nibbles prefix, Nibbles currentPath) {
-        if (node == null) {
-            return Optional.empty();
-        }
-
-        // If the current node is a leaf and the fullPath is greater than the prefix, it's a candidate.
-        if (node.getUserData() != null && node.getUserData().getValue() != null && currentPath.compareTo(prefix) > 0) {
-            return Optional.of(currentPath);
-        }
+    @Override
+    protected void startTransactionLayer() {
+        journal.start();
+    }
 
-        for (Nibble nibble : Nibbles.ALL) {
-            NodeHandle<NodeData> childNode = node.getChild(nibble).orElse(null);
-            if (childNode == null) continue;
-            Nibbles nextPath = currentPath.add(nibble).addAll(childNode.getPartialKey());
-            Optional<Nibbles> result = findNextKey(childNode, prefix, nextPath);
-            if (result.isPresent()) {
-                return result;
+    @Override
+    protected void rollbackTransactionLayer() {
+        journal.rollback((key, entry) -> {
+            if (entry == null) {
+                initialTrie.deleteStorageNodeAt(key);
+            } else {
+                // Overwriting a node keeps its state version, so it's restored separately
+                initialTrie.insertNode(key, new NodeData(entry.value()), entry.stateVersion());
+                initialTrie.existingNode(key).orElseThrow().setStateVersion(entry.stateVersion());
             }
+        });
+    }
+
+    @Override
+    protected void commitTransactionLayer() {
+        journal.commit();
+    }
+
+    private void recordStorageEntry(Nibbles key) {
+        journal.record(key, () -> initialTrie.existingNode(key)
+            .filter(NodeHandle::hasStorageValue)
+            .map(MemoryTrieAccessor::toStorageEntry)
+            .orElse(null));
+    }
+
+    private void recordStorageEntry(NodeHandle<NodeData> storageNode) {
+        if (journal.isActive()) {
+            journal.record(storageNode.getFullKey(), () -> toStorageEntry(storageNode));
         }
+    }
+
+    private static StorageEntry toStorageEntry(NodeHandle<NodeData> storageNode) {
+        return new StorageEntry(storageNode.getUserData().getValue(),
+            StateVersion.fromInt(storageNode.getStateVersion()));
+    }
 
-        return Optional.empty();
+    private record StorageEntry(byte[] value, StateVersion stateVersion) {
     }
 
     @Override
     public void persistChanges() {
         super.persistChanges();
-        trieStorage.updateTrieStorage(initialTrie, updates);
+        trieStorage.updateTrieStorage(initialTrie, updates, persistedMerkleRoot, mainTrieRoot, nodeJournal);
+        recordPersistedState(persistedMerkleRoot, mainTrieRoot);
+        persistedMerkleRoot = mainTrieRoot;
     }
 
     @Override
@@ -0,0 +1,64 @@
+package com.limechain.trie;
+
+import com.google.protobuf.ByteString;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.StorageValue;
+import com.limechain.trie.structure.node.TrieNodeData;
+import com.limechain.utils.HashUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the encoded nodes touched while reading a trie into a merkle proof of the reads.
+ * <p>
+ * Every node is recorded once, however many reads pass through it, so the proof of a batch of keys shares their
+ * common upper nodes. Nodes inlined into their parent, i.e. with a merkle value shorter than a hash, are part of the
+ * parent's encoding and aren't recorded separately. Values hashed into their node (state version 1) are added as
+ * proof entries of their own, as the proof has to contain them.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class ProofRecorder {
+    private static final int HASH_LENGTH = 32;
+
+    /**
+     * The hashes of the recorded nodes and values.
+     */
+    private final Set<ByteString> recordedHashes = new HashSet<>();
+    private final List<byte[]> proof = new ArrayList<>();
+
+    /**
+     * Records a node read from the trie.
+     *
+     * @param merkleValue the merkle value the node was loaded by
+     * @param node        the node
+     */
+    public void record(byte[] merkleValue, TrieNodeData node) {
+        if (merkleValue.length < HASH_LENGTH || !recordedHashes.add(ByteString.copyFrom(merkleValue))) {
+            return;
+        }
+
+        // The values of child trie roots are stored as references
+        byte[] value = node.getValue() != null ? node.getValue() : node.getTrieRootRef();
+        StorageValue storageValue = TrieStructureFactory.constructStorageValue(value,
+            StateVersion.fromInt(node.getEntriesVersion()), HashUtils::hashWithBlake2b);
+        // Values are keyed by their hash in the proof, just like nodes, so equal values are recorded once as well
+        if (storageValue != null && storageValue.isHashed()
+            && recordedHashes.add(ByteString.copyFrom(storageValue.value()))) {
+            proof.add(value);
+        }
+        proof.add(NodeEncoder.forCurrentThread()
+            .encode(node.getChildrenMerkleValues(), node.getPartialKey(), storageValue));
+    }
+
+    /**
+     * @return the encoded proof nodes recorded so far, in the order they were first read
+     */
+    public List<byte[]> getProof() {
+        return List.copyOf(proof);
+    }
+}
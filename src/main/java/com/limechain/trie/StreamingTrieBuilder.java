@@ -0,0 +1,207 @@
+package com.limechain.trie;
+
+import com.limechain.exception.trie.TrieBuildException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.dto.node.DecodedNode;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.RangeHashFunction;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.node.InsertTrieNode;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Builds a trie from key-value pairs given in ascending key order, without ever holding the whole trie in memory.
+ * <p>
+ * Only the nodes on the path to the last added key are kept. Once a key diverges from that path, the subtrees it
+ * moved past can't change anymore, so their nodes get their merkle values calculated and are handed to the sink in
+ * batches. Memory thus depends on the key length and the batch size, not on the number of entries.
+ * <p>
+ * Without a sink, only the merkle value of the root gets calculated, e.g. for the trie root host functions.
+ */
+public class StreamingTrieBuilder {
+    private static final Nibbles CHILD_STORAGE_PREFIX = Nibbles.fromBytes(":child_storage:".getBytes());
+
+    /**
+     * A node on the path to the last added key, whose subtree is still being built.
+     */
+    private static final class Frame {
+        private final Nibbles key;
+        @Nullable
+        private final byte[] value;
+        private final byte[][] childrenMerkleValues = new byte[DecodedNode.CHILDREN_COUNT][];
+
+        private Frame(Nibbles key, @Nullable byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final StateVersion stateVersion;
+    private final RangeHashFunction hashFunction;
+    /**
+     * The hash function of whole large values, created once rather than per node
+     */
+    private final UnaryOperator<byte[]> valueHashFunction;
+    private final int batchSize;
+    @Nullable
+    private final Consumer<List<InsertTrieNode>> sink;
+    /**
+     * The open nodes, each one's key being a prefix of the key of the one above it.
+     */
+    private final Deque<Frame> path = new ArrayDeque<>();
+    private List<InsertTrieNode> batch = new ArrayList<>();
+    @Nullable
+    private Nibbles lastKey;
+    private boolean finished;
+
+    /**
+     * Creates a builder which only calculates the merkle value of the root, without keeping any completed nodes.
+     *
+     * @param stateVersion the state version of all nodes
+     * @param hashFunction the hash function used for calculating merkle values and hashing large values
+     */
+    public StreamingTrieBuilder(StateVersion stateVersion, RangeHashFunction hashFunction) {
+        this.stateVersion = stateVersion;
+        this.hashFunction = hashFunction;
+        this.valueHashFunction = hashFunction::hash;
+        this.batchSize = 0;
+        this.sink = null;
+    }
+
+    /**
+     * @param stateVersion the state version of all nodes
+     * @param hashFunction the hash function used for calculating merkle values and hashing large values
+     * @param batchSize    the number of completed nodes to hand to the sink at once
+     * @param sink         receives the completed nodes, children before their parents
+     */
+    public StreamingTrieBuilder(StateVersion stateVersion, RangeHashFunction hashFunction, int batchSize,
+                                Consumer<List<InsertTrieNode>> sink) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.stateVersion = stateVersion;
+        this.hashFunction = hashFunction;
+        this.valueHashFunction = hashFunction::hash;
+        this.batchSize = batchSize;
+        this.sink = sink;
+    }
+
+    /**
+     * Adds a key-value pair, completing the nodes of the keys before it which can't get any more descendants.
+     *
+     * @param key   the key, greater than all keys added so far
+     * @param value the value at the key
+     * @throws TrieBuildException if the key doesn't come after the last added one
+     */
+    public void add(Nibbles key, byte[] value) {
+        if (finished) {
+            throw new IllegalStateException("Trie is already built.");
+        }
+        if (lastKey != null && key.compareTo(lastKey) <= 0) {
+            throw new TrieBuildException("Keys must be added in ascending order, got " + key + " after " + lastKey);
+        }
+        lastKey = key;
+
+        if (!path.isEmpty() && !key.startsWith(path.peek().key)) {
+            closeDivergingNodes(key);
+        }
+        path.push(new Frame(key, value));
+    }
+
+    /**
+     * Completes the nodes below the common prefix of the new key and the path, as the new key and all the following
+     * ones come after their subtrees. Adds a branch node at the common prefix if there's no node there yet.
+     */
+    private void closeDivergingNodes(Nibbles key) {
+        int commonPrefixLength = key.commonPrefixLength(path.peek().key);
+
+        Frame child = path.pop();
+        while (true) {
+            Frame parent = path.peek();
+            if (parent == null || parent.key.size() < commonPrefixLength) {
+                Frame branch = new Frame(key.take(commonPrefixLength), null);
+                attach(child, branch);
+                path.push(branch);
+                return;
+            }
+
+            attach(child, parent);
+            if (parent.key.size() == commonPrefixLength) {
+                return;
+            }
+            child = path.pop();
+        }
+    }
+
+    private void attach(Frame child, Frame parent) {
+        int parentSize = parent.key.size();
+        parent.childrenMerkleValues[child.key.get(parentSize).asInt()] =
+            complete(child, child.key.drop(parentSize + 1), false);
+    }
+
+    /**
+     * Completes all remaining nodes and hands the last batch to the sink.
+     *
+     * @return the merkle value of the root node, null if no entries were added
+     */
+    @Nullable
+    public byte[] finish() {
+        if (finished) {
+            throw new IllegalStateException("Trie is already built.");
+        }
+        finished = true;
+
+        byte[] rootMerkleValue = null;
+        if (!path.isEmpty()) {
+            Frame child = path.pop();
+            for (Frame parent = path.poll(); parent != null; parent = path.poll()) {
+                attach(child, parent);
+                child = parent;
+            }
+            rootMerkleValue = complete(child, child.key, true);
+        }
+
+        flush();
+        return rootMerkleValue;
+    }
+
+    private byte[] complete(Frame frame, Nibbles partialKey, boolean isRoot) {
+        byte[] merkleValue = NodeEncoder.forCurrentThread().calculateMerkleValue(
+            frame.childrenMerkleValues,
+            partialKey,
+            TrieStructureFactory.constructStorageValue(frame.value, stateVersion, valueHashFunction),
+            hashFunction,
+            isRoot);
+        if (sink == null) {
+            return merkleValue;
+        }
+
+        batch.add(new InsertTrieNode(
+            frame.value == null,
+            frame.value,
+            merkleValue,
+            Arrays.asList(frame.childrenMerkleValues),
+            partialKey,
+            frame.key.startsWith(CHILD_STORAGE_PREFIX),
+            stateVersion.asInt()));
+        if (batch.size() == batchSize) {
+            flush();
+        }
+        return merkleValue;
+    }
+
+    private void flush() {
+        if (sink != null && !batch.isEmpty()) {
+            sink.accept(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+}
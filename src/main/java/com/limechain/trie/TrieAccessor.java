@@ -2,10 +2,11 @@ package com.limechain.trie;
 
 import com.limechain.runtime.version.StateVersion;
 import com.limechain.storage.DeleteByPrefixResult;
+import com.limechain.storage.trie.NodeJournal;
 import com.limechain.storage.trie.TrieStorage;
 import com.limechain.trie.structure.nibble.Nibbles;
 import lombok.Setter;
-import lombok.extern.java.Log;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,16 +17,19 @@ import java.util.Optional;
  * {@link MemoryTrieAccessor} - an in-memory trie implementation.<br>
  * {@link DiskTrieAccessor} - an on-disk trie implementation.
  */
-@Log
 public abstract sealed class TrieAccessor permits MemoryTrieAccessor, DiskTrieAccessor {
 
-    private static final String TRANSACTIONS_NOT_SUPPORTED = "Trie Accessor does not support transactions.";
-
     protected final TrieStorage trieStorage;
     protected final Map<Nibbles, TrieAccessor> loadedChildTries;
+    /**
+     * The nodes inserted and replaced by the persisted changes of this trie and its child tries, see
+     * {@link #recordPersistedState(byte[], byte[])}.
+     */
+    protected final NodeJournal nodeJournal = new NodeJournal();
     protected byte[] mainTrieRoot;
     @Setter
     protected StateVersion currentStateVersion;
+    private int openTransactions;
 
     protected TrieAccessor(TrieStorage trieStorage, byte[] mainTrieRoot) {
         this.trieStorage = trieStorage;
@@ -84,6 +88,21 @@ public abstract sealed class TrieAccessor permits MemoryTrieAccessor, DiskTrieAc
 
     protected abstract TrieAccessor createChildTrie(Nibbles trieKey, byte[] merkleRoot);
 
+    /**
+     * Starts a transaction layer over the changes of this trie only, child tries are handled by the caller.
+     */
+    protected abstract void startTransactionLayer();
+
+    /**
+     * Discards the changes made to this trie in the innermost transaction layer.
+     */
+    protected abstract void rollbackTransactionLayer();
+
+    /**
+     * Merges the changes made to this trie in the innermost transaction layer into the enclosing one, if any.
+     */
+    protected abstract void commitTransactionLayer();
+
     /**
      * Retrieves the child trie accessor for the given key.
      *
@@ -94,36 +113,77 @@ public abstract sealed class TrieAccessor permits MemoryTrieAccessor, DiskTrieAc
         Nibbles trieKey = Nibbles.fromBytes(":child_storage:default:".getBytes()).addAll(key);
         byte[] merkleRoot = findStorageValue(trieKey).orElse(null);
 
-        return loadedChildTries.computeIfAbsent(
-            trieKey, k -> createChildTrie(trieKey, merkleRoot));
+        return loadedChildTries.computeIfAbsent(trieKey, k -> {
+            TrieAccessor childTrie = createChildTrie(trieKey, merkleRoot);
+            // A child trie loaded within a transaction takes part in it, as well as in the enclosing ones
+            for (int i = 0; i < openTransactions; i++) {
+                childTrie.startTransaction();
+            }
+            return childTrie;
+        });
     }
 
     /**
      * Persists the accumulated changes to the underlying database storage.
+     *
+     * @throws IllegalStateException if there's an open transaction
      */
     public void persistChanges() {
+        if (openTransactions > 0) {
+            throw new IllegalStateException("Cannot persist changes while a transaction is open.");
+        }
         for (TrieAccessor value : loadedChildTries.values()) value.persistChanges();
         loadedChildTries.clear();
     }
 
     /**
-     * Starts a transaction, that can later be committed or rolled back
+     * Journals the nodes of the persisted state for pruning, including the ones of the child tries persisted with it.
+     *
+     * @param parentRoot the root the trie had before the changes were persisted
+     * @param stateRoot  the root of the persisted trie, {@code null} if it's empty
+     */
+    protected void recordPersistedState(@Nullable byte[] parentRoot, @Nullable byte[] stateRoot) {
+        trieStorage.recordState(parentRoot, stateRoot, nodeJournal);
+    }
+
+    /**
+     * Starts a transaction, that can later be committed or rolled back. Transactions can be nested and also cover
+     * the changes made to child tries.
      */
     public void startTransaction() {
-        log.fine("Start transaction method is called" + TRANSACTIONS_NOT_SUPPORTED);
+        openTransactions++;
+        startTransactionLayer();
+        for (TrieAccessor childTrie : loadedChildTries.values()) childTrie.startTransaction();
     }
 
     /**
-     * Rollbacks an active transaction, discarding changes.
+     * Rollbacks the innermost active transaction, discarding its changes.
+     *
+     * @throws IllegalStateException if there's no open transaction
      */
     public void rollbackTransaction() {
-        log.fine("Rollback transaction method is called" + TRANSACTIONS_NOT_SUPPORTED);
+        checkOpenTransaction();
+        openTransactions--;
+        rollbackTransactionLayer();
+        for (TrieAccessor childTrie : loadedChildTries.values()) childTrie.rollbackTransaction();
     }
 
     /**
-     * Commits an active transaction, persisting changes.
+     * Commits the innermost active transaction, keeping its changes as part of the enclosing one. Changes are
+     * persisted once there are no open transactions left by {@link #persistChanges()}.
+     *
+     * @throws IllegalStateException if there's no open transaction
      */
     public void commitTransaction() {
-        log.fine("Commit transaction method is called" + TRANSACTIONS_NOT_SUPPORTED);
+        checkOpenTransaction();
+        openTransactions--;
+        commitTransactionLayer();
+        for (TrieAccessor childTrie : loadedChildTries.values()) childTrie.commitTransaction();
+    }
+
+    private void checkOpenTransaction() {
+        if (openTransactions == 0) {
+            throw new IllegalStateException("There is no open transaction.");
+        }
     }
 }
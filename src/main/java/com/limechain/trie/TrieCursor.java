@@ -0,0 +1,220 @@
+package com.limechain.trie;
+
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.nibble.Nibble;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the keys of a trie's storage nodes in lexicographic order, within a prefix.
+ * <p>
+ * {@link #seek(Nibbles, Nibbles)} only visits the nodes on the way to the start key. The following nodes are fetched
+ * from the {@link NodeSource} as the iteration reaches them. Getting a page of keys thus costs the depth of the trie
+ * plus the page size, however many keys there are before the start key.
+ *
+ * @param <N> the type of the nodes given by the {@link NodeSource}
+ */
+public final class TrieCursor<N> implements Iterator<Nibbles> {
+    private static final int CHILDREN_COUNT = 16;
+
+    /**
+     * Gives a {@link TrieCursor} access to the nodes of a trie, e.g. the ones stored in the database or kept in memory.
+     *
+     * @param <N> the type of the nodes
+     */
+    public interface NodeSource<N> {
+        Nibbles partialKey(N node);
+
+        boolean hasStorageValue(N node);
+
+        /**
+         * @param node       the parent node
+         * @param nodeKey    the full key of the parent node
+         * @param childIndex the child index within the parent, in the range [0, 15]
+         * @return the child node, null if there's none at the given child index
+         */
+        @Nullable
+        N child(N node, Nibbles nodeKey, int childIndex);
+    }
+
+    /**
+     * A node on the path from the root to the current position.
+     */
+    private static final class Frame<N> {
+        private final N node;
+        private final Nibbles key;
+        /**
+         * The child index to continue the iteration from.
+         */
+        private int nextChildIndex;
+        /**
+         * Whether the key of the node itself is yet to be returned.
+         */
+        private boolean keyPending;
+
+        private Frame(N node, Nibbles key, int nextChildIndex, boolean keyPending) {
+            this.node = node;
+            this.key = key;
+            this.nextChildIndex = nextChildIndex;
+            this.keyPending = keyPending;
+        }
+    }
+
+    @Nullable
+    private final N root;
+    private final NodeSource<N> source;
+    private final Deque<Frame<N>> path = new ArrayDeque<>();
+    private Nibbles prefix = Nibbles.EMPTY;
+    /**
+     * The key to be returned next, only meaningful if {@link #advanced} is set.
+     */
+    @Nullable
+    private Nibbles nextKey;
+    private boolean advanced;
+
+    /**
+     * Creates a cursor positioned before the first key of the trie.
+     *
+     * @param root   the root node, null for an empty trie
+     * @param source gives access to the nodes below the root
+     */
+    public TrieCursor(@Nullable N root, NodeSource<N> source) {
+        this.root = root;
+        this.source = source;
+        seek(Nibbles.EMPTY, null);
+    }
+
+    /**
+     * @return a cursor over the keys of the given in-memory trie
+     */
+    public static <T> TrieCursor<NodeHandle<T>> of(TrieStructure<T> trie) {
+        return new TrieCursor<>(trie.getRootNode().orElse(null), new NodeSource<>() {
+            @Override
+            public Nibbles partialKey(NodeHandle<T> node) {
+                return node.getPartialKey();
+            }
+
+            @Override
+            public boolean hasStorageValue(NodeHandle<T> node) {
+                return node.hasStorageValue();
+            }
+
+            @Override
+            public NodeHandle<T> child(NodeHandle<T> node, Nibbles nodeKey, int childIndex) {
+                return node.getChild(Nibble.fromInt(childIndex)).orElse(null);
+            }
+        });
+    }
+
+    /**
+     * Positions the cursor, so that the iteration goes over the keys starting with the given prefix which come after
+     * the start key.
+     *
+     * @param prefix   the prefix of the keys to iterate over
+     * @param startKey the key after which to start, exclusively. Null to start with the first key with the prefix.
+     */
+    public void seek(Nibbles prefix, @Nullable Nibbles startKey) {
+        this.prefix = prefix;
+        this.path.clear();
+        this.advanced = false;
+
+        if (startKey != null && startKey.compareTo(prefix) >= 0) {
+            descend(startKey, false);
+        } else {
+            descend(prefix, true);
+        }
+    }
+
+    /**
+     * Walks down to the given bound, keeping the nodes whose subtrees may hold keys after it on the path.
+     */
+    private void descend(Nibbles bound, boolean inclusive) {
+        if (root == null) {
+            return;
+        }
+
+        N node = root;
+        Nibbles key = source.partialKey(root);
+        while (bound.startsWith(key)) {
+            if (key.size() == bound.size()) {
+                path.push(new Frame<>(node, key, 0, inclusive && source.hasStorageValue(node)));
+                return;
+            }
+
+            // The node's own key and its children before the bound's next nibble are all before the bound
+            int childIndex = bound.get(key.size()).asInt();
+            path.push(new Frame<>(node, key, childIndex + 1, false));
+            N child = source.child(node, key, childIndex);
+            if (child == null) {
+                return;
+            }
+
+            node = child;
+            key = key.add(Nibble.fromInt(childIndex)).addAll(source.partialKey(child));
+        }
+
+        // The node's key diverges from the bound, so its whole subtree is either before or after it
+        if (key.compareTo(bound) > 0) {
+            path.push(new Frame<>(node, key, 0, source.hasStorageValue(node)));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            nextKey = advance();
+            advanced = true;
+        }
+        return nextKey != null;
+    }
+
+    @Override
+    public Nibbles next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more keys with prefix " + prefix);
+        }
+        advanced = false;
+        return nextKey;
+    }
+
+    @Nullable
+    private Nibbles advance() {
+        while (!path.isEmpty()) {
+            Frame<N> frame = path.peek();
+            if (frame.keyPending) {
+                frame.keyPending = false;
+                if (!frame.key.startsWith(prefix)) {
+                    path.clear();
+                    return null;
+                }
+                return frame.key;
+            }
+
+            N child = null;
+            int childIndex = frame.nextChildIndex;
+            for (; child == null && childIndex < CHILDREN_COUNT; childIndex++) {
+                child = source.child(frame.node, frame.key, childIndex);
+            }
+            frame.nextChildIndex = childIndex;
+            if (child == null) {
+                path.pop();
+                continue;
+            }
+
+            Nibbles childKey = frame.key.add(Nibble.fromInt(childIndex - 1)).addAll(source.partialKey(child));
+            // Keys are visited in order, so the first subtree out of the prefix ends the iteration
+            if (!childKey.startsWith(prefix) && !prefix.startsWith(childKey)) {
+                path.clear();
+                return null;
+            }
+            path.push(new Frame<>(child, childKey, 0, source.hasStorageValue(child)));
+        }
+        return null;
+    }
+}
@@ -1,18 +1,20 @@
 package com.limechain.trie;
 
 import com.google.common.collect.Lists;
-import com.google.common.primitives.Bytes;
 import com.google.protobuf.ByteString;
 import com.limechain.exception.trie.TrieBuildException;
 import com.limechain.runtime.Runtime;
 import com.limechain.runtime.RuntimeFactory;
 import com.limechain.runtime.version.StateVersion;
 import com.limechain.trie.dto.node.DecodedNode;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.RangeHashFunction;
 import com.limechain.trie.dto.node.StorageValue;
 import com.limechain.trie.structure.NodeHandle;
 import com.limechain.trie.structure.TrieNodeIndex;
 import com.limechain.trie.structure.TrieStructure;
 import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.utils.HashUtils;
 import com.limechain.utils.StringUtils;
@@ -20,12 +22,21 @@ import lombok.experimental.UtilityClass;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.UnaryOperator;
 
 @UtilityClass
 public class TrieStructureFactory {
+    /**
+     * Tries and subtrees with fewer nodes are hashed sequentially, since forking tasks for them costs more than it
+     * gains.
+     */
+    static final int PARALLEL_THRESHOLD = 10_000;
 
     /**
      * Build the trie structure from the provided key-value pairs, then calculates the merkle values and sets them.
@@ -49,7 +60,17 @@ public class TrieStructureFactory {
      */
     private static StateVersion getRuntimeStateVersion(Map<ByteString, ByteString> entries) {
         ByteString runtimeCode = entries.get(ByteString.fromHex(StringUtils.toHex(":code")));
-        Runtime runtime = RuntimeFactory.buildRuntime(runtimeCode.toByteArray(), RuntimeFactory.Config.EMPTY);
+        return getRuntimeStateVersion(runtimeCode.toByteArray());
+    }
+
+    /**
+     * Retrieves the state version from the given runtime code.
+     *
+     * @param runtimeCode the runtime code, as stored at the ":code" key
+     * @return the state version
+     */
+    public StateVersion getRuntimeStateVersion(byte[] runtimeCode) {
+        Runtime runtime = RuntimeFactory.buildRuntime(runtimeCode, RuntimeFactory.Config.EMPTY);
         return runtime.getVersion().getStateVersion();
     }
 
@@ -61,7 +82,8 @@ public class TrieStructureFactory {
      * @return A TrieStructure containing the inserted key-value pairs.
      */
     public TrieStructure<NodeData> buildTrieStructure(Map<ByteString, ByteString> mainStorage, StateVersion version) {
-        TrieStructure<NodeData> trie = new TrieStructure<>();
+        // Each insertion adds the storage node and at most one branch node
+        TrieStructure<NodeData> trie = TrieStructure.compact(2 * mainStorage.size());
 
         for (var entry : mainStorage.entrySet()) {
             Nibbles key = Nibbles.fromBytes(entry.getKey().toByteArray());
@@ -74,24 +96,119 @@ public class TrieStructureFactory {
 
     /**
      * Calculates the Merkle values for all nodes in the trie and sets them.
+     * Tries of at least {@link #PARALLEL_THRESHOLD} nodes are hashed in parallel on the common fork/join pool.
      *
      * @param trie         The TrieStructure for which Merkle values are calculated.
      * @param hashFunction The hash function used for calculating Merkle values.
      */
-    public void calculateMerkleValues(TrieStructure<NodeData> trie, UnaryOperator<byte[]> hashFunction) {
+    public void calculateMerkleValues(TrieStructure<NodeData> trie, RangeHashFunction hashFunction) {
+        calculateMerkleValues(trie, hashFunction,
+            trie.size() < PARALLEL_THRESHOLD ? null : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculates the Merkle values for all nodes in the trie and sets them.
+     * <p>
+     * The Merkle value of a node only depends on the ones of its children, so sibling subtrees are independent.
+     * With a pool, subtrees of at least {@link #PARALLEL_THRESHOLD} nodes have their children's subtrees hashed by
+     * separate fork/join tasks, while smaller subtrees are hashed sequentially within a single task.
+     *
+     * @param trie         The TrieStructure for which Merkle values are calculated.
+     * @param hashFunction The hash function used for calculating Merkle values, must be thread-safe with a pool.
+     * @param pool         The pool to hash subtrees in parallel in, or null to hash all nodes sequentially.
+     */
+    public void calculateMerkleValues(TrieStructure<NodeData> trie, RangeHashFunction hashFunction,
+                                      @Nullable ForkJoinPool pool) {
         List<TrieNodeIndex> nodeIndices = trie.streamOrdered().toList();
 
+        if (pool == null) {
+            for (TrieNodeIndex index : Lists.reverse(nodeIndices)) {
+                NodeHandle<NodeData> nodeHandle = trie.nodeHandleAtIndex(index);
+                if (nodeHandle == null) {
+                    throw new TrieBuildException("Could not initialize trie");
+                }
+                calculateAndSetMerkleValue(nodeHandle, hashFunction);
+            }
+        } else if (!nodeIndices.isEmpty()) {
+            int[] subtreeSizes = prepareForParallelCalculation(trie, nodeIndices);
+            pool.invoke(new MerkleValueTask(trie.nodeHandleAtIndex(nodeIndices.getFirst()), subtreeSizes,
+                hashFunction));
+        }
+        trie.clearDirtyNodes();
+    }
+
+    /**
+     * Sets empty user data on the nodes without any, so that tasks only write to the data of their own nodes and
+     * never modify the trie structure itself.
+     *
+     * @return the number of nodes in the subtree of each node, by raw node index
+     */
+    private int[] prepareForParallelCalculation(TrieStructure<NodeData> trie, List<TrieNodeIndex> nodeIndices) {
+        int maxIndex = nodeIndices.stream().mapToInt(TrieNodeIndex::getValue).max().orElse(0);
+        int[] subtreeSizes = new int[maxIndex + 1];
+
         for (TrieNodeIndex index : Lists.reverse(nodeIndices)) {
             NodeHandle<NodeData> nodeHandle = trie.nodeHandleAtIndex(index);
-            if (nodeHandle == null) {
-                throw new TrieBuildException("Could not initialize trie");
+            if (nodeHandle.getUserData() == null) {
+                nodeHandle.setUserData(new NodeData(null));
+            }
+
+            int size = 1;
+            for (Nibble nibble : Nibbles.ALL) {
+                Optional<NodeHandle<NodeData>> child = nodeHandle.getChild(nibble);
+                if (child.isPresent()) {
+                    size += subtreeSizes[child.get().getNodeIndex().getValue()];
+                }
+            }
+            subtreeSizes[index.getValue()] = size;
+        }
+        return subtreeSizes;
+    }
+
+    /**
+     * Calculates the Merkle values of a subtree, children first.
+     */
+    private void calculateSubtreeMerkleValues(NodeHandle<NodeData> nodeHandle, RangeHashFunction hashFunction) {
+        for (Nibble nibble : Nibbles.ALL) {
+            nodeHandle.getChild(nibble).ifPresent(child -> calculateSubtreeMerkleValues(child, hashFunction));
+        }
+        calculateAndSetMerkleValue(nodeHandle, hashFunction);
+    }
+
+    private static final class MerkleValueTask extends RecursiveAction {
+        private final transient NodeHandle<NodeData> nodeHandle;
+        private final int[] subtreeSizes;
+        private final transient RangeHashFunction hashFunction;
+
+        private MerkleValueTask(NodeHandle<NodeData> nodeHandle, int[] subtreeSizes,
+                                RangeHashFunction hashFunction) {
+            this.nodeHandle = nodeHandle;
+            this.subtreeSizes = subtreeSizes;
+            this.hashFunction = hashFunction;
+        }
+
+        @Override
+        protected void compute() {
+            if (subtreeSizes[nodeHandle.getNodeIndex().getValue()] < PARALLEL_THRESHOLD) {
+                calculateSubtreeMerkleValues(nodeHandle, hashFunction);
+                return;
             }
+
+            List<MerkleValueTask> childTasks = new ArrayList<>();
+            for (Nibble nibble : Nibbles.ALL) {
+                nodeHandle.getChild(nibble)
+                    .ifPresent(child -> childTasks.add(new MerkleValueTask(child, subtreeSizes, hashFunction)));
+            }
+            // Joining the children also makes their Merkle values visible to this thread
+            invokeAll(childTasks);
             calculateAndSetMerkleValue(nodeHandle, hashFunction);
         }
     }
 
     /**
-     * Recalculates the Merkle values for all nodes in the trie and returns a list of indices for nodes whose Merkle values have been updated.
+     * Recalculates the Merkle values of the nodes modified since the last calculation and of their ancestors,
+     * bottom-up, and returns a list of indices for nodes whose Merkle values have been updated.
+     * The cost is proportional to the number of modified nodes and their depth, not to the size of the trie.
      *
      * @param trie         The TrieStructure to recalculate Merkle values for.
      * @param stateVersion The state version used for constructing the storage values.
@@ -99,11 +216,10 @@ public class TrieStructureFactory {
      * @return A list of indices for nodes whose Merkle values have been updated.
      */
     public List<TrieNodeIndex> recalculateMerkleValues(TrieStructure<NodeData> trie, StateVersion stateVersion,
-                                                       UnaryOperator<byte[]> hashFunction) {
-        List<TrieNodeIndex> nodeIndices = trie.streamOrdered().toList();
+                                                       RangeHashFunction hashFunction) {
         List<TrieNodeIndex> updatedNodes = new ArrayList<>();
 
-        for (TrieNodeIndex index : Lists.reverse(nodeIndices)) {
+        for (TrieNodeIndex index : trie.takeDirtyNodesBottomUp()) {
             NodeHandle<NodeData> nodeHandle = trie.nodeHandleAtIndex(index);
             if (nodeHandle == null) {
                 throw new TrieBuildException("Could not initialize trie");
@@ -113,6 +229,8 @@ public class TrieStructureFactory {
                 updatedNodes.add(index);
             }
         }
+        // Setting the recalculated merkle values marks the nodes as modified again
+        trie.clearDirtyNodes();
         return updatedNodes;
     }
 
@@ -125,7 +243,7 @@ public class TrieStructureFactory {
      * @return True if the Merkle value was updated, false otherwise.
      */
     private boolean recalculateAndSetMerkleValue(NodeHandle<NodeData> nodeHandle, StateVersion stateVersion,
-                                                 UnaryOperator<byte[]> hashFunction) {
+                                                 RangeHashFunction hashFunction) {
         NodeData userData = nodeHandle.getUserData();
 
         // Node didn't have any userData set (hence no storage value), but now we want to calculate its merkle value
@@ -135,17 +253,14 @@ public class TrieStructureFactory {
 
         StorageValue storageValue = constructStorageValue(userData.getValue(),
                 stateVersion != null ? stateVersion : StateVersion.fromInt(nodeHandle.getStateVersion()));
-        DecodedNode<List<Byte>> decoded = new DecodedNode<>(
-                getChildrenValues(nodeHandle),
+        byte[] merkleValue = NodeEncoder.forCurrentThread().calculateMerkleValue(
+                getChildrenMerkleValues(nodeHandle),
                 nodeHandle.getPartialKey(),
-                storageValue);
-
-        byte[] merkleValue = decoded.calculateMerkleValue(
+                storageValue,
                 hashFunction,
                 nodeHandle.isRootNode());
 
-        if (userData.getMerkleValue() != null &&
-            Bytes.asList(userData.getMerkleValue()).equals(Bytes.asList(merkleValue))) {
+        if (Arrays.equals(userData.getMerkleValue(), merkleValue)) {
             return false;
         } else {
             userData.setMerkleValue(merkleValue);
@@ -160,27 +275,25 @@ public class TrieStructureFactory {
      * @param nodeHandle   The NodeHandle representing the node for which the Merkle value is calculated.
      * @param hashFunction The hash function used for calculating Merkle values.
      */
-    private void calculateAndSetMerkleValue(NodeHandle<NodeData> nodeHandle, UnaryOperator<byte[]> hashFunction) {
+    private void calculateAndSetMerkleValue(NodeHandle<NodeData> nodeHandle, RangeHashFunction hashFunction) {
         NodeData userData = nodeHandle.getUserData();
 
         // Node didn't have any userData set (hence no storage value), but now we want to calculate its merkle value
         if (userData == null) {
             userData = new NodeData(null);
+            nodeHandle.setUserData(userData);
         }
 
         StorageValue storageValue =
                 constructStorageValue(userData.getValue(), StateVersion.fromInt(nodeHandle.getStateVersion()));
-        DecodedNode<List<Byte>> decoded = new DecodedNode<>(
-                getChildrenValues(nodeHandle),
+        byte[] merkleValue = NodeEncoder.forCurrentThread().calculateMerkleValue(
+                getChildrenMerkleValues(nodeHandle),
                 nodeHandle.getPartialKey(),
-                storageValue);
-
-        byte[] merkleValue = decoded.calculateMerkleValue(
+                storageValue,
                 hashFunction,
                 nodeHandle.isRootNode());
 
         userData.setMerkleValue(merkleValue);
-        nodeHandle.setUserData(userData);
     }
 
     /**
@@ -191,26 +304,36 @@ public class TrieStructureFactory {
      * @return A StorageValue object constructed based on the provided value and state version.
      */
     private StorageValue constructStorageValue(@Nullable byte[] value, StateVersion stateVersion) {
+        return constructStorageValue(value, stateVersion, HashUtils::hashWithBlake2b);
+    }
+
+    /**
+     * Constructs a StorageValue object based on the provided value and state version.
+     *
+     * @param value        The byte array value.
+     * @param stateVersion The state version.
+     * @param hashFunction The hash function used for hashing values too large to be stored inline.
+     * @return A StorageValue object constructed based on the provided value and state version.
+     */
+    public StorageValue constructStorageValue(@Nullable byte[] value, StateVersion stateVersion,
+                                              UnaryOperator<byte[]> hashFunction) {
         if (value == null) {
             return null;
         }
 
         if (stateVersion == StateVersion.V1 && value.length >= 33) {
-            return new StorageValue(HashUtils.hashWithBlake2b(value), true);
+            return new StorageValue(hashFunction.apply(value), true);
         }
 
         return new StorageValue(value, false);
     }
 
-    private List<List<Byte>> getChildrenValues(NodeHandle<NodeData> nodeHandle) {
-        return Nibbles.ALL.stream()
-                .map(nodeHandle::getChild)
-                .map(child -> child
-                        .map(NodeHandle::getUserData)
-                        .map(NodeData::getMerkleValue)
-                        .map(Bytes::asList)
-                        .orElse(null)
-                )
-                .toList();
+    private byte[][] getChildrenMerkleValues(NodeHandle<NodeData> nodeHandle) {
+        byte[][] merkleValues = new byte[DecodedNode.CHILDREN_COUNT][];
+        for (int i = 0; i < merkleValues.length; i++) {
+            NodeData childData = nodeHandle.getChildUserData(i);
+            merkleValues[i] = childData == null ? null : childData.getMerkleValue();
+        }
+        return merkleValues;
     }
 }
@@ -0,0 +1,89 @@
+package com.limechain.trie.cache;
+
+import com.limechain.trie.structure.nibble.Nibbles;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A stack of nested transaction layers, each holding the values keys had before they were first modified within it.
+ * <p>
+ * Changes are applied to the underlying container right away, so reads never have to go through the layers. Rolling
+ * back restores the recorded values of the innermost layer and committing merges them into the enclosing layer,
+ * both in time proportional to the number of keys modified in the layer.
+ *
+ * @param <V> the type of the recorded values, {@code null} can be recorded for keys that were absent
+ */
+public class TransactionJournal<V> {
+    private final Deque<Map<Nibbles, V>> layers = new ArrayDeque<>();
+
+    /**
+     * Starts a new innermost transaction layer.
+     */
+    public void start() {
+        layers.push(new HashMap<>());
+    }
+
+    /**
+     * @return true if there's at least one open transaction
+     */
+    public boolean isActive() {
+        return !layers.isEmpty();
+    }
+
+    /**
+     * Records the value of a key before it gets modified, unless the innermost transaction already holds one for it.
+     * Does nothing when there's no open transaction.
+     *
+     * @param key      the key about to be modified
+     * @param previous supplies the current value of the key, only called if it has to be recorded
+     */
+    public void record(Nibbles key, Supplier<V> previous) {
+        Map<Nibbles, V> layer = layers.peek();
+        if (layer != null && !layer.containsKey(key)) {
+            layer.put(key, previous.get());
+        }
+    }
+
+    /**
+     * Closes the innermost transaction, handing the recorded values back for restoring.
+     *
+     * @param restore called with each key modified in the transaction and the value it had before it
+     * @throws IllegalStateException if there's no open transaction
+     */
+    public void rollback(BiConsumer<Nibbles, V> restore) {
+        popInnermostLayer().forEach(restore);
+    }
+
+    /**
+     * Closes the innermost transaction, keeping its changes. The values it recorded are moved to the enclosing
+     * transaction for keys that weren't modified there yet.
+     *
+     * @throws IllegalStateException if there's no open transaction
+     */
+    public void commit() {
+        Map<Nibbles, V> layer = popInnermostLayer();
+        Map<Nibbles, V> parent = layers.peek();
+        if (parent == null) {
+            return;
+        }
+
+        // Recorded nulls are values too, so putIfAbsent can't be used
+        layer.forEach((key, previous) -> {
+            if (!parent.containsKey(key)) {
+                parent.put(key, previous);
+            }
+        });
+    }
+
+    private Map<Nibbles, V> popInnermostLayer() {
+        if (layers.isEmpty()) {
+            throw new IllegalStateException("There is no open transaction.");
+        }
+        return layers.pop();
+    }
+}
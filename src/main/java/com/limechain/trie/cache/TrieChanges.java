@@ -5,15 +5,16 @@ import com.limechain.trie.cache.node.PendingTrieNodeChange;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import lombok.AccessLevel;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.TreeMap;
-import java.util.stream.Stream;
 
 /**
  * Container used to cache the difference between two versions of a trie. For example this can be used when the runtime
@@ -26,15 +27,33 @@ public class TrieChanges {
     /**
      * Holds data for node changes identified by their path.
      */
-    @Getter
     private final TreeMap<Nibbles, PendingTrieNodeChange> changes;
+    /**
+     * The inserted or updated nodes among the changes, so that looking up a child doesn't visit removed nodes.
+     */
+    private final TreeMap<Nibbles, PendingInsertUpdate> insertsAndUpdates = new TreeMap<>();
+    /**
+     * The changes that were in the cache before being replaced or removed in the open transactions.
+     */
+    private final TransactionJournal<PendingTrieNodeChange> journal = new TransactionJournal<>();
 
     public static TrieChanges empty() {
         return new TrieChanges(new TreeMap<>());
     }
 
+    /**
+     * @return a read-only view of the node changes by their path
+     */
+    public NavigableMap<Nibbles, PendingTrieNodeChange> getChanges() {
+        return Collections.unmodifiableNavigableMap(changes);
+    }
+
     public void clear() {
+        if (journal.isActive()) {
+            changes.keySet().forEach(this::recordChange);
+        }
         changes.clear();
+        insertsAndUpdates.clear();
     }
 
     public boolean isKeyInCache(Nibbles key) {
@@ -46,7 +65,10 @@ public class TrieChanges {
     }
 
     public void updateCache(TreeMap<Nibbles, PendingTrieNodeChange> updates) {
-        changes.putAll(updates);
+        if (journal.isActive()) {
+            updates.keySet().forEach(this::recordChange);
+        }
+        updates.forEach(this::put);
     }
 
     public Optional<PendingTrieNodeChange> getFromCache(Nibbles key) {
@@ -54,7 +76,54 @@ public class TrieChanges {
     }
 
     public void removeFromCache(Nibbles key) {
+        recordChange(key);
+        remove(key);
+    }
+
+    /**
+     * Starts a nested transaction. Changes made to the cache from now on can be undone by
+     * {@link #rollbackTransaction()} or kept by {@link #commitTransaction()}.
+     */
+    public void startTransaction() {
+        journal.start();
+    }
+
+    /**
+     * Restores the cache to its state from when the innermost open transaction was started.
+     */
+    public void rollbackTransaction() {
+        journal.rollback((key, previous) -> {
+            if (previous == null) {
+                remove(key);
+            } else {
+                put(key, previous);
+            }
+        });
+    }
+
+    /**
+     * Keeps the changes made in the innermost open transaction as part of the enclosing one, if any.
+     */
+    public void commitTransaction() {
+        journal.commit();
+    }
+
+    private void recordChange(Nibbles key) {
+        journal.record(key, () -> changes.get(key));
+    }
+
+    private void put(Nibbles key, PendingTrieNodeChange change) {
+        changes.put(key, change);
+        if (change instanceof PendingInsertUpdate update) {
+            insertsAndUpdates.put(key, update);
+        } else {
+            insertsAndUpdates.remove(key);
+        }
+    }
+
+    private void remove(Nibbles key) {
         changes.remove(key);
+        insertsAndUpdates.remove(key);
     }
 
     public Optional<PendingInsertUpdate> getRoot() {
@@ -64,28 +133,58 @@ public class TrieChanges {
             : Optional.empty();
     }
 
+    /**
+     * Finds the changes on the path to a key, i.e. at the key itself and at its prefixes.
+     * <p>
+     * Instead of scanning every change up to the key, jumps from one floor entry to the next. Each jump either hits a
+     * prefix of the key or shortens the searched key to the common prefix with the floor entry, so at most one
+     * lookup per nibble of the key is made, independent of the number of changes.
+     *
+     * @param clazz the type of changes to return, {@code null} for all
+     * @param key   the key
+     * @return the found changes, ordered from the root towards the key
+     */
     public <P extends PendingTrieNodeChange> List<Map.Entry<Nibbles, P>> getEntriesInKeyPath(
         @Nullable Class<P> clazz, Nibbles key) {
-        Stream<Map.Entry<Nibbles, PendingTrieNodeChange>> stream = changes.subMap(
-            Nibbles.EMPTY, true, key, true).entrySet().stream();
-
-        if (clazz != null) {
-            stream = stream
-                .filter(e -> clazz.isInstance(e.getValue()));
+        List<Map.Entry<Nibbles, P>> entries = new ArrayList<>();
+        Nibbles searchedKey = key;
+        Map.Entry<Nibbles, PendingTrieNodeChange> floor;
+        while ((floor = changes.floorEntry(searchedKey)) != null) {
+            Nibbles floorKey = floor.getKey();
+            int commonPrefixLength = floorKey.commonPrefixLength(searchedKey);
+            if (commonPrefixLength < floorKey.size()) {
+                // Any longer prefix of the searched key would sort between the floor entry and the key
+                searchedKey = searchedKey.take(commonPrefixLength);
+                continue;
+            }
+
+            if (clazz == null || clazz.isInstance(floor.getValue())) {
+                entries.add(Map.entry(floorKey, (P) floor.getValue()));
+            }
+            if (floorKey.isEmpty()) {
+                break;
+            }
+            searchedKey = floorKey.take(floorKey.size() - 1);
         }
 
-        return stream
-            .filter(e -> key.startsWith(e.getKey()))
-            .map(e -> Map.entry(e.getKey(), (P) e.getValue()))
-            .toList();
+        Collections.reverse(entries);
+        return entries;
     }
 
-    // TODO optimize so that it doesn't traverse until end of map if missing
+    /**
+     * Finds the cached node that is the child of a node at the given index, i.e. the first inserted or updated node
+     * with a key starting with the parent key followed by the index. Removed nodes are kept out of the looked up index,
+     * so the lookup doesn't depend on how many nodes were removed below the parent, e.g. by a prefix deletion.
+     *
+     * @param parentKey  the full key of the parent node
+     * @param childIndex the index of the child
+     * @return the cached child node, if any
+     */
     public Optional<PendingInsertUpdate> getChildByIndex(Nibbles parentKey, Nibble childIndex) {
         Nibbles parentKeyWithChildIndex = parentKey.add(childIndex);
-        return changes.tailMap(parentKey, false).entrySet().stream()
-            .filter(e -> e.getKey().startsWith(parentKeyWithChildIndex) && e.getValue() instanceof PendingInsertUpdate)
-            .map(e -> (PendingInsertUpdate) e.getValue())
-            .findFirst();
+        Map.Entry<Nibbles, PendingInsertUpdate> child = insertsAndUpdates.ceilingEntry(parentKeyWithChildIndex);
+        return child != null && child.getKey().startsWith(parentKeyWithChildIndex)
+            ? Optional.of(child.getValue())
+            : Optional.empty();
     }
 }
@@ -0,0 +1,456 @@
+package com.limechain.trie.decoded;
+
+import com.limechain.exception.trie.NodeDecodingException;
+import com.limechain.utils.HashUtils;
+import com.limechain.utils.StringUtils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * The nodes of a merkle proof, indexed by their hash, for looking up values of the proven trie.
+ * <p>
+ * Unlike {@link TrieVerifier#buildTrie(byte[][], byte[])}, which decodes every proof node into a {@link Trie} and
+ * keys them by hex strings, nodes are indexed by their 32-byte hashes as they are and only get decoded along the path
+ * of a looked up key. Decoded nodes are kept, so looking up several keys in the same proof decodes shared nodes once.
+ * A decoded node refers to its partial key, value and children by their offsets in the encoding instead of copying
+ * them.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class TrieProof {
+    private static final int HASH_LENGTH = 32;
+    private static final int CHILDREN_COUNT = 16;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * A 32-byte hash, compared by value.
+     */
+    private record NodeHash(long first, long second, long third, long fourth) {
+        private static NodeHash of(byte[] bytes, int offset) {
+            return new NodeHash(
+                (long) LONGS.get(bytes, offset),
+                (long) LONGS.get(bytes, offset + Long.BYTES),
+                (long) LONGS.get(bytes, offset + 2 * Long.BYTES),
+                (long) LONGS.get(bytes, offset + 3 * Long.BYTES));
+        }
+    }
+
+    /**
+     * A decoded node, pointing into its encoding.
+     */
+    private static final class ProofNode {
+        private final byte[] encoded;
+        private int partialKeyOffset;
+        /**
+         * The length of the partial key in nibbles.
+         */
+        private int partialKeyLength;
+        /**
+         * -1 if the node has no value.
+         */
+        private int valueOffset = -1;
+        private int valueLength;
+        private boolean valueHashed;
+        /**
+         * Null if the node has no children, -1 entries for missing children otherwise.
+         */
+        private int[] childOffsets;
+        private int[] childLengths;
+
+        private ProofNode(byte[] encoded) {
+            this.encoded = encoded;
+        }
+
+        private int partialKeyNibble(int index) {
+            // Partial keys of odd length are padded with a zero nibble in front
+            int position = index + (partialKeyLength % 2);
+            int value = encoded[partialKeyOffset + position / 2];
+            return position % 2 == 0 ? (value >> 4) & 0xf : value & 0xf;
+        }
+    }
+
+    /**
+     * A node on the path to a key, with the position in the key its partial key starts at, counted in nibbles.
+     */
+    private record PathNode(ProofNode node, int position) {
+    }
+
+    private final Map<NodeHash, byte[]> encodings;
+    private final Map<NodeHash, ProofNode> decodedNodes = new HashMap<>();
+
+    private TrieProof(Map<NodeHash, byte[]> encodings) {
+        this.encodings = encodings;
+    }
+
+    /**
+     * Indexes the nodes of a proof hashed with Blake2-256.
+     *
+     * @param encodedProofNodes the encoded proof nodes, including the values hashed into their nodes
+     * @return the indexed proof
+     */
+    public static TrieProof of(byte[][] encodedProofNodes) {
+        return of(encodedProofNodes, HashUtils.hashAllWithBlake2b(encodedProofNodes));
+    }
+
+    /**
+     * Indexes the nodes of a proof.
+     *
+     * @param encodedProofNodes the encoded proof nodes, including the values hashed into their nodes
+     * @param hashFunction      the hash function of the trie, giving 32-byte hashes
+     * @return the indexed proof
+     */
+    public static TrieProof of(byte[][] encodedProofNodes, UnaryOperator<byte[]> hashFunction) {
+        byte[][] digests = new byte[encodedProofNodes.length][];
+        for (int i = 0; i < encodedProofNodes.length; i++) {
+            digests[i] = hashFunction.apply(encodedProofNodes[i]);
+        }
+        return of(encodedProofNodes, digests);
+    }
+
+    private static TrieProof of(byte[][] encodedProofNodes, byte[][] digests) {
+        Map<NodeHash, byte[]> encodings = new HashMap<>(encodedProofNodes.length * 4 / 3 + 1);
+        for (int i = 0; i < encodedProofNodes.length; i++) {
+            if (digests[i].length != HASH_LENGTH) {
+                throw new IllegalArgumentException("Proof node hashes must be " + HASH_LENGTH + " bytes long");
+            }
+            encodings.put(NodeHash.of(digests[i], 0), encodedProofNodes[i]);
+        }
+        return new TrieProof(encodings);
+    }
+
+    /**
+     * Verifies that the trie with the given root has the given value at the given key.
+     *
+     * @param rootHash the root hash of the trie
+     * @param key      the key to verify
+     * @param value    the expected value at the key
+     * @return whether the proof shows the value at the key
+     * @throws IllegalStateException if the proof lacks a node on the path to the key
+     * @throws NodeDecodingException if a node on the path to the key is malformed
+     */
+    public boolean verify(byte[] rootHash, byte[] key, byte[] value) {
+        return get(rootHash, key).map(found -> Arrays.equals(found, value)).orElse(false);
+    }
+
+    /**
+     * Looks up the values at several keys. The keys are walked in ascending order, each one continuing from the
+     * deepest node on the path of the previous key which is on its own path too, so nodes shared by the paths are
+     * only walked through once.
+     *
+     * @param rootHash the root hash of the trie
+     * @param keys     the keys to look up
+     * @return the value at each key, in the order of the keys
+     * @throws IllegalStateException if the proof lacks a node on the path to a key
+     * @throws NodeDecodingException if a node on the path to a key is malformed
+     */
+    public List<Optional<byte[]>> getAll(byte[] rootHash, List<byte[]> keys) {
+        checkRootHash(rootHash);
+        Integer[] order = new Integer[keys.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys.get(a), keys.get(b)));
+
+        List<Optional<byte[]>> values = new ArrayList<>(Collections.nCopies(keys.size(), Optional.empty()));
+        Deque<PathNode> path = new ArrayDeque<>();
+        byte[] previousKey = null;
+        for (int index : order) {
+            byte[] key = keys.get(index);
+            if (previousKey == null) {
+                path.push(new PathNode(hashedNode(rootHash, 0), 0));
+            } else {
+                // A node is on the path of both keys if they share the nibbles leading to it
+                int commonPrefixLength = commonPrefixLength(previousKey, key);
+                while (path.peek().position() > commonPrefixLength) {
+                    path.pop();
+                }
+            }
+            values.set(index, lookup(key, path));
+            previousKey = key;
+        }
+        return values;
+    }
+
+    /**
+     * Looks up the value at a key.
+     *
+     * @param rootHash the root hash of the trie
+     * @param key      the key to look up
+     * @return the value at the key, or an empty {@link Optional} if the proof shows there is none
+     * @throws IllegalStateException if the proof lacks a node on the path to the key
+     * @throws NodeDecodingException if a node on the path to the key is malformed
+     */
+    public Optional<byte[]> get(byte[] rootHash, byte[] key) {
+        checkRootHash(rootHash);
+        Deque<PathNode> path = new ArrayDeque<>();
+        path.push(new PathNode(hashedNode(rootHash, 0), 0));
+        return lookup(key, path);
+    }
+
+    private static void checkRootHash(byte[] rootHash) {
+        if (rootHash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Root hash must be " + HASH_LENGTH + " bytes long");
+        }
+    }
+
+    /**
+     * Walks down to a key from the deepest node of the path, which has to be on the path to the key, pushing the
+     * nodes walked through onto the path.
+     */
+    private Optional<byte[]> lookup(byte[] key, Deque<PathNode> path) {
+        ProofNode node = path.peek().node();
+        int position = path.peek().position();
+        int keyLength = key.length * 2;
+        while (true) {
+            if (keyLength - position < node.partialKeyLength) {
+                return Optional.empty();
+            }
+            for (int i = 0; i < node.partialKeyLength; i++) {
+                if (node.partialKeyNibble(i) != keyNibble(key, position + i)) {
+                    return Optional.empty();
+                }
+            }
+            position += node.partialKeyLength;
+
+            if (position == keyLength) {
+                return Optional.ofNullable(value(node));
+            }
+
+            int childIndex = keyNibble(key, position++);
+            if (node.childOffsets == null || node.childOffsets[childIndex] < 0) {
+                return Optional.empty();
+            }
+            int childOffset = node.childOffsets[childIndex];
+            int childLength = node.childLengths[childIndex];
+            // Children encoded in fewer bytes than a hash are inlined
+            node = childLength == HASH_LENGTH
+                ? hashedNode(node.encoded, childOffset)
+                : decode(node.encoded, childOffset, childOffset + childLength);
+            path.push(new PathNode(node, position));
+        }
+    }
+
+    private ProofNode hashedNode(byte[] hashBytes, int offset) {
+        NodeHash hash = NodeHash.of(hashBytes, offset);
+        ProofNode node = decodedNodes.get(hash);
+        if (node == null) {
+            byte[] encoded = encodings.get(hash);
+            if (encoded == null) {
+                throw new IllegalStateException("Node not found in proof for hash: " + StringUtils.toHexWithPrefix(
+                    Arrays.copyOfRange(hashBytes, offset, offset + HASH_LENGTH)));
+            }
+            node = decode(encoded, 0, encoded.length);
+            decodedNodes.put(hash, node);
+        }
+        return node;
+    }
+
+    private byte[] value(ProofNode node) {
+        if (node.valueOffset < 0) {
+            return null;
+        }
+        if (!node.valueHashed) {
+            return Arrays.copyOfRange(node.encoded, node.valueOffset, node.valueOffset + node.valueLength);
+        }
+
+        byte[] value = encodings.get(NodeHash.of(node.encoded, node.valueOffset));
+        if (value == null) {
+            throw new IllegalStateException("Value not found in proof for hash: " + StringUtils.toHexWithPrefix(
+                Arrays.copyOfRange(node.encoded, node.valueOffset, node.valueOffset + HASH_LENGTH)));
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of leading nibbles the keys share
+     */
+    private static int commonPrefixLength(byte[] first, byte[] second) {
+        int mismatch = Arrays.mismatch(first, second);
+        if (mismatch < 0) {
+            return first.length * 2;
+        }
+        if (mismatch == Math.min(first.length, second.length)) {
+            return mismatch * 2;
+        }
+        return mismatch * 2 + (((first[mismatch] ^ second[mismatch]) & 0xf0) == 0 ? 1 : 0);
+    }
+
+    private static int keyNibble(byte[] key, int index) {
+        int value = key[index / 2];
+        return index % 2 == 0 ? (value >> 4) & 0xf : value & 0xf;
+    }
+
+    /**
+     * Decodes the node encoded in the given range, see
+     * <a href="https://spec.polkadot.network/#defn-node-header">the node header</a>.
+     */
+    private static ProofNode decode(byte[] encoded, int from, int to) {
+        if (from == to) {
+            throw new NodeDecodingException("Invalid node value: it's empty");
+        }
+        Reader reader = new Reader(encoded, from, to);
+        ProofNode node = new ProofNode(encoded);
+
+        int firstByte = reader.readByte();
+        boolean hasChildren;
+        // 0 for no value, 1 for an inline value and 2 for a hashed one
+        int valueKind;
+        int partialKeyLengthBits;
+        switch (firstByte >> 6) {
+            case 0b01 -> {
+                hasChildren = false;
+                valueKind = 1;
+                partialKeyLengthBits = 6;
+            }
+            case 0b10 -> {
+                hasChildren = true;
+                valueKind = 0;
+                partialKeyLengthBits = 6;
+            }
+            case 0b11 -> {
+                hasChildren = true;
+                valueKind = 1;
+                partialKeyLengthBits = 6;
+            }
+            default -> {
+                if ((firstByte >> 5) == 0b001) {
+                    hasChildren = false;
+                    valueKind = 2;
+                    partialKeyLengthBits = 5;
+                } else if ((firstByte >> 4) == 0b0001) {
+                    hasChildren = true;
+                    valueKind = 2;
+                    partialKeyLengthBits = 4;
+                } else if (firstByte == 0) {
+                    // The empty trie
+                    return node;
+                } else {
+                    throw new NodeDecodingException("Invalid header bits");
+                }
+            }
+        }
+
+        int mask = (1 << partialKeyLengthBits) - 1;
+        int partialKeyLength = firstByte & mask;
+        if (partialKeyLength == mask) {
+            int next;
+            do {
+                next = reader.readByte();
+                if (partialKeyLength > Integer.MAX_VALUE - next) {
+                    throw new NodeDecodingException("Partial key length overflow");
+                }
+                partialKeyLength += next;
+            } while (next == 255);
+        }
+        node.partialKeyLength = partialKeyLength;
+        node.partialKeyOffset = reader.skip((partialKeyLength + 1) / 2);
+        if (partialKeyLength % 2 == 1 && (encoded[node.partialKeyOffset] & 0xf0) != 0) {
+            throw new NodeDecodingException("Invalid Partial key padding");
+        }
+
+        int childrenBitmap = 0;
+        if (hasChildren) {
+            childrenBitmap = reader.readByte() | reader.readByte() << 8;
+            if (childrenBitmap == 0) {
+                throw new NodeDecodingException("Zero children bitmap");
+            }
+        }
+
+        if (valueKind != 0) {
+            node.valueHashed = valueKind == 2;
+            node.valueLength = node.valueHashed ? HASH_LENGTH : reader.readCompactLength();
+            node.valueOffset = reader.skip(node.valueLength);
+        }
+
+        if (hasChildren) {
+            node.childOffsets = new int[CHILDREN_COUNT];
+            node.childLengths = new int[CHILDREN_COUNT];
+            for (int i = 0; i < CHILDREN_COUNT; i++) {
+                if ((childrenBitmap & (1 << i)) == 0) {
+                    node.childOffsets[i] = -1;
+                    continue;
+                }
+                int childLength = reader.readCompactLength();
+                if (childLength > HASH_LENGTH) {
+                    throw new NodeDecodingException("Child too large");
+                }
+                node.childLengths[i] = childLength;
+                node.childOffsets[i] = reader.skip(childLength);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Reads a range of an encoding without copying it.
+     */
+    private static final class Reader {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        private Reader(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.position = from;
+            this.end = to;
+        }
+
+        private int readByte() {
+            if (position >= end) {
+                throw new NodeDecodingException("Unexpected end of node encoding");
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        /**
+         * @return the position before skipping
+         */
+        private int skip(int length) {
+            if (length < 0 || length > end - position) {
+                throw new NodeDecodingException("Unexpected end of node encoding");
+            }
+            int start = position;
+            position += length;
+            return start;
+        }
+
+        /**
+         * Reads a SCALE compact integer used as a length.
+         */
+        private int readCompactLength() {
+            int first = readByte();
+            long length = switch (first & 0b11) {
+                case 0b00 -> first >>> 2;
+                case 0b01 -> (first | readByte() << 8) >>> 2;
+                case 0b10 -> ((long) first | readByte() << 8 | readByte() << 16 | (long) readByte() << 24) >>> 2;
+                default -> {
+                    int byteCount = (first >>> 2) + 4;
+                    long value = 0;
+                    for (int i = 0; i < byteCount; i++) {
+                        long next = readByte();
+                        if (i < Integer.BYTES) {
+                            value |= next << (8 * i);
+                        } else if (next != 0) {
+                            throw new NodeDecodingException("Length too large");
+                        }
+                    }
+                    yield value;
+                }
+            };
+            if (length > Integer.MAX_VALUE) {
+                throw new NodeDecodingException("Length too large");
+            }
+            return (int) length;
+        }
+    }
+}
@@ -49,7 +49,7 @@ public class TrieVerifier {
      * @return a new trie with the searched root hash
      */
     public static Trie buildTrie(byte[][] encodedProofNodes, byte[] rootHash) {
-        return buildTrie(encodedProofNodes, rootHash, HashUtils::hashWithBlake2b);
+        return buildTrie(encodedProofNodes, HashUtils.hashAllWithBlake2b(encodedProofNodes), rootHash);
     }
 
     /**
@@ -61,6 +61,14 @@ public class TrieVerifier {
      * @return a new trie with the searched root hash
      */
     public static Trie buildTrie(byte[][] encodedProofNodes, byte[] rootHash, UnaryOperator<byte[]> hashFunction) {
+        byte[][] digests = new byte[encodedProofNodes.length][];
+        for (int i = 0; i < encodedProofNodes.length; i++) {
+            digests[i] = hashFunction.apply(encodedProofNodes[i]);
+        }
+        return buildTrie(encodedProofNodes, digests, rootHash);
+    }
+
+    private static Trie buildTrie(byte[][] encodedProofNodes, byte[][] digests, byte[] rootHash) {
         if (encodedProofNodes.length == 0) {
             throw new IllegalArgumentException("Encoded proof nodes is empty!");
         }
@@ -69,8 +77,9 @@ public class TrieVerifier {
 
         Node root = null;
 
-        for (byte[] encodedProofNode : encodedProofNodes) {
-            byte[] digest = hashFunction.apply(encodedProofNode);
+        for (int i = 0; i < encodedProofNodes.length; i++) {
+            byte[] encodedProofNode = encodedProofNodes[i];
+            byte[] digest = digests[i];
             // root node already found or the hash doesn't match the root hash.
             if (root != null || !Arrays.areEqual(digest, rootHash)) {
                 digestToEncoding.put(HexUtils.toHexString(digest), encodedProofNode);
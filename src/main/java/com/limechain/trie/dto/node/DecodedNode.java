@@ -1,15 +1,13 @@
 package com.limechain.trie.dto.node;
 
+import com.google.common.primitives.Bytes;
 import com.limechain.trie.decoded.NodeVariant;
 import com.limechain.exception.trie.NodeDecodingException;
 import com.limechain.exception.trie.NodeEncodingException;
 import com.limechain.trie.structure.nibble.BytesToNibbles;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
-import com.limechain.trie.structure.nibble.NibblesUtils;
-import com.limechain.utils.scale.ScaleUtils;
 import io.emeraldpay.polkaj.scale.ScaleCodecReader;
-import io.emeraldpay.polkaj.scale.ScaleCodecWriter;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.commons.lang3.ArrayUtils;
@@ -19,12 +17,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 // NOTE:
 //  This `extends` restriction on the generic type is only used for `.size()` methods
@@ -91,85 +86,6 @@ public class DecodedNode<C extends Collection<Byte>> {
         return this.storageValue.isHashed() ? NodeVariant.BRANCH_WITH_HASHED_VALUE : NodeVariant.BRANCH_WITH_VALUE;
     }
 
-    private List<Byte> encodeNodeHeader() {
-        List<Byte> headerEncoding = new ArrayList<>(2 + (this.partialKey.size() / 255));
-
-        // Calculate the first byte
-        NodeVariant variant = this.calculateNodeVariant();
-        int maxRepresentableInFirstByte = variant.getPartialKeyLengthHeaderMask();
-        byte firstByte = (byte) (variant.bits | Math.min(this.partialKey.size(),
-            maxRepresentableInFirstByte)); // a byte cast effectively trims to the last 8 bits, exactly what we want
-
-        headerEncoding.add(firstByte);
-
-        // Append as many "private key length" bytes as necessary
-        int pkLen = this.partialKey.size();
-        if (pkLen >= maxRepresentableInFirstByte) {
-            int remainingPkLen = pkLen - maxRepresentableInFirstByte;
-            int numberOfFullBytes = remainingPkLen / 255;
-            int lastByte = remainingPkLen % 255;
-
-            for (int i = 0; i < numberOfFullBytes; ++i) {
-                headerEncoding.add((byte) 255);
-            }
-            headerEncoding.add((byte) lastByte);
-        }
-
-        return headerEncoding;
-    }
-
-    private List<Byte> encodePartialKey() {
-        return NibblesUtils.toBytesPrepending(this.partialKey);
-    }
-
-    // TODO: Optimize, a lot of unnecessary copying is going on.
-    private List<Byte> encodeSubvalue() {
-        List<Byte> subvalue = new LinkedList<>(); //NOTE: Maybe Arraylist?
-
-        // First, push the children bitmap (if a branch node)
-        if (this.hasChildren()) {
-            //TODO:
-            // This doesn't conform to the spec exactly, but that's how smoldot and gossamer do it
-            // Why do we reverse the bitmap to LittleEndian when the spec explicitly defines it as a sequence of BITs?
-            // https://spec.polkadot.network/chap-state#defn-node-subvalue
-            int childrenBitmap = this.getChildrenBitmap();
-            subvalue.add((byte) (childrenBitmap & 0x00FF));
-            subvalue.add((byte) ((childrenBitmap >> 8) & 0x00FF));
-        }
-
-        // Then, encode the storage value
-        if (this.storageValue != null) {
-            // If the storage value is not hashed, we must also include its byte length in the scale encoding
-            // NOTE:
-            //  Why do we only add length to the encoding if the value is not hashed?
-            //  I presume, because if it's hashed, we know it's 32 bytes only and don't need the length information?
-            //  And we know whether it's hashed from the header.
-            if (!this.storageValue.isHashed()) {
-                for (byte b : ScaleUtils.Encode.encode(ScaleCodecWriter::writeCompact, this.storageValue.value().length)) {
-                    subvalue.add(b);
-                }
-            }
-
-            for (byte b : this.storageValue.value()) {
-                subvalue.add(b);
-            }
-        }
-
-        // And finally, the children node values
-        List<Byte> childrenNodeValues =
-            this.children.stream()
-                .filter(Objects::nonNull)
-                .flatMap(childValue -> {
-                    byte[] scaleEncodedChildValue = ScaleUtils.Encode.encodeAsListOfBytes(childValue);
-                    return Stream.of(ArrayUtils.toObject(scaleEncodedChildValue));
-                })
-                .toList();
-        subvalue.addAll(childrenNodeValues);
-
-        // Return everything accumulated thus far
-        return subvalue;
-    }
-
     /**
      * Encodes the components of a node value into the node value itself.
      * <br>
@@ -191,13 +107,8 @@ public class DecodedNode<C extends Collection<Byte>> {
      *                               for now only if it has a partial key, but no children and no storage value
      */
     public List<Byte> encode() {
-        return Stream.of(
-                this.encodeNodeHeader(),
-                this.encodePartialKey(),
-                this.encodeSubvalue()
-            )
-            .flatMap(Collection::stream)
-            .toList();
+        return Bytes.asList(NodeEncoder.forCurrentThread().encode(childrenAsArrays(), this.partialKey,
+            this.storageValue));
     }
 
     /**
@@ -213,15 +124,15 @@ public class DecodedNode<C extends Collection<Byte>> {
     // NOTE:
     //  Passing the hashFunction as a lambda might be insufficient for future use cases, but it's enough for now
     //  Feel free to refactor if needed.
-    public byte[] calculateMerkleValue(UnaryOperator<byte[]> hashFunction, boolean isRootNode) {
-        byte[] nodeValue = ArrayUtils.toPrimitive(this.encode().toArray(Byte[]::new));
-
-        // The node value must be hashed if we're the root or otherwise, if it exceeds 31 bytes of length
-        if (isRootNode || nodeValue.length >= 32) {
-            nodeValue = hashFunction.apply(nodeValue);
-        }
+    public byte[] calculateMerkleValue(RangeHashFunction hashFunction, boolean isRootNode) {
+        return NodeEncoder.forCurrentThread().calculateMerkleValue(childrenAsArrays(), this.partialKey,
+            this.storageValue, hashFunction, isRootNode);
+    }
 
-        return nodeValue;
+    private List<byte[]> childrenAsArrays() {
+        return this.children.stream()
+            .map(child -> child == null ? null : Bytes.toArray(child))
+            .toList();
     }
 
     /**
@@ -0,0 +1,257 @@
+package com.limechain.trie.dto.node;
+
+import com.limechain.exception.trie.NodeEncodingException;
+import com.limechain.trie.decoded.NodeVariant;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes trie nodes straight into a reusable, growable byte buffer.
+ * <p>
+ * Produces the same encoding as {@link DecodedNode#encode()}, i.e. header, partial key, children bitmap, storage
+ * value and SCALE encoded children merkle values, without boxing bytes into intermediate lists. Calculating a merkle
+ * value hashes the encoding in the buffer, so it only allocates the returned merkle value.
+ * <p>
+ * Instances are not thread-safe, use {@link #forCurrentThread()}.
+ */
+public final class NodeEncoder {
+    private static final ThreadLocal<NodeEncoder> ENCODERS = ThreadLocal.withInitial(NodeEncoder::new);
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * A buffer grown beyond this size by a large storage value (e.g. the runtime code) isn't kept for reuse
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final int MAX_INLINE_NODE_LENGTH = 31;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    /**
+     * Holds the children of the list based methods while they are written
+     */
+    private final byte[][] children = new byte[DecodedNode.CHILDREN_COUNT][];
+
+    /**
+     * @return the encoder of the current thread
+     */
+    public static NodeEncoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * Encodes a node.
+     *
+     * @param childrenMerkleValues the merkle values of the children by index, {@code null} for missing ones
+     * @param partialKey           the partial key of the node
+     * @param storageValue         the storage value, {@code null} if the node has none
+     * @return the encoded node
+     * @throws NodeEncodingException if the node has a partial key, but no children and no storage value
+     */
+    public byte[] encode(List<byte[]> childrenMerkleValues, Nibbles partialKey, @Nullable StorageValue storageValue) {
+        write(childrenMerkleValues, partialKey, storageValue);
+        return copyAndRelease();
+    }
+
+    /**
+     * Calculates the merkle value of a node: its encoding, hashed if it's 32 bytes or longer or if it's the root.
+     * The encoding is hashed in place, only encodings short enough to be the merkle value themselves are copied out
+     * of the buffer.
+     *
+     * @param childrenMerkleValues the merkle values of the children by index, {@code null} for missing ones
+     * @param partialKey           the partial key of the node
+     * @param storageValue         the storage value, {@code null} if the node has none
+     * @param hashFunction         the hashing function
+     * @param isRootNode           must be true if the node is the root node of the trie
+     * @return the merkle value of the node
+     */
+    public byte[] calculateMerkleValue(List<byte[]> childrenMerkleValues,
+                                       Nibbles partialKey,
+                                       @Nullable StorageValue storageValue,
+                                       RangeHashFunction hashFunction,
+                                       boolean isRootNode) {
+        write(childrenMerkleValues, partialKey, storageValue);
+        return merkleValue(hashFunction, isRootNode);
+    }
+
+    /**
+     * Calculates the merkle value of a node like
+     * {@link #calculateMerkleValue(List, Nibbles, StorageValue, RangeHashFunction, boolean)}, for callers which
+     * already hold the children in an array.
+     *
+     * @param childrenMerkleValues the merkle values of the children by index, {@code null} for missing ones
+     * @param partialKey           the partial key of the node
+     * @param storageValue         the storage value, {@code null} if the node has none
+     * @param hashFunction         the hashing function
+     * @param isRootNode           must be true if the node is the root node of the trie
+     * @return the merkle value of the node
+     */
+    public byte[] calculateMerkleValue(byte[][] childrenMerkleValues,
+                                       Nibbles partialKey,
+                                       @Nullable StorageValue storageValue,
+                                       RangeHashFunction hashFunction,
+                                       boolean isRootNode) {
+        write(childrenMerkleValues, partialKey, storageValue);
+        return merkleValue(hashFunction, isRootNode);
+    }
+
+    private byte[] merkleValue(RangeHashFunction hashFunction, boolean isRootNode) {
+        if (!isRootNode && length <= MAX_INLINE_NODE_LENGTH) {
+            return copyAndRelease();
+        }
+
+        byte[] hash = new byte[RangeHashFunction.HASH_LENGTH];
+        hashFunction.hash(buffer, 0, length, hash, 0);
+        release();
+        return hash;
+    }
+
+    private void write(List<byte[]> childrenMerkleValues, Nibbles partialKey, @Nullable StorageValue storageValue) {
+        int childrenCount = Math.min(childrenMerkleValues.size(), DecodedNode.CHILDREN_COUNT);
+        for (int i = 0; i < childrenCount; i++) {
+            children[i] = childrenMerkleValues.get(i);
+        }
+        try {
+            write(children, partialKey, storageValue);
+        } finally {
+            Arrays.fill(children, null);
+        }
+    }
+
+    private void write(byte[][] childrenMerkleValues, Nibbles partialKey, @Nullable StorageValue storageValue) {
+        length = 0;
+
+        int childrenCount = Math.min(childrenMerkleValues.length, DecodedNode.CHILDREN_COUNT);
+        int childrenBitmap = 0;
+        for (int i = 0; i < childrenCount; i++) {
+            if (childrenMerkleValues[i] != null) {
+                childrenBitmap |= 1 << i;
+            }
+        }
+
+        writeHeader(variant(childrenBitmap != 0, partialKey, storageValue), partialKey.size());
+        writePartialKey(partialKey);
+
+        if (childrenBitmap != 0) {
+            writeByte(childrenBitmap & 0xFF);
+            writeByte((childrenBitmap >> 8) & 0xFF);
+        }
+
+        if (storageValue != null) {
+            // The length of a hashed value is known from the header
+            if (!storageValue.isHashed()) {
+                writeCompact(storageValue.value().length);
+            }
+            writeBytes(storageValue.value());
+        }
+
+        for (int i = 0; i < childrenCount; i++) {
+            byte[] child = childrenMerkleValues[i];
+            if (child != null) {
+                writeCompact(child.length);
+                writeBytes(child);
+            }
+        }
+    }
+
+    private static NodeVariant variant(boolean hasChildren, Nibbles partialKey, @Nullable StorageValue storageValue) {
+        if (hasChildren) {
+            if (storageValue == null) {
+                return NodeVariant.BRANCH;
+            }
+            return storageValue.isHashed() ? NodeVariant.BRANCH_WITH_HASHED_VALUE : NodeVariant.BRANCH_WITH_VALUE;
+        }
+
+        if (storageValue == null) {
+            if (!partialKey.isEmpty()) {
+                throw new NodeEncodingException("Trie node has a partial key, but no children and no storage value.");
+            }
+            return NodeVariant.EMPTY;
+        }
+        return storageValue.isHashed() ? NodeVariant.LEAF_WITH_HASHED_VALUE : NodeVariant.LEAF;
+    }
+
+    private void writeHeader(NodeVariant variant, int partialKeyLength) {
+        int maxRepresentableInFirstByte = variant.getPartialKeyLengthHeaderMask();
+        writeByte(variant.bits | Math.min(partialKeyLength, maxRepresentableInFirstByte));
+
+        if (partialKeyLength >= maxRepresentableInFirstByte) {
+            int remaining = partialKeyLength - maxRepresentableInFirstByte;
+            for (int i = 0; i < remaining / 255; i++) {
+                writeByte(255);
+            }
+            writeByte(remaining % 255);
+        }
+    }
+
+    /**
+     * Writes the nibbles two per byte, with a zero nibble prepended if their number is odd.
+     */
+    private void writePartialKey(Nibbles partialKey) {
+        int size = partialKey.size();
+        int i = 0;
+        if (size % 2 != 0) {
+            writeByte(partialKey.get(0).asInt());
+            i = 1;
+        }
+        for (; i < size; i += 2) {
+            writeByte(partialKey.get(i).asInt() << 4 | partialKey.get(i + 1).asInt());
+        }
+    }
+
+    /**
+     * Writes a SCALE compact encoded length.
+     */
+    private void writeCompact(int value) {
+        if (value < 1 << 6) {
+            writeByte(value << 2);
+        } else if (value < 1 << 14) {
+            int encoded = value << 2 | 0b01;
+            writeByte(encoded);
+            writeByte(encoded >> 8);
+        } else if (value < 1 << 30) {
+            int encoded = value << 2 | 0b10;
+            writeByte(encoded);
+            writeByte(encoded >> 8);
+            writeByte(encoded >> 16);
+            writeByte(encoded >> 24);
+        } else {
+            // Big integer mode, the 4 bytes of the value follow
+            writeByte(0b11);
+            writeByte(value);
+            writeByte(value >> 8);
+            writeByte(value >> 16);
+            writeByte(value >> 24);
+        }
+    }
+
+    private byte[] copyAndRelease() {
+        byte[] encoded = Arrays.copyOf(buffer, length);
+        release();
+        return encoded;
+    }
+
+    private void release() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.limechain.trie.dto.node;
+
+/**
+ * A 256-bit hash function reading its input from a range of an array, e.g.
+ * {@link com.limechain.utils.HashUtils#hashWithBlake2b(byte[], int, int, byte[], int)}.
+ * <p>
+ * Lets {@link NodeEncoder} hash an encoded node right in its buffer, without copying the encoding out first.
+ */
+@FunctionalInterface
+public interface RangeHashFunction {
+    int HASH_LENGTH = 32;
+
+    /**
+     * Hashes {@code input[offset..offset + length)} into {@code output[outputOffset..outputOffset + 32)}.
+     */
+    void hash(byte[] input, int offset, int length, byte[] output, int outputOffset);
+
+    /**
+     * @return the hash of the whole input
+     */
+    default byte[] hash(byte[] input) {
+        byte[] hash = new byte[HASH_LENGTH];
+        hash(input, 0, input.length, hash, 0);
+        return hash;
+    }
+}
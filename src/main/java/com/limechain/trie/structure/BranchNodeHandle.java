@@ -35,9 +35,10 @@ public final class BranchNodeHandle<T> extends NodeHandle<T> {
                 "Branch node has already been converted to a storage node, so this handle is invalid.");
         }
 
-        TrieNode<T> node = this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex);
-        assert !node.hasStorageValue : "Branch node cannot have a storage value.";
-        node.hasStorageValue = true;
+        assert !this.trieStructure.nodes.hasStorageValue(this.rawNodeIndex)
+            : "Branch node cannot have a storage value.";
+        this.trieStructure.nodes.setHasStorageValue(this.rawNodeIndex, true);
+        this.trieStructure.markDirty(this.rawNodeIndex);
         consumed = true;
 
         return new StorageNodeHandle<>(this.trieStructure, this.rawNodeIndex);
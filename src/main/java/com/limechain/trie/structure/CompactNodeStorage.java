@@ -0,0 +1,365 @@
+package com.limechain.trie.structure;
+
+import com.limechain.exception.trie.InvalidSlabIndexException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the nodes in parallel arrays indexed by node index, instead of one object per node.
+ * <p>
+ * The children of a node are kept in a block of 16 indices within a shared pool, allocated only once the node gets
+ * a child, so leaves (about half of the nodes of a trie) don't pay for them. The partial keys are packed two nibbles
+ * per byte into a single arena. Replaced partial keys are left there as garbage, which gets compacted away once it
+ * makes up most of the arena, while dropping a prefix of a partial key only moves its offset. The user data is kept
+ * in a separate array.
+ * <p>
+ * A node thus takes a few dozen bytes instead of the hundreds spent on the headers and references of a
+ * {@link TrieNode}, its children array, parent and partial key, which suits large tries that are mostly read, e.g.
+ * whole states loaded from the database.
+ */
+final class CompactNodeStorage<T> implements NodeStorage<T> {
+    private static final int CHILDREN_COUNT = 16;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final int OCCUPIED = 1;
+    private static final int HAS_STORAGE_VALUE = 1 << 1;
+    /**
+     * The state version is kept in two bits as {@code stateVersion.asInt() + 1}, zero standing for none
+     */
+    private static final int STATE_VERSION_SHIFT = 2;
+    private static final int STATE_VERSION_MASK = 0b11 << STATE_VERSION_SHIFT;
+
+    // The node arrays, all indexed by node index
+    private byte[] flags;
+    private int[] parents;
+    private byte[] childIndicesWithinParents;
+    private char[] childrenBitmaps;
+    /**
+     * The block of each node within {@link #children}, {@link NodeStorage#NO_NODE} if the node has no children
+     */
+    private int[] childrenBlocks;
+    /**
+     * The position of each partial key within {@link #partialKeys}, counted in nibbles
+     */
+    private int[] partialKeyPositions;
+    private int[] partialKeyLengths;
+    private Object[] userData;
+
+    /**
+     * The number of node slots in use, either occupied or freed
+     */
+    private int newIndex;
+    private int[] freeIndices = new int[0];
+    private int freeCount;
+    private int size;
+
+    private int[] children = new int[0];
+    private int childrenBlockCount;
+    private int[] freeChildrenBlocks = new int[0];
+    private int freeChildrenBlockCount;
+
+    private byte[] partialKeys;
+    /**
+     * The number of nibbles written to {@link #partialKeys}, including garbage
+     */
+    private int partialKeysLength;
+    /**
+     * The number of nibbles in the partial keys of the existing nodes
+     */
+    private int livePartialKeysLength;
+
+    CompactNodeStorage(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, MIN_CAPACITY);
+        this.flags = new byte[capacity];
+        this.parents = new int[capacity];
+        this.childIndicesWithinParents = new byte[capacity];
+        this.childrenBitmaps = new char[capacity];
+        this.childrenBlocks = new int[capacity];
+        this.partialKeyPositions = new int[capacity];
+        this.partialKeyLengths = new int[capacity];
+        this.userData = new Object[capacity];
+        this.partialKeys = new byte[capacity];
+    }
+
+    @Override
+    public int add(int parentIndex, int childIndexWithinParent, @NotNull Nibbles partialKey, boolean hasStorageValue,
+                   @Nullable T userData, StateVersion stateVersion) {
+        int nodeIndex;
+        if (freeCount == 0) {
+            ensureNodeCapacity(newIndex + 1);
+            nodeIndex = newIndex++;
+        } else {
+            nodeIndex = freeIndices[--freeCount];
+        }
+
+        int stateVersionBits = stateVersion == null ? 0 : (stateVersion.asInt() + 1) << STATE_VERSION_SHIFT;
+        flags[nodeIndex] = (byte) (OCCUPIED | (hasStorageValue ? HAS_STORAGE_VALUE : 0) | stateVersionBits);
+        parents[nodeIndex] = parentIndex;
+        childIndicesWithinParents[nodeIndex] = (byte) (parentIndex == NO_NODE ? NO_NODE : childIndexWithinParent);
+        childrenBitmaps[nodeIndex] = 0;
+        childrenBlocks[nodeIndex] = NO_NODE;
+        writePartialKey(nodeIndex, partialKey);
+        this.userData[nodeIndex] = userData;
+        size++;
+        return nodeIndex;
+    }
+
+    @Override
+    public void remove(int nodeIndex) {
+        checkIndex(nodeIndex);
+        releaseChildrenBlock(nodeIndex);
+        livePartialKeysLength -= partialKeyLengths[nodeIndex];
+        partialKeyLengths[nodeIndex] = 0;
+        userData[nodeIndex] = null;
+        flags[nodeIndex] = 0;
+
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, grownCapacity(freeCount + 1));
+        }
+        freeIndices[freeCount++] = nodeIndex;
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void reserve(int additionalNodes) {
+        ensureNodeCapacity(newIndex + Math.max(0, additionalNodes - freeCount));
+    }
+
+    @Override
+    public IntStream indices() {
+        return IntStream.range(0, newIndex).filter(i -> flags[i] != 0);
+    }
+
+    @Override
+    public int parentIndex(int nodeIndex) {
+        checkIndex(nodeIndex);
+        return parents[nodeIndex];
+    }
+
+    @Override
+    public int childIndexWithinParent(int nodeIndex) {
+        checkIndex(nodeIndex);
+        return childIndicesWithinParents[nodeIndex];
+    }
+
+    @Override
+    public void setParent(int nodeIndex, int parentIndex, int childIndexWithinParent) {
+        checkIndex(nodeIndex);
+        parents[nodeIndex] = parentIndex;
+        childIndicesWithinParents[nodeIndex] = (byte) (parentIndex == NO_NODE ? NO_NODE : childIndexWithinParent);
+    }
+
+    @Override
+    public int child(int nodeIndex, int childIndex) {
+        checkIndex(nodeIndex);
+        if ((childrenBitmaps[nodeIndex] & (1 << childIndex)) == 0) {
+            return NO_NODE;
+        }
+        return children[childrenBlocks[nodeIndex] * CHILDREN_COUNT + childIndex];
+    }
+
+    @Override
+    public int childrenBitmap(int nodeIndex) {
+        checkIndex(nodeIndex);
+        return childrenBitmaps[nodeIndex];
+    }
+
+    @Override
+    public void setChild(int nodeIndex, int childIndex, int childNodeIndex) {
+        checkIndex(nodeIndex);
+        if (childNodeIndex == NO_NODE) {
+            childrenBitmaps[nodeIndex] &= (char) ~(1 << childIndex);
+            if (childrenBitmaps[nodeIndex] == 0) {
+                releaseChildrenBlock(nodeIndex);
+            }
+            return;
+        }
+
+        if (childrenBlocks[nodeIndex] == NO_NODE) {
+            childrenBlocks[nodeIndex] = allocateChildrenBlock();
+        }
+        children[childrenBlocks[nodeIndex] * CHILDREN_COUNT + childIndex] = childNodeIndex;
+        childrenBitmaps[nodeIndex] |= (char) (1 << childIndex);
+    }
+
+    @NotNull
+    @Override
+    public Nibbles partialKey(int nodeIndex) {
+        checkIndex(nodeIndex);
+        // Written nibbles of the arena are never overwritten, a compaction moves the keys to a new arena instead
+        return Nibbles.viewOfPacked(partialKeys, partialKeyPositions[nodeIndex], partialKeyLengths[nodeIndex]);
+    }
+
+    @Override
+    public void setPartialKey(int nodeIndex, @NotNull Nibbles partialKey) {
+        checkIndex(nodeIndex);
+        // The previous partial key becomes garbage and mustn't be kept by a compaction
+        livePartialKeysLength -= partialKeyLengths[nodeIndex];
+        partialKeyLengths[nodeIndex] = 0;
+        writePartialKey(nodeIndex, partialKey);
+    }
+
+    @Override
+    public void dropPartialKeyPrefix(int nodeIndex, int count) {
+        checkIndex(nodeIndex);
+        if (count < 0 || count > partialKeyLengths[nodeIndex]) {
+            throw new IndexOutOfBoundsException("Index: " + count + ", Size: " + partialKeyLengths[nodeIndex]);
+        }
+        partialKeyPositions[nodeIndex] += count;
+        partialKeyLengths[nodeIndex] -= count;
+        livePartialKeysLength -= count;
+    }
+
+    @Override
+    public boolean hasStorageValue(int nodeIndex) {
+        checkIndex(nodeIndex);
+        return (flags[nodeIndex] & HAS_STORAGE_VALUE) != 0;
+    }
+
+    @Override
+    public void setHasStorageValue(int nodeIndex, boolean hasStorageValue) {
+        checkIndex(nodeIndex);
+        flags[nodeIndex] = (byte) (hasStorageValue
+            ? flags[nodeIndex] | HAS_STORAGE_VALUE
+            : flags[nodeIndex] & ~HAS_STORAGE_VALUE);
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public T userData(int nodeIndex) {
+        checkIndex(nodeIndex);
+        return (T) userData[nodeIndex];
+    }
+
+    @Override
+    public void setUserData(int nodeIndex, @Nullable T userData) {
+        checkIndex(nodeIndex);
+        this.userData[nodeIndex] = userData;
+    }
+
+    @Override
+    public StateVersion stateVersion(int nodeIndex) {
+        checkIndex(nodeIndex);
+        int bits = (flags[nodeIndex] & STATE_VERSION_MASK) >> STATE_VERSION_SHIFT;
+        return bits == 0 ? null : StateVersion.fromInt(bits - 1);
+    }
+
+    @Override
+    public void setStateVersion(int nodeIndex, StateVersion stateVersion) {
+        checkIndex(nodeIndex);
+        int stateVersionBits = stateVersion == null ? 0 : (stateVersion.asInt() + 1) << STATE_VERSION_SHIFT;
+        flags[nodeIndex] = (byte) ((flags[nodeIndex] & ~STATE_VERSION_MASK) | stateVersionBits);
+    }
+
+    private void checkIndex(int nodeIndex) {
+        if (nodeIndex < 0 || nodeIndex >= newIndex) {
+            throw new InvalidSlabIndexException("Index " + nodeIndex + " out of bounds for underlying storage.");
+        }
+        if (flags[nodeIndex] == 0) {
+            throw new InvalidSlabIndexException("Index " + nodeIndex + " does not return any value.");
+        }
+    }
+
+    private void writePartialKey(int nodeIndex, Nibbles partialKey) {
+        int length = partialKey.size();
+        ensurePartialKeysCapacity(length);
+        partialKey.copyTo(partialKeys, partialKeysLength);
+        partialKeyPositions[nodeIndex] = partialKeysLength;
+        partialKeyLengths[nodeIndex] = length;
+        partialKeysLength += length;
+        livePartialKeysLength += length;
+    }
+
+    private void ensurePartialKeysCapacity(int additionalNibbles) {
+        if (partialKeysLength + additionalNibbles <= partialKeys.length * 2) {
+            return;
+        }
+
+        // Once most of the arena is garbage, the live partial keys are moved to a new one instead of copying all
+        boolean compact = partialKeysLength - livePartialKeysLength > partialKeysLength / 2;
+        int requiredNibbles = (compact ? livePartialKeysLength : partialKeysLength) + additionalNibbles;
+        byte[] resized = new byte[grownCapacity((requiredNibbles + 1) / 2)];
+
+        if (compact) {
+            int position = 0;
+            for (int i = 0; i < newIndex; i++) {
+                if (flags[i] != 0) {
+                    if (partialKeyLengths[i] > 0) {
+                        Nibbles.viewOfPacked(partialKeys, partialKeyPositions[i], partialKeyLengths[i])
+                            .copyTo(resized, position);
+                    }
+                    partialKeyPositions[i] = position;
+                    position += partialKeyLengths[i];
+                }
+            }
+            partialKeysLength = position;
+        } else {
+            System.arraycopy(partialKeys, 0, resized, 0, (partialKeysLength + 1) / 2);
+        }
+        partialKeys = resized;
+    }
+
+    private int allocateChildrenBlock() {
+        if (freeChildrenBlockCount > 0) {
+            return freeChildrenBlocks[--freeChildrenBlockCount];
+        }
+        if ((childrenBlockCount + 1) * CHILDREN_COUNT > children.length) {
+            children = Arrays.copyOf(children, grownCapacity((childrenBlockCount + 1) * CHILDREN_COUNT));
+        }
+        return childrenBlockCount++;
+    }
+
+    private void releaseChildrenBlock(int nodeIndex) {
+        int block = childrenBlocks[nodeIndex];
+        if (block == NO_NODE) {
+            return;
+        }
+        if (freeChildrenBlockCount == freeChildrenBlocks.length) {
+            freeChildrenBlocks = Arrays.copyOf(freeChildrenBlocks, grownCapacity(freeChildrenBlockCount + 1));
+        }
+        freeChildrenBlocks[freeChildrenBlockCount++] = block;
+        childrenBlocks[nodeIndex] = NO_NODE;
+        childrenBitmaps[nodeIndex] = 0;
+    }
+
+    private void ensureNodeCapacity(int minCapacity) {
+        if (minCapacity <= flags.length) {
+            return;
+        }
+        int capacity = Math.max(minCapacity, grownCapacity(flags.length));
+        flags = Arrays.copyOf(flags, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        childIndicesWithinParents = Arrays.copyOf(childIndicesWithinParents, capacity);
+        childrenBitmaps = Arrays.copyOf(childrenBitmaps, capacity);
+        childrenBlocks = Arrays.copyOf(childrenBlocks, capacity);
+        partialKeyPositions = Arrays.copyOf(partialKeyPositions, capacity);
+        partialKeyLengths = Arrays.copyOf(partialKeyLengths, capacity);
+        userData = Arrays.copyOf(userData, capacity);
+    }
+
+    /**
+     * @return a capacity of half as much again as the required one, leaving room for further growth
+     */
+    private static int grownCapacity(int minCapacity) {
+        int grown = minCapacity + (minCapacity >> 1) + MIN_CAPACITY;
+        // A negative value means the growth overflowed
+        return grown < 0 ? Math.max(minCapacity, MAX_ARRAY_LENGTH) : grown;
+    }
+}
@@ -0,0 +1,206 @@
+package com.limechain.trie.structure;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Wraps another {@link NodeStorage}, which may hold unloaded nodes that only know their place in the trie and their
+ * user data. An unloaded node gets fetched through a {@link NodeLoader} as soon as anything but its parent or user
+ * data is accessed, adding its children as unloaded nodes in turn. Its user data is readable without loading it,
+ * so e.g. the merkle values of untouched subtrees can be used as they are.
+ */
+final class LazyNodeStorage<T> implements NodeStorage<T> {
+    private static final int CHILDREN_COUNT = 16;
+
+    private final NodeStorage<T> inner;
+    private final NodeLoader<T> loader;
+    /**
+     * Raw indices of the nodes which haven't been loaded yet.
+     */
+    private final BitSet unloaded = new BitSet();
+
+    LazyNodeStorage(NodeStorage<T> inner, NodeLoader<T> loader) {
+        this.inner = inner;
+        this.loader = loader;
+    }
+
+    /**
+     * Adds a node which gets loaded on first access.
+     *
+     * @return the index of the new node
+     */
+    int addUnloaded(int parentIndex, int childIndexWithinParent, @Nullable T userData) {
+        int nodeIndex = inner.add(parentIndex, childIndexWithinParent, Nibbles.EMPTY, false, userData, null);
+        unloaded.set(nodeIndex);
+        return nodeIndex;
+    }
+
+    private void ensureLoaded(int nodeIndex) {
+        // Invalid indices are left to the inner storage to report
+        if (nodeIndex < 0 || !unloaded.get(nodeIndex)) {
+            return;
+        }
+
+        NodeLoader.LoadedNode<T> node = loader.load(inner.userData(nodeIndex));
+        List<T> children = node.children();
+        if (children.size() != CHILDREN_COUNT) {
+            throw new IllegalStateException("A loaded node must list " + CHILDREN_COUNT + " children.");
+        }
+
+        unloaded.clear(nodeIndex);
+        inner.setPartialKey(nodeIndex, node.partialKey());
+        inner.setHasStorageValue(nodeIndex, node.hasStorageValue());
+        inner.setUserData(nodeIndex, node.userData());
+        inner.setStateVersion(nodeIndex, node.stateVersion());
+        for (int i = 0; i < CHILDREN_COUNT; i++) {
+            T child = children.get(i);
+            if (child != null) {
+                inner.setChild(nodeIndex, i, addUnloaded(nodeIndex, i, child));
+            }
+        }
+    }
+
+    @Override
+    public int add(int parentIndex, int childIndexWithinParent, @NotNull Nibbles partialKey, boolean hasStorageValue,
+                   @Nullable T userData, StateVersion stateVersion) {
+        return inner.add(parentIndex, childIndexWithinParent, partialKey, hasStorageValue, userData, stateVersion);
+    }
+
+    @Override
+    public void remove(int nodeIndex) {
+        inner.remove(nodeIndex);
+        unloaded.clear(nodeIndex);
+    }
+
+    /**
+     * Loads all nodes first, as the descendants of the unloaded nodes aren't known otherwise.
+     */
+    @Override
+    public int size() {
+        ensureAllLoaded();
+        return inner.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return inner.isEmpty();
+    }
+
+    @Override
+    public void reserve(int additionalNodes) {
+        inner.reserve(additionalNodes);
+    }
+
+    /**
+     * Loads all nodes first, as the indices of nodes added while loading would be missed otherwise.
+     */
+    @Override
+    public IntStream indices() {
+        ensureAllLoaded();
+        return inner.indices();
+    }
+
+    private void ensureAllLoaded() {
+        for (int nodeIndex = unloaded.nextSetBit(0); nodeIndex >= 0; nodeIndex = unloaded.nextSetBit(0)) {
+            ensureLoaded(nodeIndex);
+        }
+    }
+
+    @Override
+    public int parentIndex(int nodeIndex) {
+        return inner.parentIndex(nodeIndex);
+    }
+
+    @Override
+    public int childIndexWithinParent(int nodeIndex) {
+        return inner.childIndexWithinParent(nodeIndex);
+    }
+
+    @Override
+    public void setParent(int nodeIndex, int parentIndex, int childIndexWithinParent) {
+        inner.setParent(nodeIndex, parentIndex, childIndexWithinParent);
+    }
+
+    @Override
+    public int child(int nodeIndex, int childIndex) {
+        ensureLoaded(nodeIndex);
+        return inner.child(nodeIndex, childIndex);
+    }
+
+    @Override
+    public int childrenBitmap(int nodeIndex) {
+        ensureLoaded(nodeIndex);
+        return inner.childrenBitmap(nodeIndex);
+    }
+
+    @Override
+    public void setChild(int nodeIndex, int childIndex, int childNodeIndex) {
+        ensureLoaded(nodeIndex);
+        inner.setChild(nodeIndex, childIndex, childNodeIndex);
+    }
+
+    @NotNull
+    @Override
+    public Nibbles partialKey(int nodeIndex) {
+        ensureLoaded(nodeIndex);
+        return inner.partialKey(nodeIndex);
+    }
+
+    @Override
+    public void setPartialKey(int nodeIndex, @NotNull Nibbles partialKey) {
+        ensureLoaded(nodeIndex);
+        inner.setPartialKey(nodeIndex, partialKey);
+    }
+
+    @Override
+    public void dropPartialKeyPrefix(int nodeIndex, int count) {
+        ensureLoaded(nodeIndex);
+        inner.dropPartialKeyPrefix(nodeIndex, count);
+    }
+
+    @Override
+    public boolean hasStorageValue(int nodeIndex) {
+        ensureLoaded(nodeIndex);
+        return inner.hasStorageValue(nodeIndex);
+    }
+
+    @Override
+    public void setHasStorageValue(int nodeIndex, boolean hasStorageValue) {
+        ensureLoaded(nodeIndex);
+        inner.setHasStorageValue(nodeIndex, hasStorageValue);
+    }
+
+    /**
+     * Doesn't load the node, so an unloaded node's user data is the one it was created with.
+     */
+    @Nullable
+    @Override
+    public T userData(int nodeIndex) {
+        return inner.userData(nodeIndex);
+    }
+
+    @Override
+    public void setUserData(int nodeIndex, @Nullable T userData) {
+        // Loading afterward would overwrite the new user data
+        ensureLoaded(nodeIndex);
+        inner.setUserData(nodeIndex, userData);
+    }
+
+    @Override
+    public StateVersion stateVersion(int nodeIndex) {
+        ensureLoaded(nodeIndex);
+        return inner.stateVersion(nodeIndex);
+    }
+
+    @Override
+    public void setStateVersion(int nodeIndex, StateVersion stateVersion) {
+        ensureLoaded(nodeIndex);
+        inner.setStateVersion(nodeIndex, stateVersion);
+    }
+}
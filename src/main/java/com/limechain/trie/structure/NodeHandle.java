@@ -1,5 +1,6 @@
 package com.limechain.trie.structure;
 
+import com.limechain.runtime.version.StateVersion;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import org.jetbrains.annotations.NotNull;
@@ -35,10 +36,21 @@ public abstract sealed class NodeHandle<T> extends Entry<T> permits StorageNodeH
      * @return the optional node handle of this child node, empty is no child exists at the given index
      */
     public Optional<NodeHandle<T>> getChild(Nibble index) {
-        TrieNode<T> node = this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex);
-        return Optional
-            .ofNullable(node.childrenIndices[index.asInt()])
-            .map(this.trieStructure::nodeHandleAtIndexInner);
+        int childIndex = this.trieStructure.nodes.child(this.rawNodeIndex, index.asInt());
+        return childIndex == NodeStorage.NO_NODE
+            ? Optional.empty()
+            : Optional.of(this.trieStructure.nodeHandleAtIndexInner(childIndex));
+    }
+
+    /**
+     * Gets the user data of this node's child at the given index, without creating a handle for the child.
+     * @param index The child index within this node's children, in the range [0, 15].
+     * @return the user data of the child node, null if no child exists at the given index or it has no user data
+     */
+    @Nullable
+    public T getChildUserData(int index) {
+        int childIndex = this.trieStructure.nodes.child(this.rawNodeIndex, index);
+        return childIndex == NodeStorage.NO_NODE ? null : this.trieStructure.nodes.userData(childIndex);
     }
 
     /**
@@ -46,7 +58,7 @@ public abstract sealed class NodeHandle<T> extends Entry<T> permits StorageNodeH
      */
     @NotNull
     public Nibbles getPartialKey() {
-        return this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex).partialKey;
+        return this.trieStructure.nodes.partialKey(this.rawNodeIndex);
     }
 
     /**
@@ -58,20 +70,21 @@ public abstract sealed class NodeHandle<T> extends Entry<T> permits StorageNodeH
     }
 
     /**
-     * @return  the {@link TrieNode#userData} of the underlying node this handle points to,
+     * @return  the user data of the underlying node this handle points to,
      *          null if the node has no user data.
      */
     @Nullable
     public T getUserData() {
-        return this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex).userData;
+        return this.trieStructure.nodes.userData(this.rawNodeIndex);
     }
 
     /**
-     * Sets the {@link TrieNode#userData} of the underlying node, pointed to by this handle.
+     * Sets the user data of the underlying node, pointed to by this handle.
      * @param userData the new user data to be set
      */
     public void setUserData(@Nullable T userData) {
-        this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex).userData = userData;
+        this.trieStructure.nodes.setUserData(this.rawNodeIndex, userData);
+        this.trieStructure.markDirty(this.rawNodeIndex);
     }
 
     /**
@@ -79,13 +92,13 @@ public abstract sealed class NodeHandle<T> extends Entry<T> permits StorageNodeH
      */
     @Nullable
     public NodeHandle<T> getParent() {
-        var parentIndex = this.trieStructure.nodes.get(this.rawNodeIndex).parent;
+        int parentIndex = this.trieStructure.nodes.parentIndex(this.rawNodeIndex);
 
-        if (parentIndex == null) {
+        if (parentIndex == NodeStorage.NO_NODE) {
             return null;
         }
 
-        return this.trieStructure.nodeHandleAtIndexInner(parentIndex.parentNodeIndex());
+        return this.trieStructure.nodeHandleAtIndexInner(parentIndex);
     }
 
     /**
@@ -121,6 +134,15 @@ public abstract sealed class NodeHandle<T> extends Entry<T> permits StorageNodeH
     }
 
     public int getStateVersion() {
-        return this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex).stateVersion.asInt();
+        return this.trieStructure.nodes.stateVersion(this.rawNodeIndex).asInt();
+    }
+
+    /**
+     * Sets the state version of the underlying node, pointed to by this handle.
+     * @param stateVersion the new state version to be set
+     */
+    public void setStateVersion(StateVersion stateVersion) {
+        this.trieStructure.nodes.setStateVersion(this.rawNodeIndex, stateVersion);
+        this.trieStructure.markDirty(this.rawNodeIndex);
     }
 }
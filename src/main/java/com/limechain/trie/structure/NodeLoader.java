@@ -0,0 +1,40 @@
+package com.limechain.trie.structure;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Fetches the nodes of a lazily loaded {@link TrieStructure} the first time they are accessed.
+ *
+ * @param <T> the type of the user data attached to the nodes
+ * @see TrieStructure#lazy(Object, NodeLoader)
+ */
+@FunctionalInterface
+public interface NodeLoader<T> {
+
+    /**
+     * Loads a node which so far is only known by its user data, as given by the node's parent when it got loaded.
+     *
+     * @param userData the user data the node was created with, e.g. holding nothing but its merkle value
+     * @return the node with the user data of its children
+     */
+    LoadedNode<T> load(@Nullable T userData);
+
+    /**
+     * A node fetched by a {@link NodeLoader}.
+     *
+     * @param partialKey      the partial key of the node
+     * @param hasStorageValue whether the node has a storage value
+     * @param userData        replaces the user data the node was created with
+     * @param stateVersion    the state version of the node
+     * @param children        16 entries, each either the user data of the still unloaded child at that child index
+     *                        or null if there's no child there
+     */
+    record LoadedNode<T>(@NotNull Nibbles partialKey, boolean hasStorageValue, @Nullable T userData,
+                         StateVersion stateVersion, List<T> children) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.limechain.trie.structure;
+
+import com.limechain.exception.trie.InvalidSlabIndexException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.stream.IntStream;
+
+/**
+ * The container of a {@link TrieStructure}'s nodes, addressing each node by its raw index.
+ * <p>
+ * The index of a node stays valid until the node is removed, after which it may be reused for a new node.
+ * A missing parent or child is represented by {@link #NO_NODE}. All methods taking a node index throw an
+ * {@link InvalidSlabIndexException} if there's no node at that index.
+ *
+ * @param <T> the type of the user data attached to the nodes
+ * @see ObjectNodeStorage
+ * @see CompactNodeStorage
+ */
+interface NodeStorage<T> {
+    /**
+     * Stands for the absence of a node, e.g. the parent of the root.
+     */
+    int NO_NODE = -1;
+
+    /**
+     * Adds a node without children.
+     *
+     * @param parentIndex            the index of the parent node, {@link #NO_NODE} for the root
+     * @param childIndexWithinParent the child index of the node within its parent, in the range [0, 15].
+     *                               Ignored for the root.
+     * @return the index of the new node
+     */
+    int add(int parentIndex, int childIndexWithinParent, @NotNull Nibbles partialKey, boolean hasStorageValue,
+            @Nullable T userData, StateVersion stateVersion);
+
+    void remove(int nodeIndex);
+
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * Ensures that the given number of nodes can be added without growing the underlying storage.
+     */
+    void reserve(int additionalNodes);
+
+    /**
+     * @return the indices of all nodes in no specific order
+     */
+    IntStream indices();
+
+    /**
+     * @return the index of the parent node, {@link #NO_NODE} if this is the root
+     */
+    int parentIndex(int nodeIndex);
+
+    /**
+     * @return the child index of the node within its parent, only meaningful if the node has a parent
+     */
+    int childIndexWithinParent(int nodeIndex);
+
+    void setParent(int nodeIndex, int parentIndex, int childIndexWithinParent);
+
+    /**
+     * @return the index of the child node at the given child index, {@link #NO_NODE} if there's none
+     */
+    int child(int nodeIndex, int childIndex);
+
+    /**
+     * @return a bitmap of the node's children, bit {@code i} being set if there's a child at child index {@code i}
+     */
+    int childrenBitmap(int nodeIndex);
+
+    /**
+     * Sets the child node at the given child index, {@link #NO_NODE} removing it. The child's parent isn't updated.
+     */
+    void setChild(int nodeIndex, int childIndex, int childNodeIndex);
+
+    @NotNull
+    Nibbles partialKey(int nodeIndex);
+
+    void setPartialKey(int nodeIndex, @NotNull Nibbles partialKey);
+
+    /**
+     * Removes the given number of leading nibbles from the node's partial key.
+     */
+    void dropPartialKeyPrefix(int nodeIndex, int count);
+
+    boolean hasStorageValue(int nodeIndex);
+
+    void setHasStorageValue(int nodeIndex, boolean hasStorageValue);
+
+    @Nullable
+    T userData(int nodeIndex);
+
+    void setUserData(int nodeIndex, @Nullable T userData);
+
+    StateVersion stateVersion(int nodeIndex);
+
+    void setStateVersion(int nodeIndex, StateVersion stateVersion);
+}
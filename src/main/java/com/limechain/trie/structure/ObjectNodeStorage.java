@@ -0,0 +1,154 @@
+package com.limechain.trie.structure;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibble;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.slab.Slab;
+import org.javatuples.Pair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps each node as a separate {@link TrieNode} object in a {@link Slab}. Cheap to modify, which suits tries
+ * that are built and changed a lot, e.g. the ones of blocks being executed.
+ */
+final class ObjectNodeStorage<T> implements NodeStorage<T> {
+    private static final int CHILDREN_COUNT = 16;
+
+    /**
+     * Using a Slab guarantees consistency of node indices without the need for internal management.
+     */
+    private final Slab<TrieNode<T>> nodes;
+
+    ObjectNodeStorage(int initialCapacity) {
+        this.nodes = new Slab<>(initialCapacity);
+    }
+
+    @Override
+    public int add(int parentIndex, int childIndexWithinParent, @NotNull Nibbles partialKey, boolean hasStorageValue,
+                   @Nullable T userData, StateVersion stateVersion) {
+        TrieNode.Parent parent = parentIndex == NO_NODE
+            ? null
+            : new TrieNode.Parent(parentIndex, Nibble.fromInt(childIndexWithinParent));
+        return nodes.add(new TrieNode<>(parent, partialKey, new Integer[CHILDREN_COUNT], hasStorageValue, userData,
+            stateVersion));
+    }
+
+    @Override
+    public void remove(int nodeIndex) {
+        nodes.remove(nodeIndex);
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    @Override
+    public void reserve(int additionalNodes) {
+        nodes.reserve(additionalNodes);
+    }
+
+    @Override
+    public IntStream indices() {
+        return StreamSupport.stream(nodes.spliterator(), false).mapToInt(Pair::getValue0);
+    }
+
+    @Override
+    public int parentIndex(int nodeIndex) {
+        TrieNode.Parent parent = nodes.get(nodeIndex).parent;
+        return parent == null ? NO_NODE : parent.parentNodeIndex();
+    }
+
+    @Override
+    public int childIndexWithinParent(int nodeIndex) {
+        TrieNode.Parent parent = nodes.get(nodeIndex).parent;
+        return parent == null ? NO_NODE : parent.childIndexWithinParent().asInt();
+    }
+
+    @Override
+    public void setParent(int nodeIndex, int parentIndex, int childIndexWithinParent) {
+        nodes.get(nodeIndex).parent = parentIndex == NO_NODE
+            ? null
+            : new TrieNode.Parent(parentIndex, Nibble.fromInt(childIndexWithinParent));
+    }
+
+    @Override
+    public int child(int nodeIndex, int childIndex) {
+        Integer child = nodes.get(nodeIndex).childrenIndices[childIndex];
+        return child == null ? NO_NODE : child;
+    }
+
+    @Override
+    public int childrenBitmap(int nodeIndex) {
+        Integer[] children = nodes.get(nodeIndex).childrenIndices;
+        int bitmap = 0;
+        for (int i = 0; i < CHILDREN_COUNT; i++) {
+            if (children[i] != null) {
+                bitmap |= 1 << i;
+            }
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void setChild(int nodeIndex, int childIndex, int childNodeIndex) {
+        nodes.get(nodeIndex).childrenIndices[childIndex] = childNodeIndex == NO_NODE ? null : childNodeIndex;
+    }
+
+    @NotNull
+    @Override
+    public Nibbles partialKey(int nodeIndex) {
+        return nodes.get(nodeIndex).partialKey;
+    }
+
+    @Override
+    public void setPartialKey(int nodeIndex, @NotNull Nibbles partialKey) {
+        nodes.get(nodeIndex).partialKey = partialKey;
+    }
+
+    @Override
+    public void dropPartialKeyPrefix(int nodeIndex, int count) {
+        TrieNode<T> node = nodes.get(nodeIndex);
+        node.partialKey = node.partialKey.drop(count);
+    }
+
+    @Override
+    public boolean hasStorageValue(int nodeIndex) {
+        return nodes.get(nodeIndex).hasStorageValue;
+    }
+
+    @Override
+    public void setHasStorageValue(int nodeIndex, boolean hasStorageValue) {
+        nodes.get(nodeIndex).hasStorageValue = hasStorageValue;
+    }
+
+    @Nullable
+    @Override
+    public T userData(int nodeIndex) {
+        return nodes.get(nodeIndex).userData;
+    }
+
+    @Override
+    public void setUserData(int nodeIndex, @Nullable T userData) {
+        nodes.get(nodeIndex).userData = userData;
+    }
+
+    @Override
+    public StateVersion stateVersion(int nodeIndex) {
+        return nodes.get(nodeIndex).stateVersion;
+    }
+
+    @Override
+    public void setStateVersion(int nodeIndex, StateVersion stateVersion) {
+        nodes.get(nodeIndex).stateVersion = stateVersion;
+    }
+}
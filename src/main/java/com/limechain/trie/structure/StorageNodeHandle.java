@@ -22,8 +22,8 @@ public final class StorageNodeHandle<T> extends NodeHandle<T> {
                     "Storage node has already been converted to a branch node, so this handle is invalid.");
         }
 
-        TrieNode<T> node = this.trieStructure.getNodeAtIndexInner(this.rawNodeIndex);
-        node.hasStorageValue = false;
+        this.trieStructure.nodes.setHasStorageValue(this.rawNodeIndex, false);
+        this.trieStructure.markDirty(this.rawNodeIndex);
 
         return new BranchNodeHandle<>(this.trieStructure, this.rawNodeIndex);
 
@@ -7,19 +7,15 @@ import lombok.AllArgsConstructor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.Optional;
-
 /**
- * Represents a node in the trie structure. Mutable by design.
+ * Represents a node in the trie structure, as kept by {@link ObjectNodeStorage}. Mutable by design.
  * Fields are intentionally package-protected, since the separations of constructing and modifying trie nodes
  * is spread among a couple of classes within this package.
  */
 @AllArgsConstructor
 class TrieNode<T> {
     /**
-     * Index of the parent node within {@link TrieStructure#nodes} plus this node's child index within the parent.
+     * Index of the parent node within the node storage plus this node's child index within the parent.
      * Null if this is the root.
      */
     @Nullable
@@ -51,15 +47,6 @@ class TrieNode<T> {
 
     StateVersion stateVersion;
 
-    /**
-     * @return the lexicographically first ('0' to 'f') child node's index, Optional.empty() if no children.
-     */
-    Optional<Integer> firstChild() {
-        return Arrays.stream(this.childrenIndices)
-            .filter(Objects::nonNull)
-            .findFirst();
-    }
-
     /**
      * Contains information about the parent's index and this node's child index within the parent.
      * @param parentNodeIndex the raw {@link TrieNodeIndex} of the parent node
@@ -5,28 +5,31 @@ import com.limechain.runtime.version.StateVersion;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.trie.structure.nibble.NibblesCollector;
-import com.limechain.trie.structure.slab.Slab;
-import org.javatuples.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 public class TrieStructure<T> {
     /**
      * The actual container for the trie's nodes.
-     * Using a Slab guarantees consistency of node indices without the need for internal management.
      */
-    Slab<TrieNode<T>> nodes;
+    final NodeStorage<T> nodes;
 
     /**
      * Index of the root node within {@link TrieStructure#nodes}.
@@ -35,16 +38,79 @@ public class TrieStructure<T> {
     @Nullable
     Integer rootIndex;
 
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int CHILDREN_COUNT = 16;
+    private static final int NO_NODE = NodeStorage.NO_NODE;
+
+    /**
+     * Raw indices of the nodes created or modified since the dirty nodes were last taken or cleared.
+     * The ancestors of a dirty node are implicitly dirty too, since their merkle values depend on it.
+     */
+    private final BitSet dirtyNodes = new BitSet();
+
     public TrieStructure() {
-        this.nodes = new Slab<>();
-        this.rootIndex = null;
+        this(DEFAULT_CAPACITY);
     }
 
     public TrieStructure(int initialCapacity) {
-        this.nodes = new Slab<>(initialCapacity);
+        this(new ObjectNodeStorage<>(initialCapacity));
+    }
+
+    private TrieStructure(NodeStorage<T> nodes) {
+        this.nodes = nodes;
         this.rootIndex = null;
     }
 
+    /**
+     * @return an empty trie structure with a compact node representation
+     * @see #compact(int)
+     */
+    public static <T> TrieStructure<T> compact() {
+        return compact(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty trie structure keeping its nodes in parallel arrays rather than one object per node, which
+     * takes several times less memory. Best suited for large tries which are mostly read, e.g. whole states.
+     *
+     * @param initialCapacity the number of nodes to allocate room for upfront
+     * @return an empty trie structure with a compact node representation
+     */
+    public static <T> TrieStructure<T> compact(int initialCapacity) {
+        return new TrieStructure<>(new CompactNodeStorage<>(initialCapacity));
+    }
+
+    /**
+     * Creates a compact trie structure whose nodes are fetched by the given loader when first accessed, starting with
+     * the root. Until then a node is only known by its user data, which is given by its parent's loaded node.
+     * <p>
+     * Modifications work as usual, loading the nodes along the way. The user data of unloaded nodes can still be read,
+     * e.g. through {@link NodeHandle#getChildUserData(int)}, without loading them. Iterating over all nodes or getting
+     * the {@link #size()} loads the whole trie.
+     *
+     * @param rootUserData the user data of the unloaded root, null for an empty trie
+     * @param loader       fetches the unloaded nodes
+     * @return a trie structure holding the unloaded root only
+     */
+    public static <T> TrieStructure<T> lazy(@Nullable T rootUserData, NodeLoader<T> loader) {
+        LazyNodeStorage<T> nodes = new LazyNodeStorage<>(new CompactNodeStorage<>(DEFAULT_CAPACITY), loader);
+        TrieStructure<T> trie = new TrieStructure<>(nodes);
+        if (rootUserData != null) {
+            trie.rootIndex = nodes.addUnloaded(NO_NODE, 0, rootUserData);
+        }
+        return trie;
+    }
+
+    /**
+     * Ensures that the given number of nodes can be inserted without growing the underlying storage. Useful when
+     * loading a trie whose size is known upfront.
+     *
+     * @param additionalNodes the number of nodes about to be inserted
+     */
+    public void reserve(int additionalNodes) {
+        this.nodes.reserve(additionalNodes);
+    }
+
     /**
      * @return true if the trie is empty
      */
@@ -165,9 +231,8 @@ public class TrieStructure<T> {
      * indexed by their respective {@link TrieNodeIndex}es.
      */
     public Stream<TrieNodeIndex> streamUnordered() {
-        return StreamSupport.stream(this.nodes.spliterator(), false)
-                .map(Pair::getValue0)
-                .map(TrieNodeIndex::new);
+        return this.nodes.indices()
+                .mapToObj(TrieNodeIndex::new);
     }
 
     /**
@@ -207,13 +272,12 @@ public class TrieStructure<T> {
                 this.rootIndex,
                 Objects::nonNull,
                 nodeIndex -> {
-                    TrieNode<T> node = this.getNodeAtIndexInner(nodeIndex);
                     // Search for first direct child (as lexicographically next)
                     {
-                        Optional<Integer> firstChild = node.firstChild();
+                        int children = this.nodes.childrenBitmap(nodeIndex);
 
-                        if (firstChild.isPresent()) {
-                            return firstChild.get();
+                        if (children != 0) {
+                            return this.nodes.child(nodeIndex, Integer.numberOfTrailingZeros(children));
                         }
                     }
 
@@ -226,16 +290,15 @@ public class TrieStructure<T> {
                     }
 
                     // If no direct siblings either, then go up the tree and repeat for parent
-                    TrieNode.Parent parent = node.parent;
-                    while (parent != null) {
-                        int idx = parent.parentNodeIndex();
-                        Integer nextSibling = this.nextSibling(idx);
+                    int parent = this.nodes.parentIndex(nodeIndex);
+                    while (parent != NO_NODE) {
+                        Integer nextSibling = this.nextSibling(parent);
 
                         if (nextSibling != null) {
                             return nextSibling;
                         }
 
-                        parent = this.getNodeAtIndexInner(idx).parent;
+                        parent = this.nodes.parentIndex(parent);
                     }
 
                     // At the end, no nodes should be left.
@@ -250,24 +313,20 @@ public class TrieStructure<T> {
      * null if it's the last (lexicographically speaking) child if its parent, thus no next sibling exists.
      */
     private @Nullable Integer nextSibling(int nodeIndex) {
-        var parentIndexPair = this.getNodeAtIndexInner(nodeIndex).parent;
+        int parentIndex = this.nodes.parentIndex(nodeIndex);
 
-        if (parentIndexPair == null) {
+        if (parentIndex == NO_NODE) {
             return null;
         }
 
-        int parentIndex = parentIndexPair.parentNodeIndex();
-        Nibble childIndex = parentIndexPair.childIndexWithinParent();
-
-        var parent = this.getNodeAtIndexInner(parentIndex);
+        int childIndex = this.nodes.childIndexWithinParent(nodeIndex);
+        int nextSiblings = this.nodes.childrenBitmap(parentIndex) >>> (childIndex + 1);
 
-        for (int idx = childIndex.asInt() + 1; idx < 16; ++idx) {
-            if (parent.childrenIndices[idx] != null) {
-                return parent.childrenIndices[idx];
-            }
+        if (nextSiblings == 0) {
+            return null;
         }
 
-        return null;
+        return this.nodes.child(parentIndex, childIndex + 1 + Integer.numberOfTrailingZeros(nextSiblings));
     }
 
     /**
@@ -292,17 +351,15 @@ public class TrieStructure<T> {
 
         int currentIndex = this.rootIndex;
 
-        assert this.getNodeAtIndexInner(currentIndex).parent == null : "Root's parent index must be null.";
+        assert this.nodes.parentIndex(currentIndex) == NO_NODE : "Root's parent index must be null.";
 
         ExistingNodeInnerResult.NotFound.ClosestAncestor closestAncestor = null;
 
         Iterator<Nibble> keyIter = key.iterator();
         while (true) {
-            TrieNode<T> current = this.nodes.get(currentIndex);
-
             // First, we must remove `current`'s partial key from `key`, making sure that they
             // match.
-            for (Nibble nibble : current.partialKey) {
+            for (Nibble nibble : this.nodes.partialKey(currentIndex)) {
                 if (!keyIter.hasNext() || !keyIter.next().equals(nibble)) {
                     return new ExistingNodeInnerResult.NotFound(closestAncestor);
                 }
@@ -320,16 +377,16 @@ public class TrieStructure<T> {
 
             // If no next nibble is present in the key, return successfully...
             if (!keyIter.hasNext()) {
-                return new ExistingNodeInnerResult.Found(currentIndex, current.hasStorageValue);
+                return new ExistingNodeInnerResult.Found(currentIndex, this.nodes.hasStorageValue(currentIndex));
             }
 
             // ... otherwise, parse the next nibble as `childIndex`
             Nibble childIndex = keyIter.next();
-            Integer nextIndex = current.childrenIndices[childIndex.asInt()];
+            int nextIndex = this.nodes.child(currentIndex, childIndex.asInt());
 
             // If the `current` trie node doesn't contain a child with that next nibble
             // return `NotFound`...
-            if (nextIndex == null) {
+            if (nextIndex == NO_NODE) {
                 return new ExistingNodeInnerResult.NotFound(closestAncestor);
             }
 
@@ -380,19 +437,6 @@ public class TrieStructure<T> {
 
     }
 
-    /**
-     * A package-private method for inner work with the trie's nodes.
-     * Accessible from all affiliate classes managing the inner state of the trie structure.
-     *
-     * @param nodeIndex the raw integer index of the node
-     * @return the {@link TrieNode} at the given index
-     * @throws InvalidSlabIndexException if the index is invalid
-     */
-    @NotNull
-    TrieNode<T> getNodeAtIndexInner(int nodeIndex) {
-        return this.nodes.get(nodeIndex);
-    }
-
     /**
      * Returns the user data of the node by its index.
      *
@@ -401,7 +445,7 @@ public class TrieStructure<T> {
      */
     @Nullable
     public T getUserDataAtIndex(@NotNull TrieNodeIndex nodeIndex) {
-        return this.getNodeAtIndexInner(nodeIndex.getValue()).userData;
+        return this.nodes.userData(nodeIndex.getValue());
     }
 
     /**
@@ -414,10 +458,12 @@ public class TrieStructure<T> {
         return nodeHandleAtIndexInner(nodeIndex.getValue());
     }
 
+    /**
+     * @throws InvalidSlabIndexException if there's no node at the given index
+     */
     @NotNull
     NodeHandle<T> nodeHandleAtIndexInner(int nodeIndex) {
-        TrieNode<T> node = this.getNodeAtIndexInner(nodeIndex);
-        return NodeHandle.<T>getConstructor(node.hasStorageValue).apply(this, nodeIndex);
+        return NodeHandle.<T>getConstructor(this.nodes.hasStorageValue(nodeIndex)).apply(this, nodeIndex);
     }
 
     /**
@@ -440,15 +486,13 @@ public class TrieStructure<T> {
         Stream<Nibble> nibblesStream = nodePath
                 .stream()
                 .flatMap(n -> {
-                    TrieNode<T> node = this.getNodeAtIndexInner(n);
-
                     Stream<Nibble> childIndex = Stream.ofNullable(
-                            node.parent == null
+                            this.nodes.parentIndex(n) == NO_NODE
                                     ? null
-                                    : node.parent.childIndexWithinParent()
+                                    : Nibble.fromInt(this.nodes.childIndexWithinParent(n))
                     );
 
-                    Nibbles partialKey = node.partialKey.copy();
+                    Nibbles partialKey = this.nodes.partialKey(n).copy();
 
                     return Stream.concat(childIndex, partialKey.stream());
                 });
@@ -464,12 +508,11 @@ public class TrieStructure<T> {
      */
     Deque<Integer> nodePath(int targetNodeIndex) {
         Deque<Integer> path = new LinkedList<>();
-        var current = this.getNodeAtIndexInner(targetNodeIndex).parent;
+        int current = this.nodes.parentIndex(targetNodeIndex);
 
-        while (current != null) {
-            int nodeIndex = current.parentNodeIndex();
-            path.addFirst(nodeIndex);
-            current = this.getNodeAtIndexInner(nodeIndex).parent;
+        while (current != NO_NODE) {
+            path.addFirst(current);
+            current = this.nodes.parentIndex(current);
         }
 
         return path;
@@ -477,7 +520,7 @@ public class TrieStructure<T> {
 
     /**
      * Returns true if the structure of this trie is the same as the structure of {@code other}.
-     * Everything is compared for equality except for the {@link TrieNode#userData}s.
+     * Everything is compared for equality except for the nodes' user data.
      *
      * @implNote This method first compares the sizes of the two trie structures,
      * and if they don't match, it early returns false.
@@ -497,10 +540,10 @@ public class TrieStructure<T> {
                 return true;
             }
 
-            var thisNode = this.getNodeAtIndexInner(thisIter.next().getValue());
-            var otherNode = other.getNodeAtIndexInner(otherIter.next().getValue());
+            int thisNode = thisIter.next().getValue();
+            int otherNode = otherIter.next().getValue();
 
-            if (thisNode.hasStorageValue != otherNode.hasStorageValue) {
+            if (this.nodes.hasStorageValue(thisNode) != other.nodes.hasStorageValue(otherNode)) {
                 return false;
             }
 
@@ -509,26 +552,74 @@ public class TrieStructure<T> {
             //   - both parents are null;
             //   - both parents are not null and the two nodes' child indices within them are the same
             {
-                var thisNodeParent = thisNode.parent;
-                var otherNodeParent = otherNode.parent;
+                int thisNodeParent = this.nodes.parentIndex(thisNode);
+                int otherNodeParent = other.nodes.parentIndex(otherNode);
 
-                boolean bothParentsNull = thisNodeParent == null || otherNodeParent == null;
+                boolean bothParentsNull = thisNodeParent == NO_NODE || otherNodeParent == NO_NODE;
                 boolean bothParentsNotNullAndSameChildIndices =
-                        thisNodeParent != null
-                        && otherNodeParent != null
-                        && thisNodeParent.childIndexWithinParent().equals(otherNodeParent.childIndexWithinParent());
+                        thisNodeParent != NO_NODE
+                        && otherNodeParent != NO_NODE
+                        && this.nodes.childIndexWithinParent(thisNode)
+                           == other.nodes.childIndexWithinParent(otherNode);
 
                 if (!(bothParentsNull || bothParentsNotNullAndSameChildIndices)) {
                     return false;
                 }
             }
 
-            if (!thisNode.partialKey.equals(otherNode.partialKey)) {
+            if (!this.nodes.partialKey(thisNode).equals(other.nodes.partialKey(otherNode))) {
                 return false;
             }
         }
     }
 
+    /**
+     * Marks a node as modified, so its merkle value and the ones of its ancestors get recalculated.
+     *
+     * @param nodeIndex the raw index of the node
+     */
+    void markDirty(int nodeIndex) {
+        this.dirtyNodes.set(nodeIndex);
+    }
+
+    /**
+     * Forgets all modifications, e.g. after all merkle values have been calculated or loaded from the database.
+     */
+    public void clearDirtyNodes() {
+        this.dirtyNodes.clear();
+    }
+
+    /**
+     * Returns the nodes whose merkle values have to be recalculated, i.e. the modified nodes and all their ancestors,
+     * and clears the modifications.
+     *
+     * @return the indices of the nodes, children always coming before their parents
+     */
+    public List<TrieNodeIndex> takeDirtyNodesBottomUp() {
+        Map<Integer, Integer> depths = new HashMap<>();
+        Deque<Integer> path = new ArrayDeque<>();
+
+        for (int index = dirtyNodes.nextSetBit(0); index >= 0; index = dirtyNodes.nextSetBit(index + 1)) {
+            // Walk up until the root or an already visited ancestor, then assign depths on the way down
+            Integer current = index;
+            while (current != null && !depths.containsKey(current)) {
+                path.push(current);
+                int parent = nodes.parentIndex(current);
+                current = parent == NO_NODE ? null : parent;
+            }
+
+            int depth = current == null ? -1 : depths.get(current);
+            while (!path.isEmpty()) {
+                depths.put(path.pop(), ++depth);
+            }
+        }
+        dirtyNodes.clear();
+
+        List<Integer> indices = new ArrayList<>(depths.keySet());
+        indices.sort(Comparator.comparing(depths::get, Comparator.reverseOrder()));
+        return indices.stream().map(TrieNodeIndex::new).toList();
+    }
+
     public boolean deleteStorageNodeAt(Nibbles key) {
         return switch (node(key)){
             case StorageNodeHandle<T> storageNodeHandle -> {
@@ -550,90 +641,150 @@ public class TrieStructure<T> {
     }
 
     public void deleteNodesRecursively(TrieNodeIndex nodeIndex, Long limit, AtomicInteger deleted) {
-        deleteNodesRecursively(nodeIndex.getValue(), limit, deleted);
+        deleteNodesRecursively(nodeIndex.getValue(), limit, deleted, nodeHandle -> {
+        });
     }
 
-    private void deleteNodesRecursively(int nodeIndex, Long limit, AtomicInteger deleted) {
-        TrieNode<T> trieNode = getNodeAtIndexInner(nodeIndex);
+    /**
+     * Same as {@link #deleteNodesRecursively(TrieNodeIndex, Long, AtomicInteger)}, additionally passing each storage
+     * node to {@code beforeStorageNodeDeletion} right before it gets deleted.
+     */
+    public void deleteNodesRecursively(TrieNodeIndex nodeIndex, Long limit, AtomicInteger deleted,
+                                       Consumer<NodeHandle<T>> beforeStorageNodeDeletion) {
+        deleteNodesRecursively(nodeIndex.getValue(), limit, deleted, beforeStorageNodeDeletion);
+    }
 
-        TrieNode.Parent parent = trieNode.parent;
-        if (parent == null) {
-            if (trieNode.hasStorageValue) {
+    private void deleteNodesRecursively(int nodeIndex, Long limit, AtomicInteger deleted,
+                                        Consumer<NodeHandle<T>> beforeStorageNodeDeletion) {
+        int parentIndex = nodes.parentIndex(nodeIndex);
+        if (parentIndex == NO_NODE) {
+            if (nodes.hasStorageValue(nodeIndex)) {
+                beforeStorageNodeDeletion.accept(nodeHandleAtIndexInner(nodeIndex));
                 deleted.incrementAndGet();
             }
-            nodes.remove(nodeIndex);
+            removeNode(nodeIndex);
             return;
         }
 
-        TrieNode<T> parentNode = getNodeAtIndexInner(parent.parentNodeIndex());
-
-        for (Integer childrenIndex : trieNode.childrenIndices) {
+        for (int i = 0; i < CHILDREN_COUNT; i++) {
             if (limit != null && deleted.get() >= limit) {
-                return;
+                break;
             }
-            if (childrenIndex != null) {
-                deleteNodesRecursively(childrenIndex, limit, deleted);
+            int childIndex = nodes.child(nodeIndex, i);
+            if (childIndex != NO_NODE) {
+                deleteNodesRecursively(childIndex, limit, deleted, beforeStorageNodeDeletion);
             }
         }
 
-        parentNode.childrenIndices[parent.childIndexWithinParent().asInt()] = null;
-        nodes.remove(nodeIndex);
-        if (trieNode.hasStorageValue) {
+        boolean hasStorageValue = nodes.hasStorageValue(nodeIndex);
+        if (limit != null && deleted.get() >= limit) {
+            // The node stays, but a branch node left with less than two children isn't valid
+            if (!hasStorageValue) {
+                removeOrMergeBranchNode(nodeIndex);
+            }
+            return;
+        }
+
+        if (hasStorageValue) {
+            beforeStorageNodeDeletion.accept(nodeHandleAtIndexInner(nodeIndex));
+        }
+        nodes.setChild(parentIndex, nodes.childIndexWithinParent(nodeIndex), NO_NODE);
+        markDirty(parentIndex);
+        removeNode(nodeIndex);
+        if (hasStorageValue) {
             deleted.incrementAndGet();
         }
     }
 
+    /**
+     * Removes a branch node without children or merges a branch node with a single child into it. Unlike
+     * {@link #deleteNodeAt(int)}, the parent is left as is, even if it becomes invalid itself.
+     */
+    private void removeOrMergeBranchNode(int nodeIndex) {
+        int numberOfChildren = countChildren(nodeIndex);
+        int parentIndex = nodes.parentIndex(nodeIndex);
+        int childIndexWithinParent = nodes.childIndexWithinParent(nodeIndex);
+        if (numberOfChildren == 1) {
+            replaceChild(parentIndex, childIndexWithinParent, mergeParentIntoChild(nodeIndex));
+            removeNode(nodeIndex);
+        } else if (numberOfChildren == 0) {
+            nodes.setChild(parentIndex, childIndexWithinParent, NO_NODE);
+            markDirty(parentIndex);
+            removeNode(nodeIndex);
+        }
+    }
+
     private void deleteNodeAt(int nodeIndex) {
-        TrieNode<T> trieNode = getNodeAtIndexInner(nodeIndex);
+        int numberOfChildren = countChildren(nodeIndex);
 
-        TrieNode.Parent parent = trieNode.parent;
-        if (parent == null) {
-            nodes.remove(nodeIndex);
+        if (numberOfChildren > 1) {
+            nodes.setHasStorageValue(nodeIndex, false);
+            nodes.setUserData(nodeIndex, null);
+            markDirty(nodeIndex);
             return;
         }
-        TrieNode<T> parentNode = getNodeAtIndexInner(parent.parentNodeIndex());
 
-        long numberOfChildren = Arrays.stream(trieNode.childrenIndices)
-                .filter(Objects::nonNull)
-                .count();
+        int parentIndex = nodes.parentIndex(nodeIndex);
+        int childIndexWithinParent = nodes.childIndexWithinParent(nodeIndex);
+        if (numberOfChildren == 1) {
+            replaceChild(parentIndex, childIndexWithinParent, mergeParentIntoChild(nodeIndex));
+            removeNode(nodeIndex);
+            return;
+        }
 
-        long parentChildren = Arrays.stream(parentNode.childrenIndices)
-                .filter(Objects::nonNull)
-                .count();
+        removeNode(nodeIndex);
+        if (parentIndex == NO_NODE) {
+            this.rootIndex = null;
+            return;
+        }
 
-        if (numberOfChildren == 0) {
-            parentNode.childrenIndices[parent.childIndexWithinParent().asInt()] = null;
-            nodes.remove(nodeIndex);
+        nodes.setChild(parentIndex, childIndexWithinParent, NO_NODE);
+        markDirty(parentIndex);
 
-            //A leaf node being single child of its parent is invalid scenario.
-            assert !(parentChildren == 1 && !parentNode.hasStorageValue) : "Unreachable state.";
+        //A leaf node being single child of its parent is invalid scenario.
+        assert nodes.hasStorageValue(parentIndex) || countChildren(parentIndex) > 0 : "Unreachable state.";
 
-            if (parentChildren == 2) {
-                TrieNode.Parent grandparent = parentNode.parent;
-                getNodeAtIndexInner(grandparent.parentNodeIndex()).childrenIndices[grandparent.childIndexWithinParent()
-                        .asInt()] = mergeParentIntoChild(parentNode);
-            }
-        } else if (numberOfChildren == 1) {
-            parentNode.childrenIndices[parent.childIndexWithinParent().asInt()] = mergeParentIntoChild(trieNode);
-            nodes.remove(nodeIndex);
-        } else {
-            trieNode.hasStorageValue = false;
-            trieNode.userData = null;
+        // A branch node left with a single child is merged into it
+        if (!nodes.hasStorageValue(parentIndex) && countChildren(parentIndex) == 1) {
+            replaceChild(nodes.parentIndex(parentIndex), nodes.childIndexWithinParent(parentIndex),
+                    mergeParentIntoChild(parentIndex));
+            removeNode(parentIndex);
         }
     }
 
-    private Integer mergeParentIntoChild(TrieNode<T> trieNode) {
-        for (int i = 0; i < trieNode.childrenIndices.length; i++) {
-            Integer childIndex = trieNode.childrenIndices[i];
-            if (childIndex != null) {
-                TrieNode<T> child = getNodeAtIndexInner(childIndex);
-                child.partialKey = trieNode.partialKey
-                        .add(Nibble.fromInt(i))
-                        .addAll(child.partialKey);
-                child.parent = trieNode.parent;
-                return childIndex;
-            }
+    private int countChildren(int nodeIndex) {
+        return Integer.bitCount(nodes.childrenBitmap(nodeIndex));
+    }
+
+    /**
+     * Points the given child slot of the parent (or the root, if there is no parent) to a node.
+     */
+    private void replaceChild(int parentIndex, int childIndexWithinParent, int childIndex) {
+        if (parentIndex == NO_NODE) {
+            this.rootIndex = childIndex;
+        } else {
+            nodes.setChild(parentIndex, childIndexWithinParent, childIndex);
         }
-        return null;
+    }
+
+    private void removeNode(int nodeIndex) {
+        nodes.remove(nodeIndex);
+        dirtyNodes.clear(nodeIndex);
+    }
+
+    /**
+     * Moves the partial key and the parent of a node with a single child to the child.
+     *
+     * @return the index of the child
+     */
+    private int mergeParentIntoChild(int nodeIndex) {
+        int childIndexWithinParent = Integer.numberOfTrailingZeros(nodes.childrenBitmap(nodeIndex));
+        int childIndex = nodes.child(nodeIndex, childIndexWithinParent);
+        nodes.setPartialKey(childIndex, nodes.partialKey(nodeIndex)
+                .add(Nibble.fromInt(childIndexWithinParent))
+                .addAll(nodes.partialKey(childIndex)));
+        nodes.setParent(childIndex, nodes.parentIndex(nodeIndex), nodes.childIndexWithinParent(nodeIndex));
+        markDirty(childIndex);
+        return childIndex;
     }
 }
@@ -4,7 +4,6 @@ import com.limechain.runtime.version.StateVersion;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
 import lombok.AllArgsConstructor;
-import org.apache.commons.lang3.ArrayUtils;
 import org.javatuples.Pair;
 import org.jetbrains.annotations.Nullable;
 
@@ -92,11 +91,10 @@ public final class Vacant<T> extends Entry<T> {
 
                 // that's the nibble "index" within parent's children
                 Nibble newChildNibbleIndex = this.key.get(futureParentKeyLen);
-                TrieNode<T> futureParentNode = this.trieStructure.getNodeAtIndexInner(futureParentIndex);
+                int existingChildNodeIndex =
+                        this.trieStructure.nodes.child(futureParentIndex, newChildNibbleIndex.asInt());
 
-                Integer existingChildNodeIndex = futureParentNode.childrenIndices[newChildNibbleIndex.asInt()];
-
-                if (existingChildNodeIndex == null) {
+                if (existingChildNodeIndex == NodeStorage.NO_NODE) {
                     // There is an empty slot in `futureParentNode` for our new node.
                     //
                     //
@@ -119,8 +117,7 @@ public final class Vacant<T> extends Entry<T> {
                     );
                 } else {
                     existingNodeIndex = existingChildNodeIndex;
-                    assert futureParentIndex ==
-                           this.trieStructure.getNodeAtIndexInner(existingNodeIndex).parent.parentNodeIndex()
+                    assert futureParentIndex == this.trieStructure.nodes.parentIndex(existingNodeIndex)
                             : "Parent index mismatch with trie's internal indexing.";
                 }
             }
@@ -128,7 +125,7 @@ public final class Vacant<T> extends Entry<T> {
 
         // `existingNodeIndex` and the new node are known to either have the same parent and the
         // same child index, or to both have no parent. Now let's compare their partial key.
-        Nibbles existingNodePartialKey = this.trieStructure.getNodeAtIndexInner(existingNodeIndex).partialKey;
+        Nibbles existingNodePartialKey = this.trieStructure.nodes.partialKey(existingNodeIndex);
         Nibbles newNodePartialKey = this.key.drop(futureParent == null ? 0 : futureParent.getValue1() + 1);
 
         assert !existingNodePartialKey.equals(newNodePartialKey)
@@ -345,14 +342,14 @@ public final class Vacant<T> extends Entry<T> {
             @Override
             public StorageNodeHandle<T> insert(T userData, StateVersion stateVersion) {
                 int newNodePartialKeyLen = this.partialKey.size();
-                int newNodeIndex = this.trieStructure.nodes.add(new TrieNode<>(
-                        this.parent,
+                int newNodeIndex = this.trieStructure.nodes.add(
+                        this.parent == null ? NodeStorage.NO_NODE : this.parent.parentNodeIndex(),
+                        this.parent == null ? NodeStorage.NO_NODE : this.parent.childIndexWithinParent().asInt(),
                         this.partialKey,
-                        this.childrenIndices,
                         true,
                         userData,
                         stateVersion
-                ));
+                );
 
                 // Update the children nodes to point to their new parent.
                 for (int childIndex = 0; childIndex < TRIE_NODE_CHILDREN_COUNT; ++childIndex) {
@@ -360,18 +357,20 @@ public final class Vacant<T> extends Entry<T> {
                         continue;
                     }
 
-                    TrieNode<T> childNode = this.trieStructure.getNodeAtIndexInner(this.childrenIndices[childIndex]);
-                    Nibble childIndexNibble = Nibble.fromInt(childIndex);
-                    childNode.parent = new TrieNode.Parent(newNodeIndex, childIndexNibble);
-                    childNode.partialKey = childNode.partialKey.drop(newNodePartialKeyLen + 1);
+                    int childNodeIndex = this.childrenIndices[childIndex];
+                    this.trieStructure.nodes.setChild(newNodeIndex, childIndex, childNodeIndex);
+                    this.trieStructure.nodes.setParent(childNodeIndex, newNodeIndex, childIndex);
+                    this.trieStructure.nodes.dropPartialKeyPrefix(childNodeIndex, newNodePartialKeyLen + 1);
+                    this.trieStructure.markDirty(childNodeIndex);
                 }
+                this.trieStructure.markDirty(newNodeIndex);
 
                 // Update the parent to point to its new child.
                 if (this.parent == null) {
                     this.trieStructure.rootIndex = newNodeIndex;
                 } else {
-                    TrieNode<T> parent = this.trieStructure.getNodeAtIndexInner(this.parent.parentNodeIndex());
-                    parent.childrenIndices[this.parent.childIndexWithinParent().asInt()] = newNodeIndex;
+                    this.trieStructure.nodes.setChild(this.parent.parentNodeIndex(),
+                            this.parent.childIndexWithinParent().asInt(), newNodeIndex);
                 }
 
                 // Success!
@@ -455,30 +454,30 @@ public final class Vacant<T> extends Entry<T> {
                           "(the node that previously existed before this insertion)";
 
                 // Insert the intermediate branch node
-                int newBranchNodeIndex = this.trieStructure.nodes.add(new TrieNode<>(
-                        this.branchParent,
+                int newBranchNodeIndex = this.trieStructure.nodes.add(
+                        this.branchParent == null ? NodeStorage.NO_NODE : this.branchParent.parentNodeIndex(),
+                        this.branchParent == null
+                                ? NodeStorage.NO_NODE
+                                : this.branchParent.childIndexWithinParent().asInt(),
                         this.branchPartialKey,
-                        // NOTE: Crucial mutability moment, this has to be a copy of the array.
-                        ArrayUtils.clone(this.branchChildrenIndices),
                         false,
                         branchUserData,
                         stateVersion
-                ));
+                );
 
                 // Insert the actual storage node
-                int newStorageNodeIndex = this.trieStructure.nodes.add(new TrieNode<>(
-                        new TrieNode.Parent(newBranchNodeIndex, this.storageChildIndex),
+                int newStorageNodeIndex = this.trieStructure.nodes.add(
+                        newBranchNodeIndex,
+                        this.storageChildIndex.asInt(),
                         this.storagePartialKey,
-                        new Integer[TRIE_NODE_CHILDREN_COUNT],
                         true,
                         storageUserData,
                         stateVersion
-                ));
+                );
 
-                // Set the freshly obtained storage node's index in the child array of the branch node
-                this.trieStructure
-                        .getNodeAtIndexInner(newBranchNodeIndex)
-                        .childrenIndices[this.storageChildIndex.asInt()] = newStorageNodeIndex;
+                // Set the freshly obtained storage node's index in the children of the branch node
+                this.trieStructure.nodes.setChild(newBranchNodeIndex, this.storageChildIndex.asInt(),
+                        newStorageNodeIndex);
 
                 // Update the branch node's children to point to their new parent
                 for (int childIndex = 0; childIndex < TRIE_NODE_CHILDREN_COUNT; ++childIndex) {
@@ -486,19 +485,20 @@ public final class Vacant<T> extends Entry<T> {
                         continue;
                     }
 
-                    TrieNode<T> childNode =
-                            this.trieStructure.getNodeAtIndexInner(this.branchChildrenIndices[childIndex]);
-                    Nibble childIndexNibble = Nibble.fromInt(childIndex);
-                    childNode.parent = new TrieNode.Parent(newBranchNodeIndex, childIndexNibble);
-                    childNode.partialKey = childNode.partialKey.drop(newBranchNodePartialKeyLen + 1);
+                    int childNodeIndex = this.branchChildrenIndices[childIndex];
+                    this.trieStructure.nodes.setChild(newBranchNodeIndex, childIndex, childNodeIndex);
+                    this.trieStructure.nodes.setParent(childNodeIndex, newBranchNodeIndex, childIndex);
+                    this.trieStructure.nodes.dropPartialKeyPrefix(childNodeIndex, newBranchNodePartialKeyLen + 1);
+                    this.trieStructure.markDirty(childNodeIndex);
                 }
+                this.trieStructure.markDirty(newStorageNodeIndex);
 
                 // Update the branch node's parent to point to its new child.
                 if (this.branchParent == null) {
                     this.trieStructure.rootIndex = newBranchNodeIndex;
                 } else {
-                    TrieNode<T> parent = this.trieStructure.getNodeAtIndexInner(this.branchParent.parentNodeIndex());
-                    parent.childrenIndices[this.branchParent.childIndexWithinParent().asInt()] = newBranchNodeIndex;
+                    this.trieStructure.nodes.setChild(this.branchParent.parentNodeIndex(),
+                            this.branchParent.childIndexWithinParent().asInt(), newBranchNodeIndex);
                 }
 
                 // Success!
@@ -95,12 +95,10 @@ public class InsertTrieBuilder {
     }
 
     private static List<byte[]> childrenMerkleValues(NodeHandle<NodeData> nodeHandle) {
+        // Only the children's user data is read, so children of lazily loaded tries aren't fetched for this
         return Nibbles.ALL.stream()
-            .map(nodeHandle::getChild)
-            .map(child -> child
-                .map(NodeHandle::getUserData)
-                .map(NodeData::getMerkleValue)
-                .orElse(null))
+            .map(nibble -> nodeHandle.getChildUserData(nibble.asInt()))
+            .map(child -> child == null ? null : child.getMerkleValue())
             .toList();
     }
 }
@@ -27,6 +27,13 @@ public class Nibble implements Serializable {
 
     private static final int HEX_RADIX = 16;
 
+    /**
+     * Nibbles are immutable, so a single instance per value is shared
+     */
+    private static final Nibble[] VALUES = IntStream.range(0, HEX_RADIX)
+        .mapToObj(Nibble::new)
+        .toArray(Nibble[]::new);
+
     /**
      * The minimal possible Nibble, i.e. '0'
      */
@@ -69,7 +76,7 @@ public class Nibble implements Serializable {
             throw NibbleFromIntegerException.valueTooLarge(value);
         }
 
-        return new Nibble(value);
+        return VALUES[value];
     }
 
     /**
@@ -1,36 +1,60 @@
 package com.limechain.trie.structure.nibble;
 
 import com.limechain.utils.StringUtils;
-import org.apache.commons.collections4.IteratorUtils;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.RandomAccess;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
  * Convenience wrapper for any 'sequence of Nibble'-like structure.
  * It's immutable and its public static factory methods eagerly copy passed data (nibbles) to obtain ownership.
+ * <p>
+ * The nibbles are packed two per byte, high nibble first, in a byte array which may be shared between instances:
+ * {@link #drop(int)} and {@link #take(int)} return views over the same array, offset and length being counted in
+ * nibbles. Since the array is never written after construction, sharing it is safe.
+ * <p>
+ * The serialized form is the one of older versions, a list of {@link Nibble}, so that trie nodes Java-serialized by
+ * them can still be read.
  */
 public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Iterable<Nibble>>, Serializable {
     /**
      * A sequence of zero nibbles, i.e. empty
      */
-    public static final Nibbles EMPTY = new Nibbles(List.of());
+    public static final Nibbles EMPTY = new Nibbles(new byte[0], 0, 0);
 
     /**
      * A sequence of all nibbles in order, from 0 to F
      */
-    public static final Nibbles ALL = Nibble.all().collect(NibblesCollector.toNibbles());
+    public static final Nibbles ALL = Nibbles.fromBytes(new byte[]{0x01, 0x23, 0x45, 0x67,
+        (byte) 0x89, (byte) 0xab, (byte) 0xcd, (byte) 0xef});
 
-    private final List<Nibble> entries;
+    @Serial
+    private static final long serialVersionUID = 363351456805982096L;
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("entries", List.class)
+    };
+
+    // Not final only so that readObject can restore them
+    private byte[] packed;
+    private int offset;
+    private int length;
 
     public static Nibbles of(Nibble nibble) {
         return Nibbles.of(List.of(nibble));
@@ -41,7 +65,7 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
     }
 
     public static Nibbles of(Collection<Nibble> nibbles) {
-        return new Nibbles(new ArrayList<>(nibbles));
+        return new Nibbles(nibbles);
     }
 
     public static Nibbles of(Stream<Nibble> nibbles) {
@@ -49,25 +73,76 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
     }
 
     public static Nibbles of(Iterable<Nibble> nibbles) {
+        if (nibbles instanceof Nibbles n) {
+            return n;
+        }
         return Nibbles.of(nibbles.iterator());
     }
 
     public static Nibbles of(Iterator<Nibble> nibbles) {
-        return new Nibbles(IteratorUtils.toList(nibbles));
+        byte[] packed = new byte[8];
+        int length = 0;
+        while (nibbles.hasNext()) {
+            if (length == packed.length * 2) {
+                packed = Arrays.copyOf(packed, packed.length * 2);
+            }
+            setNibble(packed, length++, nibbles.next().asInt());
+        }
+        return new Nibbles(packed, 0, length);
     }
 
     /**
-     * Creates Nibbles from a given byte array by using the {@link BytesToNibbles} iterator.
+     * Creates Nibbles from a given byte array, each byte yielding its high nibble first.
      *
      * @param bytes arrays of bytes to convert
      * @return Nibbles representation
      */
     public static Nibbles fromBytes(byte[] bytes) {
-        return Nibbles.of(new BytesToNibbles(bytes));
+        return new Nibbles(bytes.clone(), 0, bytes.length * 2);
+    }
+
+    /**
+     * Creates Nibbles from nibbles packed two per byte, high nibble first, e.g. a region of a larger buffer.
+     *
+     * @param packed   the packed nibbles
+     * @param position the position of the first nibble to copy, counted in nibbles
+     * @param length   the number of nibbles to copy
+     * @return a copy of the nibbles
+     * @throws IndexOutOfBoundsException if the nibbles aren't within the array
+     */
+    public static Nibbles fromPacked(byte[] packed, int position, int length) {
+        checkPackedRegion(packed, position, length);
+        byte[] copy = new byte[(length + 1) / 2];
+        copyNibbles(packed, position, copy, 0, length);
+        return new Nibbles(copy, 0, length);
+    }
+
+    /**
+     * Creates Nibbles viewing nibbles packed two per byte, high nibble first, without copying them. The nibbles of
+     * the region must never be written afterward, while the other nibbles of the array, even those sharing a byte
+     * with the region, may be. The view keeps the whole array reachable.
+     *
+     * @param packed   the packed nibbles
+     * @param position the position of the first nibble of the view, counted in nibbles
+     * @param length   the number of nibbles in the view
+     * @return a view of the nibbles
+     * @throws IndexOutOfBoundsException if the nibbles aren't within the array
+     */
+    public static Nibbles viewOfPacked(byte[] packed, int position, int length) {
+        checkPackedRegion(packed, position, length);
+        return new Nibbles(packed, position, length);
+    }
+
+    Nibbles(Collection<Nibble> entries) {
+        this.packed = pack(entries);
+        this.offset = 0;
+        this.length = entries.size();
     }
 
-    Nibbles(List<Nibble> entries) {
-        this.entries = entries;
+    private Nibbles(byte[] packed, int offset, int length) {
+        this.packed = packed;
+        this.offset = offset;
+        this.length = length;
     }
 
     /**
@@ -75,31 +150,34 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      * The capitalization of the characters doesn't matter.
      */
     public static Nibbles fromHexString(String hex) {
-        return StringUtils.remove0xPrefix(hex)
-            .chars()
-            .mapToObj(c -> Nibble.fromAsciiHexDigit((char) c))
-            .collect(NibblesCollector.toNibbles());
+        String digits = StringUtils.remove0xPrefix(hex);
+        byte[] packed = new byte[(digits.length() + 1) / 2];
+        for (int i = 0; i < digits.length(); i++) {
+            setNibble(packed, i, Nibble.fromAsciiHexDigit(digits.charAt(i)).asInt());
+        }
+        return new Nibbles(packed, 0, digits.length());
     }
 
     /**
      * Whether this nibbles starts with the given prefix.
      */
     public boolean startsWith(Nibbles prefix) {
-        final int thisSize = this.size();
-        final int prefixSize = prefix.size();
-
-        if (prefixSize > thisSize) {
+        if (prefix.length > this.length) {
             return false;
         }
 
-        return prefix.entries.equals(this.entries.subList(0, prefixSize));
+        return commonPrefixLength(prefix) == prefix.length;
     }
 
     /**
      * @return the lower hexadecimal string representation of this Nibbles
      */
     public String toLowerHexString() {
-        return NibblesUtils.toLowerHexString(this.entries);
+        char[] digits = new char[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = Character.forDigit(nibbleAt(i), 16);
+        }
+        return new String(digits);
     }
 
     /**
@@ -109,9 +187,9 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      * @implNote will create a new modified copy of the nibbles, does not mutate the instance invoked on
      */
     public Nibbles add(Nibble nibble) {
-        List<Nibble> newNibbles = new ArrayList<>(this.entries);
-        newNibbles.add(nibble);
-        return new Nibbles(newNibbles);
+        byte[] newPacked = copyPacked(length + 1);
+        setNibble(newPacked, length, nibble.asInt());
+        return new Nibbles(newPacked, 0, length + 1);
     }
 
     /**
@@ -121,9 +199,15 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      * @implNote will create a new modified copy of the nibbles, does not mutate the instance invoked on
      */
     public Nibbles add(int index, Nibble nibble) {
-        List<Nibble> newNibbles = new ArrayList<>(this.entries);
-        newNibbles.add(index, nibble);
-        return new Nibbles(newNibbles);
+        if (index < 0 || index > length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+
+        byte[] newPacked = new byte[(length + 2) / 2];
+        copyNibbles(packed, offset, newPacked, 0, index);
+        setNibble(newPacked, index, nibble.asInt());
+        copyNibbles(packed, offset + index, newPacked, index + 1, length - index);
+        return new Nibbles(newPacked, 0, length + 1);
     }
 
     /**
@@ -134,9 +218,33 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      * @implNote will create a new modified copy of the nibbles, does not mutate the instance invoked on
      */
     public Nibbles addAll(Nibbles other) {
-        List<Nibble> concatenatedList = new ArrayList<>(this.entries);
-        concatenatedList.addAll(other.entries);
-        return new Nibbles(concatenatedList);
+        if (other.length == 0) {
+            return this;
+        }
+        if (this.length == 0) {
+            return other;
+        }
+
+        int newLength = length + other.length;
+        byte[] newPacked = copyPacked(newLength);
+        copyNibbles(other.packed, other.offset, newPacked, length, other.length);
+        return new Nibbles(newPacked, 0, newLength);
+    }
+
+    /**
+     * Writes the nibbles packed two per byte, high nibble first, into the given array. The other half of a byte
+     * that's only partially written is preserved.
+     *
+     * @param dest     the array to write to
+     * @param position the position to write the first nibble at, counted in nibbles
+     * @throws IndexOutOfBoundsException if the array is too short
+     */
+    public void copyTo(byte[] dest, int position) {
+        if (position < 0 || position + length > dest.length * 2) {
+            throw new IndexOutOfBoundsException("Nibbles [" + position + ", " + (position + length)
+                                                + ") out of bounds for " + dest.length * 2 + " nibbles");
+        }
+        copyNibbles(packed, offset, dest, position, length);
     }
 
     /**
@@ -148,7 +256,10 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      *         ({@code index < 0 || index >= size()})
      */
     public Nibble get(int index) {
-        return entries.get(index);
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+        return Nibble.fromInt(nibbleAt(index));
     }
 
     // NOTE:
@@ -168,23 +279,29 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
     /**
      * Drops a number of nibbles from the beginning
      * @param n the number of nibbles to skip
-     * @return a new Nibbles without the first n leading nibbles
+     * @return a new Nibbles without the first n leading nibbles, sharing this instance's backing array
      * @throws IndexOutOfBoundsException if
      *         ({@code n < 0 || n > size})
      */
     public Nibbles drop(int n) {
-        return Nibbles.of(this.entries.subList(n, this.entries.size()));
+        if (n < 0 || n > length) {
+            throw new IndexOutOfBoundsException("Index: " + n + ", Size: " + length);
+        }
+        return n == 0 ? this : new Nibbles(packed, offset + n, length - n);
     }
 
     /**
      * Takes only the first n nibbles from the beginning.
      * @param n the number of nibbles to take
-     * @return a new Nibbles limited to only the first n leading nibbles
+     * @return a new Nibbles limited to only the first n leading nibbles, sharing this instance's backing array
      * @throws IndexOutOfBoundsException if
      *         ({@code n < 0 || n > size})
      */
     public Nibbles take(int n) {
-        return Nibbles.of(this.entries.subList(0, n));
+        if (n < 0 || n > length) {
+            throw new IndexOutOfBoundsException("Index: " + n + ", Size: " + length);
+        }
+        return n == length ? this : new Nibbles(packed, offset, n);
     }
 
     /**
@@ -195,39 +312,74 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
      * @return the number of elements in this Nibbles
      */
     public int size() {
-        return entries.size();
+        return length;
     }
 
     /**
      * @return true if this Nibbles contains no elements
      */
     public boolean isEmpty() {
-        return entries.isEmpty();
+        return length == 0;
     }
 
     /**
      * @return an unmodifiable view of the underlying list of nibbles
      */
     public List<Nibble> asUnmodifiableList() {
-        return Collections.unmodifiableList(this.entries);
+        return new NibbleListView();
     }
 
     /**
      * @return a stream of the contained nibbles
      */
     public Stream<Nibble> stream() {
-        return entries.stream();
+        return IntStream.range(0, length).mapToObj(i -> Nibble.fromInt(nibbleAt(i)));
     }
 
     @NotNull
     public Iterator<Nibble> iterator() {
-        return entries.iterator();
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            @Override
+            public Nibble next() {
+                if (next >= length) {
+                    throw new NoSuchElementException("No more nibbles to iterate.");
+                }
+                return Nibble.fromInt(nibbleAt(next++));
+            }
+        };
     }
 
+    /**
+     * Compares nibble by nibble, a proper prefix being less than the sequence it prefixes.
+     */
     @Override
     public int compareTo(@NotNull Iterable<Nibble> o) {
-        // NOTE: Could be made more efficient by avoiding the string serialization, if it ever becomes an issue.
-        return this.toLowerHexString().compareTo(NibblesUtils.toLowerHexString(o));
+        if (o instanceof Nibbles other) {
+            int common = commonPrefixLength(other);
+            if (common < length && common < other.length) {
+                return Integer.compare(this.nibbleAt(common), other.nibbleAt(common));
+            }
+            return Integer.compare(length, other.length);
+        }
+
+        Iterator<Nibble> otherIterator = o.iterator();
+        for (int i = 0; i < length; i++) {
+            if (!otherIterator.hasNext()) {
+                return 1;
+            }
+            int result = Integer.compare(nibbleAt(i), otherIterator.next().asInt());
+            if (result != 0) {
+                return result;
+            }
+        }
+        return otherIterator.hasNext() ? -1 : 0;
     }
 
     @Override
@@ -239,12 +391,149 @@ public class Nibbles implements Iterable<Nibble>, RandomAccess, Comparable<Itera
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        Nibbles nibbles1 = (Nibbles) o;
-        return this.entries.equals(nibbles1.entries);
+        Nibbles other = (Nibbles) o;
+        return this.length == other.length && commonPrefixLength(other) == length;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.entries);
+        int result = 1;
+        for (int i = 0; i < length; i++) {
+            result = 31 * result + nibbleAt(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the length of the common prefix of this and the other Nibbles
+     */
+    public int commonPrefixLength(Nibbles other) {
+        int common = Math.min(this.length, other.length);
+        // When both sequences start at the same position within a byte, whole bytes can be compared at once
+        if ((this.offset & 1) == (other.offset & 1)) {
+            int start = 0;
+            if ((this.offset & 1) == 1 && common > 0) {
+                if (this.nibbleAt(0) != other.nibbleAt(0)) {
+                    return 0;
+                }
+                start = 1;
+            }
+            int fromByte = (this.offset + start) / 2;
+            int otherFromByte = (other.offset + start) / 2;
+            int bytes = (common - start) / 2;
+            int mismatchedByte = Arrays.mismatch(this.packed, fromByte, fromByte + bytes,
+                other.packed, otherFromByte, otherFromByte + bytes);
+            int i = mismatchedByte == -1 ? start + bytes * 2 : start + mismatchedByte * 2;
+            for (; i < common; i++) {
+                if (this.nibbleAt(i) != other.nibbleAt(i)) {
+                    return i;
+                }
+            }
+            return common;
+        }
+
+        for (int i = 0; i < common; i++) {
+            if (this.nibbleAt(i) != other.nibbleAt(i)) {
+                return i;
+            }
+        }
+        return common;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("entries", new ArrayList<>(asUnmodifiableList()));
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        if (!(fields.get("entries", null) instanceof List<?> entries)) {
+            throw new InvalidObjectException("Nibbles without entries");
+        }
+
+        List<Nibble> nibbles = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            if (!(entry instanceof Nibble nibble)) {
+                throw new InvalidObjectException("Nibbles with a non-nibble entry: " + entry);
+            }
+            nibbles.add(nibble);
+        }
+        this.packed = pack(nibbles);
+        this.offset = 0;
+        this.length = nibbles.size();
+    }
+
+    private static void checkPackedRegion(byte[] packed, int position, int length) {
+        if (position < 0 || length < 0 || position + length > packed.length * 2) {
+            throw new IndexOutOfBoundsException("Nibbles [" + position + ", " + (position + length)
+                                                + ") out of bounds for " + packed.length * 2 + " nibbles");
+        }
+    }
+
+    private static byte[] pack(Collection<Nibble> nibbles) {
+        byte[] packed = new byte[(nibbles.size() + 1) / 2];
+        int i = 0;
+        for (Nibble nibble : nibbles) {
+            setNibble(packed, i++, nibble.asInt());
+        }
+        return packed;
+    }
+
+    private int nibbleAt(int index) {
+        return nibbleAt(packed, offset + index);
+    }
+
+    /**
+     * @return a zero-offset copy of the nibbles in an array with room for the given number of nibbles
+     */
+    private byte[] copyPacked(int capacity) {
+        byte[] copy = new byte[(capacity + 1) / 2];
+        copyNibbles(packed, offset, copy, 0, length);
+        return copy;
+    }
+
+    private static void copyNibbles(byte[] src, int srcPosition, byte[] dest, int destPosition, int count) {
+        if (count == 0) {
+            return;
+        }
+        if ((srcPosition & 1) == 0 && (destPosition & 1) == 0) {
+            System.arraycopy(src, srcPosition / 2, dest, destPosition / 2, count / 2);
+            if ((count & 1) == 1) {
+                setNibble(dest, destPosition + count - 1, nibbleAt(src, srcPosition + count - 1));
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            setNibble(dest, destPosition + i, nibbleAt(src, srcPosition + i));
+        }
+    }
+
+    private static int nibbleAt(byte[] packed, int position) {
+        int b = packed[position >> 1];
+        return (position & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F;
+    }
+
+    private static void setNibble(byte[] packed, int position, int nibble) {
+        int index = position >> 1;
+        if ((position & 1) == 0) {
+            packed[index] = (byte) ((packed[index] & 0x0F) | (nibble << 4));
+        } else {
+            packed[index] = (byte) ((packed[index] & 0xF0) | nibble);
+        }
+    }
+
+    private class NibbleListView extends AbstractList<Nibble> implements RandomAccess {
+        @Override
+        public Nibble get(int index) {
+            return Nibbles.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
     }
 }
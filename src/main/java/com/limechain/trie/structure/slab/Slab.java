@@ -4,12 +4,10 @@ import com.limechain.exception.trie.InvalidSlabIndexException;
 import org.javatuples.Pair;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -21,16 +19,25 @@ import java.util.stream.Stream;
  * @param <T> the type of elements held in this slab
  */
 public class Slab<T> implements Iterable<Pair<Integer, T>> {
-    private ArrayList<T> storage;
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private Object[] storage;
+    /**
+     * The number of slots in use, either occupied or freed. Slots from here on have never been handed out.
+     */
     private int newIndex;
-    private Queue<Integer> freeIndices;
+    /**
+     * A stack of the freed slots below {@link #newIndex}, reused before handing out new ones.
+     */
+    private int[] freeIndices;
+    private int freeCount;
     private int size;
 
     /**
      * Constructs an empty Slab with default initial capacity of 10.
      */
     public Slab() {
-        initialize(10);
+        initialize(DEFAULT_CAPACITY);
     }
 
     /**
@@ -48,10 +55,21 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      * @param initialCapacity the initial capacity of the slab
      */
     private void initialize(int initialCapacity) {
-        this.storage = new ArrayList<>(initialCapacity);
+        this.storage = new Object[initialCapacity];
         this.newIndex = 0;
         this.size = 0;
-        this.freeIndices = new LinkedList<>();
+        this.freeIndices = new int[0];
+        this.freeCount = 0;
+    }
+
+    /**
+     * Ensures that at least the given number of elements can be added without growing the underlying storage,
+     * e.g. before loading a trie of a known size.
+     *
+     * @param additional the number of elements about to be added
+     */
+    public void reserve(int additional) {
+        ensureCapacity(newIndex + Math.max(0, additional - freeCount));
     }
 
     /**
@@ -62,15 +80,16 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      * @throws NullPointerException if the element is null
      */
     public int add(@NotNull T element) {
+        Objects.requireNonNull(element);
         int index;
-        if (freeIndices.isEmpty()) {
+        if (freeCount == 0) {
+            ensureCapacity(newIndex + 1);
             index = newIndex;
-            storage.add(element);
             newIndex++;
         } else {
-            index = freeIndices.poll();
-            storage.set(index, element);
+            index = freeIndices[--freeCount];
         }
+        storage[index] = element;
         size++;
         return index;
     }
@@ -83,8 +102,11 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      */
     public @NotNull T remove(int index) {
         T value = this.get(index);
-        storage.set(index, null);
-        freeIndices.add(index);
+        storage[index] = null;
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, grownCapacity(freeIndices.length, freeCount + 1));
+        }
+        freeIndices[freeCount++] = index;
         size--;
         return value;
     }
@@ -95,14 +117,13 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      * @param index The index of the element to be retrieved.
      * @return The element at the specified index.
      * @throws InvalidSlabIndexException If the index is out of bounds or if the value at the index is null.
-     *                                   This exception wraps the original {@code IndexOutOfBoundsException}
-     *                                   when the index is out of bounds.
      */
+    @SuppressWarnings("unchecked")
     public @NotNull T get(int index) {
-        if (index < 0 || index >= storage.size()) {
+        if (index < 0 || index >= newIndex) {
             throw new InvalidSlabIndexException("Index " + index + " out of bounds for underlying storage.");
         }
-        T value = storage.get(index);
+        T value = (T) storage[index];
         if (value == null) {
             throw new InvalidSlabIndexException("Index " + index + " does not return any value.");
         }
@@ -143,7 +164,7 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      * @return true if the slab contains no elements
      */
     public boolean isEmpty() {
-        return storage.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -160,10 +181,26 @@ public class Slab<T> implements Iterable<Pair<Integer, T>> {
      *
      * @return a stream of pairs, where each pair contains an index and a non-null element
      */
+    @SuppressWarnings("unchecked")
     private Stream<Pair<Integer, T>> streamAllEntries() {
-        return IntStream.range(0, storage.size())
-                .mapToObj(i -> new Pair<>(i, storage.get(i)))
-                .filter(p -> Objects.nonNull(p.getValue1()));
+        return IntStream.range(0, newIndex)
+                .filter(i -> storage[i] != null)
+                .mapToObj(i -> new Pair<>(i, (T) storage[i]));
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > storage.length) {
+            storage = Arrays.copyOf(storage, grownCapacity(storage.length, minCapacity));
+        }
+    }
+
+    /**
+     * Grows by half of the current capacity, like {@link java.util.ArrayList}, or more if needed.
+     */
+    private static int grownCapacity(int capacity, int minCapacity) {
+        int grown = capacity + Math.max(capacity >> 1, DEFAULT_CAPACITY);
+        // A negative value means the growth overflowed
+        return grown < 0 ? Math.max(minCapacity, Integer.MAX_VALUE - 8) : Math.max(grown, minCapacity);
     }
 
     /**
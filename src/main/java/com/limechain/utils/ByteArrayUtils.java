@@ -1,6 +1,9 @@
 package com.limechain.utils;
 
 import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
 
 @UtilityClass
 public class ByteArrayUtils {
@@ -54,6 +57,28 @@ public class ByteArrayUtils {
         return true;
     }
 
+    /**
+     * Calculates the smallest byte array that is greater than every array starting with the given prefix,
+     * i.e. the exclusive upper bound of the prefix range.
+     * <p>
+     * This is the prefix with its trailing {@code 0xFF} bytes removed and the last remaining byte incremented.
+     *
+     * @param prefix The prefix of the range.
+     * @return The exclusive upper bound, or {@code null} if the prefix is empty or consists of {@code 0xFF} bytes
+     * only, in which case the range is unbounded.
+     */
+    @Nullable
+    public static byte[] prefixUpperBound(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] upperBound = Arrays.copyOf(prefix, i + 1);
+                upperBound[i]++;
+                return upperBound;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns the start position of the first occurrence of the specified {@code target} within
      * {@code array}, or {@code -1} if there is no such occurrence.
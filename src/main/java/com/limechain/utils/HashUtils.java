@@ -3,11 +3,15 @@ package com.limechain.utils;
 import io.emeraldpay.polkaj.types.Hash256;
 import lombok.experimental.UtilityClass;
 import net.openhft.hashing.LongHashFunction;
+import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.bouncycastle.crypto.digests.KeccakDigest;
 import org.bouncycastle.jcajce.provider.digest.Keccak;
 import org.bouncycastle.jcajce.provider.digest.SHA256;
 import org.web3j.crypto.Hash;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -17,27 +21,107 @@ public class HashUtils {
     public static final int HASH_128_SIZE_BYTES = 16;
     public static final int HASH_64_SIZE_BYTES = 8;
 
+    /**
+     * Digests keep their state between calls, so each thread gets its own. See {@link #digest(ThreadLocal)}.
+     */
+    private static final ThreadLocal<Blake2bDigest> BLAKE2B_256 =
+            ThreadLocal.withInitial(() -> new Blake2bDigest(HASH256_HASH_LENGTH));
+    private static final ThreadLocal<Blake2bDigest> BLAKE2B_128 =
+            ThreadLocal.withInitial(() -> new Blake2bDigest(HASH_128_SIZE_BYTES * Byte.SIZE));
+    private static final ThreadLocal<KeccakDigest> KECCAK_256 =
+            ThreadLocal.withInitial(() -> new KeccakDigest(HASH256_HASH_LENGTH));
+    /**
+     * Used to feed direct {@link ByteBuffer}s (e.g. the runtime memory) into digests that only accept arrays.
+     */
+    private static final int CHUNK_SIZE = 4096;
+    private static final ThreadLocal<byte[]> CHUNKS = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    /**
+     * xxHash functions are stateless, the seeds used by the 64, 128 and 256-bit variants with the default seed of 0
+     * are created once.
+     */
+    private static final LongHashFunction[] XX_FUNCTIONS = {
+            LongHashFunction.xx(0), LongHashFunction.xx(1), LongHashFunction.xx(2), LongHashFunction.xx(3)
+    };
+    private static final VarHandle LONG_LITTLE_ENDIAN =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
     /**
      * Conducts a 256-bit Blake2b hash.
      * @param input the data to be hashed.
      * @return byte array containing the 256-bit hash result.
      */
     public static byte[] hashWithBlake2b(byte[] input) {
-        Blake2bDigest digest = new Blake2bDigest(HASH256_HASH_LENGTH);
-        digest.reset();
-        digest.update(input, 0, input.length);
-        byte[] hash = new byte[digest.getDigestSize()];
-        digest.doFinal(hash, 0);
+        byte[] hash = new byte[Hash256.SIZE_BYTES];
+        hashWithBlake2b(input, 0, input.length, hash, 0);
         return hash;
     }
 
     /**
-     * Conducts a 1258-bit Blake2b hash.
+     * Conducts a 256-bit Blake2b hash of a range of an array.
+     * @param input the array containing the data to be hashed.
+     * @param offset the offset of the data in the input array.
+     * @param length the length of the data.
+     * @param output the array to write the 32 bytes of the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     */
+    public static void hashWithBlake2b(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        Blake2bDigest digest = digest(BLAKE2B_256);
+        digest.update(input, offset, length);
+        digest.doFinal(output, outputOffset);
+    }
+
+    /**
+     * Conducts a 256-bit Blake2b hash of the remaining bytes of a buffer. The position of the buffer is not changed.
+     * @param input the buffer containing the data to be hashed.
+     * @param output the array to write the 32 bytes of the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     */
+    public static void hashWithBlake2b(ByteBuffer input, byte[] output, int outputOffset) {
+        Blake2bDigest digest = digest(BLAKE2B_256);
+        update(digest, input);
+        digest.doFinal(output, outputOffset);
+    }
+
+    /**
+     * Conducts 256-bit Blake2b hashes of many inputs, e.g. encoded trie nodes, reusing the same digest for all of them.
+     * @param inputs the data to be hashed.
+     * @return the 256-bit hash results in the order of the inputs.
+     */
+    public static byte[][] hashAllWithBlake2b(byte[][] inputs) {
+        Blake2bDigest digest = digest(BLAKE2B_256);
+        byte[][] hashes = new byte[inputs.length][];
+        for (int i = 0; i < inputs.length; i++) {
+            hashes[i] = new byte[Hash256.SIZE_BYTES];
+            digest.update(inputs[i], 0, inputs[i].length);
+            digest.doFinal(hashes[i], 0);
+        }
+        return hashes;
+    }
+
+    /**
+     * Conducts a 128-bit Blake2b hash.
      * @param input the data to be hashed.
      * @return byte array containing the 128-bit hash result.
      */
     public static byte[] hashWithBlake2b128(byte[] input) {
-        return hashWithBlake2bToLength(input, HASH_128_SIZE_BYTES);
+        byte[] hash = new byte[HASH_128_SIZE_BYTES];
+        Blake2bDigest digest = digest(BLAKE2B_128);
+        digest.update(input, 0, input.length);
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    /**
+     * Conducts a 128-bit Blake2b hash of the remaining bytes of a buffer. The position of the buffer is not changed.
+     * @param input the buffer containing the data to be hashed.
+     * @param output the array to write the 16 bytes of the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     */
+    public static void hashWithBlake2b128(ByteBuffer input, byte[] output, int outputOffset) {
+        Blake2bDigest digest = digest(BLAKE2B_128);
+        update(digest, input);
+        digest.doFinal(output, outputOffset);
     }
 
     /**
@@ -47,14 +131,43 @@ public class HashUtils {
      * @return byte array containing the hash result.
      */
     public static byte[] hashWithBlake2bToLength(byte[] input, int length) {
+        if (length == Hash256.SIZE_BYTES) {
+            return hashWithBlake2b(input);
+        }
+        if (length == HASH_128_SIZE_BYTES) {
+            return hashWithBlake2b128(input);
+        }
         Blake2bDigest digest = new Blake2bDigest(length * Byte.SIZE);
-        digest.reset();
         digest.update(input, 0, input.length);
         byte[] hash = new byte[digest.getDigestSize()];
         digest.doFinal(hash, 0);
         return hash;
     }
 
+    /**
+     * {@code doFinal} resets a digest, the reset here only matters if a previous hashing failed half-way, e.g. on an
+     * out of bounds offset, and left its state behind.
+     */
+    private static <T extends Digest> T digest(ThreadLocal<T> digests) {
+        T digest = digests.get();
+        digest.reset();
+        return digest;
+    }
+
+    private static void update(Blake2bDigest digest, ByteBuffer input) {
+        if (input.hasArray()) {
+            digest.update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            return;
+        }
+
+        byte[] chunk = CHUNKS.get();
+        for (int position = input.position(); position < input.limit(); position += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, input.limit() - position);
+            input.get(position, chunk, 0, length);
+            digest.update(chunk, 0, length);
+        }
+    }
+
     /**
      * Conducts a 256-bit Keccak hash.
      * @param input the data to be hashed.
@@ -64,6 +177,20 @@ public class HashUtils {
         return Hash.sha3(input);
     }
 
+    /**
+     * Conducts a 256-bit Keccak hash of a range of an array.
+     * @param input the array containing the data to be hashed.
+     * @param offset the offset of the data in the input array.
+     * @param length the length of the data.
+     * @param output the array to write the 32 bytes of the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     */
+    public static void hashWithKeccak256(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        KeccakDigest digest = digest(KECCAK_256);
+        digest.update(input, offset, length);
+        digest.doFinal(output, outputOffset);
+    }
+
     /**
      * Conducts a 512-bit Keccak hash.
      * @param input the data to be hashed.
@@ -92,16 +219,7 @@ public class HashUtils {
      * @return byte array containing the 64-bit hash result.
      */
     public static byte[] hashXx64(int seed, byte[] dataToHash) {
-        final long xxHash = LongHashFunction
-                .xx(seed)
-                .hashBytes(dataToHash);
-
-        final ByteBuffer buffer = ByteBuffer
-                .allocate(HASH_64_SIZE_BYTES)
-                .order(ByteOrder.LITTLE_ENDIAN)
-                .putLong(xxHash);
-
-        return buffer.array();
+        return hashXx(seed, dataToHash, HASH_64_SIZE_BYTES);
     }
 
     /**
@@ -111,14 +229,7 @@ public class HashUtils {
      * @return byte array containing the 128-bit hash result.
      */
     public static byte[] hashXx128(int seed, byte[] dataToHash) {
-        byte[] hash0 = hashXx64(seed, dataToHash);
-        byte[] hash1 = hashXx64(seed + 1, dataToHash);
-
-        ByteBuffer buffer = ByteBuffer.allocate(HASH_128_SIZE_BYTES);
-        buffer.put(hash0);
-        buffer.put(hash1);
-
-        return buffer.array();
+        return hashXx(seed, dataToHash, HASH_128_SIZE_BYTES);
     }
 
     /**
@@ -128,17 +239,52 @@ public class HashUtils {
      * @return byte array containing the 256-bit hash result.
      */
     public static byte[] hashXx256(int seed, byte[] dataToHash) {
-        byte[] hash0 = hashXx64(seed, dataToHash);
-        byte[] hash1 = hashXx64(seed + 1, dataToHash);
-        byte[] hash2 = hashXx64(seed + 2, dataToHash);
-        byte[] hash3 = hashXx64(seed + 3, dataToHash);
-
-        ByteBuffer buffer = ByteBuffer.allocate(Hash256.SIZE_BYTES);
-        buffer.put(hash0);
-        buffer.put(hash1);
-        buffer.put(hash2);
-        buffer.put(hash3);
-
-        return buffer.array();
+        return hashXx(seed, dataToHash, Hash256.SIZE_BYTES);
+    }
+
+    /**
+     * Conducts a 64, 128 or 256-bit xxHash hash of a range of an array. The result is the concatenation of the
+     * little endian 64-bit hashes with the seeds {@code seed}, {@code seed + 1}, and so on.
+     * @param seed the seed to use for the hash. Default 0.
+     * @param input the array containing the data to be hashed.
+     * @param offset the offset of the data in the input array.
+     * @param length the length of the data.
+     * @param output the array to write the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     * @param hashLength the length of the hash in bytes, a multiple of 8.
+     */
+    public static void hashXx(int seed, byte[] input, int offset, int length,
+                              byte[] output, int outputOffset, int hashLength) {
+        for (int i = 0; i < hashLength / HASH_64_SIZE_BYTES; i++) {
+            long hash = xxFunction(seed + i).hashBytes(input, offset, length);
+            LONG_LITTLE_ENDIAN.set(output, outputOffset + i * HASH_64_SIZE_BYTES, hash);
+        }
+    }
+
+    /**
+     * Conducts a 64, 128 or 256-bit xxHash hash of the remaining bytes of a buffer, without copying them.
+     * The position of the buffer is not changed.
+     * @param seed the seed to use for the hash. Default 0.
+     * @param input the buffer containing the data to be hashed.
+     * @param output the array to write the hash into.
+     * @param outputOffset the offset to start writing the hash at.
+     * @param hashLength the length of the hash in bytes, a multiple of 8.
+     * @see #hashXx(int, byte[], int, int, byte[], int, int)
+     */
+    public static void hashXx(int seed, ByteBuffer input, byte[] output, int outputOffset, int hashLength) {
+        for (int i = 0; i < hashLength / HASH_64_SIZE_BYTES; i++) {
+            long hash = xxFunction(seed + i).hashBytes(input, input.position(), input.remaining());
+            LONG_LITTLE_ENDIAN.set(output, outputOffset + i * HASH_64_SIZE_BYTES, hash);
+        }
+    }
+
+    private static byte[] hashXx(int seed, byte[] dataToHash, int hashLength) {
+        byte[] hash = new byte[hashLength];
+        hashXx(seed, dataToHash, 0, dataToHash.length, hash, 0, hashLength);
+        return hash;
+    }
+
+    private static LongHashFunction xxFunction(int seed) {
+        return seed >= 0 && seed < XX_FUNCTIONS.length ? XX_FUNCTIONS[seed] : LongHashFunction.xx(seed);
     }
 }
@@ -1,5 +1,6 @@
 package com.limechain.cli;
 
+import com.limechain.exception.misc.CliArgsParseException;
 import com.limechain.storage.DBInitializer;
 import org.apache.commons.cli.Options;
 import org.junit.jupiter.api.BeforeEach;
@@ -34,6 +35,8 @@ class CliTest {
         assertTrue(options.hasOption("sync-mode"));
         assertTrue(options.hasOption("public-rpc"));
         assertTrue(options.hasOption("rpc-methods"));
+        assertTrue(options.hasOption("trie-cache-size"));
+        assertTrue(options.hasOption("state-pruning"));
         assertEquals(0, options.getRequiredOptions().size());
     }
 
@@ -91,6 +94,21 @@ class CliTest {
         assertEquals(DBInitializer.DEFAULT_DIRECTORY, arguments.dbPath());
     }
 
+    @Test
+    void parseArgs_returns_trieCacheSizeParameter() {
+        assertEquals(256, cli.parseArgs(new String[]{}).trieCacheSize());
+        assertEquals(1024, cli.parseArgs(new String[]{"--trie-cache-size", "1024"}).trieCacheSize());
+    }
+
+    @Test
+    void parseArgs_returns_statePruningParameter() {
+        assertEquals(0, cli.parseArgs(new String[]{}).statePruning());
+        assertEquals(0, cli.parseArgs(new String[]{"--state-pruning", "archive"}).statePruning());
+        assertEquals(256, cli.parseArgs(new String[]{"--state-pruning", "256"}).statePruning());
+        assertThrows(CliArgsParseException.class, () -> cli.parseArgs(new String[]{"--state-pruning", "0"}));
+        assertThrows(CliArgsParseException.class, () -> cli.parseArgs(new String[]{"--state-pruning", "all"}));
+    }
+
     @Test
     void parseArgs_throws_whenInvalidArguments() {
 
@@ -1,10 +1,11 @@
 package com.limechain.rpc.methods.offchain;
 
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DBColumnFamily;
 import com.limechain.storage.offchain.StorageKind;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -13,14 +14,20 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class OffchainRPCImplTest {
     @Mock
-    private KVRepository<String, Object> dbMock;
-    @InjectMocks
+    private ByteKeyRepository dbMock;
     private OffchainRPCImpl offchainRPC;
 
+    @BeforeEach
+    void setup() {
+        when(dbMock.inColumnFamily(DBColumnFamily.OFFCHAIN)).thenReturn(dbMock);
+        offchainRPC = new OffchainRPCImpl(dbMock);
+    }
+
     @Test
     void testOffchainLocalStorageSetPersistent() {
         String key = "0x74657374";
@@ -31,7 +38,7 @@ class OffchainRPCImplTest {
 
         offchainRPC.offchainLocalStorageSet(StorageKind.PERSISTENT, key, value);
 
-        verify(dbMock).save("offchain_persistent_" + keyStr, valueBytes);
+        verify(dbMock).save(("offchain_persistent_" + keyStr).getBytes(), valueBytes);
     }
 
     @Test
@@ -44,7 +51,7 @@ class OffchainRPCImplTest {
 
         offchainRPC.offchainLocalStorageSet(StorageKind.LOCAL, key, value);
 
-        verify(dbMock).save("offchain_local_" + keyStr, valueBytes);
+        verify(dbMock).save(("offchain_local_" + keyStr).getBytes(), valueBytes);
     }
 
     @Test
@@ -55,7 +62,7 @@ class OffchainRPCImplTest {
         byte[] returnValue = new byte[]{0x56, 0x78};
         String expectedValue = "0x5678";
 
-        doReturn(Optional.of(returnValue)).when(dbMock).find("offchain_persistent_" + keyStr);
+        doReturn(Optional.of(returnValue)).when(dbMock).find(("offchain_persistent_" + keyStr).getBytes());
 
         String result = offchainRPC.offchainLocalStorageGet(StorageKind.PERSISTENT, key);
 
@@ -70,7 +77,7 @@ class OffchainRPCImplTest {
         byte[] returnValue = new byte[]{(byte) 0xCD, (byte) 0xEF};
         String expectedValue = "0xcdef";
 
-        doReturn(Optional.of(returnValue)).when(dbMock).find("offchain_local_" + keyStr);
+        doReturn(Optional.of(returnValue)).when(dbMock).find(("offchain_local_" + keyStr).getBytes());
 
         String result = offchainRPC.offchainLocalStorageGet(StorageKind.LOCAL, key);
 
@@ -1,13 +1,16 @@
 package com.limechain.runtime.hostapi;
 
+import com.google.protobuf.ByteString;
 import com.limechain.runtime.SharedMemory;
 import com.limechain.runtime.hostapi.dto.RuntimePointerSize;
+import com.limechain.runtime.version.StateVersion;
 import com.limechain.trie.TrieStructureFactory;
-import com.limechain.trie.decoded.Trie;
-import com.limechain.trie.decoded.TrieVerifier;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.StorageValue;
 import com.limechain.trie.structure.NodeHandle;
 import com.limechain.trie.structure.TrieStructure;
 import com.limechain.trie.structure.database.NodeData;
+import com.limechain.utils.HashUtils;
 import com.limechain.utils.RandomGenerationUtils;
 import com.limechain.utils.scale.ScaleUtils;
 import org.javatuples.Pair;
@@ -22,17 +25,22 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockConstruction;
-import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -46,13 +54,7 @@ class TrieHostFunctionsTest {
     @Mock
     private SharedMemory sharedMemory;
     @Mock
-    private RuntimePointerSize keyPointer;
-    @Mock
-    private RuntimePointerSize valuePointer;
-    @Mock
     private RuntimePointerSize expectedResultPtr;
-    @Mock
-    private Trie trie;
 
     @Test
     void blakeTwo256OrderedRootVersion1() throws IOException {
@@ -153,45 +155,93 @@ class TrieHostFunctionsTest {
     }
 
     @Test
-    @Disabled("Mockito can't properly manage something being equal about both key and value mocks. " +
-              "Or perhaps it has to do with my method invocations on them.")
     void blakeTwo256VerifyProofVersion1() {
-        byte[][] encodedNodes = new byte[][] {
-            RandomGenerationUtils.generateBytes(3),
-            RandomGenerationUtils.generateBytes(3)
-        };
-        byte[] rootHash = RandomGenerationUtils.generateBytes(3);
-
-        byte[] scaleEncodedNodes = ScaleUtils.Encode.encode(encodedNodes);
-
-        final var rootPointer = new RuntimePointerSize(100, TRIE_ROOT_HASH_BYTE_LEN);
-        final var proofPointer = new RuntimePointerSize(101, 0);
-
-        when(sharedMemory.readData(keyPointer)).thenReturn(keyBytes);
-        when(sharedMemory.readData(valuePointer)).thenReturn(valueBytes);
-        when(sharedMemory.readData(rootPointer)).thenReturn(rootHash);
-        when(sharedMemory.readData(proofPointer)).thenReturn(scaleEncodedNodes);
-
-        try (MockedStatic<TrieVerifier> mockedVerifier = mockStatic(TrieVerifier.class)) {
-            mockedVerifier
-                .when(() -> TrieVerifier.buildTrie(eq(encodedNodes), eq(rootHash)))
-                .thenReturn(trie);
-
-            mockedVerifier
-                .when(() -> TrieVerifier.verify(eq(trie), eq(keyBytes), eq(valueBytes)))
-                .thenReturn(true);
-
-            Number proofVerified = trieHostFunctions.ext_trie_blake2_256_verify_proof_version_1(
-                List.of(
-                    rootPointer.pointer(),
-                    proofPointer.pointerSize(),
-                    keyPointer.pointerSize(),
-                    valuePointer.pointerSize()
-                ));
-
-            assertEquals(1, proofVerified);
-
-            mockedVerifier.verify(() -> TrieVerifier.verify(eq(trie), eq(keyBytes), eq(valueBytes)));
+        Map<ByteString, ByteString> storage = Map.of(
+            ByteString.copyFrom(keyBytes), ByteString.copyFrom(valueBytes),
+            ByteString.copyFrom(new byte[] {1, 2, 4}), ByteString.copyFrom(new byte[] {7}),
+            ByteString.copyFrom(new byte[] {9}), ByteString.copyFrom(new byte[40]));
+        TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(storage, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+        byte[] root = trie.getRootNode().map(NodeHandle::getUserData).orElseThrow().getMerkleValue();
+        byte[] proof = ScaleUtils.Encode.encode(encodeNodes(trie));
+
+        Map<RuntimePointerSize, byte[]> memory = new HashMap<>();
+        when(sharedMemory.readData(any())).thenAnswer(invocation -> memory.get(invocation.getArgument(0)));
+
+        assertEquals(1, verifyProof(memory, root, proof, keyBytes, valueBytes));
+        assertEquals(1, verifyProof(memory, root, proof, new byte[] {9}, new byte[40]));
+        // The value has to match exactly, an empty one doesn't just check for the key
+        assertEquals(0, verifyProof(memory, root, proof, keyBytes, new byte[] {4, 5}));
+        assertEquals(0, verifyProof(memory, root, proof, keyBytes, new byte[0]));
+        assertEquals(0, verifyProof(memory, root, proof, new byte[] {1, 2}, new byte[0]));
+        // A root missing from the proof and one of the wrong length fail the verification
+        assertEquals(0, verifyProof(memory, new byte[TRIE_ROOT_HASH_BYTE_LEN], proof, keyBytes, valueBytes));
+        assertEquals(0, verifyProof(memory, Arrays.copyOf(root, 31), proof, keyBytes, valueBytes));
+    }
+
+    private Number verifyProof(Map<RuntimePointerSize, byte[]> memory, byte[] root, byte[] proof, byte[] key,
+                               byte[] value) {
+        // Each argument at its own pointer, so that they are read from memory separately
+        var rootPointer = new RuntimePointerSize(100, TRIE_ROOT_HASH_BYTE_LEN);
+        var proofPointer = new RuntimePointerSize(200, proof.length);
+        var keyPointer = new RuntimePointerSize(300, key.length);
+        var valuePointer = new RuntimePointerSize(400, value.length);
+        memory.put(rootPointer, root);
+        memory.put(proofPointer, proof);
+        memory.put(keyPointer, key);
+        memory.put(valuePointer, value);
+
+        return trieHostFunctions.ext_trie_blake2_256_verify_proof_version_1(List.of(
+            rootPointer.pointer(),
+            proofPointer.pointerSize(),
+            keyPointer.pointerSize(),
+            valuePointer.pointerSize()));
+    }
+
+    /**
+     * Encodes all nodes of a trie with calculated merkle values and no hashed values, making for a proof of any key.
+     */
+    private static byte[][] encodeNodes(TrieStructure<NodeData> trie) {
+        return trie.streamOrdered()
+            .map(trie::nodeHandleAtIndex)
+            .map(node -> {
+                List<byte[]> childrenMerkleValues = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    NodeData child = node.getChildUserData(i);
+                    childrenMerkleValues.add(child == null ? null : child.getMerkleValue());
+                }
+                byte[] value = node.getUserData().getValue();
+                return NodeEncoder.forCurrentThread().encode(childrenMerkleValues, node.getPartialKey(),
+                    value == null ? null : new StorageValue(value, false));
+            })
+            .toArray(byte[][]::new);
+    }
+
+    @Test
+    void trieRootCalculatorMatchesTheFullTrie() {
+        Random random = new Random(3);
+        for (StateVersion stateVersion : StateVersion.values()) {
+            List<Pair<byte[], byte[]>> entries = new ArrayList<>();
+            Map<ByteString, ByteString> storage = new HashMap<>();
+            for (int i = 0; i < 300; i++) {
+                byte[] key = new byte[random.nextInt(4)];
+                random.nextBytes(key);
+                byte[] value = new byte[random.nextInt(64)];
+                random.nextBytes(value);
+                // Small keys repeat, in which case the last value wins
+                entries.add(new Pair<>(key, value));
+                storage.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+            }
+
+            TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(storage, stateVersion);
+            TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+            byte[] expectedRoot = trie.getRootNode().map(NodeHandle::getUserData).orElseThrow().getMerkleValue();
+
+            TrieHostFunctions.HashFunction hashFunction = TrieHostFunctions.HashFunction.BLAKE2B;
+            TrieHostFunctions.TrieRootCalculator calculator =
+                new TrieHostFunctions.TrieRootCalculator(hashFunction, stateVersion);
+            assertArrayEquals(expectedRoot, calculator.trieRoot(entries));
+            assertArrayEquals(hashFunction.getEmptyTrieHash(), calculator.trieRoot(List.of()));
         }
     }
-}
\ No newline at end of file
+}
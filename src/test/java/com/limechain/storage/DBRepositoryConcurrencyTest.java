@@ -0,0 +1,93 @@
+package com.limechain.storage;
+
+import com.limechain.chain.Chain;
+import com.limechain.exception.storage.DBException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DBRepositoryConcurrencyTest {
+    private DBRepository connection;
+    private DBRepository repository;
+
+    @BeforeEach
+    public void setup(@TempDir Path directory) {
+        connection = new DBRepository(directory.toString(), Chain.WESTEND.getValue(), false);
+        repository = connection.inColumnFamily(DBColumnFamily.TRIE_NODES);
+    }
+
+    @AfterEach
+    public void close() {
+        connection.closeConnection();
+    }
+
+    @Test
+    void readersNeverSeePartialBatches() throws Exception {
+        byte[] prefix = "concurrency:".getBytes();
+        List<Map.Entry<byte[], byte[]>> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(Map.entry(KeyPrefix.of(prefix).key(intToBytes(i)), intToBytes(i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int round = 0; round < 50; round++) {
+                    repository.saveBatch(batch);
+                    repository.deleteByPrefix(prefix, null);
+                }
+            });
+
+            List<Future<Boolean>> readers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                readers.add(executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        int found = repository.findKeysByPrefix(prefix, Integer.MAX_VALUE).size();
+                        if (found != 0 && found != batch.size()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+
+            writer.get(1, TimeUnit.MINUTES);
+            for (Future<Boolean> reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void operationsFailAfterTheConnectionIsClosed() {
+        byte[] key = "closed".getBytes();
+        repository.save(key, new byte[]{1});
+
+        connection.closeConnection();
+
+        assertThrows(DBException.class, () -> repository.find(key));
+        assertThrows(DBException.class, () -> repository.save(key, new byte[]{2}));
+        // Closing again, as done after each test, is a no-op
+        connection.closeConnection();
+    }
+
+    private static byte[] intToBytes(int value) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+    }
+}
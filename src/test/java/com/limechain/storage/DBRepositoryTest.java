@@ -1,12 +1,16 @@
 package com.limechain.storage;
 
+import com.google.common.primitives.Bytes;
 import com.limechain.chain.Chain;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -60,4 +64,59 @@ class DBRepositoryTest {
         assertFalse(delValue.isPresent());
 
     }
+
+    @Test
+    void inColumnFamily_keepsEntriesSeparate() {
+        byte[] key = "cf-key".getBytes();
+        DBRepository trieNodes = dbRepository.inColumnFamily(DBColumnFamily.TRIE_NODES);
+
+        assertTrue(trieNodes.save(key, new byte[]{1}));
+
+        assertArrayEquals(new byte[]{1}, trieNodes.find(key).orElseThrow());
+        assertFalse(dbRepository.find(key).isPresent());
+        assertFalse(dbRepository.inColumnFamily(DBColumnFamily.BLOCKS).find(key).isPresent());
+
+        assertTrue(trieNodes.delete(key));
+        assertFalse(trieNodes.find(key).isPresent());
+    }
+
+    @Test
+    void deleteByPrefix_deletesUpToLimit_thenWholeRange() {
+        byte[] prefix = "del-prefix:".getBytes();
+        DBRepository trieNodes = dbRepository.inColumnFamily(DBColumnFamily.TRIE_NODES);
+        for (byte i = 0; i < 3; i++) {
+            trieNodes.save(Bytes.concat(prefix, new byte[]{i}), new byte[]{i});
+        }
+        byte[] outside = "del-prefiy".getBytes();
+        trieNodes.save(outside, new byte[]{1});
+
+        DeleteByPrefixResult limited = trieNodes.deleteByPrefix(prefix, 2L);
+        assertEquals(2, limited.deleted());
+        assertFalse(limited.all());
+        assertEquals(1, trieNodes.findKeysByPrefix(prefix, 10).size());
+
+        DeleteByPrefixResult unlimited = trieNodes.deleteByPrefix(prefix, null);
+        assertTrue(unlimited.all());
+        assertTrue(trieNodes.findKeysByPrefix(prefix, 10).isEmpty());
+        assertTrue(trieNodes.find(outside).isPresent());
+
+        trieNodes.delete(outside);
+    }
+
+    @Test
+    void moveLegacyEntries_runsOnlyOnce(@TempDir Path directory) {
+        byte[] legacyKey = "tn:legacy".getBytes();
+        DBRepository repository = new DBRepository(directory.toString(), Chain.WESTEND.getValue(), false);
+        repository.save(legacyKey, new byte[]{1});
+        repository.closeConnection();
+
+        // The first startup marked the database as migrated, so the entry isn't moved anymore
+        repository = new DBRepository(directory.toString(), Chain.WESTEND.getValue(), false);
+        try {
+            assertTrue(repository.find(legacyKey).isPresent());
+            assertFalse(repository.inColumnFamily(DBColumnFamily.TRIE_NODES).find(legacyKey).isPresent());
+        } finally {
+            repository.closeConnection();
+        }
+    }
 }
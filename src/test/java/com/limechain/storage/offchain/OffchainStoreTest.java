@@ -1,6 +1,7 @@
 package com.limechain.storage.offchain;
 
-import com.limechain.storage.KVRepository;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.KeyPrefix;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,16 +19,16 @@ import static org.mockito.Mockito.when;
 class OffchainStoreTest {
     private static final String TEST_PREFIX = "test_";
     private final byte[] key = "key".getBytes();
-    private final String prefixedKey = TEST_PREFIX.concat(new String(key));
+    private final byte[] prefixedKey = TEST_PREFIX.concat(new String(key)).getBytes();
 
     private OffchainStore offchainStore;
 
     @Mock
-    private KVRepository<String, Object> repository;
+    private ByteKeyRepository repository;
 
     @BeforeEach
     void setUp() {
-        offchainStore = new OffchainStore(repository, TEST_PREFIX);
+        offchainStore = new OffchainStore(repository, KeyPrefix.of(TEST_PREFIX));
     }
 
     @Test
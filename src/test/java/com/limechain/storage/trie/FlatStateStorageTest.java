@@ -0,0 +1,122 @@
+package com.limechain.storage.trie;
+
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FlatStateStorageTest {
+    private static final byte[] ROOT_KEY = "root".getBytes(UTF_8);
+    private static final byte[] ROOT = new byte[]{1, 2, 3};
+    private static final byte[] NEXT_ROOT = new byte[]{4, 5, 6};
+
+    @Mock
+    private ByteKeyRepository db;
+
+    @Test
+    void findFallsBackToTraversalForOtherRoots() {
+        when(db.find(ROOT_KEY)).thenReturn(Optional.of(ROOT));
+        FlatStateStorage flatState = new FlatStateStorage(db);
+
+        Optional<byte[]> value = flatState.find(NEXT_ROOT, Nibbles.fromBytes("key".getBytes()),
+            () -> Optional.of("traversed".getBytes()));
+
+        assertArrayEquals("traversed".getBytes(), value.orElseThrow());
+        verify(db, never()).find(flatKey("key"));
+    }
+
+    @Test
+    void findReadsTableAtItsRoot() {
+        when(db.find(ROOT_KEY)).thenReturn(Optional.of(ROOT));
+        when(db.find(flatKey("key"))).thenReturn(Optional.of("value".getBytes()));
+        FlatStateStorage flatState = new FlatStateStorage(db);
+
+        Optional<byte[]> value = flatState.find(ROOT, Nibbles.fromBytes("key".getBytes()), () -> {
+            throw new AssertionError("Trie must not be traversed");
+        });
+
+        assertArrayEquals("value".getBytes(), value.orElseThrow());
+    }
+
+    @Test
+    void applyWritesChangesAndRootAtomically() {
+        when(db.find(ROOT_KEY)).thenReturn(Optional.of(ROOT));
+        FlatStateStorage flatState = new FlatStateStorage(db);
+
+        Map<Nibbles, byte[]> changes = new HashMap<>();
+        changes.put(Nibbles.fromBytes("updated".getBytes()), "value".getBytes());
+        changes.put(Nibbles.fromBytes("removed".getBytes()), null);
+        changes.put(Nibbles.fromHexString("abc"), "odd".getBytes());
+
+        assertTrue(flatState.apply(ROOT, NEXT_ROOT, changes));
+
+        ArgumentCaptor<List<Map.Entry<byte[], byte[]>>> entries = ArgumentCaptor.captor();
+        ArgumentCaptor<List<byte[]>> deletes = ArgumentCaptor.captor();
+        verify(db).writeBatch(entries.capture(), deletes.capture());
+        assertEquals(2, entries.getValue().size());
+        assertArrayEquals(flatKey("updated"), entries.getValue().get(0).getKey());
+        assertArrayEquals(ROOT_KEY, entries.getValue().get(1).getKey());
+        assertArrayEquals(NEXT_ROOT, entries.getValue().get(1).getValue());
+        assertEquals(1, deletes.getValue().size());
+        assertArrayEquals(flatKey("removed"), deletes.getValue().getFirst());
+        assertArrayEquals(NEXT_ROOT, flatState.getStateRoot());
+    }
+
+    @Test
+    void applySkipsChangesOnTopOfOtherRoots() {
+        when(db.find(ROOT_KEY)).thenReturn(Optional.empty());
+        FlatStateStorage flatState = new FlatStateStorage(db);
+
+        assertFalse(flatState.apply(ROOT, NEXT_ROOT, Map.of(Nibbles.fromBytes("key".getBytes()), new byte[]{1})));
+
+        verify(db, never()).writeBatch(anyList(), anyList());
+        assertNull(flatState.getStateRoot());
+    }
+
+    @Test
+    void resetReplacesContentAndRoot() {
+        when(db.find(ROOT_KEY)).thenReturn(Optional.of(ROOT));
+        FlatStateStorage flatState = new FlatStateStorage(db);
+
+        flatState.reset(NEXT_ROOT, List.of(Map.entry(Nibbles.fromBytes("key".getBytes()), "value".getBytes())));
+
+        verify(db).deleteByPrefix("v:".getBytes(UTF_8), null);
+        ArgumentCaptor<List<Map.Entry<byte[], byte[]>>> batch = ArgumentCaptor.captor();
+        verify(db).saveBatch(batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertArrayEquals(flatKey("key"), batch.getValue().get(0).getKey());
+        assertArrayEquals(NEXT_ROOT, batch.getValue().get(1).getValue());
+        assertArrayEquals(NEXT_ROOT, flatState.getStateRoot());
+        verify(db, never()).writeBatch(any(), any());
+    }
+
+    private static byte[] flatKey(String key) {
+        byte[] bytes = key.getBytes(UTF_8);
+        byte[] flatKey = new byte[bytes.length + 2];
+        flatKey[0] = 'v';
+        flatKey[1] = ':';
+        System.arraycopy(bytes, 0, flatKey, 2, bytes.length);
+        return flatKey;
+    }
+}
@@ -0,0 +1,84 @@
+package com.limechain.storage.trie;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OffHeapTrieNodeCacheTest {
+    private OffHeapTrieNodeCache cache;
+
+    @AfterEach
+    void close() {
+        cache.close();
+    }
+
+    private static byte[] merkle(int i) {
+        byte[] merkle = new byte[32];
+        merkle[0] = (byte) i;
+        merkle[1] = (byte) (i >> 8);
+        return merkle;
+    }
+
+    @Test
+    void getReturnsStoredValue() {
+        cache = new OffHeapTrieNodeCache(64 * 1024);
+        byte[] encoded = {1, 2, 3, 4, 5};
+
+        cache.put(merkle(1), encoded);
+
+        assertArrayEquals(encoded, cache.get(merkle(1)));
+        assertNull(cache.get(merkle(2)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void acceptsShortKeysOfInlineNodes() {
+        cache = new OffHeapTrieNodeCache(64 * 1024);
+
+        cache.put(new byte[]{7}, new byte[]{1});
+        cache.put(new byte[]{7, 0}, new byte[]{2});
+
+        assertArrayEquals(new byte[]{1}, cache.get(new byte[]{7}));
+        assertArrayEquals(new byte[]{2}, cache.get(new byte[]{7, 0}));
+    }
+
+    @Test
+    void oldestEntriesAreOverwrittenWhenTheLogWraps() {
+        cache = new OffHeapTrieNodeCache(4 * 1024);
+        byte[] value = new byte[100];
+
+        for (int i = 0; i < 200; i++) {
+            value[0] = (byte) i;
+            cache.put(merkle(i), value.clone());
+        }
+
+        assertNull(cache.get(merkle(0)));
+        byte[] newest = cache.get(merkle(199));
+        assertEquals((byte) 199, newest[0]);
+    }
+
+    @Test
+    void valuesLargerThanTheCacheAreSkipped() {
+        cache = new OffHeapTrieNodeCache(64);
+
+        cache.put(merkle(1), new byte[128]);
+
+        assertNull(cache.get(merkle(1)));
+    }
+
+    @Test
+    void closedCacheIsEmpty() {
+        cache = new OffHeapTrieNodeCache(64 * 1024);
+        cache.put(merkle(1), new byte[]{1});
+
+        cache.close();
+        cache.put(merkle(2), new byte[]{2});
+
+        assertNull(cache.get(merkle(1)));
+        assertNull(cache.get(merkle(2)));
+    }
+}
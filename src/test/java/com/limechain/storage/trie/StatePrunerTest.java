@@ -0,0 +1,234 @@
+package com.limechain.storage.trie;
+
+import com.limechain.storage.ByteKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StatePrunerTest {
+    private static final byte[] SHARED = new byte[]{1};
+    private static final byte[] OLD = new byte[]{2};
+    private static final byte[] NEW = new byte[]{3};
+    private static final byte[] OTHER = new byte[]{4};
+    private static final byte[] ROOT_1 = new byte[]{10};
+    private static final byte[] ROOT_2 = new byte[]{11};
+    private static final byte[] ROOT_3 = new byte[]{12};
+    private static final byte[] ROOT_4 = new byte[]{13};
+
+    @Mock
+    private ByteKeyRepository db;
+
+    private final TreeMap<byte[], byte[]> storage = new TreeMap<>(Arrays::compareUnsigned);
+
+    @BeforeEach
+    void setup() {
+        when(db.find(any())).thenAnswer(inv -> Optional.ofNullable(storage.get(inv.<byte[]>getArgument(0))));
+        when(db.findMany(anyList())).thenAnswer(inv -> inv.<List<byte[]>>getArgument(0).stream()
+            .map(storage::get)
+            .toList());
+        when(db.findKeysByPrefix(any(), anyInt())).thenAnswer(inv -> storage.keySet().stream()
+            .filter(key -> Arrays.equals(key, 0, 3, inv.<byte[]>getArgument(0), 0, 3))
+            .toList());
+        when(db.save(any(), any())).thenAnswer(inv -> storage.put(inv.getArgument(0), inv.getArgument(1)) != null);
+        when(db.delete(any())).thenAnswer(inv -> storage.remove(inv.<byte[]>getArgument(0)) != null);
+        doAnswer(inv -> {
+            inv.<List<Map.Entry<byte[], byte[]>>>getArgument(0).forEach(e -> storage.put(e.getKey(), e.getValue()));
+            return null;
+        }).when(db).saveBatch(anyList());
+        doAnswer(inv -> {
+            inv.<List<Map.Entry<byte[], byte[]>>>getArgument(0).forEach(e -> storage.put(e.getKey(), e.getValue()));
+            inv.<List<byte[]>>getArgument(1).forEach(storage::remove);
+            return null;
+        }).when(db).writeBatch(anyList(), anyList());
+    }
+
+    @Test
+    void prunesReplacedNodesOnceOutOfWindow() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 2, executor);
+
+        // ROOT_1 holds SHARED and OLD, ROOT_2 replaces OLD with NEW and SHARED with a second copy of itself
+        pruner.commit(nodeEntries(SHARED, OLD), List.of(SHARED, OLD));
+        pruner.recordState(null, ROOT_1, List.of(SHARED, OLD), List.of());
+        pruner.onFinalized(ROOT_1);
+        pruner.commit(nodeEntries(SHARED, NEW), List.of(SHARED, NEW));
+        pruner.recordState(ROOT_1, ROOT_2, List.of(SHARED, NEW), List.of(SHARED, OLD));
+        pruner.onFinalized(ROOT_2);
+
+        // ROOT_1 is still within the window of 2 states
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+
+        pruner.onFinalized(ROOT_3);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(SHARED)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(NEW)));
+        assertEquals(1, pruner.getPrunedNodes());
+    }
+
+    @Test
+    void neverPrunesNodesWithoutReferenceCount() throws InterruptedException {
+        storage.put(TrieStorage.TRIE_NODE_KEYS.key(OLD), new byte[]{0});
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 1, executor);
+
+        pruner.commit(nodeEntries(NEW), List.of(NEW));
+        pruner.recordState(null, ROOT_1, List.of(NEW), List.of(OLD));
+        pruner.onFinalized(ROOT_1);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertEquals(0, pruner.getPrunedNodes());
+    }
+
+    @Test
+    void reinsertedNodesWithoutReferenceCountStayPinned() throws InterruptedException {
+        storage.put(TrieStorage.TRIE_NODE_KEYS.key(OLD), new byte[]{0});
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 1, executor);
+
+        // ROOT_1 inserts OLD again, ROOT_2 replaces it while states persisted before pruning may still hold it
+        pruner.commit(nodeEntries(OLD), List.of(OLD));
+        pruner.recordState(null, ROOT_1, List.of(OLD), List.of());
+        pruner.onFinalized(ROOT_1);
+        pruner.commit(nodeEntries(NEW), List.of(NEW));
+        pruner.recordState(ROOT_1, ROOT_2, List.of(NEW), List.of(OLD));
+        pruner.onFinalized(ROOT_2);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertEquals(0, pruner.getPrunedNodes());
+    }
+
+    @Test
+    void releasesNodesOfAbandonedForks() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 10, executor);
+
+        pruner.commit(nodeEntries(SHARED), List.of(SHARED));
+        pruner.recordState(null, ROOT_1, List.of(SHARED), List.of());
+        pruner.onFinalized(ROOT_1);
+        // ROOT_2 and ROOT_3 are forks on top of ROOT_1, and ROOT_4 builds on top of the abandoned ROOT_2
+        pruner.commit(nodeEntries(OLD), List.of(OLD));
+        pruner.recordState(ROOT_1, ROOT_2, List.of(OLD), List.of(SHARED));
+        pruner.commit(nodeEntries(OTHER), List.of(OTHER));
+        pruner.recordState(ROOT_2, ROOT_4, List.of(OTHER), List.of(OLD));
+        pruner.commit(nodeEntries(NEW), List.of(NEW));
+        pruner.recordState(ROOT_1, ROOT_3, List.of(NEW), List.of(SHARED));
+        pruner.onFinalized(ROOT_3);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertFalse(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OTHER)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(SHARED)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(NEW)));
+        assertEquals(2, pruner.getPrunedNodes());
+        // Nothing is left of the abandoned states, only ROOT_3 has a journal of the nodes it replaced
+        assertEquals(0, countKeys("ps:"));
+        assertEquals(0, countKeys("ji:"));
+        assertEquals(1, countKeys("jr:"));
+    }
+
+    @Test
+    void keepsNodesOfStatesBetweenARepeatedRoot() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 3, executor);
+
+        // ROOT_2 replaces OLD with NEW, and reverting the change brings ROOT_1 back
+        pruner.commit(nodeEntries(SHARED, OLD), List.of(SHARED, OLD));
+        pruner.recordState(null, ROOT_1, List.of(SHARED, OLD), List.of());
+        pruner.onFinalized(ROOT_1);
+        pruner.commit(nodeEntries(NEW), List.of(NEW));
+        pruner.recordState(ROOT_1, ROOT_2, List.of(NEW), List.of(OLD));
+        pruner.onFinalized(ROOT_2);
+        pruner.commit(nodeEntries(OLD), List.of(OLD));
+        pruner.recordState(ROOT_2, ROOT_1, List.of(OLD), List.of(NEW));
+        pruner.onFinalized(ROOT_1);
+
+        pruner.onFinalized(ROOT_3);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Both ROOT_1 journals were kept apart, so dropping the first one from the window left ROOT_2 intact
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(NEW)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(SHARED)));
+        assertEquals(0, pruner.getPrunedNodes());
+    }
+
+    @Test
+    void finalizingAStateFinalizesItsAncestors() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 1, executor);
+
+        pruner.commit(nodeEntries(SHARED, OLD), List.of(SHARED, OLD));
+        pruner.recordState(null, ROOT_1, List.of(SHARED, OLD), List.of());
+        pruner.onFinalized(ROOT_1);
+        // ROOT_2 is only finalized along with its child ROOT_3, which replaced the node ROOT_2 inserted
+        pruner.commit(nodeEntries(NEW), List.of(NEW));
+        pruner.recordState(ROOT_1, ROOT_2, List.of(NEW), List.of(OLD));
+        pruner.commit(nodeEntries(OTHER), List.of(OTHER));
+        pruner.recordState(ROOT_2, ROOT_3, List.of(OTHER), List.of(NEW));
+        pruner.onFinalized(ROOT_3);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OLD)));
+        assertFalse(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(NEW)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(SHARED)));
+        assertTrue(storage.containsKey(TrieStorage.TRIE_NODE_KEYS.key(OTHER)));
+    }
+
+    @Test
+    void closeStopsTheBackgroundPruning() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StatePruner pruner = new StatePruner(db, 1, executor);
+
+        pruner.close();
+
+        assertTrue(executor.isTerminated());
+    }
+
+    private long countKeys(String prefix) {
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return storage.keySet().stream()
+            .filter(key -> Arrays.equals(key, 0, prefixBytes.length, prefixBytes, 0, prefixBytes.length))
+            .count();
+    }
+
+    private static List<Map.Entry<byte[], byte[]>> nodeEntries(byte[]... merkleValues) {
+        return Arrays.stream(merkleValues)
+            .map(merkleValue -> Map.entry(TrieStorage.TRIE_NODE_KEYS.key(merkleValue), new byte[]{0}))
+            .toList();
+    }
+}
@@ -0,0 +1,94 @@
+package com.limechain.storage.trie;
+
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.node.TrieNodeData;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrieNodeCacheTest {
+
+    private static TrieNodeData node(int valueSize) {
+        return new TrieNodeData(false, Nibbles.fromHexString("12"), Collections.nCopies(16, null),
+            new byte[valueSize], null, (byte) 0);
+    }
+
+    private static byte[] merkle(int i) {
+        byte[] merkle = new byte[32];
+        merkle[0] = (byte) i;
+        return merkle;
+    }
+
+    @Test
+    void getReturnsCachedNodeByContentOfTheKey() {
+        TrieNodeCache cache = new TrieNodeCache(1024 * 1024);
+        TrieNodeData node = node(10);
+
+        cache.put(merkle(1), node);
+
+        assertSame(node, cache.get(merkle(1)));
+        assertNull(cache.get(merkle(2)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void staysWithinByteBudget() {
+        TrieNodeCache cache = new TrieNodeCache(4 * 1024);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(merkle(i), node(100));
+        }
+
+        assertTrue(cache.getUsedBytes() <= cache.getMaxBytes());
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(100 - cache.getEvictions(), cache.size());
+    }
+
+    @Test
+    void referencedEntriesSurviveEviction() {
+        TrieNodeCache cache = new TrieNodeCache(4 * 1024);
+        cache.put(merkle(0), node(100));
+
+        for (int i = 1; i < 100; i++) {
+            assertNotNull(cache.get(merkle(0)));
+            cache.put(merkle(i), node(100));
+        }
+
+        assertNotNull(cache.get(merkle(0)));
+    }
+
+    @Test
+    void zeroBudgetDisablesCaching() {
+        TrieNodeCache cache = new TrieNodeCache(0);
+
+        cache.put(merkle(1), node(1));
+
+        assertNull(cache.get(merkle(1)));
+        assertEquals(0, cache.size());
+        // A disabled cache isn't looked up at all
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void metricsOfSeveralCachesGoToTheirOwnRegistries() {
+        TrieNodeCache first = new TrieNodeCache(1024);
+        TrieNodeCache second = new TrieNodeCache(1024);
+        PrometheusRegistry firstRegistry = new PrometheusRegistry();
+        PrometheusRegistry secondRegistry = new PrometheusRegistry();
+
+        first.registerMetrics(firstRegistry);
+        second.registerMetrics(secondRegistry);
+        second.get(merkle(1));
+
+        assertEquals(4, firstRegistry.scrape().size());
+        assertEquals(4, secondRegistry.scrape().size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.limechain.storage.trie;
+
+import com.limechain.exception.trie.NodeDecodingException;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.node.TrieNodeData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrieNodeDataCodecTest {
+
+    @Test
+    void roundTripBranchWithoutValue() {
+        List<byte[]> children = new ArrayList<>(Collections.nCopies(16, null));
+        children.set(0, new byte[]{1, 2, 3});
+        children.set(15, new byte[32]);
+        TrieNodeData node = new TrieNodeData(true, Nibbles.fromHexString("abc"), children, null, null, (byte) 1);
+
+        TrieNodeData decoded = TrieNodeDataCodec.decode(TrieNodeDataCodec.encode(node));
+
+        assertTrue(decoded.isBranchNode());
+        assertEquals(Nibbles.fromHexString("abc"), decoded.getPartialKey());
+        assertEquals(16, decoded.getChildrenMerkleValues().size());
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getChildrenMerkleValues().get(0));
+        assertArrayEquals(new byte[32], decoded.getChildrenMerkleValues().get(15));
+        for (int i = 1; i < 15; i++) {
+            assertNull(decoded.getChildrenMerkleValues().get(i));
+        }
+        assertNull(decoded.getValue());
+        assertNull(decoded.getTrieRootRef());
+        assertEquals(1, decoded.getEntriesVersion());
+    }
+
+    @Test
+    void roundTripLeafWithValueAndEvenKey() {
+        List<byte[]> children = new ArrayList<>(Collections.nCopies(16, null));
+        byte[] value = "value".getBytes();
+        TrieNodeData node = new TrieNodeData(false, Nibbles.fromHexString("0a1b"), children, value, null, (byte) 0);
+
+        TrieNodeData decoded = TrieNodeDataCodec.decode(TrieNodeDataCodec.encode(node));
+
+        assertFalse(decoded.isBranchNode());
+        assertEquals(Nibbles.fromHexString("0a1b"), decoded.getPartialKey());
+        assertArrayEquals(value, decoded.getValue());
+        assertNull(decoded.getTrieRootRef());
+        assertEquals(0, decoded.getEntriesVersion());
+    }
+
+    @Test
+    void roundTripTrieRootReferenceAndEmptyKey() {
+        List<byte[]> children = new ArrayList<>(Collections.nCopies(16, null));
+        byte[] rootRef = new byte[32];
+        rootRef[5] = 7;
+        TrieNodeData node = new TrieNodeData(false, Nibbles.EMPTY, children, null, rootRef, (byte) 0);
+
+        TrieNodeData decoded = TrieNodeDataCodec.decode(TrieNodeDataCodec.encode(node));
+
+        assertTrue(decoded.getPartialKey().isEmpty());
+        assertNull(decoded.getValue());
+        assertArrayEquals(rootRef, decoded.getTrieRootRef());
+    }
+
+    @Test
+    void decodeRejectsUnknownVersion() {
+        assertThrows(NodeDecodingException.class, () -> TrieNodeDataCodec.decode(new byte[]{42, 0, 0, 0, 0, 0}));
+    }
+
+    @Test
+    void decodeRejectsTruncatedInput() {
+        List<byte[]> children = new ArrayList<>(Collections.nCopies(16, null));
+        children.set(3, new byte[32]);
+        byte[] encoded = TrieNodeDataCodec.encode(
+            new TrieNodeData(true, Nibbles.fromHexString("12"), children, null, null, (byte) 0));
+
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertThrows(NodeDecodingException.class, () -> TrieNodeDataCodec.decode(truncated));
+    }
+}
@@ -1,25 +1,59 @@
 package com.limechain.storage.trie;
 
 
-import com.limechain.storage.KVRepository;
+import com.google.protobuf.ByteString;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DeleteByPrefixResult;
+import com.limechain.trie.TrieStructureFactory;
+import com.limechain.trie.decoded.TrieProof;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.StorageValue;
+import com.limechain.trie.dto.node.StorageNode;
+import com.limechain.trie.structure.TrieNodeIndex;
+import com.limechain.trie.structure.TrieStructure;
 import com.limechain.trie.structure.database.NodeData;
 import com.limechain.trie.structure.nibble.Nibbles;
 import com.limechain.trie.structure.node.TrieNodeData;
+import com.limechain.utils.ByteArrayUtils;
+import com.limechain.utils.HashUtils;
 import io.emeraldpay.polkaj.types.Hash256;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.SerializationUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,11 +62,17 @@ class TrieStorageTest {
     private static final String ROOT_HASH = "0x7b22fc4469863c9671686c189a3238708033d364a77ba8d83e78777e7563f347";
 
     @Mock
-    private KVRepository<String, Object> db;
+    private ByteKeyRepository db;
+    @Mock
+    private ByteKeyRepository flatDb;
 
-    @InjectMocks
     private TrieStorage trieStorage;
 
+    @BeforeEach
+    void setup() {
+        trieStorage = new TrieStorage(db, new TrieNodeCache(1024 * 1024));
+    }
+
     @Test
     void testGetByKeyFromBlock() {
         Nibbles key = Nibbles.fromBytes("testKey".getBytes());
@@ -48,7 +88,7 @@ class TrieStorageTest {
                 (byte) 0
             );
 
-        when(db.find(anyString())).thenReturn(Optional.of(trieNodeData));
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(TrieNodeDataCodec.encode(trieNodeData)));
 
         byte[] blockStateRoot = Hash256.from(ROOT_HASH).getBytes();
         Optional<NodeData> result = trieStorage.getByKeyFromMerkle(blockStateRoot, key);
@@ -56,14 +96,17 @@ class TrieStorageTest {
         assertTrue(result.isPresent());
         assertArrayEquals(expectedValue, result.get().getValue());
 
-        verify(db).find(anyString());
+        verify(db).find(any(byte[].class));
     }
 
     @Test
     void testGetByKeyFromBlockWithNonMatchingKey() {
         String keyStr = "nonMatchingKey";
 
-        when(db.find(anyString())).thenReturn(Optional.empty());
+        when(db.find(any(byte[].class))).thenReturn(Optional.empty());
+        when(db.findEntriesByPrefix(any(byte[].class), isNull(), anyInt())).thenReturn(List.of());
+        trieStorage.migrateLegacyTrieNodes();
+        clearInvocations(db);
 
         byte[] blockStateRoot = Hash256.from(ROOT_HASH).getBytes();
         Optional<NodeData> result =
@@ -71,7 +114,8 @@ class TrieStorageTest {
 
         assertTrue(result.isEmpty());
 
-        verify(db).find(anyString());
+        // Once migrated, a miss doesn't check the key format used by older versions
+        verify(db).find(any(byte[].class));
     }
 
     @Test
@@ -86,7 +130,7 @@ class TrieStorageTest {
             null,
             new byte[0],
             (byte) 0);
-        when(db.find(anyString())).thenReturn(Optional.of(nonMatchingTrieNodeData));
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(TrieNodeDataCodec.encode(nonMatchingTrieNodeData)));
 
         // Action
         byte[] blockStateRoot = Hash256.from(ROOT_HASH).getBytes();
@@ -108,7 +152,7 @@ class TrieStorageTest {
             new ArrayList<>(), "nextValue".getBytes(), new byte[0], (byte) 0);
 
         // Assuming the database returns the mock TrieNodeData for the next key
-        when(db.find(anyString())).thenReturn(Optional.of(nextKeyNode));
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(TrieNodeDataCodec.encode(nextKeyNode)));
 
         // Action
         byte[] blockStateRoot = Hash256.from(ROOT_HASH).getBytes();
@@ -117,4 +161,380 @@ class TrieStorageTest {
         // Assert
         assertEquals(actualKey, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLoadChildrenFetchesAllChildrenAtOnce() {
+        byte[] rootMerkle = Hash256.from(ROOT_HASH).getBytes();
+        byte[] firstChildMerkle = new byte[]{1};
+        byte[] secondChildMerkle = new byte[]{2};
+
+        List<byte[]> rootChildren = new ArrayList<>(Collections.nCopies(16, null));
+        rootChildren.set(0, firstChildMerkle);
+        rootChildren.set(5, secondChildMerkle);
+        TrieNodeData root = new TrieNodeData(true, Nibbles.EMPTY, rootChildren, null, null, (byte) 0);
+        TrieNodeData leaf = new TrieNodeData(false, Nibbles.fromHexString("a"),
+            Collections.nCopies(16, null), "value".getBytes(), null, (byte) 0);
+
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(TrieNodeDataCodec.encode(root)));
+        when(db.findMany(anyList())).thenReturn(Arrays.asList(
+            TrieNodeDataCodec.encode(leaf), TrieNodeDataCodec.encode(leaf)));
+
+        List<StorageNode> children = trieStorage.loadChildren(Nibbles.EMPTY, rootMerkle);
+
+        assertEquals(16, children.size());
+        assertEquals(Nibbles.fromHexString("0a"), children.get(0).key());
+        assertEquals(Nibbles.fromHexString("5a"), children.get(5).key());
+        assertArrayEquals(secondChildMerkle, children.get(5).nodeData().getMerkleValue());
+        assertNull(children.get(1));
+
+        verify(db, times(1)).find(any(byte[].class));
+        verify(db, times(1)).findMany(anyList());
+    }
+
+    @Test
+    void testTrieNodeIsCachedAfterFirstLoad() {
+        TrieNodeData node = new TrieNodeData(false, Nibbles.fromHexString("ab"),
+            Collections.nCopies(16, null), "value".getBytes(), null, (byte) 0);
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(TrieNodeDataCodec.encode(node)));
+
+        byte[] merkleValue = Hash256.from(ROOT_HASH).getBytes();
+        TrieNodeData first = trieStorage.getTrieNodeFromMerkleValue(merkleValue);
+        TrieNodeData second = trieStorage.getTrieNodeFromMerkleValue(merkleValue);
+
+        assertEquals(first, second);
+        verify(db, times(1)).find(any(byte[].class));
+        assertEquals(1, trieStorage.getCache().getHits());
+        assertEquals(1, trieStorage.getCache().getMisses());
+    }
+
+    @Test
+    void testLazyLoadedTrieFetchesNodesOnFirstAccess() {
+        byte[] rootMerkle = Hash256.from(ROOT_HASH).getBytes();
+        byte[] firstChildMerkle = new byte[]{1};
+        byte[] secondChildMerkle = new byte[]{2};
+
+        List<byte[]> rootChildren = new ArrayList<>(Collections.nCopies(16, null));
+        rootChildren.set(0, firstChildMerkle);
+        rootChildren.set(5, secondChildMerkle);
+        TrieNodeData root = new TrieNodeData(true, Nibbles.EMPTY, rootChildren, null, null, (byte) 0);
+        TrieNodeData leaf = new TrieNodeData(false, Nibbles.fromHexString("a"),
+            Collections.nCopies(16, null), "value".getBytes(), null, (byte) 0);
+
+        TrieStructure<NodeData> trie = trieStorage.lazyLoadTrieStructure(rootMerkle);
+        verify(db, never()).find(any(byte[].class));
+
+        when(db.find(any(byte[].class))).thenReturn(
+            Optional.of(TrieNodeDataCodec.encode(root)), Optional.of(TrieNodeDataCodec.encode(leaf)));
+        NodeData nodeData = trie.existingNode(Nibbles.fromHexString("0a")).orElseThrow().getUserData();
+
+        assertArrayEquals("value".getBytes(), nodeData.getValue());
+        assertArrayEquals(firstChildMerkle, nodeData.getMerkleValue());
+        // The second child isn't fetched, its merkle value comes from the root
+        NodeData secondChild = trie.getRootNode().orElseThrow().getChildUserData(5);
+        assertArrayEquals(secondChildMerkle, secondChild.getMerkleValue());
+        assertNull(secondChild.getValue());
+        verify(db, times(2)).find(any(byte[].class));
+    }
+
+    @Test
+    void testReadProofProvesAllKeysWithEachNodeOnce() {
+        Map<byte[], byte[]> stored = new TreeMap<>(Arrays::compareUnsigned);
+        when(db.save(any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            stored.put(invocation.getArgument(0), invocation.getArgument(1));
+            return true;
+        });
+        when(db.find(any(byte[].class)))
+            .thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<byte[]>getArgument(0))));
+
+        Random random = new Random(3);
+        Map<ByteString, ByteString> entries = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] key = new byte[1 + random.nextInt(3)];
+            random.nextBytes(key);
+            // Values of 33 bytes and more are hashed into their nodes
+            byte[] value = new byte[random.nextInt(80)];
+            random.nextBytes(value);
+            entries.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+        }
+        TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V1);
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+        trieStorage.insertTrieStorage(trie);
+        byte[] root = trie.getRootNode().orElseThrow().getUserData().getMerkleValue();
+
+        byte[] absentKey = new byte[]{1, 2, 3, 4, 5};
+        List<Nibbles> keys = new ArrayList<>(entries.keySet().stream()
+            .map(key -> Nibbles.fromBytes(key.toByteArray()))
+            .toList());
+        keys.add(Nibbles.fromBytes(absentKey));
+        List<byte[]> proof = trieStorage.readProof(root, keys);
+
+        TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+        entries.forEach((key, value) ->
+            assertArrayEquals(value.toByteArray(), trieProof.get(root, key.toByteArray()).orElseThrow()));
+        assertTrue(trieProof.get(root, absentKey).isEmpty());
+        assertEquals(proof.size(), proof.stream().map(ByteString::copyFrom).distinct().count());
+    }
+
+    @Test
+    void testFlatStateCatchesUpAfterAFork() {
+        storeIn(db);
+        storeIn(flatDb);
+        FlatStateStorage flatState = new FlatStateStorage(flatDb);
+        trieStorage = new TrieStorage(db, new TrieNodeCache(1024 * 1024), null, flatState, null);
+
+        Random random = new Random(5);
+        Map<ByteString, ByteString> parent = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] key = new byte[1 + random.nextInt(3)];
+            random.nextBytes(key);
+            byte[] value = new byte[random.nextInt(40)];
+            random.nextBytes(value);
+            parent.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+        }
+        TrieStructure<NodeData> parentTrie = TrieStructureFactory.buildTrieStructure(parent, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(parentTrie, HashUtils::hashWithBlake2b);
+        trieStorage.insertTrieStorage(parentTrie);
+        byte[] parentRoot = parentTrie.getRootNode().orElseThrow().getUserData().getMerkleValue();
+
+        // The table follows one fork, then the other fork is persisted on top of the common parent
+        Map<ByteString, ByteString> firstFork = fork(parent, random);
+        byte[] firstRoot = persist(firstFork);
+        trieStorage.updateFlatState(parentRoot, firstRoot, changes(parent, firstFork));
+        assertArrayEquals(firstRoot, flatState.getStateRoot());
+
+        Map<ByteString, ByteString> secondFork = fork(parent, random);
+        byte[] secondRoot = persist(secondFork);
+        trieStorage.updateFlatState(parentRoot, secondRoot, changes(parent, secondFork));
+
+        assertArrayEquals(secondRoot, flatState.getStateRoot());
+        Map<ByteString, ByteString> allKeys = new HashMap<>(parent);
+        allKeys.putAll(firstFork);
+        for (ByteString key : allKeys.keySet()) {
+            Optional<byte[]> value = trieStorage.findValue(secondRoot, Nibbles.fromBytes(key.toByteArray()), () -> {
+                throw new AssertionError("Trie must not be traversed");
+            });
+            assertEquals(Optional.ofNullable(secondFork.get(key)), value.map(ByteString::copyFrom));
+        }
+    }
+
+    @Test
+    void testFlatStateCatchesUpWithChangedChildTrieRoots() {
+        storeIn(db);
+        storeIn(flatDb);
+        FlatStateStorage flatState = new FlatStateStorage(flatDb);
+        trieStorage = new TrieStorage(db, new TrieNodeCache(1024 * 1024), null, flatState, null);
+
+        ByteString childTrieKey = ByteString.copyFromUtf8(":child_storage:default:x");
+        ByteString oldChildRoot = ByteString.copyFrom(HashUtils.hashWithBlake2b(new byte[]{1}));
+        ByteString newChildRoot = ByteString.copyFrom(HashUtils.hashWithBlake2b(new byte[]{2}));
+        Map<ByteString, ByteString> parent = new HashMap<>(Map.of(
+            ByteString.copyFromUtf8(":code"), ByteString.copyFromUtf8("code"),
+            childTrieKey, oldChildRoot));
+        TrieStructure<NodeData> parentTrie = TrieStructureFactory.buildTrieStructure(parent, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(parentTrie, HashUtils::hashWithBlake2b);
+        trieStorage.insertTrieStorage(parentTrie);
+
+        Map<ByteString, ByteString> next = new HashMap<>(parent);
+        next.put(childTrieKey, newChildRoot);
+        byte[] nextRoot = persist(next);
+        trieStorage.catchUpFlatState(nextRoot);
+
+        assertArrayEquals(nextRoot, flatState.getStateRoot());
+        Optional<byte[]> childRoot = trieStorage.findValue(nextRoot, Nibbles.fromBytes(childTrieKey.toByteArray()),
+            () -> {
+                throw new AssertionError("Trie must not be traversed");
+            });
+        assertEquals(Optional.of(newChildRoot), childRoot.map(ByteString::copyFrom));
+    }
+
+    private static Map<ByteString, ByteString> fork(Map<ByteString, ByteString> parent, Random random) {
+        Map<ByteString, ByteString> fork = new HashMap<>(parent);
+        List<ByteString> keys = new ArrayList<>(parent.keySet());
+        for (int i = 0; i < 20; i++) {
+            ByteString key = keys.get(random.nextInt(keys.size()));
+            if (random.nextBoolean()) {
+                fork.remove(key);
+            } else {
+                fork.put(key, ByteString.copyFrom(new byte[]{(byte) i}));
+            }
+            byte[] added = new byte[4];
+            random.nextBytes(added);
+            fork.put(ByteString.copyFrom(added), ByteString.copyFrom(new byte[]{(byte) i}));
+        }
+        return fork;
+    }
+
+    private static Map<Nibbles, byte[]> changes(Map<ByteString, ByteString> from, Map<ByteString, ByteString> to) {
+        Map<Nibbles, byte[]> changes = new HashMap<>();
+        from.keySet().stream()
+            .filter(key -> !to.containsKey(key))
+            .forEach(key -> changes.put(Nibbles.fromBytes(key.toByteArray()), null));
+        to.forEach((key, value) -> {
+            if (!value.equals(from.get(key))) {
+                changes.put(Nibbles.fromBytes(key.toByteArray()), value.toByteArray());
+            }
+        });
+        return changes;
+    }
+
+    /**
+     * Saves the nodes of the state without moving the flat state, like the in-memory trie accessor does.
+     */
+    private byte[] persist(Map<ByteString, ByteString> entries) {
+        TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+        trieStorage.updateTrieStorage(trie, trie.streamOrdered().toList());
+        return trie.getRootNode().orElseThrow().getUserData().getMerkleValue();
+    }
+
+    /**
+     * Backs the mocked repository by a map.
+     *
+     * @return the map holding the stored entries
+     */
+    private static Map<byte[], byte[]> storeIn(ByteKeyRepository repository) {
+        Map<byte[], byte[]> stored = new TreeMap<>(Arrays::compareUnsigned);
+        lenient().when(repository.save(any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            stored.put(invocation.getArgument(0), invocation.getArgument(1));
+            return true;
+        });
+        lenient().when(repository.find(any(byte[].class)))
+            .thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<byte[]>getArgument(0))));
+        lenient().when(repository.findMany(anyList()))
+            .thenAnswer(invocation -> invocation.<List<byte[]>>getArgument(0).stream().map(stored::get).toList());
+        lenient().when(repository.delete(any(byte[].class)))
+            .thenAnswer(invocation -> stored.remove(invocation.<byte[]>getArgument(0)) != null);
+        lenient().doAnswer(invocation -> {
+            List<Map.Entry<byte[], byte[]>> entries = invocation.getArgument(0);
+            entries.forEach(entry -> stored.put(entry.getKey(), entry.getValue()));
+            return null;
+        }).when(repository).saveBatch(anyList());
+        lenient().doAnswer(invocation -> {
+            List<Map.Entry<byte[], byte[]>> entries = invocation.getArgument(0);
+            entries.forEach(entry -> stored.put(entry.getKey(), entry.getValue()));
+            invocation.<List<byte[]>>getArgument(1).forEach(stored::remove);
+            return null;
+        }).when(repository).writeBatch(anyList(), anyList());
+        lenient().when(repository.deleteByPrefix(any(byte[].class), isNull())).thenAnswer(invocation -> {
+            byte[] prefix = invocation.getArgument(0);
+            stored.keySet().removeIf(key -> ByteArrayUtils.hasPrefix(key, prefix));
+            return new DeleteByPrefixResult(0, true);
+        });
+        return stored;
+    }
+
+    @Test
+    void testPruningKeepsTheNodesOfTheLatestStateOnly() {
+        Map<byte[], byte[]> stored = storeIn(db);
+        StatePruner pruner = new StatePruner(db, 1, Executors.newSingleThreadExecutor());
+        trieStorage = new TrieStorage(db, new TrieNodeCache(0), null, null, pruner);
+
+        Random random = new Random(9);
+        Map<ByteString, ByteString> entries = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] key = new byte[1 + random.nextInt(3)];
+            random.nextBytes(key);
+            byte[] value = new byte[random.nextInt(40)];
+            random.nextBytes(value);
+            entries.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+        }
+        TrieStructure<NodeData> genesis = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(genesis, HashUtils::hashWithBlake2b);
+        byte[] root = genesis.getRootNode().orElseThrow().getUserData().getMerkleValue();
+        NodeJournal journal = new NodeJournal();
+        trieStorage.updateTrieStorage(genesis, genesis.streamOrdered().toList(), null, root, journal);
+        trieStorage.recordState(null, root, journal);
+        trieStorage.onStateFinalized(root);
+
+        for (int block = 0; block < 5; block++) {
+            // Modifies a lazily loaded trie, like the in-memory trie accessor does
+            Map<ByteString, ByteString> next = fork(entries, random);
+            TrieStructure<NodeData> trie = trieStorage.lazyLoadTrieStructure(root);
+            changes(entries, next).forEach((key, value) -> {
+                if (value == null) {
+                    trie.deleteStorageNodeAt(key);
+                } else {
+                    trie.insertNode(key, new NodeData(value), StateVersion.V0);
+                }
+            });
+            List<TrieNodeIndex> updates =
+                TrieStructureFactory.recalculateMerkleValues(trie, StateVersion.V0, HashUtils::hashWithBlake2b);
+            byte[] newRoot = trie.getRootNode().orElseThrow().getUserData().getMerkleValue();
+            trieStorage.updateTrieStorage(trie, updates, root, newRoot, journal);
+            trieStorage.recordState(root, newRoot, journal);
+            trieStorage.onStateFinalized(newRoot);
+            entries = next;
+            root = newRoot;
+        }
+        // Waits for the pruning to finish
+        trieStorage.close();
+
+        TrieStructure<NodeData> latest = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V0);
+        TrieStructureFactory.calculateMerkleValues(latest, HashUtils::hashWithBlake2b);
+        Set<ByteString> expected = latest.streamOrdered()
+            .map(index -> ByteString.copyFrom(latest.nodeHandleAtIndex(index).getUserData().getMerkleValue()))
+            .collect(Collectors.toSet());
+        Set<ByteString> storedNodes = stored.keySet().stream()
+            .filter(key -> ByteArrayUtils.hasPrefix(key, TrieStorage.TRIE_NODE_KEYS.bytes()))
+            .map(key -> ByteString.copyFrom(TrieStorage.TRIE_NODE_KEYS.strip(key)))
+            .collect(Collectors.toSet());
+        assertArrayEquals(latest.getRootNode().orElseThrow().getUserData().getMerkleValue(), root);
+        assertEquals(expected, storedNodes);
+    }
+
+    @Test
+    void testMigrateLegacyTrieNodes() {
+        // Long enough to be hashed, and short enough to be inlined into the parent
+        TrieNodeData hashedNode = new TrieNodeData(false, Nibbles.fromHexString("0a"),
+            Collections.nCopies(16, null), new byte[40], null, (byte) 0);
+        TrieNodeData inlinedNode = new TrieNodeData(false, Nibbles.fromHexString("0b"),
+            Collections.nCopies(16, null), new byte[]{1, 2}, null, (byte) 0);
+        byte[] hashedMerkle = merkleValue(hashedNode);
+        byte[] inlinedMerkle = merkleValue(inlinedNode);
+        assertEquals(32, hashedMerkle.length);
+        assertTrue(inlinedMerkle.length < 32);
+
+        byte[] hashedLegacyKey = legacyKey(hashedMerkle);
+        byte[] inlinedLegacyKey = legacyKey(inlinedMerkle);
+        // Older versions stored either the node itself or its encoding, both Java-serialized
+        List<Map.Entry<byte[], byte[]>> stored = List.of(
+            Map.entry(hashedLegacyKey, SerializationUtils.serialize(hashedNode)),
+            Map.entry(inlinedLegacyKey, SerializationUtils.serialize(TrieNodeDataCodec.encode(inlinedNode))),
+            Map.entry(TrieStorage.TRIE_NODE_KEYS.key(new byte[32]), TrieNodeDataCodec.encode(hashedNode)));
+        when(db.find(any(byte[].class))).thenReturn(Optional.empty());
+        when(db.findEntriesByPrefix(any(byte[].class), isNull(), anyInt())).thenReturn(stored);
+
+        trieStorage.migrateLegacyTrieNodes();
+
+        ArgumentCaptor<List<Map.Entry<byte[], byte[]>>> entries = ArgumentCaptor.captor();
+        ArgumentCaptor<List<byte[]>> deletes = ArgumentCaptor.captor();
+        verify(db).writeBatch(entries.capture(), deletes.capture());
+        assertEquals(2, entries.getValue().size());
+        assertArrayEquals(TrieStorage.TRIE_NODE_KEYS.key(hashedMerkle), entries.getValue().get(0).getKey());
+        assertArrayEquals(TrieNodeDataCodec.encode(hashedNode), entries.getValue().get(0).getValue());
+        assertArrayEquals(TrieStorage.TRIE_NODE_KEYS.key(inlinedMerkle), entries.getValue().get(1).getKey());
+        assertArrayEquals(TrieNodeDataCodec.encode(inlinedNode), entries.getValue().get(1).getValue());
+        assertEquals(List.of(ByteString.copyFrom(hashedLegacyKey), ByteString.copyFrom(inlinedLegacyKey)),
+            deletes.getValue().stream().map(ByteString::copyFrom).toList());
+        verify(db).save(eq("tn-legacy-migrated".getBytes(UTF_8)), any(byte[].class));
+    }
+
+    @Test
+    void testMigrateLegacyTrieNodesSkipsTheScanOnceDone() {
+        when(db.find(any(byte[].class))).thenReturn(Optional.of(new byte[]{1}));
+
+        trieStorage.migrateLegacyTrieNodes();
+
+        verify(db, never()).findEntriesByPrefix(any(), any(), anyInt());
+        verify(db, never()).writeBatch(anyList(), anyList());
+    }
+
+    private static byte[] merkleValue(TrieNodeData node) {
+        return NodeEncoder.forCurrentThread().calculateMerkleValue(node.getChildrenMerkleValues(),
+            node.getPartialKey(), new StorageValue(node.getValue(), false), HashUtils::hashWithBlake2b, false);
+    }
+
+    private static byte[] legacyKey(byte[] merkleValue) {
+        return ("tn:" + new String(merkleValue)).getBytes(UTF_8);
+    }
+}
@@ -11,7 +11,6 @@ import com.limechain.network.protocol.warp.scale.reader.HeaderDigestReader;
 import com.limechain.runtime.Runtime;
 import com.limechain.runtime.RuntimeFactory;
 import com.limechain.runtime.version.StateVersion;
-import com.limechain.storage.KVRepository;
 import com.limechain.storage.trie.TrieStorage;
 import com.limechain.trie.BlockTrieAccessor;
 import com.limechain.trie.TrieStructureFactory;
@@ -40,7 +39,7 @@ class BlockExecutorTest {
         var genesisTrie = TrieStructureFactory.buildFromKVPs(genesisStorage);
 
         // Define dependencies for the execution context
-        KVRepository<String, Object> db = new InMemoryDB(); // initialize a DB
+        InMemoryDB db = new InMemoryDB(); // initialize a DB
 
         TrieStorage trieStorage = new TrieStorage(db); // inject it into a trie storage
         trieStorage.insertTrieStorage(genesisTrie); // populate with the genesis trie
@@ -1,18 +1,24 @@
 package com.limechain.sync.fullsync;
 
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.DBColumnFamily;
 import com.limechain.storage.DeleteByPrefixResult;
 import com.limechain.storage.KVRepository;
+import com.limechain.utils.ByteArrayUtils;
 import org.apache.commons.collections4.trie.PatriciaTrie;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
- * An in-memory implementation of {@link KVRepository} for testing purposes.
+ * An in-memory implementation of {@link KVRepository} and {@link ByteKeyRepository} for testing purposes.
  */
-class InMemoryDB implements KVRepository<String, Object> {
+class InMemoryDB implements KVRepository<String, Object>, ByteKeyRepository {
     private final PatriciaTrie<Object> storage = new PatriciaTrie<>();
+    private final TreeMap<byte[], byte[]> byteStorage = new TreeMap<>(Arrays::compareUnsigned);
 
     @Override
     public boolean save(String key, Object value) {
@@ -20,27 +26,78 @@ class InMemoryDB implements KVRepository<String, Object> {
         return true;
     }
 
+    @Override
+    public boolean save(byte[] key, byte[] value) {
+        byteStorage.put(key, value);
+        return true;
+    }
+
     @Override
     public void saveBatch(Map<String, Object> stringObjectMap) {
         storage.putAll(stringObjectMap);
     }
 
+    @Override
+    public void saveBatch(List<Map.Entry<byte[], byte[]>> entries) {
+        entries.forEach(e -> byteStorage.put(e.getKey(), e.getValue()));
+    }
+
+    @Override
+    public void writeBatch(List<Map.Entry<byte[], byte[]>> entries, List<byte[]> deletes) {
+        saveBatch(entries);
+        deletes.forEach(byteStorage::remove);
+    }
+
     @Override
     public Optional<Object> find(String key) {
         return Optional.ofNullable(storage.get(key));
     }
 
+    @Override
+    public Optional<byte[]> find(byte[] key) {
+        return Optional.ofNullable(byteStorage.get(key));
+    }
+
+    @Override
+    public List<byte[]> findMany(List<byte[]> keys) {
+        return keys.stream().map(byteStorage::get).toList();
+    }
+
     @Override
     public boolean delete(String key) {
         storage.remove(key);
         return true;
     }
 
+    @Override
+    public boolean delete(byte[] key) {
+        byteStorage.remove(key);
+        return true;
+    }
+
     @Override
     public List<byte[]> findKeysByPrefix(String prefixSeek, int limit) {
         return storage.prefixMap(prefixSeek).keySet().stream().map(String::getBytes).limit(limit).toList();
     }
 
+    @Override
+    public List<byte[]> findKeysByPrefix(byte[] prefix, int limit) {
+        return byteStorage.tailMap(prefix, true).keySet().stream()
+            .takeWhile(key -> ByteArrayUtils.hasPrefix(key, prefix))
+            .limit(limit)
+            .toList();
+    }
+
+    @Override
+    public List<Map.Entry<byte[], byte[]>> findEntriesByPrefix(byte[] prefix, byte[] startKey, int limit) {
+        var tail = startKey == null ? byteStorage.tailMap(prefix, true) : byteStorage.tailMap(startKey, false);
+        return tail.entrySet().stream()
+            .takeWhile(entry -> ByteArrayUtils.hasPrefix(entry.getKey(), prefix))
+            .limit(limit)
+            .<Map.Entry<byte[], byte[]>>map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+            .toList();
+    }
+
     @Override
     public DeleteByPrefixResult deleteByPrefix(String prefix, Long limit) {
         var keys = this.findKeysByPrefix(prefix, limit.intValue());
@@ -56,6 +113,19 @@ class InMemoryDB implements KVRepository<String, Object> {
         return new DeleteByPrefixResult(deleted, allDeleted);
     }
 
+    @Override
+    public DeleteByPrefixResult deleteByPrefix(byte[] prefix, Long limit) {
+        var keys = this.findKeysByPrefix(prefix, limit == null ? Integer.MAX_VALUE : limit.intValue());
+        keys.forEach(byteStorage::remove);
+
+        return new DeleteByPrefixResult(keys.size(), this.findKeysByPrefix(prefix, 1).isEmpty());
+    }
+
+    @Override
+    public InMemoryDB inColumnFamily(DBColumnFamily family) {
+        return this;
+    }
+
     @Override
     public Optional<String> getNextKey(String key) {
         return Optional.empty();
@@ -0,0 +1,127 @@
+package com.limechain.sync.fullsync;
+
+import com.google.protobuf.ByteString;
+import com.limechain.network.protocol.sync.pb.SyncMessage;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.StreamingTrieBuilder;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.node.InsertTrieNode;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StateEntryIteratorTest {
+    private static final ByteString CHILD_TRIE_KEY = ByteString.copyFromUtf8(":child_storage:default:x");
+    private static final List<SyncMessage.StateEntry> CHILD_TRIE_ENTRIES = List.of(
+        entry(ByteString.copyFromUtf8("a"), "1"),
+        entry(ByteString.copyFromUtf8("b"), "2"),
+        entry(ByteString.copyFromUtf8("c"), "3"),
+        entry(ByteString.copyFromUtf8("d"), "4"));
+
+    private final List<List<ByteString>> requestedStarts = new ArrayList<>();
+    private final List<InsertTrieNode> savedChildTrieNodes = new ArrayList<>();
+
+    @Test
+    void continuesPagesEndingInsideAChildTrie() {
+        ByteString childTrieRoot = childTrieRoot(CHILD_TRIE_ENTRIES);
+        ByteString first = ByteString.copyFrom(new byte[]{0x10});
+        ByteString last = ByteString.copyFrom(new byte[]{(byte) 0xf0});
+        StateEntryIterator iterator = iterator(
+            response(
+                level(ByteString.EMPTY, false, entry(first, "main"), entry(CHILD_TRIE_KEY, childTrieRoot)),
+                level(childTrieRoot, false, CHILD_TRIE_ENTRIES.get(0), CHILD_TRIE_ENTRIES.get(1))),
+            // Peers may repeat the key the page starts after
+            response(
+                level(ByteString.EMPTY, false),
+                level(childTrieRoot, true, CHILD_TRIE_ENTRIES.get(1), CHILD_TRIE_ENTRIES.get(2),
+                    CHILD_TRIE_ENTRIES.get(3))),
+            response(
+                level(ByteString.EMPTY, true, entry(last, "main"))));
+
+        List<Nibbles> keys = new ArrayList<>();
+        iterator.forEachRemaining(entry -> keys.add(entry.getKey()));
+
+        assertEquals(List.of(nibbles(first), nibbles(CHILD_TRIE_KEY), nibbles(last)), keys);
+        assertEquals(List.of(
+                List.of(ByteString.EMPTY),
+                List.of(CHILD_TRIE_KEY, CHILD_TRIE_ENTRIES.get(1).getKey()),
+                List.of(CHILD_TRIE_KEY)),
+            requestedStarts);
+        assertFalse(savedChildTrieNodes.isEmpty());
+    }
+
+    @Test
+    void childTrieIsCheckedAgainstItsRoot() {
+        ByteString wrongRoot = childTrieRoot(CHILD_TRIE_ENTRIES.subList(0, 3));
+        StateEntryIterator iterator = iterator(
+            response(
+                level(ByteString.EMPTY, true, entry(CHILD_TRIE_KEY, wrongRoot)),
+                level(wrongRoot, true, CHILD_TRIE_ENTRIES.toArray(SyncMessage.StateEntry[]::new))));
+
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
+    @Test
+    void failsOnResponsesWithoutNewEntries() {
+        ByteString key = ByteString.copyFrom(new byte[]{0x10});
+        StateEntryIterator iterator = iterator(
+            response(level(ByteString.EMPTY, false, entry(key, "main"))),
+            response(level(ByteString.EMPTY, false, entry(key, "main"))));
+
+        Map.Entry<Nibbles, byte[]> entry = iterator.next();
+
+        assertEquals(nibbles(key), entry.getKey());
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
+    private StateEntryIterator iterator(SyncMessage.StateResponse... responses) {
+        Deque<SyncMessage.StateResponse> remaining = new ArrayDeque<>(List.of(responses));
+        Function<List<ByteString>, SyncMessage.StateResponse> stateRequester = start -> {
+            requestedStarts.add(start);
+            return remaining.pop();
+        };
+        return new StateEntryIterator(stateRequester, () -> new StreamingTrieBuilder(StateVersion.V0,
+            HashUtils::hashWithBlake2b, 2, savedChildTrieNodes::addAll));
+    }
+
+    private static ByteString childTrieRoot(List<SyncMessage.StateEntry> entries) {
+        StreamingTrieBuilder builder = new StreamingTrieBuilder(StateVersion.V0, HashUtils::hashWithBlake2b);
+        entries.forEach(entry -> builder.add(nibbles(entry.getKey()), entry.getValue().toByteArray()));
+        return ByteString.copyFrom(builder.finish());
+    }
+
+    private static SyncMessage.StateResponse response(SyncMessage.KeyValueStateEntry... levels) {
+        return SyncMessage.StateResponse.newBuilder().addAllEntries(List.of(levels)).build();
+    }
+
+    private static SyncMessage.KeyValueStateEntry level(ByteString stateRoot, boolean complete,
+                                                        SyncMessage.StateEntry... entries) {
+        return SyncMessage.KeyValueStateEntry.newBuilder()
+            .setStateRoot(stateRoot)
+            .addAllEntries(List.of(entries))
+            .setComplete(complete)
+            .build();
+    }
+
+    private static SyncMessage.StateEntry entry(ByteString key, String value) {
+        return entry(key, ByteString.copyFromUtf8(value));
+    }
+
+    private static SyncMessage.StateEntry entry(ByteString key, ByteString value) {
+        return SyncMessage.StateEntry.newBuilder().setKey(key).setValue(value).build();
+    }
+
+    private static Nibbles nibbles(ByteString bytes) {
+        return Nibbles.fromBytes(bytes.toByteArray());
+    }
+}
@@ -13,7 +13,7 @@ import com.limechain.runtime.builder.RuntimeBuilder;
 import com.limechain.storage.DBConstants;
 import com.limechain.storage.KVRepository;
 import com.limechain.storage.block.SyncState;
-import com.limechain.trie.decoded.Trie;
+import com.limechain.trie.decoded.TrieProof;
 import com.limechain.trie.decoded.TrieVerifier;
 import io.emeraldpay.polkaj.scale.ScaleCodecReader;
 import io.emeraldpay.polkaj.types.Hash256;
@@ -61,7 +61,7 @@ class WarpSyncActionTest {
     @Mock
     private Hash256 stateRoot;
     @Mock
-    private Trie mockTrie;
+    private TrieProof mockProof;
 
     @Test
     void updateRuntimeCode() throws RuntimeCodeException {
@@ -87,10 +87,10 @@ class WarpSyncActionTest {
                 (mock, context) -> {
                     when(mock.readCompactInt()).thenReturn(1);
                     when(mock.readByteArray()).thenReturn(decodedProof);
-                }); MockedStatic<TrieVerifier> staticVerifier = mockStatic(TrieVerifier.class)
+                }); MockedStatic<TrieProof> staticProof = mockStatic(TrieProof.class)
         ) {
-            staticVerifier.when(() -> TrieVerifier.buildTrie(decodedProofs, stateRoot.getBytes())).thenReturn(mockTrie);
-            when(mockTrie.get(any())).thenReturn(runtimeCode);
+            staticProof.when(() -> TrieProof.of(decodedProofs)).thenReturn(mockProof);
+            when(mockProof.get(any(), any())).thenReturn(Optional.of(runtimeCode));
 
             warpSyncState.updateRuntimeCode();
 
@@ -0,0 +1,88 @@
+package com.limechain.trie;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.storage.trie.TrieStorage;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class BlockTrieAccessorTest {
+    private static final Nibbles KEY_1 = Nibbles.fromHexString("a1b2");
+    private static final Nibbles KEY_2 = Nibbles.fromHexString("a1c3");
+    private static final Nibbles KEY_3 = Nibbles.fromHexString("b4");
+
+    private BlockTrieAccessor trieAccessor;
+    private byte[] initialRoot;
+
+    @BeforeEach
+    void setup() {
+        TrieStructure<NodeData> trie = new TrieStructure<>();
+        trie.insertNode(KEY_1, new NodeData(new byte[]{1}), StateVersion.V0);
+        trie.insertNode(KEY_2, new NodeData(new byte[]{2}), StateVersion.V0);
+        trie.insertNode(KEY_3, new NodeData(new byte[]{3}), StateVersion.V0);
+
+        trieAccessor = new BlockTrieAccessor(mock(TrieStorage.class), null, trie);
+        trieAccessor.setCurrentStateVersion(StateVersion.V1);
+        initialRoot = trieAccessor.getMerkleRoot(StateVersion.V1);
+    }
+
+    @Test
+    void rollbackTransaction_restoresValuesAndMerkleRoot() {
+        trieAccessor.startTransaction();
+        trieAccessor.upsertNode(KEY_1, new byte[40]);
+        trieAccessor.deleteNode(KEY_3);
+        trieAccessor.upsertNode(Nibbles.fromHexString("a1"), new byte[]{4});
+        trieAccessor.deleteMultipleNodesByPrefix(Nibbles.fromHexString("a1"), null);
+        trieAccessor.rollbackTransaction();
+
+        assertValue(KEY_1, new byte[]{1});
+        assertValue(KEY_2, new byte[]{2});
+        assertValue(KEY_3, new byte[]{3});
+        assertEquals(Optional.empty(), trieAccessor.findStorageValue(Nibbles.fromHexString("a1")));
+        assertArrayEquals(initialRoot, trieAccessor.getMerkleRoot(StateVersion.V1));
+    }
+
+    @Test
+    void nestedTransactions_commitIntoEnclosingOne() {
+        trieAccessor.startTransaction();
+        trieAccessor.upsertNode(KEY_1, new byte[]{5});
+        trieAccessor.startTransaction();
+        trieAccessor.deleteNode(KEY_2);
+        trieAccessor.upsertNode(KEY_1, new byte[]{6});
+        trieAccessor.startTransaction();
+        trieAccessor.deleteNode(KEY_3);
+        trieAccessor.rollbackTransaction();
+        trieAccessor.commitTransaction();
+
+        assertValue(KEY_1, new byte[]{6});
+        assertEquals(Optional.empty(), trieAccessor.findStorageValue(KEY_2));
+        assertValue(KEY_3, new byte[]{3});
+
+        trieAccessor.rollbackTransaction();
+
+        assertValue(KEY_1, new byte[]{1});
+        assertValue(KEY_2, new byte[]{2});
+        assertArrayEquals(initialRoot, trieAccessor.getMerkleRoot(StateVersion.V1));
+        assertThrows(IllegalStateException.class, trieAccessor::commitTransaction);
+    }
+
+    @Test
+    void persistChanges_failsWithOpenTransaction() {
+        trieAccessor.startTransaction();
+
+        assertThrows(IllegalStateException.class, trieAccessor::persistChanges);
+    }
+
+    private void assertValue(Nibbles key, byte[] expected) {
+        assertArrayEquals(expected, trieAccessor.findStorageValue(key).orElseThrow());
+    }
+}
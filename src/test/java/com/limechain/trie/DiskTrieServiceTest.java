@@ -0,0 +1,124 @@
+package com.limechain.trie;
+
+import com.google.protobuf.ByteString;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.storage.ByteKeyRepository;
+import com.limechain.storage.trie.FlatStateStorage;
+import com.limechain.storage.trie.TrieNodeCache;
+import com.limechain.storage.trie.TrieStorage;
+import com.limechain.trie.decoded.TrieProof;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DiskTrieServiceTest {
+    @Mock
+    private ByteKeyRepository db;
+    @Mock
+    private ByteKeyRepository flatDb;
+
+    private final Map<ByteString, ByteString> entries = new HashMap<>();
+    private TrieStorage trieStorage;
+    private byte[] root;
+
+    @BeforeEach
+    void setup() {
+        storeIn(db);
+        storeIn(flatDb);
+        trieStorage = new TrieStorage(db, new TrieNodeCache(1024 * 1024), null, new FlatStateStorage(flatDb), null);
+
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            byte[] key = new byte[1 + random.nextInt(3)];
+            random.nextBytes(key);
+            // Values of 33 bytes and more are hashed into their nodes
+            byte[] value = new byte[random.nextInt(80)];
+            random.nextBytes(value);
+            entries.put(ByteString.copyFrom(key), ByteString.copyFrom(value));
+        }
+        TrieStructure<NodeData> trie = TrieStructureFactory.buildTrieStructure(entries, StateVersion.V1);
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+        trieStorage.insertTrieStorage(trie);
+        root = trie.getRootNode().orElseThrow().getUserData().getMerkleValue();
+    }
+
+    @Test
+    void recordedProofProvesTheReadValues() {
+        DiskTrieService diskTrieService = new DiskTrieService(trieStorage, root);
+        List<ByteString> readKeys = new ArrayList<>(entries.keySet()).subList(0, 20);
+        byte[] absentKey = new byte[]{1, 2, 3, 4, 5};
+
+        // The flat state reflects the root, so the reads only visit the trie nodes while recording
+        diskTrieService.startProofRecording();
+        readKeys.forEach(key -> diskTrieService.findStorageValue(Nibbles.fromBytes(key.toByteArray())));
+        diskTrieService.findStorageValue(Nibbles.fromBytes(absentKey));
+        List<byte[]> proof = diskTrieService.stopProofRecording();
+
+        TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+        readKeys.forEach(key -> assertArrayEquals(entries.get(key).toByteArray(),
+            trieProof.get(root, key.toByteArray()).orElseThrow()));
+        assertTrue(trieProof.get(root, absentKey).isEmpty());
+        assertEquals(proof.size(), proof.stream().map(ByteString::copyFrom).distinct().count());
+    }
+
+    @Test
+    void stopProofRecordingFailsWithoutRecording() {
+        DiskTrieService diskTrieService = new DiskTrieService(trieStorage, root);
+
+        assertThrows(IllegalStateException.class, diskTrieService::stopProofRecording);
+    }
+
+    /**
+     * Backs the mocked repository by a map.
+     */
+    private static void storeIn(ByteKeyRepository repository) {
+        Map<byte[], byte[]> stored = new TreeMap<>(Arrays::compareUnsigned);
+        when(repository.save(any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            stored.put(invocation.getArgument(0), invocation.getArgument(1));
+            return true;
+        });
+        when(repository.find(any(byte[].class)))
+            .thenAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<byte[]>getArgument(0))));
+        when(repository.findMany(anyList()))
+            .thenAnswer(invocation -> invocation.<List<byte[]>>getArgument(0).stream().map(stored::get).toList());
+        doAnswer(invocation -> {
+            List<Map.Entry<byte[], byte[]>> batch = invocation.getArgument(0);
+            batch.forEach(entry -> stored.put(entry.getKey(), entry.getValue()));
+            return null;
+        }).when(repository).saveBatch(anyList());
+        doAnswer(invocation -> {
+            List<Map.Entry<byte[], byte[]>> batch = invocation.getArgument(0);
+            batch.forEach(entry -> stored.put(entry.getKey(), entry.getValue()));
+            invocation.<List<byte[]>>getArgument(1).forEach(stored::remove);
+            return null;
+        }).when(repository).writeBatch(anyList(), anyList());
+    }
+}
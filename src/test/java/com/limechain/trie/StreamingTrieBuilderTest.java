@@ -0,0 +1,100 @@
+package com.limechain.trie;
+
+import com.limechain.exception.trie.TrieBuildException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.InsertTrieBuilder;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.node.InsertTrieNode;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingTrieBuilderTest {
+
+    @Test
+    void buildsTheSameNodesAsTheInMemoryTrie() {
+        Random random = new Random(11);
+        for (StateVersion stateVersion : StateVersion.values()) {
+            Map<Nibbles, byte[]> entries = new TreeMap<>();
+            for (int i = 0; i < 500; i++) {
+                byte[] value = new byte[random.nextInt(50)];
+                random.nextBytes(value);
+                entries.put(randomKey(random), value);
+            }
+
+            List<List<InsertTrieNode>> batches = new ArrayList<>();
+            StreamingTrieBuilder builder =
+                new StreamingTrieBuilder(stateVersion, HashUtils::hashWithBlake2b, 7, batches::add);
+            entries.forEach(builder::add);
+            byte[] root = builder.finish();
+
+            TrieStructure<NodeData> trie = new TrieStructure<>();
+            entries.forEach((key, value) -> trie.insertNode(key, new NodeData(value), stateVersion));
+            TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+
+            assertArrayEquals(trie.getRootNode().map(NodeHandle::getUserData).orElseThrow().getMerkleValue(), root);
+            assertTrue(batches.stream().allMatch(batch -> batch.size() <= 7));
+            assertEquals(describe(InsertTrieBuilder.build(trie)),
+                describe(batches.stream().flatMap(List::stream).toList()));
+        }
+    }
+
+    @Test
+    void emptyInputHasNoRoot() {
+        List<InsertTrieNode> nodes = new ArrayList<>();
+        StreamingTrieBuilder builder =
+            new StreamingTrieBuilder(StateVersion.V0, HashUtils::hashWithBlake2b, 10, nodes::addAll);
+
+        assertNull(builder.finish());
+        assertTrue(nodes.isEmpty());
+    }
+
+    @Test
+    void rejectsKeysOutOfOrder() {
+        StreamingTrieBuilder builder =
+            new StreamingTrieBuilder(StateVersion.V0, HashUtils::hashWithBlake2b, 10, nodes -> {
+            });
+        builder.add(Nibbles.fromHexString("a1"), new byte[]{1});
+
+        assertThrows(TrieBuildException.class, () -> builder.add(Nibbles.fromHexString("a1"), new byte[]{2}));
+        assertThrows(TrieBuildException.class, () -> builder.add(Nibbles.fromHexString("a"), new byte[]{3}));
+    }
+
+    /**
+     * Describes the nodes by content, as {@link InsertTrieNode} compares the children's merkle values by reference.
+     */
+    private static List<String> describe(List<InsertTrieNode> nodes) {
+        HexFormat hex = HexFormat.of();
+        return nodes.stream()
+            .map(node -> hex.formatHex(node.merkleValue()) + " " + node.partialKeyNibbles() + " " + node.isBranch()
+                         + " " + (node.storageValue() == null ? "-" : hex.formatHex(node.storageValue()))
+                         + " " + node.stateVersion() + " " + node.childrenMerkleValues().stream()
+                             .map(child -> child == null ? "-" : hex.formatHex(child))
+                             .toList())
+            .sorted()
+            .toList();
+    }
+
+    private static Nibbles randomKey(Random random) {
+        byte[] key = new byte[random.nextInt(4)];
+        random.nextBytes(key);
+        Nibbles nibbles = Nibbles.fromBytes(key);
+        // Odd-length keys make for storage nodes on branch positions
+        return random.nextInt(4) == 0 && !nibbles.isEmpty() ? nibbles.take(nibbles.size() - 1) : nibbles;
+    }
+}
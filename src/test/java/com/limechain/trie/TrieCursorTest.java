@@ -0,0 +1,105 @@
+package com.limechain.trie;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.nibble.Nibble;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.trie.structure.nibble.NibblesCollector;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrieCursorTest {
+    private static final List<Nibbles> KEYS = Stream.of("", "a1", "a1b2", "a1c3", "a1c4", "a2", "b5", "b6d7")
+        .map(Nibbles::fromHexString)
+        .toList();
+
+    @Test
+    void iteratesOverAllKeysInOrder() {
+        assertEquals(KEYS, collect(TrieCursor.of(trieOf(KEYS))));
+    }
+
+    @Test
+    void seekStartsAfterStartKeyWithinPrefix() {
+        TrieCursor<NodeHandle<Integer>> cursor = TrieCursor.of(trieOf(KEYS));
+
+        cursor.seek(Nibbles.fromHexString("a1"), Nibbles.fromHexString("a1b2"));
+        assertEquals(hexKeys("a1c3", "a1c4"), collect(cursor));
+
+        cursor.seek(Nibbles.fromHexString("a1"), null);
+        assertEquals(hexKeys("a1", "a1b2", "a1c3", "a1c4"), collect(cursor));
+
+        // A start key before the prefix is ignored, one in between keys works the same as the preceding key
+        cursor.seek(Nibbles.fromHexString("b"), Nibbles.fromHexString("a3"));
+        assertEquals(hexKeys("b5", "b6d7"), collect(cursor));
+        cursor.seek(Nibbles.EMPTY, Nibbles.fromHexString("a1c0"));
+        assertEquals(hexKeys("a1c3", "a1c4", "a2", "b5", "b6d7"), collect(cursor));
+
+        cursor.seek(Nibbles.fromHexString("c"), null);
+        assertFalse(cursor.hasNext());
+        assertThrows(NoSuchElementException.class, cursor::next);
+    }
+
+    @Test
+    void emptyTrieHasNoKeys() {
+        assertFalse(TrieCursor.of(new TrieStructure<Integer>()).hasNext());
+    }
+
+    @RepeatedTest(20)
+    void seekMatchesFilteringAllKeys() {
+        TreeSet<Nibbles> keys = new TreeSet<>();
+        for (int i = 0; i < 200; ++i) {
+            keys.add(randomKey(8));
+        }
+        TrieCursor<NodeHandle<Integer>> cursor = TrieCursor.of(trieOf(keys));
+
+        for (int i = 0; i < 50; ++i) {
+            Nibbles prefix = randomKey(3);
+            Nibbles startKey = ThreadLocalRandom.current().nextBoolean() ? null : randomKey(8);
+            List<Nibbles> expected = keys.stream()
+                .filter(key -> key.startsWith(prefix))
+                .filter(key -> startKey == null || key.compareTo(startKey) > 0)
+                .toList();
+
+            cursor.seek(prefix, startKey);
+            assertEquals(expected, collect(cursor));
+        }
+    }
+
+    private static TrieStructure<Integer> trieOf(Iterable<Nibbles> keys) {
+        TrieStructure<Integer> trie = new TrieStructure<>();
+        int i = 0;
+        for (Nibbles key : keys) {
+            trie.insertNode(key, i++, StateVersion.V0);
+        }
+        return trie;
+    }
+
+    private static List<Nibbles> collect(TrieCursor<?> cursor) {
+        List<Nibbles> keys = new ArrayList<>();
+        cursor.forEachRemaining(keys::add);
+        return keys;
+    }
+
+    private static List<Nibbles> hexKeys(String... keys) {
+        return Stream.of(keys).map(Nibbles::fromHexString).toList();
+    }
+
+    private static Nibbles randomKey(int maxLength) {
+        return Stream.generate(() -> ThreadLocalRandom.current().nextInt(0, 4))
+            .map(Nibble::fromInt)
+            .limit(ThreadLocalRandom.current().nextInt(0, maxLength + 1))
+            .collect(NibblesCollector.toNibbles());
+    }
+}
@@ -0,0 +1,125 @@
+package com.limechain.trie;
+
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.database.NodeData;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrieStructureFactoryTest {
+
+    @Test
+    void recalculateMerkleValues_matchesFullCalculationAfterModifications() {
+        Random random = new Random(7);
+        Map<Nibbles, byte[]> entries = new TreeMap<>();
+        TrieStructure<NodeData> trie = new TrieStructure<>();
+        for (int i = 0; i < 200; i++) {
+            insert(trie, entries, randomKey(random), new byte[]{(byte) i});
+        }
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+
+        for (int round = 0; round < 20; round++) {
+            List<Nibbles> keys = new ArrayList<>(entries.keySet());
+            for (int i = 0; i < 5; i++) {
+                Nibbles key = keys.get(random.nextInt(keys.size()));
+                if (entries.remove(key) != null) {
+                    trie.deleteStorageNodeAt(key);
+                }
+            }
+            for (int i = 0; i < 5; i++) {
+                insert(trie, entries, randomKey(random), new byte[]{(byte) round, (byte) i});
+            }
+
+            TrieStructureFactory.recalculateMerkleValues(trie, StateVersion.V0, HashUtils::hashWithBlake2b);
+
+            assertArrayEquals(merkleRoot(fullyCalculated(entries)), merkleRoot(trie), "round " + round);
+        }
+    }
+
+    @Test
+    void recalculateMerkleValues_onlyVisitsModifiedPath() {
+        TrieStructure<NodeData> trie = new TrieStructure<>();
+        Map<Nibbles, byte[]> entries = new TreeMap<>();
+        insert(trie, entries, Nibbles.fromHexString("a1"), new byte[]{1});
+        insert(trie, entries, Nibbles.fromHexString("a2"), new byte[]{2});
+        insert(trie, entries, Nibbles.fromHexString("b1"), new byte[]{3});
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+
+        insert(trie, entries, Nibbles.fromHexString("a2"), new byte[]{4});
+        List<?> updated =
+            TrieStructureFactory.recalculateMerkleValues(trie, StateVersion.V0, HashUtils::hashWithBlake2b);
+
+        // The modified leaf, the "a" branch and the root
+        assertEquals(3, updated.size());
+        assertArrayEquals(merkleRoot(fullyCalculated(entries)), merkleRoot(trie));
+        assertTrue(trie.takeDirtyNodesBottomUp().isEmpty());
+    }
+
+    @Test
+    void calculateMerkleValues_inParallelMatchesSequential() {
+        Random random = new Random(11);
+        Map<Nibbles, byte[]> entries = new TreeMap<>();
+        while (entries.size() < 3 * TrieStructureFactory.PARALLEL_THRESHOLD) {
+            byte[] key = new byte[4];
+            random.nextBytes(key);
+            entries.put(Nibbles.fromBytes(key), key);
+        }
+        TrieStructure<NodeData> sequential = build(entries);
+        TrieStructure<NodeData> parallel = build(entries);
+
+        TrieStructureFactory.calculateMerkleValues(sequential, HashUtils::hashWithBlake2b, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TrieStructureFactory.calculateMerkleValues(parallel, HashUtils::hashWithBlake2b, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertArrayEquals(merkleRoot(sequential), merkleRoot(parallel));
+        assertTrue(parallel.takeDirtyNodesBottomUp().isEmpty());
+    }
+
+    private static void insert(TrieStructure<NodeData> trie, Map<Nibbles, byte[]> entries, Nibbles key,
+                               byte[] value) {
+        entries.put(key, value);
+        trie.insertNode(key, new NodeData(value), StateVersion.V0);
+    }
+
+    private static Nibbles randomKey(Random random) {
+        byte[] key = new byte[1 + random.nextInt(3)];
+        random.nextBytes(key);
+        return Nibbles.fromBytes(key);
+    }
+
+    private static TrieStructure<NodeData> fullyCalculated(Map<Nibbles, byte[]> entries) {
+        TrieStructure<NodeData> trie = build(entries);
+        TrieStructureFactory.calculateMerkleValues(trie, HashUtils::hashWithBlake2b);
+        return trie;
+    }
+
+    private static TrieStructure<NodeData> build(Map<Nibbles, byte[]> entries) {
+        TrieStructure<NodeData> trie = new TrieStructure<>();
+        entries.forEach((key, value) -> trie.insertNode(key, new NodeData(value), StateVersion.V0));
+        return trie;
+    }
+
+    private static byte[] merkleRoot(TrieStructure<NodeData> trie) {
+        return trie.getRootNode()
+            .map(NodeHandle::getUserData)
+            .map(NodeData::getMerkleValue)
+            .orElseThrow();
+    }
+}
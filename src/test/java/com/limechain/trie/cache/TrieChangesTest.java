@@ -1,6 +1,7 @@
 package com.limechain.trie.cache;
 
 import com.limechain.trie.cache.node.PendingInsertUpdate;
+import com.limechain.trie.cache.node.PendingRemove;
 import com.limechain.trie.cache.node.PendingTrieNodeChange;
 import com.limechain.trie.structure.nibble.Nibble;
 import com.limechain.trie.structure.nibble.Nibbles;
@@ -9,17 +10,19 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 
 class TrieChangesTest {
 
     private TrieChanges trieChanges;
-    private TreeMap<Nibbles, PendingTrieNodeChange> changes;
+    private NavigableMap<Nibbles, PendingTrieNodeChange> changes;
 
     @BeforeEach
     void setUp() {
@@ -36,7 +39,7 @@ class TrieChangesTest {
     void testGetRoot_NonEmpty() {
         Nibbles key = Nibbles.fromBytes("root".getBytes());
         PendingInsertUpdate rootChange = mock(PendingInsertUpdate.class);
-        changes.put(key, rootChange);
+        put(key, rootChange);
 
         Optional<PendingInsertUpdate> root = trieChanges.getRoot();
         assertTrue(root.isPresent());
@@ -49,8 +52,8 @@ class TrieChangesTest {
         Nibbles key2 = Nibbles.fromHexString("12345678");
         PendingTrieNodeChange update1 = mock(PendingTrieNodeChange.class);
         PendingTrieNodeChange update2 = mock(PendingTrieNodeChange.class);
-        changes.put(key1, update1);
-        changes.put(key2, update2);
+        put(key1, update1);
+        put(key2, update2);
 
         List<Map.Entry<Nibbles, PendingTrieNodeChange>> entries = trieChanges.getEntriesInKeyPath(
             null, Nibbles.fromHexString("123456789"));
@@ -65,8 +68,8 @@ class TrieChangesTest {
         Nibbles key2 = Nibbles.fromHexString("12345678");
         PendingInsertUpdate update1 = mock(PendingInsertUpdate.class);
         PendingTrieNodeChange update2 = mock(PendingTrieNodeChange.class);
-        changes.put(key1, update1);
-        changes.put(key2, update2);
+        put(key1, update1);
+        put(key2, update2);
 
         List<Map.Entry<Nibbles, PendingInsertUpdate>> entries = trieChanges.getEntriesInKeyPath(
             PendingInsertUpdate.class, Nibbles.fromHexString("123456789"));
@@ -74,6 +77,62 @@ class TrieChangesTest {
         assertEquals(update1, entries.get(0).getValue());
     }
 
+    @Test
+    void testGetEntriesInKeyPath_SkipsSiblingsAndDescendants() {
+        PendingTrieNodeChange root = mock(PendingTrieNodeChange.class);
+        PendingTrieNodeChange ancestor = mock(PendingTrieNodeChange.class);
+        put(Nibbles.EMPTY, root);
+        put(Nibbles.fromHexString("12"), ancestor);
+        put(Nibbles.fromHexString("1200"), mock(PendingTrieNodeChange.class));
+        put(Nibbles.fromHexString("122"), mock(PendingTrieNodeChange.class));
+        put(Nibbles.fromHexString("12345"), mock(PendingTrieNodeChange.class));
+        put(Nibbles.fromHexString("2"), mock(PendingTrieNodeChange.class));
+
+        List<Map.Entry<Nibbles, PendingTrieNodeChange>> entries = trieChanges.getEntriesInKeyPath(
+            null, Nibbles.fromHexString("1234"));
+
+        assertEquals(List.of(Map.entry(Nibbles.EMPTY, root), Map.entry(Nibbles.fromHexString("12"), ancestor)),
+            entries);
+    }
+
+    @Test
+    void testGetChildByIndex_SkipsRemovedNodes() {
+        Nibbles parentKey = Nibbles.fromHexString("123");
+        Nibble childIndex = Nibble.fromAsciiHexDigit('4');
+        PendingInsertUpdate childChange = mock(PendingInsertUpdate.class);
+        put(Nibbles.fromHexString("1234"), new PendingRemove());
+        put(Nibbles.fromHexString("12345"), childChange);
+        put(Nibbles.fromHexString("1235"), mock(PendingInsertUpdate.class));
+
+        assertEquals(Optional.of(childChange), trieChanges.getChildByIndex(parentKey, childIndex));
+        assertEquals(Optional.empty(), trieChanges.getChildByIndex(parentKey, Nibble.fromAsciiHexDigit('3')));
+    }
+
+    @Test
+    void testGetChildByIndex_SkipsManyRemovedNodes() {
+        Nibbles parentKey = Nibbles.fromHexString("12");
+        Nibble childIndex = Nibble.fromAsciiHexDigit('3');
+        TreeMap<Nibbles, PendingTrieNodeChange> removes = new TreeMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            removes.put(Nibbles.fromHexString(String.format("123%05x", i)), new PendingRemove());
+        }
+        trieChanges.updateCache(removes);
+        Nibbles childKey = Nibbles.fromHexString("123fffff");
+        PendingInsertUpdate childChange = mock(PendingInsertUpdate.class);
+        put(childKey, childChange);
+
+        assertEquals(Optional.of(childChange), trieChanges.getChildByIndex(parentKey, childIndex));
+
+        trieChanges.startTransaction();
+        trieChanges.removeFromCache(childKey);
+        assertEquals(Optional.empty(), trieChanges.getChildByIndex(parentKey, childIndex));
+        trieChanges.rollbackTransaction();
+        assertEquals(Optional.of(childChange), trieChanges.getChildByIndex(parentKey, childIndex));
+
+        put(childKey, new PendingRemove());
+        assertEquals(Optional.empty(), trieChanges.getChildByIndex(parentKey, childIndex));
+    }
+
     @Test
     void testGetChildByIndex_NotFound() {
         Nibbles parentKey = Nibbles.fromHexString("123");
@@ -88,10 +147,54 @@ class TrieChangesTest {
         Nibble childIndex = Nibble.fromAsciiHexDigit('4');
         Nibbles childKey = parentKey.add(childIndex);
         PendingInsertUpdate childChange = mock(PendingInsertUpdate.class);
-        changes.put(childKey, childChange);
+        put(childKey, childChange);
 
         Optional<PendingInsertUpdate> child = trieChanges.getChildByIndex(parentKey, childIndex);
         assertTrue(child.isPresent());
         assertEquals(childChange, child.get());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRollbackTransaction_RestoresReplacedAndRemovedChanges() {
+        Nibbles replacedKey = Nibbles.fromHexString("12");
+        Nibbles removedKey = Nibbles.fromHexString("34");
+        Nibbles addedKey = Nibbles.fromHexString("56");
+        PendingTrieNodeChange replaced = mock(PendingTrieNodeChange.class);
+        PendingTrieNodeChange removed = mock(PendingTrieNodeChange.class);
+        put(replacedKey, replaced);
+        put(removedKey, removed);
+
+        trieChanges.startTransaction();
+        trieChanges.updateCache(new TreeMap<>(Map.of(
+            replacedKey, mock(PendingTrieNodeChange.class),
+            addedKey, mock(PendingTrieNodeChange.class))));
+        trieChanges.removeFromCache(removedKey);
+        trieChanges.rollbackTransaction();
+
+        assertEquals(Map.of(replacedKey, replaced, removedKey, removed), changes);
+    }
+
+    @Test
+    void testCommitTransaction_MergesIntoEnclosingTransaction() {
+        Nibbles key = Nibbles.fromHexString("12");
+        PendingTrieNodeChange original = mock(PendingTrieNodeChange.class);
+        put(key, original);
+
+        trieChanges.startTransaction();
+        trieChanges.updateCache(new TreeMap<>(Map.of(key, mock(PendingTrieNodeChange.class))));
+        trieChanges.startTransaction();
+        PendingTrieNodeChange committed = mock(PendingTrieNodeChange.class);
+        trieChanges.updateCache(new TreeMap<>(Map.of(key, committed)));
+        trieChanges.commitTransaction();
+
+        assertEquals(committed, changes.get(key));
+
+        trieChanges.rollbackTransaction();
+        assertEquals(original, changes.get(key));
+        assertThrows(IllegalStateException.class, trieChanges::rollbackTransaction);
+    }
+
+    private void put(Nibbles key, PendingTrieNodeChange change) {
+        trieChanges.updateCache(new TreeMap<>(Map.of(key, change)));
+    }
+}
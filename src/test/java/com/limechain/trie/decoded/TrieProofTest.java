@@ -0,0 +1,223 @@
+package com.limechain.trie.decoded;
+
+import com.limechain.exception.trie.NodeDecodingException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.dto.node.NodeEncoder;
+import com.limechain.trie.dto.node.StorageValue;
+import com.limechain.trie.structure.NodeHandle;
+import com.limechain.trie.structure.TrieNodeIndex;
+import com.limechain.trie.structure.TrieStructure;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrieProofTest {
+
+    /**
+     * The user data of the trie the proofs are built from.
+     */
+    private static final class Node {
+        private final byte[] value;
+        private byte[] merkleValue;
+
+        private Node(byte[] value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    void getFindsAllValuesOfTheTrie() {
+        Random random = new Random(7);
+        for (StateVersion stateVersion : StateVersion.values()) {
+            Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+            for (int i = 0; i < 300; i++) {
+                byte[] key = new byte[random.nextInt(4)];
+                random.nextBytes(key);
+                // Both short values, making for inlined children, and ones long enough to be hashed in V1
+                byte[] value = new byte[random.nextInt(random.nextBoolean() ? 8 : 80)];
+                random.nextBytes(value);
+                entries.put(key, value);
+            }
+
+            List<byte[]> proof = new ArrayList<>();
+            byte[] root = buildProof(entries, stateVersion, proof);
+            TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+
+            entries.forEach((key, value) -> {
+                assertArrayEquals(value, trieProof.get(root, key).orElseThrow());
+                assertTrue(trieProof.verify(root, key, value));
+            });
+            for (int i = 0; i < 300; i++) {
+                byte[] key = new byte[random.nextInt(5)];
+                random.nextBytes(key);
+                assertArrayEquals(entries.get(key), trieProof.get(root, key).orElse(null));
+            }
+        }
+    }
+
+    @Test
+    void getAllReturnsValuesInKeyOrder() {
+        Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        entries.put(new byte[]{0x12}, new byte[]{1});
+        entries.put(new byte[]{0x12, 0x34}, new byte[]{2});
+        entries.put(new byte[]{0x56}, new byte[40]);
+
+        List<byte[]> proof = new ArrayList<>();
+        byte[] root = buildProof(entries, StateVersion.V1, proof);
+        List<Optional<byte[]>> values = TrieProof.of(proof.toArray(byte[][]::new))
+            .getAll(root, List.of(new byte[]{0x56}, new byte[]{0x13}, new byte[]{0x12, 0x34}));
+
+        assertEquals(3, values.size());
+        assertArrayEquals(new byte[40], values.get(0).orElseThrow());
+        assertFalse(values.get(1).isPresent());
+        assertArrayEquals(new byte[]{2}, values.get(2).orElseThrow());
+    }
+
+    @Test
+    void getAllFindsTheSameValuesAsGet() {
+        Random random = new Random(11);
+        Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        for (int i = 0; i < 300; i++) {
+            byte[] key = new byte[random.nextInt(4)];
+            random.nextBytes(key);
+            byte[] value = new byte[random.nextInt(80)];
+            random.nextBytes(value);
+            entries.put(key, value);
+        }
+        List<byte[]> proof = new ArrayList<>();
+        byte[] root = buildProof(entries, StateVersion.V1, proof);
+
+        // Unsorted keys with repeats, prefixes of each other and missing ones
+        List<byte[]> keys = new ArrayList<>(entries.keySet());
+        for (int i = 0; i < 300; i++) {
+            byte[] key = new byte[random.nextInt(5)];
+            random.nextBytes(key);
+            keys.add(key);
+        }
+        keys.addAll(entries.keySet());
+        Collections.shuffle(keys, random);
+
+        List<Optional<byte[]>> values = TrieProof.of(proof.toArray(byte[][]::new)).getAll(root, keys);
+
+        TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+        assertEquals(keys.size(), values.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertArrayEquals(trieProof.get(root, keys.get(i)).orElse(null), values.get(i).orElse(null));
+        }
+    }
+
+    @Test
+    void lookupsThrowForRootHashesOfTheWrongLength() {
+        Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        entries.put(new byte[]{0x01}, new byte[]{1});
+
+        List<byte[]> proof = new ArrayList<>();
+        byte[] root = buildProof(entries, StateVersion.V0, proof);
+        TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+        byte[] shortRoot = Arrays.copyOf(root, 31);
+
+        assertThrows(IllegalArgumentException.class, () -> trieProof.get(shortRoot, new byte[]{0x01}));
+        assertThrows(IllegalArgumentException.class,
+            () -> trieProof.verify(shortRoot, new byte[]{0x01}, new byte[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> trieProof.getAll(shortRoot, List.of(new byte[]{0x01})));
+    }
+
+    @Test
+    void verifyRequiresTheExactValue() {
+        Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        entries.put(new byte[]{0x01}, new byte[]{1, 2});
+        entries.put(new byte[]{0x02}, new byte[]{3});
+
+        List<byte[]> proof = new ArrayList<>();
+        byte[] root = buildProof(entries, StateVersion.V0, proof);
+        TrieProof trieProof = TrieProof.of(proof.toArray(byte[][]::new));
+
+        assertTrue(trieProof.verify(root, new byte[]{0x01}, new byte[]{1, 2}));
+        assertFalse(trieProof.verify(root, new byte[]{0x01}, new byte[]{1}));
+        assertFalse(trieProof.verify(root, new byte[]{0x01}, new byte[0]));
+        assertFalse(trieProof.verify(root, new byte[]{0x03}, new byte[]{3}));
+    }
+
+    @Test
+    void getThrowsForNodesMissingFromTheProof() {
+        Map<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        byte[] value = new byte[40];
+        entries.put(new byte[]{0x01}, value);
+        // A different value, as leaves with the same encoding would share their hash
+        entries.put(new byte[]{0x02}, new byte[41]);
+
+        List<byte[]> proof = new ArrayList<>();
+        byte[] root = buildProof(entries, StateVersion.V0, proof);
+        // Nodes are encoded in reverse order, so the first one is the leaf of the last key
+        TrieProof trieProof = TrieProof.of(proof.subList(1, proof.size()).toArray(byte[][]::new));
+
+        assertArrayEquals(value, trieProof.get(root, new byte[]{0x01}).orElseThrow());
+        assertThrows(IllegalStateException.class, () -> trieProof.get(root, new byte[]{0x02}));
+        assertThrows(IllegalStateException.class, () -> trieProof.get(new byte[32], new byte[]{0x02}));
+    }
+
+    @Test
+    void getThrowsForMalformedNodes() {
+        byte[] badNode = {(byte) 0b1000_0000, 0, 0};
+        TrieProof trieProof = TrieProof.of(new byte[][]{badNode});
+
+        assertThrows(NodeDecodingException.class,
+            () -> trieProof.get(HashUtils.hashWithBlake2b(badNode), new byte[]{1}));
+    }
+
+    /**
+     * Encodes all nodes of the trie with the given entries, along with the values hashed into their nodes.
+     *
+     * @return the root hash of the trie
+     */
+    private static byte[] buildProof(Map<byte[], byte[]> entries, StateVersion stateVersion, List<byte[]> proof) {
+        TrieStructure<Node> trie = new TrieStructure<>();
+        entries.forEach((key, value) -> trie.insertNode(Nibbles.fromBytes(key), new Node(value), stateVersion));
+
+        List<TrieNodeIndex> indices = new ArrayList<>(trie.streamOrdered().toList());
+        Collections.reverse(indices);
+        for (TrieNodeIndex index : indices) {
+            NodeHandle<Node> handle = trie.nodeHandleAtIndex(index);
+            Node node = handle.getUserData();
+            if (node == null) {
+                node = new Node(null);
+                handle.setUserData(node);
+            }
+
+            List<byte[]> childrenMerkleValues = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                Node child = handle.getChildUserData(i);
+                childrenMerkleValues.add(child == null ? null : child.merkleValue);
+            }
+
+            StorageValue storageValue = null;
+            if (node.value != null && stateVersion == StateVersion.V1 && node.value.length >= 33) {
+                storageValue = new StorageValue(HashUtils.hashWithBlake2b(node.value), true);
+                proof.add(node.value);
+            } else if (node.value != null) {
+                storageValue = new StorageValue(node.value, false);
+            }
+
+            NodeEncoder encoder = NodeEncoder.forCurrentThread();
+            proof.add(encoder.encode(childrenMerkleValues, handle.getPartialKey(), storageValue));
+            node.merkleValue = encoder.calculateMerkleValue(childrenMerkleValues, handle.getPartialKey(), storageValue,
+                HashUtils::hashWithBlake2b, handle.isRootNode());
+        }
+        return trie.getRootNode().orElseThrow().getUserData().merkleValue;
+    }
+}
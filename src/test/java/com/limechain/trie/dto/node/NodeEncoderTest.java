@@ -0,0 +1,98 @@
+package com.limechain.trie.dto.node;
+
+import com.google.common.primitives.Bytes;
+import com.limechain.trie.structure.nibble.Nibbles;
+import com.limechain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeEncoderTest {
+    private final NodeEncoder encoder = NodeEncoder.forCurrentThread();
+
+    @Test
+    void encodedBranchDecodesToSameNode() {
+        List<byte[]> children = new ArrayList<>(Collections.nCopies(DecodedNode.CHILDREN_COUNT, null));
+        children.set(0, new byte[]{1, 2, 3});
+        children.set(15, HashUtils.hashWithBlake2b(new byte[]{4}));
+        Nibbles partialKey = Nibbles.fromHexString("abc");
+        StorageValue storageValue = new StorageValue(new byte[]{5, 6}, false);
+
+        byte[] encoded = encoder.encode(children, partialKey, storageValue);
+        DecodedNode<List<Byte>> decoded = DecodedNode.decode(encoded);
+
+        assertEquals(partialKey, decoded.getPartialKey());
+        assertEquals(storageValue, decoded.getStorageValue());
+        assertEquals(Bytes.asList(children.get(0)), decoded.getChildren().get(0));
+        assertEquals(Bytes.asList(children.get(15)), decoded.getChildren().get(15));
+        assertEquals(Bytes.asList(encoded), decoded.encode());
+    }
+
+    @Test
+    void hashedValueLeafDecodesToSameNode() {
+        StorageValue storageValue = new StorageValue(HashUtils.hashWithBlake2b(new byte[]{7}), true);
+
+        byte[] encoded = encoder.encode(List.of(), Nibbles.fromHexString("12"), storageValue);
+
+        assertEquals(storageValue, DecodedNode.decode(encoded).getStorageValue());
+    }
+
+    @Test
+    void largeValueDoesNotAffectFollowingEncodings() {
+        Nibbles partialKey = Nibbles.fromHexString("01");
+        StorageValue small = new StorageValue(new byte[]{1}, false);
+        byte[] expected = encoder.encode(List.of(), partialKey, small);
+
+        byte[] largeValue = new byte[(1 << 16) + 1];
+        Arrays.fill(largeValue, (byte) 9);
+        byte[] encodedLarge = encoder.encode(List.of(), partialKey, new StorageValue(largeValue, false));
+
+        assertArrayEquals(largeValue, DecodedNode.decode(encodedLarge).getStorageValue().value());
+        assertArrayEquals(expected, encoder.encode(List.of(), partialKey, small));
+    }
+
+    @Test
+    void merkleValueIsHashedOnlyForRootOrLongNodes() {
+        Nibbles partialKey = Nibbles.fromHexString("01");
+        StorageValue storageValue = new StorageValue(new byte[]{1}, false);
+        byte[] encoded = encoder.encode(List.of(), partialKey, storageValue);
+
+        assertArrayEquals(encoded, encoder.calculateMerkleValue(List.of(), partialKey, storageValue,
+            HashUtils::hashWithBlake2b, false));
+        assertArrayEquals(HashUtils.hashWithBlake2b(encoded), encoder.calculateMerkleValue(List.of(), partialKey,
+            storageValue, HashUtils::hashWithBlake2b, true));
+
+        StorageValue longValue = new StorageValue(new byte[40], false);
+        assertTrue(encoder.encode(List.of(), partialKey, longValue).length > 31);
+        assertEquals(32, encoder.calculateMerkleValue(List.of(), partialKey, longValue,
+            HashUtils::hashWithBlake2b, false).length);
+    }
+
+    @Test
+    void merkleValueIsHashedInPlaceWithTheGivenFunction() {
+        byte[][] children = new byte[DecodedNode.CHILDREN_COUNT][];
+        children[3] = new byte[]{1, 2, 3};
+        Nibbles partialKey = Nibbles.fromHexString("abc");
+        StorageValue storageValue = new StorageValue(new byte[]{4}, false);
+        byte[] encoded = encoder.encode(Arrays.asList(children), partialKey, storageValue);
+
+        assertArrayEquals(encoded, encoder.calculateMerkleValue(children, partialKey, storageValue,
+            HashUtils::hashWithBlake2b, false));
+        assertArrayEquals(HashUtils.hashWithKeccak256(encoded), encoder.calculateMerkleValue(children, partialKey,
+            storageValue, HashUtils::hashWithKeccak256, true));
+
+        children[15] = HashUtils.hashWithBlake2b(new byte[]{5});
+        byte[] longEncoded = encoder.encode(Arrays.asList(children), partialKey, storageValue);
+        assertArrayEquals(HashUtils.hashWithBlake2b(longEncoded), encoder.calculateMerkleValue(children, partialKey,
+            storageValue, HashUtils::hashWithBlake2b, false));
+        assertArrayEquals(HashUtils.hashWithBlake2b(longEncoded), encoder.calculateMerkleValue(
+            Arrays.asList(children), partialKey, storageValue, HashUtils::hashWithBlake2b, false));
+    }
+}
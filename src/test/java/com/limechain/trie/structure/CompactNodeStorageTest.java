@@ -0,0 +1,124 @@
+package com.limechain.trie.structure;
+
+import com.limechain.exception.trie.InvalidSlabIndexException;
+import com.limechain.runtime.version.StateVersion;
+import com.limechain.trie.structure.nibble.Nibbles;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactNodeStorageTest {
+    private static final int NO_NODE = NodeStorage.NO_NODE;
+
+    private final CompactNodeStorage<String> storage = new CompactNodeStorage<>(0);
+
+    @Test
+    void addedNodeKeepsItsFields() {
+        int root = storage.add(NO_NODE, 0, Nibbles.fromHexString("abc"), false, "root", StateVersion.V1);
+        int child = storage.add(root, 7, Nibbles.fromHexString("1"), true, null, StateVersion.V0);
+        storage.setChild(root, 7, child);
+
+        assertEquals(NO_NODE, storage.parentIndex(root));
+        assertEquals(Nibbles.fromHexString("abc"), storage.partialKey(root));
+        assertFalse(storage.hasStorageValue(root));
+        assertEquals("root", storage.userData(root));
+        assertEquals(StateVersion.V1, storage.stateVersion(root));
+        assertEquals(1 << 7, storage.childrenBitmap(root));
+        assertEquals(child, storage.child(root, 7));
+        assertEquals(NO_NODE, storage.child(root, 8));
+
+        assertEquals(root, storage.parentIndex(child));
+        assertEquals(7, storage.childIndexWithinParent(child));
+        assertTrue(storage.hasStorageValue(child));
+        assertNull(storage.userData(child));
+        assertEquals(StateVersion.V0, storage.stateVersion(child));
+        assertEquals(0, storage.childrenBitmap(child));
+    }
+
+    @Test
+    void flagsAreChangedIndependently() {
+        int node = storage.add(NO_NODE, 0, Nibbles.EMPTY, true, null, StateVersion.V0);
+
+        storage.setStateVersion(node, StateVersion.V1);
+        assertTrue(storage.hasStorageValue(node));
+
+        storage.setHasStorageValue(node, false);
+        assertEquals(StateVersion.V1, storage.stateVersion(node));
+        assertFalse(storage.hasStorageValue(node));
+    }
+
+    @Test
+    void partialKeysSurviveReplacementsAndPrefixDrops() {
+        int first = storage.add(NO_NODE, 0, Nibbles.fromHexString("123456789"), true, null, StateVersion.V0);
+        int second = storage.add(first, 0, Nibbles.fromHexString("fedcba"), true, null, StateVersion.V0);
+
+        storage.dropPartialKeyPrefix(first, 3);
+        assertEquals(Nibbles.fromHexString("456789"), storage.partialKey(first));
+
+        // Enough replacements to fill the arena with garbage and get it compacted a few times
+        for (int i = 0; i < 1000; i++) {
+            storage.setPartialKey(second, Nibbles.fromHexString(Integer.toHexString(i) + "abcdef0123"));
+        }
+
+        assertEquals(Nibbles.fromHexString("456789"), storage.partialKey(first));
+        assertEquals(Nibbles.fromHexString("3e7abcdef0123"), storage.partialKey(second));
+    }
+
+    @Test
+    void returnedPartialKeysDontChangeWithTheArena() {
+        int first = storage.add(NO_NODE, 0, Nibbles.fromHexString("123"), true, null, StateVersion.V0);
+        int second = storage.add(first, 0, Nibbles.fromHexString("fedcba"), true, null, StateVersion.V0);
+        Nibbles firstKey = storage.partialKey(first);
+        Nibbles secondKey = storage.partialKey(second);
+
+        // The next key is written into the byte holding the last nibble of the first one, then gets compacted
+        for (int i = 0; i < 1000; i++) {
+            storage.setPartialKey(second, Nibbles.fromHexString(Integer.toHexString(i) + "abcdef0123"));
+        }
+        storage.setPartialKey(first, Nibbles.fromHexString("9"));
+
+        assertEquals(Nibbles.fromHexString("123"), firstKey);
+        assertEquals(Nibbles.fromHexString("fedcba"), secondKey);
+        assertEquals(Nibbles.fromHexString("9"), storage.partialKey(first));
+    }
+
+    @Test
+    void removedNodeIsInvalidAndItsIndexIsReused() {
+        int root = storage.add(NO_NODE, 0, Nibbles.fromHexString("1"), false, null, StateVersion.V0);
+        int child = storage.add(root, 2, Nibbles.fromHexString("34"), true, "child", StateVersion.V0);
+        storage.setChild(root, 2, child);
+
+        storage.setChild(root, 2, NO_NODE);
+        storage.remove(child);
+
+        assertEquals(1, storage.size());
+        assertEquals(0, storage.childrenBitmap(root));
+        assertEquals(NO_NODE, storage.child(root, 2));
+        InvalidSlabIndexException exception =
+            assertThrows(InvalidSlabIndexException.class, () -> storage.partialKey(child));
+        assertEquals("Index " + child + " does not return any value.", exception.getMessage());
+        assertThrows(InvalidSlabIndexException.class, () -> storage.parentIndex(child + 1));
+
+        int newNode = storage.add(root, 5, Nibbles.fromHexString("6"), true, "new", StateVersion.V0);
+        assertEquals(child, newNode);
+        assertEquals("new", storage.userData(newNode));
+        assertEquals(Nibbles.fromHexString("6"), storage.partialKey(newNode));
+        assertEquals(0, storage.childrenBitmap(newNode));
+    }
+
+    @Test
+    void indicesContainExistingNodesOnly() {
+        int first = storage.add(NO_NODE, 0, Nibbles.EMPTY, false, null, StateVersion.V0);
+        int second = storage.add(first, 0, Nibbles.EMPTY, true, null, StateVersion.V0);
+        int third = storage.add(first, 1, Nibbles.EMPTY, true, null, StateVersion.V0);
+        storage.remove(second);
+
+        assertEquals(List.of(first, third), storage.indices().boxed().toList());
+    }
+}
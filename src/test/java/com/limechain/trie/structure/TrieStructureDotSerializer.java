@@ -31,18 +31,16 @@ class TrieStructureDotSerializer<T> {
 
     String serialize() {
         StringBuilder body = new StringBuilder();
-        trie.nodes.getAllEntries().forEach(p -> {
-            var node = p.getValue1();
-            var nodeIndex = p.getValue0();
-            if (node.parent != null) {
-                int parentIndex = node.parent.parentNodeIndex();
-                Nibble childIndexWithinParent = node.parent.childIndexWithinParent();
+        trie.nodes.indices().forEach(nodeIndex -> {
+            int parentIndex = trie.nodes.parentIndex(nodeIndex);
+            if (parentIndex != NodeStorage.NO_NODE) {
+                Nibble childIndexWithinParent = Nibble.fromInt(trie.nodes.childIndexWithinParent(nodeIndex));
                 body.append(String.format(
                     "    %d:%c -> %d;",
                     parentIndex, childIndexWithinParent.asLowerHexDigit(), nodeIndex));
                 body.append(System.lineSeparator());
             }
-            body.append(serializeNode(node, nodeIndex));
+            body.append(serializeNode(nodeIndex));
             body.append(System.lineSeparator());
             body.append(System.lineSeparator());
         });
@@ -57,10 +55,10 @@ class TrieStructureDotSerializer<T> {
         CHILDREN_INDICES = String.format("{%s}", childrenIndices);
     }
 
-    String serializeNode(TrieNode<T> node, int nodeIndex) {
-        String partialKey = String.format("partialKey: %s", node.partialKey);
-        String hasStorageValue = String.format("hasValue?: %b", node.hasStorageValue);
-        String userData = String.format("userData: %s", node.userData);
+    String serializeNode(int nodeIndex) {
+        String partialKey = String.format("partialKey: %s", trie.nodes.partialKey(nodeIndex));
+        String hasStorageValue = String.format("hasValue?: %b", trie.nodes.hasStorageValue(nodeIndex));
+        String userData = String.format("userData: %s", trie.nodes.userData(nodeIndex));
         String idx = String.format("Node index: %d", nodeIndex);
 
         String label = String.join(" | ", partialKey, hasStorageValue, userData, idx, CHILDREN_INDICES);
@@ -91,7 +91,7 @@ class TrieStructureTest {
 
         assertEquals(3, trie.nodes.size(),
                 "Exactly three nodes expected.");
-        assertTrue(trie.nodes.getAllEntries().stream().allMatch(p -> p.getValue1().hasStorageValue),
+        assertTrue(trie.nodes.indices().allMatch(trie.nodes::hasStorageValue),
                 "All three nodes must have storage values");
 
         var expectedPartialKeysInOrder =
@@ -103,7 +103,7 @@ class TrieStructureTest {
         for (TrieNodeIndex nodeIndex : trie.asIterableOrdered()) {
             assertEquals(
                     expectedPartialKeysInOrder.get(i++),
-                    trie.getNodeAtIndexInner(nodeIndex.getValue()).partialKey
+                    trie.nodes.partialKey(nodeIndex.getValue())
             );
         }
     }
@@ -256,4 +256,119 @@ class TrieStructureTest {
                 )
         );
     }
-}
\ No newline at end of file
+
+    @RepeatedTest(20)
+    void compactTrieMatchesDefaultOneAfterInsertionsAndDeletions() {
+        TrieStructure<Integer> trie = new TrieStructure<>();
+        TrieStructure<Integer> compactTrie = TrieStructure.compact(0);
+        List<Nibbles> keys = new ArrayList<>();
+
+        for (int i = 0; i < 500; ++i) {
+            if (!keys.isEmpty() && ThreadLocalRandom.current().nextInt(3) == 0) {
+                Nibbles key = keys.remove(ThreadLocalRandom.current().nextInt(keys.size()));
+                assertEquals(trie.deleteStorageNodeAt(key), compactTrie.deleteStorageNodeAt(key));
+                continue;
+            }
+
+            Nibbles key = Stream.generate(() -> ThreadLocalRandom.current().nextInt(0, 4))
+                    .map(Nibble::fromInt)
+                    .limit(ThreadLocalRandom.current().nextInt(0, 10))
+                    .collect(NibblesCollector.toNibbles());
+            keys.add(key);
+            trie.insertNode(key, i, STATE_VERSION_0);
+            compactTrie.insertNode(key, i, StateVersion.V1);
+        }
+
+        assertTrue(trie.structurallyEquals(compactTrie));
+        assertEquals(
+                trie.streamOrdered().map(trie::getUserDataAtIndex).toList(),
+                compactTrie.streamOrdered().map(compactTrie::getUserDataAtIndex).toList());
+        assertEquals(
+                trie.streamOrdered().map(trie::nodeFullKeyAtIndex).toList(),
+                compactTrie.streamOrdered().map(compactTrie::nodeFullKeyAtIndex).toList());
+        assertTrue(compactTrie.streamUnordered()
+                .map(compactTrie::nodeHandleAtIndex)
+                .allMatch(node -> node.getStateVersion() == StateVersion.V1.asInt()));
+    }
+
+    @Test
+    void lazyTrieLoadsOnlyTheNodesOnTheWay() {
+        TrieStructure<Nibbles> source = new TrieStructure<>();
+        Stream.of("a1b2", "a1c3", "a1c4", "b5", "b6d7")
+                .map(Nibbles::fromHexString)
+                .forEach(key -> source.insertNode(key, key, STATE_VERSION_0));
+        List<Nibbles> loadedKeys = new ArrayList<>();
+        TrieStructure<Nibbles> trie = TrieStructure.lazy(Nibbles.EMPTY, loaderOf(source, loadedKeys));
+
+        assertTrue(loadedKeys.isEmpty());
+
+        Nibbles key = Nibbles.fromHexString("a1c3");
+        assertEquals(key, trie.existingNode(key).orElseThrow().getUserData());
+        assertEquals(List.of(Nibbles.EMPTY, Nibbles.fromHexString("a1"), Nibbles.fromHexString("a1c"), key),
+                loadedKeys);
+
+        // Unloaded children are only known by their user data
+        assertEquals(Nibbles.fromHexString("a1c4"), trie.existingNode(Nibbles.fromHexString("a1c"))
+                .orElseThrow()
+                .getChildUserData(4));
+        assertEquals(4, loadedKeys.size());
+
+        assertTrue(trie.structurallyEquals(source));
+        assertEquals(source.size(), loadedKeys.size());
+    }
+
+    @RepeatedTest(20)
+    void lazyTrieMatchesFullyLoadedOneAfterInsertionsAndDeletions() {
+        TrieStructure<Nibbles> source = new TrieStructure<>();
+        TrieStructure<Nibbles> expected = new TrieStructure<>();
+        List<Nibbles> keys = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            Nibbles key = randomKey();
+            keys.add(key);
+            source.insertNode(key, key, STATE_VERSION_0);
+            expected.insertNode(key, key, STATE_VERSION_0);
+        }
+        TrieStructure<Nibbles> trie = TrieStructure.lazy(
+                source.getRootNode().orElseThrow().getFullKey(), loaderOf(source, new ArrayList<>()));
+
+        for (int i = 0; i < 200; ++i) {
+            if (!keys.isEmpty() && ThreadLocalRandom.current().nextBoolean()) {
+                Nibbles key = keys.remove(ThreadLocalRandom.current().nextInt(keys.size()));
+                assertEquals(expected.deleteStorageNodeAt(key), trie.deleteStorageNodeAt(key));
+                continue;
+            }
+
+            Nibbles key = randomKey();
+            keys.add(key);
+            expected.insertNode(key, key, STATE_VERSION_0);
+            trie.insertNode(key, key, STATE_VERSION_0);
+        }
+
+        assertTrue(expected.structurallyEquals(trie));
+        assertEquals(
+                expected.streamOrdered().map(expected::nodeFullKeyAtIndex).toList(),
+                trie.streamOrdered().map(trie::nodeFullKeyAtIndex).toList());
+    }
+
+    private static Nibbles randomKey() {
+        return Stream.generate(() -> ThreadLocalRandom.current().nextInt(0, 4))
+                .map(Nibble::fromInt)
+                .limit(ThreadLocalRandom.current().nextInt(0, 10))
+                .collect(NibblesCollector.toNibbles());
+    }
+
+    /**
+     * Loads the nodes of the source trie, using their full keys as user data.
+     */
+    private static NodeLoader<Nibbles> loaderOf(TrieStructure<Nibbles> source, List<Nibbles> loadedKeys) {
+        return key -> {
+            loadedKeys.add(key);
+            NodeHandle<Nibbles> node = source.existingNode(key).orElseThrow();
+            List<Nibbles> children = Nibbles.ALL.stream()
+                    .map(nibble -> node.getChild(nibble).map(NodeHandle::getFullKey).orElse(null))
+                    .toList();
+            return new NodeLoader.LoadedNode<>(node.getPartialKey(), node.hasStorageValue(), key,
+                    STATE_VERSION_0, children);
+        };
+    }
+}
@@ -0,0 +1,170 @@
+package com.limechain.trie.structure.nibble;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NibblesTest {
+    /**
+     * {@code Nibbles.fromHexString("abc")} as Java-serialized by older versions, which held a list of nibbles.
+     */
+    private static final String LEGACY_SERIALIZED_ABC =
+        "aced00057372002b636f6d2e6c696d65636861696e2e747269652e7374727563747572652e6e6962626c652e4e696262"
+        + "6c6573050ae2398f8a8f900200014c0007656e74726965737400104c6a6176612f7574696c2f4c6973743b7870737200"
+        + "146a6176612e7574696c2e4c696e6b65644c6973740c29535d4a60882203000078707704000000037372002a636f6d2e"
+        + "6c696d65636861696e2e747269652e7374727563747572652e6e6962626c652e4e6962626c656eefe7e42f0096140200"
+        + "0142000576616c756578700a7371007e00050b7371007e00050c78";
+
+    @Test
+    void dropAndTakeViewsBehaveLikeCopies() {
+        Nibbles nibbles = Nibbles.fromHexString("0123456789abcdef");
+
+        Nibbles dropped = nibbles.drop(3);
+        assertEquals(Nibbles.fromHexString("3456789abcdef"), dropped);
+        assertEquals(Nibbles.fromHexString("3456789abcdef").hashCode(), dropped.hashCode());
+        assertEquals(Nibbles.fromHexString("345"), dropped.take(3));
+        assertEquals(Nibbles.fromHexString("456"), dropped.drop(1).take(3));
+        assertEquals(Nibbles.EMPTY, nibbles.drop(16));
+        assertThrows(IndexOutOfBoundsException.class, () -> nibbles.drop(17));
+        assertThrows(IndexOutOfBoundsException.class, () -> dropped.get(13));
+    }
+
+    @Test
+    void addAndAddAllOnUnalignedViews() {
+        Nibbles view = Nibbles.fromHexString("abcdef").drop(1);
+
+        assertEquals(Nibbles.fromHexString("bcdef1"), view.add(Nibble.fromInt(1)));
+        assertEquals(Nibbles.fromHexString("b2cdef"), view.add(1, Nibble.fromInt(2)));
+        assertEquals(Nibbles.fromHexString("bcdef345"), view.addAll(Nibbles.fromHexString("2345").drop(1)));
+        assertEquals(Nibbles.fromHexString("bcdefabcd"), view.addAll(Nibbles.fromHexString("abcd")));
+        assertEquals("bcdef", view.toLowerHexString());
+    }
+
+    @Test
+    void compareToMatchesHexStringOrder() {
+        List<String> hexes = List.of("", "0", "00", "01", "1", "10", "1f", "f", "f0", "abc", "abcd", "abd");
+        for (String first : hexes) {
+            for (String second : hexes) {
+                Nibbles a = Nibbles.fromHexString("9" + first).drop(1);
+                Nibbles b = Nibbles.fromHexString(second);
+                int expected = Integer.signum(first.compareTo(second));
+                assertEquals(expected, Integer.signum(a.compareTo(b)), first + " vs " + second);
+                assertEquals(expected, Integer.signum(a.compareTo(b.asUnmodifiableList())), first + " vs " + second);
+            }
+        }
+    }
+
+    @Test
+    void startsWithComparesNibbles() {
+        Nibbles nibbles = Nibbles.fromHexString("abcdef");
+
+        assertTrue(nibbles.startsWith(Nibbles.EMPTY));
+        assertTrue(nibbles.startsWith(Nibbles.fromHexString("abc")));
+        assertTrue(nibbles.drop(1).startsWith(Nibbles.fromHexString("bcd")));
+        assertTrue(nibbles.drop(2).startsWith(Nibbles.fromHexString("0cde").drop(1)));
+        assertFalse(nibbles.startsWith(Nibbles.fromHexString("abd")));
+        assertFalse(nibbles.startsWith(Nibbles.fromHexString("abcdef0")));
+    }
+
+    @Test
+    void commonPrefixLengthOnAlignedAndUnalignedViews() {
+        Nibbles nibbles = Nibbles.fromHexString("abcdef");
+
+        assertEquals(6, nibbles.commonPrefixLength(Nibbles.fromHexString("abcdef12")));
+        assertEquals(3, nibbles.commonPrefixLength(Nibbles.fromHexString("abc0")));
+        assertEquals(0, nibbles.commonPrefixLength(Nibbles.EMPTY));
+        assertEquals(4, nibbles.drop(1).commonPrefixLength(Nibbles.fromHexString("bcde0")));
+        assertEquals(2, nibbles.drop(1).commonPrefixLength(Nibbles.fromHexString("0bc1").drop(1)));
+    }
+
+    @Test
+    void sortsInTreeSetAndConvertsToBytes() {
+        TreeSet<Nibbles> set = new TreeSet<>();
+        set.add(Nibbles.fromBytes(new byte[]{0x12, 0x34}));
+        set.add(Nibbles.fromHexString("12"));
+        set.add(Nibbles.fromHexString("1234").take(3));
+
+        assertEquals(List.of("12", "123", "1234"), set.stream().map(Nibbles::toString).toList());
+        assertEquals(List.of((byte) 0x12, (byte) 0x30), NibblesUtils.toBytesAppending(set.higher(set.first())));
+        assertNotEquals(Nibbles.fromHexString("1230"), Nibbles.fromHexString("123"));
+    }
+
+    @Test
+    void copyToAndFromPackedKeepSurroundingNibbles() {
+        byte[] packed = new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff};
+
+        Nibbles.fromHexString("1234").drop(1).copyTo(packed, 1);
+
+        assertEquals(Nibbles.fromHexString("f234ff"), Nibbles.fromBytes(packed));
+        assertEquals(Nibbles.fromHexString("234"), Nibbles.fromPacked(packed, 1, 3));
+        assertEquals(Nibbles.fromHexString("34f"), Nibbles.fromPacked(packed, 2, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> Nibbles.fromPacked(packed, 4, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> Nibbles.fromHexString("12").copyTo(packed, 5));
+    }
+
+    @Test
+    void viewOfPackedIsUnaffectedByWritesAroundIt() {
+        byte[] packed = new byte[]{0x12, 0x34, 0x56};
+
+        Nibbles view = Nibbles.viewOfPacked(packed, 1, 3);
+        Nibbles.fromHexString("ab").copyTo(packed, 4);
+        Nibbles.fromHexString("c").copyTo(packed, 0);
+
+        assertEquals(Nibbles.fromHexString("234"), view);
+        assertEquals(Nibbles.fromHexString("34"), view.drop(1));
+        assertEquals(Nibbles.fromHexString("c234ab"), Nibbles.fromBytes(packed));
+        assertThrows(IndexOutOfBoundsException.class, () -> Nibbles.viewOfPacked(packed, 4, 3));
+    }
+
+    @Test
+    void readsNibblesSerializedByOlderVersions() throws IOException, ClassNotFoundException {
+        Nibbles nibbles = (Nibbles) deserialize(HexFormat.of().parseHex(LEGACY_SERIALIZED_ABC));
+
+        assertEquals(Nibbles.fromHexString("abc"), nibbles);
+        assertEquals(Nibbles.fromHexString("abcd"), nibbles.add(Nibble.fromInt(0xd)));
+    }
+
+    @Test
+    void serializationKeepsTheLegacyFormat() throws IOException, ClassNotFoundException {
+        Nibbles view = Nibbles.fromHexString("0abcdef").drop(1).take(3);
+
+        byte[] serialized = serialize(view);
+
+        assertEquals(Nibbles.fromHexString("abc"), deserialize(serialized));
+        assertEquals(Nibbles.EMPTY, deserialize(serialize(Nibbles.EMPTY)));
+
+        ObjectStreamClass streamClass = ObjectStreamClass.lookup(Nibbles.class);
+        assertEquals(363351456805982096L, streamClass.getSerialVersionUID());
+        assertEquals(1, streamClass.getFields().length);
+        assertEquals("entries", streamClass.getFields()[0].getName());
+        assertEquals(List.class, streamClass.getFields()[0].getType());
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] serialized) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+}
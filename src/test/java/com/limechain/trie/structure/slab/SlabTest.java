@@ -237,4 +237,50 @@ class SlabTest {
             assertNotNull(slab.get(index));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void isEmptyAfterRemovingAllElementsTest() {
+        Slab<String> slab = new Slab<>();
+        int first = slab.add("test1");
+        int second = slab.add("test2");
+
+        slab.remove(first);
+        slab.remove(second);
+
+        assertTrue(slab.isEmpty());
+        assertEquals(0, slab.size());
+        assertFalse(slab.iterator().hasNext());
+    }
+
+    @Test
+    void removedIndicesAreReusedBeforeNewOnesTest() {
+        Slab<String> slab = new Slab<>(1);
+        for (int i = 0; i < 100; i++) {
+            slab.add("test" + i);
+        }
+
+        slab.remove(10);
+        slab.remove(50);
+
+        assertEquals(50, slab.add("reused1"));
+        assertEquals(10, slab.add("reused2"));
+        assertEquals(100, slab.add("new"));
+        assertEquals(101, slab.size());
+    }
+
+    @Test
+    void reserveKeepsContentsAndBoundsTest() {
+        Slab<String> slab = new Slab<>(0);
+        int index = slab.add("test");
+
+        slab.reserve(1000);
+
+        assertEquals("test", slab.get(index));
+        assertEquals(1, slab.size());
+        InvalidSlabIndexException exception = assertThrows(InvalidSlabIndexException.class, () -> slab.get(1));
+        assertEquals("Index 1 out of bounds for underlying storage.", exception.getMessage());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 1, slab.add("test" + i));
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.limechain.utils;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class ByteArrayUtilsTest {
     @Test
@@ -48,4 +50,16 @@ class ByteArrayUtilsTest {
         // Test with both arrays null
         assertEquals(-1, ByteArrayUtils.indexOf(null, null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPrefixUpperBound() {
+        assertArrayEquals(new byte[]{1, 3}, ByteArrayUtils.prefixUpperBound(new byte[]{1, 2}));
+        assertArrayEquals(new byte[]{2}, ByteArrayUtils.prefixUpperBound(new byte[]{1, (byte) 0xFF, (byte) 0xFF}));
+    }
+
+    @Test
+    void testPrefixUpperBoundUnbounded() {
+        assertNull(ByteArrayUtils.prefixUpperBound(new byte[]{(byte) 0xFF, (byte) 0xFF}));
+        assertNull(ByteArrayUtils.prefixUpperBound(new byte[0]));
+    }
+}
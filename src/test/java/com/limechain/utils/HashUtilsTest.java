@@ -3,7 +3,12 @@ package com.limechain.utils;
 import org.apache.tomcat.util.buf.HexUtils;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class HashUtilsTest {
 
@@ -79,4 +84,55 @@ class HashUtilsTest {
 
         assertArrayEquals(HexUtils.fromHexString(XX256), bytes);
     }
-}
\ No newline at end of file
+
+    @Test
+    void hashWithBlake2bFromRangeAndBuffer() {
+        byte[] data = new byte[10_000];
+        new Random(1).nextBytes(data);
+        byte[] expected = HashUtils.hashWithBlake2b(Arrays.copyOfRange(data, 5, 9_005));
+
+        byte[] output = new byte[40];
+        HashUtils.hashWithBlake2b(data, 5, 9_000, output, 8);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 8, 40));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).position(5).limit(9_005);
+        HashUtils.hashWithBlake2b(direct, output, 0);
+        assertArrayEquals(expected, Arrays.copyOf(output, 32));
+        assertEquals(5, direct.position());
+
+        HashUtils.hashWithBlake2b(ByteBuffer.wrap(data, 5, 9_000), output, 0);
+        assertArrayEquals(expected, Arrays.copyOf(output, 32));
+    }
+
+    @Test
+    void hashWithBlake2b128FromBuffer() {
+        byte[] output = new byte[16];
+        HashUtils.hashWithBlake2b128(ByteBuffer.wrap(HexUtils.fromHexString("00000000")), output, 0);
+
+        assertArrayEquals(HexUtils.fromHexString(BLAKE2B128), output);
+    }
+
+    @Test
+    void hashAllWithBlake2b() {
+        byte[][] inputs = {HexUtils.fromHexString("00000000"), new byte[0], "System".getBytes()};
+
+        byte[][] hashes = HashUtils.hashAllWithBlake2b(inputs);
+
+        assertEquals(inputs.length, hashes.length);
+        for (int i = 0; i < inputs.length; i++) {
+            assertArrayEquals(HashUtils.hashWithBlake2b(inputs[i]), hashes[i]);
+        }
+    }
+
+    @Test
+    void hashXxFromRangeAndBuffer() {
+        byte[] data = "__System__".getBytes();
+        byte[] output = new byte[32];
+
+        HashUtils.hashXx(0, data, 2, 6, output, 0, 32);
+        assertArrayEquals(HexUtils.fromHexString(XX256), output);
+
+        HashUtils.hashXx(0, ByteBuffer.allocateDirect(6).put("System".getBytes()).flip(), output, 16, 16);
+        assertArrayEquals(HexUtils.fromHexString(XX128), Arrays.copyOfRange(output, 16, 32));
+    }
+}